@@ -282,6 +282,7 @@ public class AMD64Assembler extends Assembler {
         QwordOnlyAssertion(CPU, CPU, QWORD),
         FloatingAssertion(XMM, XMM, SS, SD, PS, PD),
         PackedFloatingAssertion(XMM, XMM, PS, PD),
+        PackedIntegerAssertion(XMM, XMM, PS),
         SingleAssertion(XMM, XMM, SS),
         DoubleAssertion(XMM, XMM, SD),
         IntToFloatingAssertion(XMM, CPU, DWORD, QWORD),
@@ -653,6 +654,16 @@ public class AMD64Assembler extends Assembler {
         // TEST is documented as MR operation, but it's symmetric, and using it as RM operation is more convenient.
         public static final AMD64RMOp TESTB  = new AMD64RMOp("TEST",               0x84, OpAssertion.ByteAssertion);
         public static final AMD64RMOp TEST   = new AMD64RMOp("TEST",               0x85);
+
+        // Packed integer operations on 128 bit vectors. The 0x66 prefix is part of the opcode, so they are used with the PS operand size.
+        public static final AMD64RMOp PADDD  = new AMD64RMOp("PADDD",  0x66, P_0F,   0xFE, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE2);
+        public static final AMD64RMOp PADDQ  = new AMD64RMOp("PADDQ",  0x66, P_0F,   0xD4, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE2);
+        public static final AMD64RMOp PSUBD  = new AMD64RMOp("PSUBD",  0x66, P_0F,   0xFA, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE2);
+        public static final AMD64RMOp PSUBQ  = new AMD64RMOp("PSUBQ",  0x66, P_0F,   0xFB, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE2);
+        public static final AMD64RMOp PMULLD = new AMD64RMOp("PMULLD", 0x66, P_0F38, 0x40, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE4_1);
+        public static final AMD64RMOp PAND   = new AMD64RMOp("PAND",   0x66, P_0F,   0xDB, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE2);
+        public static final AMD64RMOp POR    = new AMD64RMOp("POR",    0x66, P_0F,   0xEB, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE2);
+        public static final AMD64RMOp PXOR   = new AMD64RMOp("PXOR",   0x66, P_0F,   0xEF, OpAssertion.PackedIntegerAssertion, CPUFeature.SSE2);
         // @formatter:on
 
         protected AMD64RMOp(String opcode, int op) {
@@ -2141,6 +2152,25 @@ public class AMD64Assembler extends Assembler {
         emitOperandHelper(dst, src);
     }
 
+    public final void movdqu(AMD64Address dst, Register src) {
+        emitByte(0xF3);
+        prefix(dst, src);
+        emitByte(0x0F);
+        emitByte(0x7F);
+        emitOperandHelper(src, dst);
+    }
+
+    public final void pshufd(Register dst, Register src, int imm8) {
+        assert dst.getRegisterCategory().equals(AMD64.XMM) && src.getRegisterCategory().equals(AMD64.XMM);
+        assert (imm8 & 0xFF) == imm8;
+        emitByte(0x66);
+        int encode = prefixAndEncode(dst.encoding, src.encoding);
+        emitByte(0x0F);
+        emitByte(0x70);
+        emitByte(0xC0 | encode);
+        emitByte(imm8);
+    }
+
     public final void movslq(AMD64Address dst, int imm32) {
         prefixq(dst);
         emitByte(0xC7);
@@ -32,6 +32,7 @@ import com.oracle.graal.asm.aarch64.AArch64Assembler.ConditionFlag;
 import com.oracle.graal.asm.aarch64.AArch64MacroAssembler;
 import com.oracle.graal.compiler.common.calc.Condition;
 import com.oracle.graal.compiler.common.spi.LIRKindTool;
+import com.oracle.graal.compiler.common.type.ArithmeticOpTable.BinaryOp;
 import com.oracle.graal.lir.LIRFrameState;
 import com.oracle.graal.lir.LIRValueUtil;
 import com.oracle.graal.lir.LabelRef;
@@ -396,6 +397,11 @@ public abstract class AArch64LIRGenerator extends LIRGenerator {
         throw JVMCIError.unimplemented("Do not generate until we support vector instructions");
     }
 
+    @Override
+    public Variable emitVectorizedArrayOp(BinaryOp<?> op, JavaKind kind, Value destination, Value source1, Value source2, boolean source2IsArray, Value start, Value length) {
+        throw JVMCIError.unimplemented("Do not generate until we support vector instructions");
+    }
+
     @Override
     public Variable emitArrayEquals(JavaKind kind, Value array1, Value array2, Value length) {
         // TODO (das) Do not generate until we support vector instructions
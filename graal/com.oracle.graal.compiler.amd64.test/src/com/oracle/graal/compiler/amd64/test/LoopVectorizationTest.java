@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.amd64.test;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.lir.amd64.AMD64VectorizedArrayOp;
+import com.oracle.graal.loop.phases.LoopVectorizationPhase;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.extended.VectorizedArrayOpNode;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.Phase;
+import com.oracle.graal.phases.common.LoweringPhase;
+import com.oracle.graal.phases.tiers.HighTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+import jdk.vm.ci.amd64.AMD64;
+
+public class LoopVectorizationTest extends GraalCompilerTest {
+
+    @Before
+    public void checkAMD64() {
+        assumeTrue("skipping AMD64 specific test", getTarget().arch instanceof AMD64);
+    }
+
+    /**
+     * Number of vectorized loops, by method name.
+     */
+    private final Map<String, Integer> vectorizedLoops = new HashMap<>();
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super HighTierContext>> position = suites.getHighTier().findPhase(LoweringPhase.class);
+        position.previous();
+        position.add(new LoopVectorizationPhase(AMD64VectorizedArrayOp::isSupported));
+        position.add(new Phase("CountVectorizedLoops") {
+
+            @Override
+            protected void run(StructuredGraph graph) {
+                vectorizedLoops.put(graph.method().getName(), graph.getNodes().filter(VectorizedArrayOpNode.class).count());
+            }
+        });
+        return suites;
+    }
+
+    private static final int LENGTH = 37;
+
+    private static int[] ints(int seed) {
+        int[] result = new int[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            result[i] = i * seed - 7;
+        }
+        return result;
+    }
+
+    private static long[] longs(int seed) {
+        long[] result = new long[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            result[i] = i * (seed + 0x1_0000_0000L);
+        }
+        return result;
+    }
+
+    private static float[] floats(int seed) {
+        float[] result = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            result[i] = (i + 1) * seed / 3.0f;
+        }
+        return result;
+    }
+
+    private static double[] doubles(int seed) {
+        double[] result = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            result[i] = i * seed / 7.0;
+        }
+        return result;
+    }
+
+    public static int[] addIntSnippet(int[] b, int[] c, int n) {
+        int[] a = new int[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = b[i] + c[i];
+        }
+        return a;
+    }
+
+    public static int[] mulIntSnippet(int[] b, int[] c, int n) {
+        int[] a = new int[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = b[i] * c[i];
+        }
+        return a;
+    }
+
+    public static int[] scalarSnippet(int[] b, int c, int n) {
+        int[] a = new int[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = c & b[i];
+        }
+        return a;
+    }
+
+    public static int[] scalarSubSnippet(int[] b, int c, int n) {
+        int[] a = new int[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = c - b[i];
+        }
+        return a;
+    }
+
+    public static int[] inPlaceSnippet(int[] b, int start, int n) {
+        int[] a = new int[b.length];
+        System.arraycopy(b, 0, a, 0, b.length);
+        for (int i = start; i < n; i++) {
+            a[i] = a[i] * a[i];
+        }
+        return a;
+    }
+
+    public static long[] subLongSnippet(long[] b, long[] c, int n) {
+        long[] a = new long[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = b[i] - c[i];
+        }
+        return a;
+    }
+
+    public static long[] mulLongSnippet(long[] b, long[] c, int n) {
+        long[] a = new long[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = b[i] * c[i];
+        }
+        return a;
+    }
+
+    public static float[] divFloatSnippet(float[] b, float[] c, int n) {
+        float[] a = new float[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = b[i] / c[i];
+        }
+        return a;
+    }
+
+    public static double[] mulDoubleSnippet(double[] b, double c, int n) {
+        double[] a = new double[b.length];
+        for (int i = 0; i < n; i++) {
+            a[i] = b[i] * c;
+        }
+        return a;
+    }
+
+    private void testVectorized(String name, Object b, Object c) {
+        for (int n : new int[]{0, 1, 3, 4, 20, LENGTH, LENGTH + 1}) {
+            test(name, b, c, n);
+        }
+        Assert.assertEquals(name, 1, (int) vectorizedLoops.get(name));
+    }
+
+    @Test
+    public void testAddInt() {
+        testVectorized("addIntSnippet", ints(3), ints(5));
+        test("addIntSnippet", ints(3), null, LENGTH);
+        test("addIntSnippet", ints(3), new int[LENGTH - 10], LENGTH);
+    }
+
+    @Test
+    public void testMulInt() {
+        testVectorized("mulIntSnippet", ints(3), ints(-5));
+    }
+
+    @Test
+    public void testScalar() {
+        testVectorized("scalarSnippet", ints(11), 0x5555);
+    }
+
+    @Test
+    public void testScalarSub() {
+        for (int n : new int[]{0, 5, LENGTH}) {
+            test("scalarSubSnippet", ints(11), 42, n);
+        }
+        Assert.assertEquals(0, (int) vectorizedLoops.get("scalarSubSnippet"));
+    }
+
+    @Test
+    public void testInPlace() {
+        testVectorized("inPlaceSnippet", ints(7), 0);
+        test("inPlaceSnippet", ints(7), 3, LENGTH);
+        test("inPlaceSnippet", ints(7), -1, LENGTH);
+    }
+
+    @Test
+    public void testSubLong() {
+        testVectorized("subLongSnippet", longs(3), longs(17));
+    }
+
+    @Test
+    public void testMulLong() {
+        test("mulLongSnippet", longs(3), longs(17), LENGTH);
+        Assert.assertEquals(0, (int) vectorizedLoops.get("mulLongSnippet"));
+    }
+
+    @Test
+    public void testDivFloat() {
+        testVectorized("divFloatSnippet", floats(3), floats(-2));
+    }
+
+    @Test
+    public void testMulDouble() {
+        testVectorized("mulDoubleSnippet", doubles(3), 0.1);
+    }
+}
@@ -82,9 +82,21 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Expert)
     public static final OptionValue<Integer> MaximumEscapeAnalysisArrayLength = new OptionValue<>(32);
 
-    @Option(help = "", type = OptionType.Debug)
+    @Option(help = "Maximum length of arrays that are virtualized if all their accesses use constant indices", type = OptionType.Expert)
+    public static final OptionValue<Integer> MaximumEscapeAnalysisConstantIndexArrayLength = new OptionValue<>(256);
+
+    @Option(help = "Inline calls at which escape analysis has to materialize objects passed as arguments", type = OptionType.Debug)
     public static final OptionValue<Boolean> PEAInliningHints = new OptionValue<>(false);
 
+    @Option(help = "Duplicate merges whose cold predecessors force escape analysis to materialize objects in the hot predecessors", type = OptionType.Debug)
+    public static final OptionValue<Boolean> MaterializationSinking = new OptionValue<>(false);
+
+    @Option(help = "Maximum number of nodes duplicated per merge by materialization sinking", type = OptionType.Expert)
+    public static final OptionValue<Integer> MaterializationSinkingMaxNodes = new OptionValue<>(50);
+
+    @Option(help = "Maximum relative probability of the predecessors split off a merge by materialization sinking", type = OptionType.Expert)
+    public static final OptionValue<Double> MaterializationSinkingProbability = new OptionValue<>(0.1);
+
     @Option(help = "", type = OptionType.Expert)
     public static final OptionValue<Double> TailDuplicationProbability = new OptionValue<>(0.5);
 
@@ -106,6 +118,12 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> LoopUnswitch = new OptionValue<>(true);
 
+    @Option(help = "Unroll counted loops into an unrolled main loop followed by a post loop for the remaining iterations", type = OptionType.Debug)
+    public static final OptionValue<Boolean> PartialUnroll = new OptionValue<>(false);
+
+    @Option(help = "Number of copies of the loop body in the main loop of a partially unrolled loop", type = OptionType.Expert)
+    public static final OptionValue<Integer> PartialUnrollFactor = new OptionValue<>(4);
+
     @Option(help = "", type = OptionType.Expert)
     public static final OptionValue<Float> MinimumPeelProbability = new OptionValue<>(0.35f);
 
@@ -115,6 +133,21 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> UseLoopLimitChecks = new OptionValue<>(true);
 
+    @Option(help = "Move loop invariant guards, reads and calls without side effects out of loops", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopInvariantCodeMotion = new OptionValue<>(true);
+
+    @Option(help = "Replace array bounds checks on induction variables of counted loops by checks before the loop", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopRangeCheckElimination = new OptionValue<>(true);
+
+    @Option(help = "Split long counted loops into an outer loop with a safepoint and an inner loop without safepoints", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopStripMining = new OptionValue<>(false);
+
+    @Option(help = "Maximum number of iterations of the inner loop of a strip mined loop", type = OptionType.Expert)
+    public static final OptionValue<Integer> LoopStripMiningLength = new OptionValue<>(1000);
+
+    @Option(help = "Move the exit test of loops from the loop header to the back edge", type = OptionType.Debug)
+    public static final OptionValue<Boolean> LoopRotation = new OptionValue<>(false);
+
     // debugging settings
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> ZapStackOnMethodEntry = new OptionValue<>(false);
@@ -293,6 +326,12 @@ public final class GraalOptions {
     @Option(help = "", type = OptionType.Debug)
     public static final OptionValue<Boolean> OptPushThroughPi = new OptionValue<>(true);
 
+    @Option(help = "Remove the monitor operations on objects that are allocated in the compiled method and never escape the current thread", type = OptionType.Debug)
+    public static final OptionValue<Boolean> OptEliminateThreadLocalLocks = new OptionValue<>(false);
+
+    @Option(help = "Maximum number of fixed nodes between releasing and reacquiring a lock on the same object that are moved into the locked region", type = OptionType.Expert)
+    public static final OptionValue<Integer> LockCoarseningMaxNodes = new OptionValue<>(8);
+
     @Option(help = "Allow backend to match complex expressions.", type = OptionType.Debug)
     public static final OptionValue<Boolean> MatchExpressions = new OptionValue<>(true);
 
@@ -322,4 +361,7 @@ public final class GraalOptions {
     @Option(help = "Enable experimental Trace Register Allocation.", type = OptionType.Debug)
     public static final OptionValue<Boolean> TraceRA = new OptionValue<>(false);
 
+    @Option(help = "Enable experimental greedy register allocation that splits live ranges in order of spill weight.", type = OptionType.Debug)
+    public static final OptionValue<Boolean> GreedyRA = new OptionValue<>(false);
+
 }
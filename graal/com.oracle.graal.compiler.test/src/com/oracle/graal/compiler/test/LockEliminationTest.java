@@ -22,15 +22,20 @@
  */
 package com.oracle.graal.compiler.test;
 
+import static com.oracle.graal.compiler.common.GraalOptions.OptEliminateThreadLocalLocks;
+
 import jdk.vm.ci.meta.ResolvedJavaMethod;
 
 import org.junit.Test;
 
 import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.java.MonitorEnterNode;
 import com.oracle.graal.nodes.java.MonitorExitNode;
 import com.oracle.graal.nodes.java.RawMonitorEnterNode;
 import com.oracle.graal.nodes.spi.LoweringTool;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
 import com.oracle.graal.phases.common.DeadCodeEliminationPhase;
 import com.oracle.graal.phases.common.LockEliminationPhase;
@@ -39,6 +44,7 @@ import com.oracle.graal.phases.common.ValueAnchorCleanupPhase;
 import com.oracle.graal.phases.common.inlining.InliningPhase;
 import com.oracle.graal.phases.tiers.HighTierContext;
 import com.oracle.graal.phases.tiers.PhaseContext;
+import com.oracle.graal.virtual.phases.ea.PartialEscapePhase;
 
 public class LockEliminationTest extends GraalCompilerTest {
 
@@ -92,6 +98,104 @@ public class LockEliminationTest extends GraalCompilerTest {
         assertDeepEquals(1, graph.getNodes().filter(MonitorExitNode.class).count());
     }
 
+    public static void testCoarseningSnippet(A x, int a) {
+        synchronized (x) {
+            field1 = a;
+        }
+        int b = a * 31 + x.value;
+        synchronized (x) {
+            field2 = b;
+        }
+    }
+
+    @Test
+    public void testCoarsening() {
+        test("testCoarseningSnippet", new A(), 1);
+
+        StructuredGraph graph = getGraph("testCoarseningSnippet");
+        assertDeepEquals(1, graph.getNodes().filter(RawMonitorEnterNode.class).count());
+        assertDeepEquals(1, graph.getNodes().filter(MonitorExitNode.class).count());
+    }
+
+    public static int testThreadLocalSnippet(int a) {
+        A local = new A();
+        synchronized (local) {
+            local.value = a;
+        }
+        return local.getValue();
+    }
+
+    @SuppressWarnings("try")
+    @Test
+    public void testThreadLocal() {
+        try (OverrideScope s = OptionValue.override(OptEliminateThreadLocalLocks, true)) {
+            test("testThreadLocalSnippet", 1);
+
+            StructuredGraph graph = getGraph("testThreadLocalSnippet");
+            assertDeepEquals(0, graph.getNodes().filter(RawMonitorEnterNode.class).count());
+            assertDeepEquals(0, graph.getNodes().filter(MonitorExitNode.class).count());
+        }
+    }
+
+    static Object escaped;
+
+    public static int testEscapingSnippet(int a) {
+        A local = new A();
+        escaped = local;
+        synchronized (local) {
+            local.value = a;
+        }
+        return local.value;
+    }
+
+    @SuppressWarnings("try")
+    @Test
+    public void testEscaping() {
+        try (OverrideScope s = OptionValue.override(OptEliminateThreadLocalLocks, true)) {
+            test("testEscapingSnippet", 1);
+
+            StructuredGraph graph = getGraph("testEscapingSnippet");
+            assertDeepEquals(1, graph.getNodes().filter(RawMonitorEnterNode.class).count());
+            assertDeepEquals(1, graph.getNodes().filter(MonitorExitNode.class).count());
+        }
+    }
+
+    static class Box {
+        Object content;
+    }
+
+    public static int testPublishedThroughAllocationSnippet(int a) {
+        A local = new A();
+        Box box = new Box();
+        box.content = local;
+        escaped = box;
+        synchronized (local) {
+            local.value = a;
+        }
+        return local.value;
+    }
+
+    /**
+     * Escape analysis materializes {@code local} together with {@code box}, which refers to it by
+     * its virtual object instead of using the materialized object.
+     */
+    @SuppressWarnings("try")
+    @Test
+    public void testPublishedThroughAllocation() {
+        try (OverrideScope s = OptionValue.override(OptEliminateThreadLocalLocks, true)) {
+            test("testPublishedThroughAllocationSnippet", 1);
+
+            ResolvedJavaMethod method = getResolvedJavaMethod("testPublishedThroughAllocationSnippet");
+            StructuredGraph graph = parseEager(method, AllowAssumptions.YES);
+            HighTierContext context = getDefaultHighTierContext();
+            new CanonicalizerPhase().apply(graph, context);
+            new PartialEscapePhase(false, new CanonicalizerPhase()).apply(graph, context);
+            new LockEliminationPhase().apply(graph);
+            assertDeepEquals(1, graph.getNodes().filter(MonitorEnterNode.class).count());
+            assertDeepEquals(1, graph.getNodes().filter(MonitorExitNode.class).count());
+        }
+    }
+
     private StructuredGraph getGraph(String snippet) {
         ResolvedJavaMethod method = getResolvedJavaMethod(snippet);
         StructuredGraph graph = parseEager(method, AllowAssumptions.YES);
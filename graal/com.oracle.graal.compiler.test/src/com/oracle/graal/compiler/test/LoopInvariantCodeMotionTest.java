@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.Phase;
+import com.oracle.graal.phases.common.LoopSafepointInsertionPhase;
+import com.oracle.graal.phases.tiers.MidTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+import jdk.vm.ci.code.InstalledCode;
+import jdk.vm.ci.code.InvalidInstalledCodeException;
+import jdk.vm.ci.meta.DeoptimizationReason;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+public class LoopInvariantCodeMotionTest extends GraalCompilerTest {
+
+    /**
+     * Number of null checks left inside of loops before guard lowering, by method name.
+     */
+    private final Map<String, Integer> loopNullChecks = new HashMap<>();
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super MidTierContext>> position = suites.getMidTier().findPhase(LoopSafepointInsertionPhase.class);
+        position.previous();
+        position.add(new Phase("CountLoopNullChecks") {
+
+            @Override
+            protected void run(StructuredGraph graph) {
+                ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, true, true);
+                int count = 0;
+                for (GuardNode guard : graph.getNodes().filter(GuardNode.class)) {
+                    Block block = cfg.blockFor(guard.getAnchor().asNode());
+                    if (guard.getReason() == DeoptimizationReason.NullCheckException && block != null && block.getLoop() != null) {
+                        count++;
+                    }
+                }
+                loopNullChecks.put(graph.method().getName(), count);
+            }
+        });
+        return suites;
+    }
+
+    static class Holder {
+        int value;
+        Holder next;
+
+        Holder(int value) {
+            this.value = value;
+        }
+    }
+
+    public static int fieldSnippet(Holder h, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += h.value * i;
+        }
+        return sum;
+    }
+
+    public static int chainSnippet(Holder h, int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] + h.next.value;
+        }
+        return sum;
+    }
+
+    public static int nestedSnippet(Holder h, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                sum += h.value + j;
+            }
+        }
+        return sum;
+    }
+
+    public static int conditionalSnippet(Holder h, int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] > 2) {
+                sum += h.value;
+            }
+        }
+        return sum;
+    }
+
+    private void testHoisted(String name, Object... args) {
+        test(name, args);
+        Assert.assertEquals(Integer.valueOf(0), loopNullChecks.get(name));
+    }
+
+    @Test
+    public void testField() {
+        testHoisted("fieldSnippet", new Holder(3), 10);
+        test("fieldSnippet", null, 0);
+        test("fieldSnippet", null, 10);
+    }
+
+    @Test
+    public void testFieldDeoptimizesOnEntry() throws InvalidInstalledCodeException {
+        ResolvedJavaMethod method = getResolvedJavaMethod("fieldSnippet");
+        InstalledCode code = getCode(method, null, true);
+        Assert.assertEquals(Integer.valueOf(0), loopNullChecks.get("fieldSnippet"));
+        Assert.assertEquals(0, code.executeVarargs(null, 0));
+        Assert.assertTrue(code.isValid());
+        try {
+            code.executeVarargs(null, 10);
+            Assert.fail("expected a NullPointerException");
+        } catch (NullPointerException e) {
+            // the null check hoisted in front of the loop deoptimized
+        }
+        Assert.assertFalse(code.isValid());
+    }
+
+    @Test
+    public void testChain() {
+        Holder h = new Holder(1);
+        h.next = new Holder(2);
+        testHoisted("chainSnippet", h, new int[]{1, 2, 3});
+        test("chainSnippet", new Holder(1), new int[0]);
+        test("chainSnippet", new Holder(1), new int[]{1});
+    }
+
+    @Test
+    public void testNested() {
+        testHoisted("nestedSnippet", new Holder(5), 4);
+        test("nestedSnippet", null, 0);
+        test("nestedSnippet", null, 4);
+    }
+
+    @Test
+    public void testConditional() {
+        test("conditionalSnippet", new Holder(5), new int[]{1, 2, 3, 4});
+        test("conditionalSnippet", null, new int[]{1, 2});
+        Assert.assertNotEquals(Integer.valueOf(0), loopNullChecks.get("conditionalSnippet"));
+    }
+}
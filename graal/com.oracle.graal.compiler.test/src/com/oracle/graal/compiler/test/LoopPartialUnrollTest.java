@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static com.oracle.graal.compiler.common.GraalOptions.PartialUnrollFactor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.loop.DefaultLoopPolicies;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.loop.phases.LoopPartialUnrollPhase;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.calc.MulNode;
+import com.oracle.graal.nodes.calc.XorNode;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.Phase;
+import com.oracle.graal.phases.common.RemoveValueProxyPhase;
+import com.oracle.graal.phases.tiers.HighTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+/**
+ * Checks the shape of partially unrolled loops right after {@link LoopPartialUnrollPhase}: the
+ * main loop contains {@link #FACTOR} copies of the loop body but only one exit test, and the post
+ * loop contains the original body.
+ */
+public class LoopPartialUnrollTest extends GraalCompilerTest {
+
+    private static final int FACTOR = 3;
+
+    /**
+     * For each loop after partial unrolling, the number of marker nodes (one per copy of the body)
+     * and the number of {@link IfNode}s, by method name.
+     */
+    private final Map<String, List<int[]>> loopShapes = new HashMap<>();
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super HighTierContext>> position = suites.getHighTier().findPhase(RemoveValueProxyPhase.class);
+        position.previous();
+        position.add(new LoopPartialUnrollPhase(new DefaultLoopPolicies() {
+            @Override
+            public boolean shouldPartialUnroll(LoopEx loop) {
+                return loop.isCounted();
+            }
+        }));
+        position.add(new Phase("RecordLoopShapes") {
+
+            @Override
+            protected void run(StructuredGraph graph) {
+                List<int[]> shapes = new ArrayList<>();
+                for (LoopEx loop : new LoopsData(graph).loops()) {
+                    int markers = 0;
+                    int ifs = 0;
+                    for (Node node : loop.whole().nodes()) {
+                        if (node instanceof XorNode || node instanceof MulNode) {
+                            markers++;
+                        } else if (node instanceof IfNode) {
+                            ifs++;
+                        }
+                    }
+                    shapes.add(new int[]{markers, ifs});
+                }
+                Collections.sort(shapes, (a, b) -> Integer.compare(a[0], b[0]));
+                loopShapes.put(graph.method().getName(), shapes);
+            }
+        });
+        return suites;
+    }
+
+    public static int sumRange(int start, int end) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += i ^ (sum >>> 3);
+        }
+        return sum;
+    }
+
+    public static int countDown(int start, int end) {
+        int sum = 0;
+        for (int i = start; i > end; i -= 3) {
+            sum = sum * 7 + i;
+        }
+        return sum;
+    }
+
+    private void testUnrolled(String name, Object... args) {
+        try (OverrideScope s = OptionValue.override(PartialUnrollFactor, FACTOR)) {
+            test(name, args);
+        }
+        List<int[]> shapes = loopShapes.get(name);
+        Assert.assertNotNull(name, shapes);
+        Assert.assertEquals("number of loops", 2, shapes.size());
+        Assert.assertArrayEquals("post loop", new int[]{1, 1}, shapes.get(0));
+        Assert.assertArrayEquals("main loop", new int[]{FACTOR, 1}, shapes.get(1));
+    }
+
+    @Test
+    public void testSumRange() {
+        testUnrolled("sumRange", -10, 10);
+        testUnrolled("sumRange", 5, 3);
+    }
+
+    @Test
+    public void testCountDown() {
+        testUnrolled("countDown", 100, -100);
+        testUnrolled("countDown", 10, 0);
+    }
+}
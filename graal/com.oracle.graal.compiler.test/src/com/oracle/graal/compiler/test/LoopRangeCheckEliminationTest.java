@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.Phase;
+import com.oracle.graal.phases.common.LoopSafepointInsertionPhase;
+import com.oracle.graal.phases.tiers.MidTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+import jdk.vm.ci.meta.DeoptimizationReason;
+
+public class LoopRangeCheckEliminationTest extends GraalCompilerTest {
+
+    /**
+     * Number of bounds checks left inside of loops before guard lowering, by method name.
+     */
+    private final Map<String, Integer> loopRangeChecks = new HashMap<>();
+
+    /**
+     * Number of range checks hoisted in front of loops left before guard lowering, by method name.
+     */
+    private final Map<String, Integer> hoistedRangeChecks = new HashMap<>();
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super MidTierContext>> position = suites.getMidTier().findPhase(LoopSafepointInsertionPhase.class);
+        position.previous();
+        position.add(new Phase("CountLoopRangeChecks") {
+
+            @Override
+            protected void run(StructuredGraph graph) {
+                ControlFlowGraph cfg = ControlFlowGraph.compute(graph, true, true, true, true);
+                int count = 0;
+                int hoisted = 0;
+                for (GuardNode guard : graph.getNodes().filter(GuardNode.class)) {
+                    Block block = cfg.blockFor(guard.getAnchor().asNode());
+                    if (guard.getReason() == DeoptimizationReason.BoundsCheckException && block != null && block.getLoop() != null) {
+                        count++;
+                    } else if (guard.getReason() == DeoptimizationReason.LoopLimitCheck && !guard.isNegated() && block != null && block.getLoop() == null) {
+                        hoisted++;
+                    }
+                }
+                loopRangeChecks.put(graph.method().getName(), count);
+                hoistedRangeChecks.put(graph.method().getName(), hoisted);
+            }
+        });
+        return suites;
+    }
+
+    public static int sumSnippet(int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static int rangeSnippet(int[] a, int start, int end) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static int pairSnippet(int[] a) {
+        int sum = 0;
+        for (int i = 0; i + 1 < a.length; i += 2) {
+            sum += a[i] * a[i + 1];
+        }
+        return sum;
+    }
+
+    public static int reverseSnippet(int[] a, int[] b) {
+        int sum = 0;
+        for (int i = a.length - 1; i >= 0; i--) {
+            sum = sum * 31 + a[i] - b[a.length - 1 - i];
+        }
+        return sum;
+    }
+
+    public static int nonLinearSnippet(int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[(i * i) % a.length];
+        }
+        return sum;
+    }
+
+    private void testEliminated(String name, Object... args) {
+        test(name, args);
+        Assert.assertEquals(Integer.valueOf(0), loopRangeChecks.get(name));
+        Assert.assertNotEquals(Integer.valueOf(0), hoistedRangeChecks.get(name));
+    }
+
+    @Test
+    public void testSum() {
+        testEliminated("sumSnippet", new int[]{1, 2, 3, 4, 5});
+        test("sumSnippet", new int[0]);
+    }
+
+    @Test
+    public void testRange() {
+        int[] a = {1, 2, 3, 4, 5, 6, 7};
+        testEliminated("rangeSnippet", a, 0, a.length);
+        test("rangeSnippet", a, 2, 5);
+        test("rangeSnippet", a, 5, 2);
+        test("rangeSnippet", a, 100, 0);
+        test("rangeSnippet", a, -1, 3);
+        test("rangeSnippet", a, 3, a.length + 1);
+    }
+
+    @Test
+    public void testRangeOutOfBounds() {
+        int[] a = {1, 2, 3, 4, 5, 6, 7};
+        // the code installed by the first call must not read a[-1] but deoptimize and throw
+        testEliminated("rangeSnippet", a, -1, 3);
+        testEliminated("rangeSnippet", a, 3, a.length + 1);
+    }
+
+    @Test
+    public void testPair() {
+        testEliminated("pairSnippet", new int[]{1, 2, 3, 4, 5});
+        test("pairSnippet", new int[]{1, 2, 3, 4});
+        test("pairSnippet", new int[0]);
+    }
+
+    @Test
+    public void testReverse() {
+        testEliminated("reverseSnippet", new int[]{1, 2, 3}, new int[]{4, 5, 6});
+        test("reverseSnippet", new int[]{1, 2, 3}, new int[]{4, 5});
+    }
+
+    @Test
+    public void testNonLinear() {
+        test("nonLinearSnippet", new int[]{1, 2, 3, 4, 5});
+        Assert.assertNotEquals(Integer.valueOf(0), loopRangeChecks.get("nonLinearSnippet"));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static com.oracle.graal.compiler.common.GraalOptions.LoopRotation;
+
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.Phase;
+import com.oracle.graal.phases.common.UseTrappingNullChecksPhase;
+import com.oracle.graal.phases.tiers.LowTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+public class LoopRotationTest extends GraalCompilerTest {
+
+    /**
+     * Number of loops that test their exit condition at the header after loop rotation, by method
+     * name.
+     */
+    private final Map<String, Integer> headerTestedLoops = new HashMap<>();
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super LowTierContext>> position = suites.getLowTier().findPhase(UseTrappingNullChecksPhase.class);
+        position.previous();
+        position.add(new Phase("CountHeaderTestedLoops") {
+
+            @Override
+            protected void run(StructuredGraph graph) {
+                int count = 0;
+                for (LoopBeginNode loopBegin : graph.getNodes(LoopBeginNode.TYPE)) {
+                    if (loopBegin.next() instanceof IfNode) {
+                        IfNode ifNode = (IfNode) loopBegin.next();
+                        if (ifNode.trueSuccessor() instanceof LoopExitNode || ifNode.falseSuccessor() instanceof LoopExitNode) {
+                            count++;
+                        }
+                    }
+                }
+                headerTestedLoops.put(graph.method().getName(), count);
+            }
+        });
+        return suites;
+    }
+
+    static class Cell {
+        final int value;
+        final Cell next;
+
+        Cell(int value, Cell next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    public static int sumSnippet(int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static int walkSnippet(Cell start) {
+        int sum = 0;
+        Cell cell = start;
+        while (cell != null) {
+            sum = sum * 31 + cell.value;
+            cell = cell.next;
+        }
+        return sum;
+    }
+
+    public static int stepSnippet(int n) {
+        int i = 0;
+        while (i < n) {
+            i += 3;
+        }
+        return i;
+    }
+
+    public static long nestedSnippet(int n) {
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                sum += i * j;
+            }
+        }
+        return sum;
+    }
+
+    private void testRotated(String name, Object... args) {
+        try (OverrideScope s = OptionValue.override(LoopRotation, true)) {
+            test(name, args);
+        }
+        Assert.assertEquals(name, 0, (int) headerTestedLoops.get(name));
+    }
+
+    @Test
+    public void testSum() {
+        testRotated("sumSnippet", new int[]{1, 2, 3, 4, 5});
+        testRotated("sumSnippet", new int[0]);
+    }
+
+    @Test
+    public void testWalk() {
+        Cell list = null;
+        for (int i = 0; i < 10; i++) {
+            list = new Cell(i, list);
+        }
+        testRotated("walkSnippet", list);
+        testRotated("walkSnippet", (Object) null);
+    }
+
+    @Test
+    public void testStep() {
+        testRotated("stepSnippet", 10);
+        testRotated("stepSnippet", 0);
+        testRotated("stepSnippet", -4);
+    }
+
+    @Test
+    public void testNested() {
+        testRotated("nestedSnippet", 10);
+        testRotated("nestedSnippet", 0);
+    }
+}
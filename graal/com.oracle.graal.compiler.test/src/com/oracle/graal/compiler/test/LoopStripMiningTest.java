@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test;
+
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStripMining;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStripMiningLength;
+
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.Phase;
+import com.oracle.graal.phases.common.LoopSafepointInsertionPhase;
+import com.oracle.graal.phases.tiers.MidTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+public class LoopStripMiningTest extends GraalCompilerTest {
+
+    private static final int STRIP_LENGTH = 7;
+
+    /**
+     * Number of loops after safepoint elimination, by method name.
+     */
+    private final Map<String, Integer> loops = new HashMap<>();
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super MidTierContext>> position = suites.getMidTier().findPhase(LoopSafepointInsertionPhase.class);
+        position.previous();
+        position.add(new Phase("CountLoops") {
+
+            @Override
+            protected void run(StructuredGraph graph) {
+                loops.put(graph.method().getName(), graph.getNodes(LoopBeginNode.TYPE).count());
+            }
+        });
+        return suites;
+    }
+
+    public static int sumSnippet(int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static int downSnippet(int start) {
+        int sum = 0;
+        for (int i = start; i > 0; i -= 3) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    public static long nearMaxSnippet(int limit) {
+        long sum = 0;
+        for (int i = Integer.MAX_VALUE - 20; i < limit; i++) {
+            sum += i;
+        }
+        return sum;
+    }
+
+    private void testStripMined(String name, int expectedLoops, Object... args) {
+        try (OverrideScope s = OptionValue.override(LoopStripMining, true, LoopStripMiningLength, STRIP_LENGTH)) {
+            test(name, args);
+        }
+        Assert.assertEquals(name, expectedLoops, (int) loops.get(name));
+    }
+
+    @Test
+    public void testSum() {
+        int[] a = new int[100];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = i * 3 + 1;
+        }
+        testStripMined("sumSnippet", 2, a);
+        test("sumSnippet", new int[STRIP_LENGTH]);
+        test("sumSnippet", new int[STRIP_LENGTH + 1]);
+        test("sumSnippet", new int[0]);
+    }
+
+    @Test
+    public void testDown() {
+        testStripMined("downSnippet", 2, 100);
+        for (int start : new int[]{-5, 0, 1, 3 * STRIP_LENGTH, 3 * STRIP_LENGTH + 1, Integer.MIN_VALUE}) {
+            test("downSnippet", start);
+        }
+    }
+
+    @Test
+    public void testNearMax() {
+        testStripMined("nearMaxSnippet", 2, Integer.MAX_VALUE);
+        test("nearMaxSnippet", Integer.MAX_VALUE - 3);
+        test("nearMaxSnippet", 0);
+    }
+}
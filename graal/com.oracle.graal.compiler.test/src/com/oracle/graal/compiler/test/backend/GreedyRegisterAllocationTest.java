@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.GraalOptions.GreedyRA;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Compiles methods with a lot of register pressure using the
+ * {@linkplain com.oracle.graal.compiler.common.GraalOptions#GreedyRA greedy} register allocator.
+ */
+public class GreedyRegisterAllocationTest extends GraalCompilerTest {
+
+    public static long sink;
+
+    public static long callee(long a) {
+        sink = a;
+        return a * 3;
+    }
+
+    public static long pressureSnippet(long a, long b, int n) {
+        long x0 = a + 1;
+        long x1 = b * 3;
+        long x2 = a ^ b;
+        long x3 = a - b;
+        long x4 = a * b;
+        long x5 = a | 7;
+        long x6 = b & 0xff;
+        long x7 = a >>> 3;
+        long x8 = b << 5;
+        long x9 = a + b;
+        long x10 = a * 31 + b;
+        long x11 = b * 17 - a;
+        long x12 = a & b;
+        long x13 = ~a;
+        long x14 = -b;
+        long x15 = a % 13;
+        long r = 0;
+        for (int i = 0; i < n; i++) {
+            r += x0 * i + x1 - x2 ^ x3 + x4 * x5 - x6 + x7;
+            r ^= x8 + x9 * x10 - x11 + x12 * x13 + x14 - x15;
+        }
+        return r + x0 + x1 + x2 + x3 + x4 + x5 + x6 + x7 + x8 + x9 + x10 + x11 + x12 + x13 + x14 + x15;
+    }
+
+    public static long callSnippet(long a, long b, int n) {
+        long x0 = a + 1;
+        long x1 = b * 3;
+        long x2 = a ^ b;
+        long x3 = a - b;
+        long r = 0;
+        for (int i = 0; i < n; i++) {
+            if ((i & 1) == 0) {
+                r += callee(x0 + i) + x1;
+            } else {
+                r -= callee(x2) ^ x3;
+            }
+        }
+        return r + x0 + x1 + x2 + x3;
+    }
+
+    public static double floatSnippet(double a, double b, int n) {
+        double x0 = a + 1;
+        double x1 = b * 3;
+        double x2 = a / (b + 1);
+        double x3 = a - b;
+        double x4 = a * b;
+        double r = 0;
+        for (int i = 0; i < n; i++) {
+            r += x0 * i + x1 - x2 * x3 + x4;
+            if (r > 1e10) {
+                r = callee((long) r);
+            }
+        }
+        return r + x0 + x1 + x2 + x3 + x4;
+    }
+
+    private void testGreedy(String name, Object... args) {
+        try (OverrideScope s = OptionValue.override(GreedyRA, true)) {
+            test(name, args);
+        }
+    }
+
+    @Test
+    public void testPressure() {
+        testGreedy("pressureSnippet", 3L, 17L, 20);
+        testGreedy("pressureSnippet", -5L, Long.MAX_VALUE, 1000);
+    }
+
+    @Test
+    public void testCall() {
+        testGreedy("callSnippet", 3L, 17L, 20);
+    }
+
+    @Test
+    public void testFloat() {
+        testGreedy("floatSnippet", 1.5, 2.5, 100);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.GraalOptions.DetailedAsserts;
+import static com.oracle.graal.lir.alloc.lsra.LinearScanLifetimeAnalysisPhase.Options.LSRALoopForestLiveness;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Compiles methods with nested loops using the linear scan allocator with live sets computed over
+ * the loop nesting forest. With {@code DetailedAsserts}, the allocator checks that these live sets
+ * are the same as the ones computed by the fixed point iteration.
+ */
+public class LoopForestLivenessTest extends GraalCompilerTest {
+
+    @Before
+    public void checkDetailedAsserts() {
+        // DetailedAsserts cannot be overridden and is enabled together with assertions
+        Assume.assumeTrue(DetailedAsserts.getValue());
+    }
+
+    public static long nestedSnippet(int[][] a, long x, long y) {
+        long sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            int[] row = a[i];
+            for (int j = 0; j < row.length; j++) {
+                if (row[j] < 0) {
+                    continue;
+                }
+                sum += row[j] * x;
+            }
+            sum ^= y;
+        }
+        return sum + x + y;
+    }
+
+    public static int deepSnippet(int n, int m, int k) {
+        int result = 0;
+        int invariant = n * m + k;
+        outer: for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                int t = i * j;
+                while (t > k) {
+                    t -= invariant;
+                    if (t == 17) {
+                        break outer;
+                    }
+                }
+                result += t;
+            }
+            result += invariant;
+        }
+        return result + invariant;
+    }
+
+    @SuppressWarnings("try")
+    private void testLoopForest(String name, Object... args) {
+        try (OverrideScope s = OptionValue.override(LSRALoopForestLiveness, true)) {
+            test(name, args);
+        }
+    }
+
+    @Test
+    public void testNested() {
+        testLoopForest("nestedSnippet", new int[][]{{1, -2, 3}, {}, {4, 5}}, 7L, 11L);
+    }
+
+    @Test
+    public void testDeep() {
+        testLoopForest("deepSnippet", 10, 12, 5);
+        testLoopForest("deepSnippet", 4, 9, 20);
+    }
+}
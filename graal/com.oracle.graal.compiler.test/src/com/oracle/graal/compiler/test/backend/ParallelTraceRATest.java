@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.backend;
+
+import static com.oracle.graal.compiler.common.GraalOptions.TraceRA;
+import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAParallel;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Compiles methods with many traces and a lot of register pressure using the
+ * {@linkplain com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options#TraceRAParallel
+ * parallel} trace register allocator.
+ */
+public class ParallelTraceRATest extends GraalCompilerTest {
+
+    public static long sink;
+
+    public static long callee(long a) {
+        sink = a;
+        return a * 3;
+    }
+
+    public static long spillSnippet(long a, long b, int n) {
+        long x0 = a + 1;
+        long x1 = b * 3;
+        long x2 = a ^ b;
+        long x3 = a - b;
+        long x4 = a * b;
+        long x5 = a | 7;
+        long x6 = b & 0xff;
+        long x7 = a >>> 3;
+        long r = 0;
+        for (int i = 0; i < n; i++) {
+            if ((i & 1) == 0) {
+                r += callee(x0 + i) + x1;
+            } else if ((i & 2) == 0) {
+                r -= callee(x2) ^ x3;
+            } else {
+                r += x4 * x5 - x6;
+            }
+        }
+        return r + x0 + x1 + x2 + x3 + x4 + x5 + x6 + x7;
+    }
+
+    public static int switchSnippet(int a, int b) {
+        int r;
+        switch (a & 7) {
+            case 0:
+                r = b + 1;
+                break;
+            case 1:
+                r = b * 7;
+                break;
+            case 2:
+                r = (int) callee(b);
+                break;
+            case 3:
+                r = b ^ a;
+                break;
+            case 4:
+                r = b / (a | 1);
+                break;
+            default:
+                r = a - b;
+        }
+        if (r > 100) {
+            r += (int) callee(r);
+        }
+        return r + a + b;
+    }
+
+    private void testParallel(String name, Object... args) {
+        try (OverrideScope s = OptionValue.override(TraceRA, true, TraceRAParallel, true)) {
+            test(name, args);
+        }
+    }
+
+    @Test
+    public void testSpill() {
+        testParallel("spillSnippet", 3L, 17L, 20);
+        testParallel("spillSnippet", -5L, Long.MAX_VALUE, 1000);
+    }
+
+    @Test
+    public void testSwitch() {
+        for (int i = 0; i < 8; i++) {
+            testParallel("switchSnippet", i, 42 * i);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.oracle.graal.loop.DefaultLoopPolicies;
 import com.oracle.graal.loop.phases.LoopFullUnrollPhase;
 import com.oracle.graal.loop.phases.LoopPeelingPhase;
 import com.oracle.graal.nodes.extended.ValueAnchorNode;
+import com.oracle.graal.nodes.java.NewArrayNode;
 import com.oracle.graal.nodes.virtual.AllocatedObjectNode;
 import com.oracle.graal.nodes.virtual.CommitAllocationNode;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
@@ -74,6 +75,30 @@ public class EscapeAnalysisTest extends EATestBase {
         return x[0];
     }
 
+    @Test
+    public void testLargeArray() {
+        testEscapeAnalysis("testLargeArraySnippet", null, false);
+    }
+
+    public static int testLargeArraySnippet(int a) {
+        int[] x = new int[100];
+        x[0] = a;
+        x[99] = a * 2;
+        return x[0] + x[99] + x.length;
+    }
+
+    @Test
+    public void testLargeArrayVariableIndex() {
+        prepareGraph("testLargeArrayVariableIndexSnippet", false);
+        Assert.assertEquals(1, graph.getNodes().filter(NewArrayNode.class).count());
+    }
+
+    public static int testLargeArrayVariableIndexSnippet(int a) {
+        int[] x = new int[100];
+        x[a] = a;
+        return x[0];
+    }
+
     @Test
     public void testMonitor() {
         testEscapeAnalysis("testMonitorSnippet", JavaConstant.forInt(0), false);
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.ea;
+
+import static com.oracle.graal.compiler.common.GraalOptions.MaterializationSinking;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.virtual.CommitAllocationNode;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Tests that materializations caused by an object escaping in a cold predecessor of a merge are
+ * not executed in the hot predecessors.
+ */
+public class MaterializationSinkingTest extends EATestBase {
+
+    public static Object escaped;
+
+    public static int testLoopSnippet(int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            TestClassInt t = new TestClassInt(i, n);
+            if (branchProbability(0.01, i == 42)) {
+                escaped = t;
+            }
+            sum += t.x;
+        }
+        return sum;
+    }
+
+    @Test
+    public void testLoop() {
+        testSinking("testLoopSnippet", 100);
+    }
+
+    public static int testReturnSnippet(int a) {
+        TestClassInt t = new TestClassInt(a, 1);
+        if (branchProbability(0.01, a == 42)) {
+            escaped = t;
+        }
+        return t.x + t.y;
+    }
+
+    @Test
+    public void testReturn() {
+        testSinking("testReturnSnippet", 42);
+    }
+
+    private void testSinking(String snippet, int arg) {
+        prepareGraph(snippet, true);
+        int allocations = graph.getNodes().filter(CommitAllocationNode.class).count();
+        try (OverrideScope s = OptionValue.override(MaterializationSinking, true)) {
+            prepareGraph(snippet, true);
+            Assert.assertEquals(1, graph.getNodes().filter(CommitAllocationNode.class).count());
+            Assert.assertTrue(allocations > 1);
+            test(snippet, arg);
+            test(snippet, 0);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.compiler.test.ea;
+
+import static com.oracle.graal.compiler.common.GraalOptions.MaximumInliningSize;
+import static com.oracle.graal.compiler.common.GraalOptions.PEAInliningHints;
+import static com.oracle.graal.compiler.common.GraalOptions.TrivialInliningSize;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.nodes.java.NewInstanceNode;
+import com.oracle.graal.nodes.virtual.CommitAllocationNode;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+/**
+ * Tests that calls at which escape analysis has to materialize an argument are inlined if
+ * {@code PEAInliningHints} is enabled, so that the argument can stay virtual.
+ */
+public class PEAInliningHintsTest extends EATestBase {
+
+    public static int sum(TestClassInt t) {
+        int result = t.x;
+        for (int i = 0; i < t.y; i++) {
+            result += i * t.x + t.z;
+        }
+        return result;
+    }
+
+    public static int testCallSnippet(int a) {
+        TestClassInt t = new TestClassInt(a, 3);
+        return sum(t);
+    }
+
+    @Test
+    public void testCall() {
+        try (OverrideScope s = OptionValue.override(MaximumInliningSize, 1, TrivialInliningSize, 1)) {
+            prepareGraph("testCallSnippet", true);
+            int allocations = graph.getNodes().filter(CommitAllocationNode.class).count() + graph.getNodes().filter(NewInstanceNode.class).count();
+            Assert.assertEquals(1, allocations);
+
+            try (OverrideScope hints = OptionValue.override(PEAInliningHints, true, MaximumInliningSize, 10)) {
+                testEscapeAnalysis("testCallSnippet", null, true);
+            }
+        }
+    }
+}
@@ -31,12 +31,14 @@ import static com.oracle.graal.compiler.common.GraalOptions.OptCanonicalizer;
 import static com.oracle.graal.compiler.common.GraalOptions.OptConvertDeoptsToGuards;
 import static com.oracle.graal.compiler.common.GraalOptions.OptLoopTransform;
 import static com.oracle.graal.compiler.common.GraalOptions.PartialEscapeAnalysis;
+import static com.oracle.graal.compiler.common.GraalOptions.PartialUnroll;
 import static com.oracle.graal.compiler.common.GraalOptions.UseGraalInstrumentation;
 import static com.oracle.graal.phases.common.DeadCodeEliminationPhase.Optionality.Optional;
 
 import com.oracle.graal.loop.DefaultLoopPolicies;
 import com.oracle.graal.loop.LoopPolicies;
 import com.oracle.graal.loop.phases.LoopFullUnrollPhase;
+import com.oracle.graal.loop.phases.LoopPartialUnrollPhase;
 import com.oracle.graal.loop.phases.LoopPeelingPhase;
 import com.oracle.graal.loop.phases.LoopUnswitchingPhase;
 import com.oracle.graal.nodes.spi.LoweringTool;
@@ -101,6 +103,9 @@ public class HighTier extends PhaseSuite<HighTierContext> {
             if (LoopUnswitch.getValue()) {
                 appendPhase(new LoopUnswitchingPhase(loopPolicies));
             }
+            if (PartialUnroll.getValue()) {
+                appendPhase(new LoopPartialUnrollPhase(loopPolicies));
+            }
         }
 
         if (OptCanonicalizer.getValue()) {
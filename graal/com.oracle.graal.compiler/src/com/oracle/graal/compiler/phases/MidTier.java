@@ -24,6 +24,8 @@ package com.oracle.graal.compiler.phases;
 
 import static com.oracle.graal.compiler.common.GraalOptions.ConditionalElimination;
 import static com.oracle.graal.compiler.common.GraalOptions.ImmutableCode;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopInvariantCodeMotion;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopRangeCheckElimination;
 import static com.oracle.graal.compiler.common.GraalOptions.OptCanonicalizer;
 import static com.oracle.graal.compiler.common.GraalOptions.OptDeoptimizationGrouping;
 import static com.oracle.graal.compiler.common.GraalOptions.OptEliminatePartiallyRedundantGuards;
@@ -34,6 +36,8 @@ import static com.oracle.graal.compiler.common.GraalOptions.ReassociateInvariant
 import static com.oracle.graal.compiler.common.GraalOptions.UseGraalInstrumentation;
 import static com.oracle.graal.compiler.common.GraalOptions.VerifyHeapAtReturn;
 
+import com.oracle.graal.loop.phases.LoopInvariantCodeMotionPhase;
+import com.oracle.graal.loop.phases.LoopRangeCheckEliminationPhase;
 import com.oracle.graal.loop.phases.LoopSafepointEliminationPhase;
 import com.oracle.graal.loop.phases.ReassociateInvariantPhase;
 import com.oracle.graal.nodes.spi.LoweringTool;
@@ -104,6 +108,14 @@ public class MidTier extends PhaseSuite<MidTierContext> {
             appendPhase(canonicalizer);
         }
 
+        if (LoopInvariantCodeMotion.getValue()) {
+            appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new LoopInvariantCodeMotionPhase()));
+        }
+
+        if (LoopRangeCheckElimination.getValue()) {
+            appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new LoopRangeCheckEliminationPhase()));
+        }
+
         appendPhase(new IncrementalCanonicalizerPhase<>(canonicalizer, new LoopSafepointEliminationPhase()));
 
         appendPhase(new LoopSafepointInsertionPhase());
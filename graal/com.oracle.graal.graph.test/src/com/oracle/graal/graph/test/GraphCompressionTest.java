@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map.Entry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.api.test.Graal;
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.NodeMap;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class GraphCompressionTest {
+
+    @NodeInfo
+    static final class TestNode extends Node {
+        public static final NodeClass<TestNode> TYPE = NodeClass.create(TestNode.class);
+
+        protected TestNode() {
+            super(TYPE);
+        }
+    }
+
+    private Graph graph;
+    private TestNode[] nodes = new TestNode[100];
+
+    @Before
+    public void before() {
+        // Need to initialize HotSpotGraalRuntime before any Node class is initialized.
+        Graal.getRuntime();
+
+        graph = new Graph();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.add(new TestNode());
+        }
+    }
+
+    /**
+     * Deletes every node whose index is odd or at least 90 and compresses the graph.
+     */
+    private void deleteAndCompress() {
+        for (int i = 0; i < nodes.length; i++) {
+            if ((i & 1) == 1 || i >= 90) {
+                nodes[i].safeDelete();
+            }
+        }
+        assertTrue(graph.maybeCompress());
+        assertEquals(1, graph.getCompressions());
+    }
+
+    @Test
+    public void testNodeMap() {
+        NodeMap<Integer> map = new NodeMap<>(graph);
+        for (int i = 0; i < nodes.length; i += 2) {
+            map.set(nodes[i], i);
+        }
+        deleteAndCompress();
+        for (int i = 0; i < 90; i += 2) {
+            assertEquals((Integer) i, map.get(nodes[i]));
+        }
+        TestNode newNode = graph.add(new TestNode());
+        assertEquals(null, map.getAndGrow(newNode));
+        int entries = 0;
+        for (Entry<Node, Integer> entry : map.entries()) {
+            assertTrue(entry.getKey().isAlive());
+            entries++;
+        }
+        assertEquals(45, entries);
+    }
+
+    @Test
+    public void testNodeBitMap() {
+        NodeBitMap bitMap = graph.createNodeBitMap();
+        for (int i = 0; i < nodes.length; i += 3) {
+            bitMap.mark(nodes[i]);
+        }
+        deleteAndCompress();
+        int marked = 0;
+        for (int i = 0; i < 90; i += 2) {
+            assertEquals(i % 3 == 0, bitMap.isMarked(nodes[i]));
+            if (i % 3 == 0) {
+                marked++;
+            }
+        }
+        assertEquals(marked, bitMap.count());
+        TestNode newNode = graph.add(new TestNode());
+        assertTrue(bitMap.isNew(newNode));
+        assertFalse(bitMap.isNew(nodes[88]));
+        bitMap.markAndGrow(newNode);
+        assertTrue(bitMap.isMarked(newNode));
+    }
+}
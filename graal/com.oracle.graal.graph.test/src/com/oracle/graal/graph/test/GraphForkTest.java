@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.api.test.Graal;
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.GraphFork;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.VerificationError;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class GraphForkTest {
+
+    @NodeInfo
+    static final class TestNode extends Node {
+        public static final NodeClass<TestNode> TYPE = NodeClass.create(TestNode.class);
+        @Input TestNode input;
+
+        protected TestNode(TestNode input) {
+            super(TYPE);
+            this.input = input;
+        }
+    }
+
+    private Graph graph;
+
+    @Before
+    public void before() {
+        // Need to initialize HotSpotGraalRuntime before any Node class is initialized.
+        Graal.getRuntime();
+
+        graph = new Graph();
+        TestNode previous = null;
+        for (int i = 0; i < 10; i++) {
+            previous = graph.add(new TestNode(previous));
+        }
+    }
+
+    @Test
+    public void testShared() {
+        GraphFork<Graph> fork = new GraphFork<>(graph);
+        assertSame(graph, fork.get());
+        assertFalse(fork.isCopied());
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        GraphFork<Graph> fork = new GraphFork<>(graph);
+        Graph mutable = fork.getMutable();
+        assertNotSame(graph, mutable);
+        assertTrue(fork.isCopied());
+        assertSame(mutable, fork.get());
+        assertSame(mutable, fork.getMutable());
+
+        mutable.add(new TestNode(null));
+        mutable.getNodes().first().clearInputs();
+        assertEquals(11, mutable.getNodeCount());
+        assertEquals(10, graph.getNodeCount());
+        assertSame(graph, fork.getOriginal());
+    }
+
+    @SuppressWarnings("all")
+    private static boolean assertionsEnabled() {
+        boolean assertionsEnabled = false;
+        assert assertionsEnabled = true;
+        return assertionsEnabled;
+    }
+
+    @Test
+    public void testModifiedOriginal() {
+        GraphFork<Graph> fork = new GraphFork<>(graph);
+        graph.add(new TestNode(null));
+        try {
+            fork.get();
+            assertFalse(assertionsEnabled());
+        } catch (VerificationError e) {
+            assertTrue(assertionsEnabled());
+        }
+    }
+}
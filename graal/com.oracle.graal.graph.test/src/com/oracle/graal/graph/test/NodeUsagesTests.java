@@ -436,4 +436,55 @@ public class NodeUsagesTests {
 
         assertThat(def1.usages(), isNotEmpty());
     }
+
+    @Test
+    public void testUsagesShrinkAndGrow() {
+        Graph graph = new Graph();
+        Def def0 = graph.add(new Def());
+        Def def1 = graph.add(new Def());
+        Use[] uses = new Use[10];
+        for (int i = 0; i < uses.length; i++) {
+            uses[i] = graph.add(new Use(def0, null, null));
+        }
+        assertEquals(uses.length, def0.getUsageCount());
+
+        def0.replaceAtUsages(def1);
+        assertThat(def0.usages(), isEmpty());
+        assertEquals(uses.length, def1.getUsageCount());
+
+        uses[0].replaceFirstInput(def1, def0);
+        uses[1].replaceFirstInput(def1, def0);
+        uses[2].replaceFirstInput(def1, def0);
+        assertEquals(3, def0.getUsageCount());
+        assertThat(def0.usages(), contains(uses[0]));
+        assertThat(def0.usages(), contains(uses[1]));
+        assertThat(def0.usages(), contains(uses[2]));
+        assertEquals(uses.length - 3, def1.getUsageCount());
+        for (int i = 3; i < uses.length; i++) {
+            assertThat(def1.usages(), contains(uses[i]));
+        }
+    }
+
+    @Test
+    public void testCopyUsages() {
+        Graph graph = new Graph();
+        Def def0 = graph.add(new Def());
+        for (int i = 0; i < 7; i++) {
+            graph.add(new Use(def0, i % 2 == 0 ? def0 : null, null));
+        }
+        assertEquals(11, def0.getUsageCount());
+
+        Graph copy = graph.copy();
+        Def copyDef = copy.getNodes().filter(Def.class).first();
+        assertEquals(def0.getUsageCount(), copyDef.getUsageCount());
+        int count = 0;
+        for (Node usage : copyDef.usages()) {
+            assertEquals(copy, usage.graph());
+            count++;
+        }
+        assertEquals(11, count);
+        Use use = copy.add(new Use(copyDef, null, null));
+        assertEquals(12, copyDef.getUsageCount());
+        assertThat(copyDef.usages(), contains(use));
+    }
 }
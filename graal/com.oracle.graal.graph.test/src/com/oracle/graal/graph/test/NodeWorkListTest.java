@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.graal.api.test.Graal;
+import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.graph.NodeStack;
+import com.oracle.graal.graph.NodeWorkList;
+import com.oracle.graal.nodeinfo.NodeInfo;
+
+public class NodeWorkListTest {
+
+    @NodeInfo
+    static final class TestNode extends Node {
+        public static final NodeClass<TestNode> TYPE = NodeClass.create(TestNode.class);
+
+        protected TestNode() {
+            super(TYPE);
+        }
+    }
+
+    private Graph graph;
+    private TestNode[] nodes = new TestNode[1000];
+
+    @Before
+    public void before() {
+        // Need to initialize HotSpotGraalRuntime before any Node class is initialized.
+        Graal.getRuntime();
+
+        graph = new Graph();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.add(new TestNode());
+        }
+    }
+
+    private static List<Node> drain(NodeWorkList workList) {
+        List<Node> result = new ArrayList<>();
+        for (Node node : workList) {
+            result.add(node);
+        }
+        return result;
+    }
+
+    @Test
+    public void testIterativeOrder() {
+        NodeWorkList workList = graph.createIterativeNodeWorkList(false, 0);
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            workList.add(nodes[i]);
+            workList.add(nodes[i]);
+        }
+        assertEquals(nodes.length, workList.size());
+        List<Node> result = drain(workList);
+        assertEquals(nodes.length, result.size());
+        for (int i = 0; i < nodes.length; i++) {
+            assertSame(nodes[nodes.length - 1 - i], result.get(i));
+        }
+    }
+
+    @Test
+    public void testIterativeReadd() {
+        NodeWorkList workList = graph.createIterativeNodeWorkList(false, 0);
+        workList.add(nodes[0]);
+        workList.add(nodes[1]);
+        Iterator<Node> iterator = workList.iterator();
+        assertSame(nodes[0], iterator.next());
+        assertFalse(workList.contains(nodes[0]));
+        assertTrue(workList.contains(nodes[1]));
+        workList.add(nodes[0]);
+        assertTrue(workList.contains(nodes[0]));
+        assertSame(nodes[1], iterator.next());
+        assertSame(nodes[0], iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testIterativeFill() {
+        NodeWorkList workList = graph.createIterativeNodeWorkList(true, 0);
+        for (int i = 0; i < nodes.length; i += 3) {
+            nodes[i].safeDelete();
+        }
+        int count = 0;
+        for (Node node : workList) {
+            assertTrue(node.isAlive());
+            if (node != nodes[1]) {
+                /* Nodes still in the queue are not added again. */
+                workList.add(nodes[1]);
+            }
+            count++;
+        }
+        assertEquals(nodes.length - (nodes.length + 2) / 3 + 1, count);
+    }
+
+    @Test
+    public void testSingleton() {
+        NodeWorkList workList = graph.createNodeWorkList();
+        workList.add(nodes[5]);
+        workList.add(nodes[7]);
+        nodes[5].safeDelete();
+        workList.add(nodes[5]);
+        List<Node> result = drain(workList);
+        assertEquals(1, result.size());
+        assertSame(nodes[7], result.get(0));
+        workList.add(nodes[7]);
+        assertTrue(workList.contains(nodes[7]));
+        assertTrue(drain(workList).isEmpty());
+    }
+
+    @Test
+    public void testStack() {
+        NodeStack stack = new NodeStack(graph);
+        for (TestNode node : nodes) {
+            stack.push(node);
+        }
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            assertSame(nodes[i], stack.peek());
+            assertSame(nodes[i], stack.pop());
+        }
+        assertTrue(stack.isEmpty());
+    }
+}
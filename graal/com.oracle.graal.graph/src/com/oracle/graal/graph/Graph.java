@@ -24,6 +24,7 @@ package com.oracle.graal.graph;
 
 import static com.oracle.graal.graph.Edges.Type.Successors;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -106,6 +107,25 @@ public class Graph {
      */
     int compressions;
 
+    /**
+     * For each {@linkplain #maybeCompress() compression}, the identifiers the nodes got by the
+     * compression indexed by their identifiers before the compression, or -1 for deleted nodes.
+     * These tables allow {@link NodeMap}s and {@link NodeBitMap}s to survive compressions. A table
+     * is replaced by {@code null} once no such map uses identifiers from before the compression.
+     */
+    private final ArrayList<int[]> compressionForwardings = new ArrayList<>();
+
+    /**
+     * For each compression, a weak reference to the {@linkplain #epochToken() token} of the
+     * identifiers from before the compression, or {@code null} if there was no token.
+     */
+    private final ArrayList<WeakReference<Object>> compressionEpochTokens = new ArrayList<>();
+
+    /**
+     * The token of the current node identifiers, created on demand.
+     */
+    private Object currentEpochToken;
+
     NodeEventListener nodeEventListener;
 
     /**
@@ -360,6 +380,73 @@ public class Graph {
         return compressions;
     }
 
+    /**
+     * Gets the identifier a node has now given the identifier it had after {@code fromEpoch}
+     * {@linkplain #getCompressions() compressions}.
+     *
+     * @return the current identifier of the node or -1 if the node has been deleted
+     */
+    int forwardNodeId(int id, int fromEpoch) {
+        int result = id;
+        for (int epoch = fromEpoch; epoch < compressions && result >= 0; epoch++) {
+            int[] forwarding = compressionForwardings.get(epoch);
+            assert forwarding != null : "forwarding table of epoch " + epoch + " was dropped";
+            result = result < forwarding.length ? forwarding[result] : -1;
+        }
+        return result;
+    }
+
+    /**
+     * Gets an object that represents the current node identifiers. An object that stores node
+     * identifiers and {@linkplain NodeIdAccessor#forwardIds(int) forwards} them after compressions
+     * keeps a reference to this token. The forwarding tables of compressions are only kept as long
+     * as the token of an earlier epoch is reachable.
+     */
+    Object epochToken() {
+        if (currentEpochToken == null) {
+            currentEpochToken = new Object();
+        }
+        return currentEpochToken;
+    }
+
+    /**
+     * Drops the forwarding tables that precede the oldest epoch whose {@linkplain #epochToken()
+     * token} is still reachable. No object can need them any more.
+     */
+    private void pruneCompressionForwardings() {
+        for (int epoch = 0; epoch < compressionForwardings.size(); epoch++) {
+            WeakReference<Object> token = compressionEpochTokens.get(epoch);
+            if (token != null && token.get() != null) {
+                return;
+            }
+            if (compressionForwardings.get(epoch) != null) {
+                compressionForwardings.set(epoch, null);
+                compressionEpochTokens.set(epoch, null);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of identifiers that are now used by the nodes whose identifiers were below
+     * {@code count} after {@code fromEpoch} {@linkplain #getCompressions() compressions}.
+     */
+    int forwardNodeIdCount(int count, int fromEpoch) {
+        int result = count;
+        for (int epoch = fromEpoch; epoch < compressions; epoch++) {
+            int[] forwarding = compressionForwardings.get(epoch);
+            assert forwarding != null : "forwarding table of epoch " + epoch + " was dropped";
+            int newCount = 0;
+            for (int i = Math.min(result, forwarding.length) - 1; i >= 0; i--) {
+                if (forwarding[i] >= 0) {
+                    newCount = forwarding[i] + 1;
+                    break;
+                }
+            }
+            result = newCount;
+        }
+        return result;
+    }
+
     /**
      * Gets the number of nodes which have been deleted from this graph since it was last
      * {@linkplain #maybeCompress() compressed}.
@@ -762,7 +849,9 @@ public class Graph {
     /**
      * If the {@linkplain #COMPRESSION_THRESHOLD compression threshold} is met, the list of nodes is
      * compressed such that all non-null entries precede all null entries while preserving the
-     * ordering between the nodes within the list.
+     * ordering between the nodes within the list. Nodes before the first deleted node keep their
+     * identifiers. The identifier changes are recorded so that existing {@link NodeMap}s and
+     * {@link NodeBitMap}s can translate their entries instead of being rebuilt.
      */
     public boolean maybeCompress() {
         if (Debug.isDumpEnabledForMethod() || Debug.isLogEnabledForMethod()) {
@@ -774,6 +863,8 @@ public class Graph {
             return false;
         }
         GraphCompressions.increment();
+        int[] forwarding = new int[nodesSize];
+        Arrays.fill(forwarding, -1);
         int nextId = 0;
         for (int i = 0; nextId < liveNodeCount; i++) {
             Node n = nodes[i];
@@ -785,9 +876,14 @@ public class Graph {
                     nodes[nextId] = n;
                     nodes[i] = null;
                 }
+                forwarding[i] = nextId;
                 nextId++;
             }
         }
+        compressionForwardings.add(forwarding);
+        compressionEpochTokens.add(currentEpochToken == null ? null : new WeakReference<>(currentEpochToken));
+        currentEpochToken = null;
+        pruneCompressionForwardings();
         if (MODIFICATION_COUNTS_ENABLED) {
             // This will cause any current iteration to fail with an assertion
             Arrays.fill(nodeModCounts, 0);
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+
+/**
+ * A copy-on-write fork of a graph. The fork shares the original graph until a modifiable version is
+ * {@linkplain #getMutable() requested}, at which point the original is {@linkplain Graph#copy()
+ * copied} once. Transformations that only sometimes need to modify a graph they do not own (e.g., a
+ * cached graph) can thereby avoid the copy in the common case.
+ *
+ * Nodes record the graph they belong to as well as their usages, so they cannot be shared between
+ * two graphs. The fork therefore copies the whole graph rather than individual nodes.
+ */
+public final class GraphFork<G extends Graph> {
+
+    private static final DebugMetric GraphForks = Debug.metric("GraphForks");
+    private static final DebugMetric GraphForkCopies = Debug.metric("GraphForkCopies");
+
+    private final G original;
+    private G copy;
+
+    /**
+     * State of the original graph used to detect modifications through {@link #get()}.
+     */
+    private final Graph.Mark originalMark;
+    private final int originalNodeCount;
+
+    public GraphFork(G original) {
+        this.original = original;
+        this.originalMark = original.getMark();
+        this.originalNodeCount = original.getNodeCount();
+        GraphForks.increment();
+    }
+
+    /**
+     * Gets the current version of the forked graph. Unless {@link #isCopied()} is true, this is the
+     * original graph, which must not be modified.
+     */
+    public G get() {
+        if (copy != null) {
+            return copy;
+        }
+        assert verifyOriginalUnmodified();
+        return original;
+    }
+
+    /**
+     * Gets a version of the forked graph that may be modified, copying the original graph the
+     * first time this method is called.
+     */
+    @SuppressWarnings("unchecked")
+    public G getMutable() {
+        if (copy == null) {
+            assert verifyOriginalUnmodified();
+            GraphForkCopies.increment();
+            copy = (G) original.copy();
+        }
+        return copy;
+    }
+
+    /**
+     * Determines if the original graph has been copied.
+     */
+    public boolean isCopied() {
+        return copy != null;
+    }
+
+    public G getOriginal() {
+        return original;
+    }
+
+    private boolean verifyOriginalUnmodified() {
+        if (!originalMark.isCurrent() || originalNodeCount != original.getNodeCount()) {
+            throw new VerificationError("shared graph %s was modified through a fork", original);
+        }
+        return true;
+    }
+}
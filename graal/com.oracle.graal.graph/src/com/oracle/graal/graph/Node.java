@@ -442,7 +442,24 @@ public abstract class Node implements Cloneable, Formattable {
             extraUsages[destIndex - INLINE_USAGE_COUNT] = n;
         }
         extraUsages[lastIndex - INLINE_USAGE_COUNT] = null;
-        this.extraUsagesCount--;
+        if (--this.extraUsagesCount == 0) {
+            // Most nodes only need the inline slots, so do not hold on to an empty array.
+            extraUsages = NO_NODES;
+        }
+    }
+
+    /**
+     * Ensures that this node can record {@code usageCount} usages without growing its usage list.
+     * This is used to size the usage lists of nodes whose final number of usages is known in
+     * advance, e.g., when a graph is copied.
+     */
+    void ensureUsageCapacity(int usageCount) {
+        int extraCount = usageCount - INLINE_USAGE_COUNT;
+        if (extraCount > extraUsages.length) {
+            Node[] newExtraUsages = new Node[extraCount];
+            System.arraycopy(extraUsages, 0, newExtraUsages, 0, extraUsagesCount);
+            extraUsages = newExtraUsages;
+        }
     }
 
     /**
@@ -27,18 +27,18 @@ import java.util.Iterator;
 
 import com.oracle.graal.graph.iterators.NodeIterable;
 
-public final class NodeBitMap implements NodeIterable<Node> {
+public final class NodeBitMap extends NodeIdAccessor implements NodeIterable<Node> {
     private static final int SHIFT = 6;
 
     private long[] bits;
     private int nodeCount;
     private int counter;
-    private final Graph graph;
 
     public NodeBitMap(Graph graph) {
+        super(graph);
+        retainForwardings();
         this.nodeCount = graph.nodeIdCount();
         this.bits = new long[sizeForNodeCount(nodeCount)];
-        this.graph = graph;
     }
 
     private static int sizeForNodeCount(int nodeCount) {
@@ -50,9 +50,30 @@ public final class NodeBitMap implements NodeIterable<Node> {
     }
 
     private NodeBitMap(NodeBitMap other) {
+        super(other.graph);
+        retainForwardings();
+        other.updateIds();
         this.bits = other.bits.clone();
         this.nodeCount = other.nodeCount;
-        this.graph = other.graph;
+    }
+
+    @Override
+    boolean forwardIds(int fromEpoch) {
+        for (int word = 0; word < bits.length; word++) {
+            long value = bits[word];
+            if (value != 0) {
+                bits[word] = 0;
+                while (value != 0) {
+                    int id = graph.forwardNodeId((word << SHIFT) + Long.numberOfTrailingZeros(value), fromEpoch);
+                    if (id >= 0) {
+                        bits[id >> SHIFT] |= (1L << id);
+                    }
+                    value &= value - 1;
+                }
+            }
+        }
+        nodeCount = graph.forwardNodeIdCount(nodeCount, fromEpoch);
+        return true;
     }
 
     public Graph graph() {
@@ -60,12 +81,12 @@ public final class NodeBitMap implements NodeIterable<Node> {
     }
 
     public boolean isNew(Node node) {
-        return node.id() >= nodeCount;
+        return getNodeId(node) >= nodeCount;
     }
 
     public boolean isMarked(Node node) {
         assert check(node, false);
-        return isMarked(node.id());
+        return isMarked(getNodeId(node));
     }
 
     public boolean checkAndMarkInc(Node node) {
@@ -84,33 +105,33 @@ public final class NodeBitMap implements NodeIterable<Node> {
 
     public boolean isMarkedAndGrow(Node node) {
         assert check(node, true);
-        int id = node.id();
+        int id = getNodeId(node);
         checkGrow(id);
         return isMarked(id);
     }
 
     public void mark(Node node) {
         assert check(node, false);
-        int id = node.id();
+        int id = getNodeId(node);
         bits[id >> SHIFT] |= (1L << id);
     }
 
     public void markAndGrow(Node node) {
         assert check(node, true);
-        int id = node.id();
+        int id = getNodeId(node);
         checkGrow(id);
         bits[id >> SHIFT] |= (1L << id);
     }
 
     public void clear(Node node) {
         assert check(node, false);
-        int id = node.id();
+        int id = getNodeId(node);
         bits[id >> SHIFT] &= ~(1L << id);
     }
 
     public void clearAndGrow(Node node) {
         assert check(node, true);
-        int id = node.id();
+        int id = getNodeId(node);
         checkGrow(id);
         bits[id >> SHIFT] &= ~(1L << id);
     }
@@ -131,6 +152,8 @@ public final class NodeBitMap implements NodeIterable<Node> {
 
     public void intersect(NodeBitMap other) {
         assert graph() == other.graph();
+        updateIds();
+        other.updateIds();
         int commonLength = Math.min(bits.length, other.bits.length);
         for (int i = commonLength; i < bits.length; i++) {
             bits[i] = 0;
@@ -141,6 +164,7 @@ public final class NodeBitMap implements NodeIterable<Node> {
     }
 
     public void grow() {
+        updateIds();
         nodeCount = Math.max(nodeCount, graph().nodeIdCount());
         int newLength = sizeForNodeCount(nodeCount);
         if (newLength > bits.length) {
@@ -220,6 +244,7 @@ public final class NodeBitMap implements NodeIterable<Node> {
 
     @Override
     public int count() {
+        updateIds();
         int count = 0;
         for (long l : bits) {
             count += Long.bitCount(l);
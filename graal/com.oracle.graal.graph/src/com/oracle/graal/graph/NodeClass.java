@@ -732,7 +732,12 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
             // Use sparse map
             newNodes = newIdentityMap();
         }
-        createNodeDuplicates(graph, nodes, replacements, newNodes);
+        /*
+         * When the whole graph is duplicated, every duplicate ends up with as many usages as its
+         * original, so the usage lists can be sized exactly up front.
+         */
+        boolean sizeUsages = replacements == null && estimatedNodeCount >= oldGraph.getNodeCount();
+        createNodeDuplicates(graph, nodes, replacements, newNodes, sizeUsages);
 
         InplaceUpdateClosure replacementClosure = new InplaceUpdateClosure() {
 
@@ -770,7 +775,7 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
         return newNodes;
     }
 
-    private static void createNodeDuplicates(final Graph graph, Iterable<? extends Node> nodes, final DuplicationReplacement replacements, final Map<Node, Node> newNodes) {
+    private static void createNodeDuplicates(final Graph graph, Iterable<? extends Node> nodes, final DuplicationReplacement replacements, final Map<Node, Node> newNodes, boolean sizeUsages) {
         for (Node node : nodes) {
             if (node != null) {
                 assert !node.isDeleted() : "trying to duplicate deleted node: " + node;
@@ -791,6 +796,9 @@ public final class NodeClass<T> extends FieldIntrospection<T> {
                     Node newNode = node.clone(graph, WithAllEdges);
                     assert newNode.inputs().isEmpty() || newNode.hasNoUsages();
                     assert newNode.getClass() == node.getClass();
+                    if (sizeUsages && newNode.hasNoUsages()) {
+                        newNode.ensureUsageCapacity(node.getUsageCount());
+                    }
                     newNodes.put(node, newNode);
                 }
             }
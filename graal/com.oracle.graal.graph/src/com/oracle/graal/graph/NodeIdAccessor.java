@@ -23,17 +23,40 @@
 package com.oracle.graal.graph;
 
 /**
- * An entity that depends upon {@linkplain Graph#maybeCompress() stable} node identifiers.
+ * An entity that depends upon {@linkplain Graph#maybeCompress() stable} node identifiers. Entities
+ * that can {@linkplain #forwardIds(int) translate} the identifiers they store survive a compression
+ * of the graph, all others must not be used after a compression.
  */
 class NodeIdAccessor {
     final Graph graph;
-    final int epoch;
+
+    /**
+     * The number of {@linkplain Graph#getCompressions() compressions} of the graph that the node
+     * identifiers used by this object are valid for.
+     */
+    int epoch;
+
+    /**
+     * The {@linkplain Graph#epochToken() token} of {@link #epoch} that keeps the forwarding tables
+     * needed by {@link #forwardIds(int)} alive, or {@code null} if this object does not forward
+     * its identifiers.
+     */
+    private Object epochToken;
 
     NodeIdAccessor(Graph graph) {
         this.graph = graph;
         this.epoch = graph.compressions;
     }
 
+    /**
+     * Keeps the forwarding tables of the graph's compressions alive as long as this object may need
+     * them to {@linkplain #forwardIds(int) forward} its identifiers. Must be called by the
+     * constructors of subclasses that override {@link #forwardIds(int)}.
+     */
+    final void retainForwardings() {
+        epochToken = graph.epochToken();
+    }
+
     Graph getGraph() {
         return graph;
     }
@@ -53,11 +76,41 @@ class NodeIdAccessor {
     }
 
     /**
-     * Gets the identifier for a node. If assertions are enabled, this method asserts that the
-     * identifier is stable.
+     * Gets the identifier for a node. If the graph was compressed since the identifiers used by
+     * this object were last updated, they are {@linkplain #forwardIds(int) forwarded} first. If
+     * assertions are enabled and this object cannot forward its identifiers, this method asserts
+     * that the identifier is stable.
      */
     public int getNodeId(Node node) {
-        assert verifyIdsAreStable();
+        updateIds();
         return node.id();
     }
+
+    /**
+     * Brings the node identifiers used by this object up to date with the graph.
+     */
+    final void updateIds() {
+        if (epoch != graph.compressions) {
+            if (forwardIds(epoch)) {
+                epoch = graph.compressions;
+                if (epochToken != null) {
+                    epochToken = graph.epochToken();
+                }
+            } else {
+                assert verifyIdsAreStable();
+            }
+        }
+    }
+
+    /**
+     * Translates the node identifiers stored by this object to the identifiers the nodes have after
+     * all compressions of the graph since {@code fromEpoch} by means of
+     * {@link Graph#forwardNodeId(int, int)}. Since compression preserves the order of the nodes,
+     * the translation can be done in place.
+     *
+     * @return {@code false} if this object does not support the translation
+     */
+    boolean forwardIds(@SuppressWarnings("unused") int fromEpoch) {
+        return false;
+    }
 }
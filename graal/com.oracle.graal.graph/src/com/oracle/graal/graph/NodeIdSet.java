@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.graph;
+
+import java.util.Arrays;
+
+/**
+ * A set of node identifiers implemented as an open-addressing hash table with linear probing. In
+ * contrast to a {@link NodeBitMap}, its size depends on the number of elements rather than on the
+ * number of nodes in the graph, and adding or removing an identifier never allocates unless the
+ * table needs to grow.
+ */
+final class NodeIdSet {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] table;
+    private int size;
+
+    NodeIdSet() {
+        this(INITIAL_CAPACITY);
+    }
+
+    NodeIdSet(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+    }
+
+    private static int hash(int id, int mask) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        assert id >= 0 : id;
+        int[] t = table;
+        int mask = t.length - 1;
+        for (int index = hash(id, mask);; index = (index + 1) & mask) {
+            int entry = t[index];
+            if (entry == id) {
+                return true;
+            } else if (entry == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Adds {@code id} to this set.
+     *
+     * @return {@code true} if {@code id} was not in this set before
+     */
+    public boolean add(int id) {
+        assert id >= 0 : id;
+        int mask = table.length - 1;
+        int index = hash(id, mask);
+        while (true) {
+            int entry = table[index];
+            if (entry == id) {
+                return false;
+            } else if (entry == EMPTY) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = id;
+        if (++size * 2 > table.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Removes {@code id} from this set. The entries following it in the same probe sequence are
+     * shifted back so that no tombstones are needed.
+     *
+     * @return {@code true} if {@code id} was in this set
+     */
+    public boolean remove(int id) {
+        assert id >= 0 : id;
+        int[] t = table;
+        int mask = t.length - 1;
+        int index = hash(id, mask);
+        while (t[index] != id) {
+            if (t[index] == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        size--;
+        int hole = index;
+        for (int next = (hole + 1) & mask; t[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(t[next], mask);
+            /* Move the entry into the hole unless its home slot lies cyclically in (hole, next]. */
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                t[hole] = t[next];
+                hole = next;
+            }
+        }
+        t[hole] = EMPTY;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    private void grow() {
+        int[] old = table;
+        int[] t = new int[old.length << 1];
+        Arrays.fill(t, EMPTY);
+        int mask = t.length - 1;
+        for (int entry : old) {
+            if (entry != EMPTY) {
+                int index = hash(entry, mask);
+                while (t[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                t[index] = entry;
+            }
+        }
+        table = t;
+    }
+}
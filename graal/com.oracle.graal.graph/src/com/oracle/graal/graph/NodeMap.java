@@ -35,14 +35,32 @@ public class NodeMap<T> extends NodeIdAccessor {
 
     public NodeMap(Graph graph) {
         super(graph);
+        retainForwardings();
         this.values = new Object[graph.nodeIdCount()];
     }
 
     public NodeMap(NodeMap<T> copyFrom) {
         super(copyFrom.graph);
+        retainForwardings();
+        copyFrom.updateIds();
         this.values = Arrays.copyOf(copyFrom.values, copyFrom.values.length);
     }
 
+    @Override
+    boolean forwardIds(int fromEpoch) {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value != null) {
+                values[i] = null;
+                int id = graph.forwardNodeId(i, fromEpoch);
+                if (id >= 0) {
+                    values[id] = value;
+                }
+            }
+        }
+        return true;
+    }
+
     @SuppressWarnings("unchecked")
     public T get(Node node) {
         assert check(node);
@@ -77,6 +95,7 @@ public class NodeMap<T> extends NodeIdAccessor {
     }
 
     public boolean containsValue(Object value) {
+        updateIds();
         for (Object o : values) {
             if (o == value) {
                 return true;
@@ -130,6 +149,7 @@ public class NodeMap<T> extends NodeIdAccessor {
 
             @Override
             public Iterator<Entry<Node, T>> iterator() {
+                updateIds();
                 return new Iterator<Entry<Node, T>>() {
 
                     int i = 0;
@@ -60,6 +60,7 @@ public final class NodeNodeMap extends NodeMap<Node> implements Map<Node, Node>
     }
 
     public Set<Node> keySet() {
+        updateIds();
         HashSet<Node> entries = new HashSet<>();
         for (int i = 0; i < values.length; ++i) {
             Object v = values[i];
@@ -79,6 +80,7 @@ public final class NodeNodeMap extends NodeMap<Node> implements Map<Node, Node>
     }
 
     public Collection<Node> values() {
+        updateIds();
         ArrayList<Node> result = new ArrayList<>(this.size());
         for (int i = 0; i < values.length; ++i) {
             Object v = values[i];
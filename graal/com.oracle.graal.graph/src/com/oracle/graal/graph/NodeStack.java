@@ -22,41 +22,54 @@
  */
 package com.oracle.graal.graph;
 
-public final class NodeStack {
+/**
+ * A stack of nodes of a single graph. The stack stores {@linkplain Node#id() node identifiers} in
+ * an int array so that pushing and popping nodes does not involve any object stores. Nodes must not
+ * be deleted while they are on the stack.
+ */
+public final class NodeStack extends NodeIdAccessor {
 
     private static final int INITIAL_SIZE = 8;
 
-    protected Node[] values;
+    protected int[] values;
     public int tos;
 
-    public NodeStack() {
-        values = new Node[INITIAL_SIZE];
+    public NodeStack(Graph graph) {
+        super(graph);
+        values = new int[INITIAL_SIZE];
     }
 
     public void push(Node n) {
+        assert n.graph() == graph : n;
         int newIndex = tos++;
         int valuesLength = values.length;
         if (newIndex >= valuesLength) {
             grow();
         }
-        values[newIndex] = n;
+        values[newIndex] = getNodeId(n);
     }
 
     private void grow() {
         int valuesLength = values.length;
-        Node[] newValues = new Node[valuesLength << 1];
+        int[] newValues = new int[valuesLength << 1];
         System.arraycopy(values, 0, newValues, 0, valuesLength);
         values = newValues;
     }
 
     public Node pop() {
         assert tos > 0 : "stack must be non-empty";
-        return values[--tos];
+        return getNode(values[--tos]);
     }
 
     public Node peek() {
         assert tos > 0 : "stack must be non-empty";
-        return values[tos - 1];
+        return getNode(values[tos - 1]);
+    }
+
+    private Node getNode(int id) {
+        Node node = graph.getNode(id);
+        assert node != null : "node " + id + " was deleted while on the stack";
+        return node;
     }
 
     public boolean isEmpty() {
@@ -71,7 +84,7 @@ public final class NodeStack {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < tos; i++) {
             sb.append(", ");
-            sb.append(values[i]);
+            sb.append(graph.getNode(values[i]));
         }
         return "NodeStack: [" + sb.substring(2) + "]";
     }
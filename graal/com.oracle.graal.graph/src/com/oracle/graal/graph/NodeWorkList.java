@@ -22,24 +22,33 @@
  */
 package com.oracle.graal.graph;
 
-import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Queue;
 
-public abstract class NodeWorkList implements Iterable<Node> {
+/**
+ * A queue of nodes to be processed. The queue stores {@linkplain Node#id() node identifiers} in a
+ * growable ring buffer and keeps track of its members with a {@link NodeIdSet}, so that adding and
+ * removing nodes does not allocate. Nodes that are deleted while they are in the queue are skipped
+ * by the iterators. Nodes that are not alive when they are {@linkplain #add(Node) added} are
+ * ignored.
+ */
+public abstract class NodeWorkList extends NodeIdAccessor implements Iterable<Node> {
+
+    private static final int INITIAL_CAPACITY = 16;
 
-    protected final Queue<Node> worklist;
+    private int[] queue;
+    private int head;
+    private int size;
 
     private NodeWorkList(Graph graph, boolean fill) {
+        super(graph);
         if (fill) {
-            ArrayDeque<Node> deque = new ArrayDeque<>(graph.getNodeCount());
+            queue = new int[Math.max(INITIAL_CAPACITY, Integer.highestOneBit(graph.getNodeCount()) << 1)];
             for (Node node : graph.getNodes()) {
-                deque.add(node);
+                enqueue(node.id());
             }
-            worklist = deque;
         } else {
-            worklist = new ArrayDeque<>();
+            queue = new int[INITIAL_CAPACITY];
         }
     }
 
@@ -55,24 +64,74 @@ public abstract class NodeWorkList implements Iterable<Node> {
 
     public abstract boolean contains(Node node);
 
+    /**
+     * Gets the number of nodes in the queue, including nodes that have been deleted since they were
+     * added.
+     */
+    public int size() {
+        return size;
+    }
+
+    final void enqueue(int id) {
+        if (size == queue.length) {
+            growQueue();
+        }
+        queue[(head + size) & (queue.length - 1)] = id;
+        size++;
+    }
+
+    final int dequeue() {
+        assert size > 0;
+        int id = queue[head];
+        head = (head + 1) & (queue.length - 1);
+        size--;
+        return id;
+    }
+
+    private void growQueue() {
+        int[] newQueue = new int[queue.length << 1];
+        int firstPart = Math.min(size, queue.length - head);
+        System.arraycopy(queue, head, newQueue, 0, firstPart);
+        System.arraycopy(queue, 0, newQueue, firstPart, size - firstPart);
+        queue = newQueue;
+        head = 0;
+    }
+
     private abstract class QueueConsumingIterator implements Iterator<Node> {
 
         protected void dropDeleted() {
-            while (!worklist.isEmpty() && worklist.peek().isDeleted()) {
-                worklist.remove();
+            updateIds();
+            while (size > 0 && graph.getNode(queue[head]) == null) {
+                dequeued(dequeue());
             }
         }
 
+        protected Node pull() {
+            dropDeleted();
+            if (size == 0) {
+                throw new NoSuchElementException();
+            }
+            int id = dequeue();
+            dequeued(id);
+            return graph.getNode(id);
+        }
+
         @Override
         public void remove() {
             throw new UnsupportedOperationException();
         }
     }
 
+    /**
+     * Notifies this work list that the node with identifier {@code id} has been removed from the
+     * queue.
+     */
+    void dequeued(@SuppressWarnings("unused") int id) {
+    }
+
     public static final class IterativeNodeWorkList extends NodeWorkList {
 
-        private static final int EXPLICIT_BITMAP_THRESHOLD = 10;
-        protected NodeBitMap inQueue;
+        protected final NodeIdSet inQueue;
 
         private int iterationLimit = Integer.MAX_VALUE;
         private Node firstNoChange;
@@ -84,6 +143,14 @@ public abstract class NodeWorkList implements Iterable<Node> {
             if (iterationLimitPerNode > 0) {
                 iterationLimit = iterationLimitPerNode * graph.getNodeCount();
             }
+            if (fill) {
+                inQueue = new NodeIdSet(graph.getNodeCount());
+                for (Node node : graph.getNodes()) {
+                    inQueue.add(node.id());
+                }
+            } else {
+                inQueue = new NodeIdSet();
+            }
         }
 
         @Override
@@ -92,7 +159,7 @@ public abstract class NodeWorkList implements Iterable<Node> {
                 @Override
                 public boolean hasNext() {
                     dropDeleted();
-                    return iterationLimit > 0 && !worklist.isEmpty();
+                    return iterationLimit > 0 && size() > 0;
                 }
 
                 @Override
@@ -100,12 +167,8 @@ public abstract class NodeWorkList implements Iterable<Node> {
                     if (iterationLimit-- <= 0) {
                         throw new NoSuchElementException();
                     }
-                    dropDeleted();
-                    Node node = worklist.remove();
+                    Node node = pull();
                     assert updateInfiniteWork(node);
-                    if (inQueue != null) {
-                        inQueue.clearAndGrow(node);
-                    }
                     return node;
                 }
 
@@ -119,44 +182,25 @@ public abstract class NodeWorkList implements Iterable<Node> {
             };
         }
 
+        @Override
+        void dequeued(int id) {
+            inQueue.remove(id);
+        }
+
         @Override
         public void add(Node node) {
-            if (node != null) {
-                if (inQueue != null) {
-                    if (inQueue.isMarkedAndGrow(node)) {
-                        return;
-                    }
-                } else {
-                    if (worklist.size() > EXPLICIT_BITMAP_THRESHOLD) {
-                        inflateToBitMap(node.graph());
-                    } else {
-                        for (Node queuedNode : worklist) {
-                            if (queuedNode == node) {
-                                return;
-                            }
-                        }
-                    }
+            if (node != null && node.isAlive()) {
+                if (!inQueue.add(getNodeId(node))) {
+                    return;
                 }
                 assert checkInfiniteWork(node) : "Readded " + node;
-                if (inQueue != null) {
-                    inQueue.markAndGrow(node);
-                }
-                worklist.add(node);
+                enqueue(node.id());
             }
         }
 
         @Override
         public boolean contains(Node node) {
-            if (inQueue != null) {
-                return inQueue.isMarked(node);
-            } else {
-                for (Node queuedNode : worklist) {
-                    if (queuedNode == node) {
-                        return true;
-                    }
-                }
-                return false;
-            }
+            return node.isAlive() && inQueue.contains(getNodeId(node));
         }
 
         private boolean checkInfiniteWork(Node node) {
@@ -174,39 +218,28 @@ public abstract class NodeWorkList implements Iterable<Node> {
             }
             return true;
         }
-
-        private void inflateToBitMap(Graph graph) {
-            assert inQueue == null;
-            inQueue = graph.createNodeBitMap();
-            for (Node queuedNode : worklist) {
-                if (queuedNode.isAlive()) {
-                    inQueue.mark(queuedNode);
-                }
-            }
-        }
     }
 
     public static final class SingletonNodeWorkList extends NodeWorkList {
-        protected final NodeBitMap visited;
+        protected final NodeIdSet visited;
 
         public SingletonNodeWorkList(Graph graph) {
             super(graph, false);
-            visited = graph.createNodeBitMap();
+            visited = new NodeIdSet();
         }
 
         @Override
         public void add(Node node) {
-            if (node != null) {
-                if (!visited.isMarkedAndGrow(node)) {
-                    visited.mark(node);
-                    worklist.add(node);
+            if (node != null && node.isAlive()) {
+                if (visited.add(getNodeId(node))) {
+                    enqueue(node.id());
                 }
             }
         }
 
         @Override
         public boolean contains(Node node) {
-            return visited.isMarked(node);
+            return node.isAlive() && visited.contains(getNodeId(node));
         }
 
         @Override
@@ -215,13 +248,12 @@ public abstract class NodeWorkList implements Iterable<Node> {
                 @Override
                 public boolean hasNext() {
                     dropDeleted();
-                    return !worklist.isEmpty();
+                    return size() > 0;
                 }
 
                 @Override
                 public Node next() {
-                    dropDeleted();
-                    return worklist.remove();
+                    return pull();
                 }
             };
         }
@@ -43,6 +43,7 @@ import jdk.vm.ci.runtime.JVMCIBackend;
 
 import com.oracle.graal.api.replacements.SnippetReflectionProvider;
 import com.oracle.graal.compiler.amd64.AMD64SuitesProvider;
+import com.oracle.graal.compiler.phases.EconomyCompilerConfiguration;
 import com.oracle.graal.hotspot.DefaultHotSpotGraalCompilerFactory;
 import com.oracle.graal.hotspot.HotSpotBackend;
 import com.oracle.graal.hotspot.HotSpotBackendFactory;
@@ -162,7 +163,8 @@ public class AMD64HotSpotBackendFactory implements HotSpotBackendFactory {
 
     protected HotSpotSuitesProvider createSuites(HotSpotVMConfig config, HotSpotGraalRuntimeProvider runtime, CompilerConfiguration compilerConfiguration, Plugins plugins,
                     HotSpotRegistersProvider registers) {
-        return new HotSpotSuitesProvider(new AMD64SuitesProvider(compilerConfiguration, plugins), config, runtime, new AMD64HotSpotAddressLowering(config.getOopEncoding().base,
+        AMD64SuitesProvider economySuitesCreator = compilerConfiguration instanceof EconomyCompilerConfiguration ? null : new AMD64SuitesProvider(new EconomyCompilerConfiguration(), plugins);
+        return new HotSpotSuitesProvider(new AMD64SuitesProvider(compilerConfiguration, plugins), economySuitesCreator, config, runtime, new AMD64HotSpotAddressLowering(config.getOopEncoding().base,
                         registers.getHeapBaseRegister()));
     }
 
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.test;
+
+import jdk.vm.ci.hotspot.HotSpotJVMCIRuntime;
+import jdk.vm.ci.runtime.JVMCICompiler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.code.CompilationResult;
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.debug.DebugCloseable;
+import com.oracle.graal.hotspot.HotSpotGraalCompiler;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+import com.oracle.graal.phases.CompilationBudget;
+import com.oracle.graal.phases.CompilationBudgetExceededException;
+import com.oracle.graal.phases.PhaseSuite;
+import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.tiers.HighTierContext;
+
+public class CompilationBudgetTest extends GraalCompilerTest {
+
+    public static int sumSnippet(int[] values) {
+        int sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    private PhaseSuite<HighTierContext> createSuite() {
+        PhaseSuite<HighTierContext> suite = new PhaseSuite<>();
+        suite.appendPhase(new CanonicalizerPhase());
+        return suite;
+    }
+
+    @SuppressWarnings("try")
+    @Test(expected = CompilationBudgetExceededException.class)
+    public void testNodeBudget() {
+        StructuredGraph graph = parseEager("sumSnippet", AllowAssumptions.YES);
+        try (DebugCloseable c = new CompilationBudget(graph, 0, 1).activate()) {
+            createSuite().apply(graph, getDefaultHighTierContext());
+        }
+    }
+
+    @SuppressWarnings("try")
+    @Test
+    public void testOtherGraph() {
+        StructuredGraph graph = parseEager("sumSnippet", AllowAssumptions.YES);
+        StructuredGraph other = parseEager("sumSnippet", AllowAssumptions.YES);
+        try (DebugCloseable c = new CompilationBudget(other, 0, 1).activate()) {
+            createSuite().apply(graph, getDefaultHighTierContext());
+        }
+    }
+
+    @SuppressWarnings("try")
+    @Test
+    public void testEconomyFallback() {
+        HotSpotGraalCompiler compiler = (HotSpotGraalCompiler) HotSpotJVMCIRuntime.runtime().getCompiler();
+        try (OverrideScope s = OptionValue.override(CompilationBudget.Options.CompilationNodeBudget, 1, CompilationBudget.Options.CompilationTimeBudget, 0)) {
+            CompilationResult result = compiler.compile(getResolvedJavaMethod("sumSnippet"), JVMCICompiler.INVOCATION_ENTRY_BCI, false);
+            Assert.assertTrue(result.getTargetCodeSize() > 0);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.hotspot.CompileTheWorldReport;
+import com.oracle.graal.hotspot.CompileTheWorldReport.Record;
+
+public class CompileTheWorldReportTest {
+
+    private static CompileTheWorldReport createReport(long time, long codeSize) {
+        CompileTheWorldReport report = new CompileTheWorldReport();
+        report.add(new Record("java.lang.String.indexOf(int, int):int", true, 2000, 300, 4096));
+        report.add(new Record("java.lang.Object.<init>():void", true, time, codeSize, 1024));
+        report.add(new Record("java.lang.Math.max(int, int):int", false, 10, -1, 64));
+        return report;
+    }
+
+    private static void testRoundTrip(String suffix) throws IOException {
+        File file = File.createTempFile("ctwreport", suffix);
+        try {
+            createReport(5000, 100).write(file);
+            List<Record> records = CompileTheWorldReport.read(file).getRecords();
+            Assert.assertEquals(3, records.size());
+            /* Reports are sorted by method name. */
+            Record first = records.get(0);
+            Assert.assertEquals("java.lang.Math.max(int, int):int", first.method);
+            Assert.assertFalse(first.success);
+            Record second = records.get(1);
+            Assert.assertEquals("java.lang.Object.<init>():void", second.method);
+            Assert.assertTrue(second.success);
+            Assert.assertEquals(5000, second.timeMicros);
+            Assert.assertEquals(100, second.codeSize);
+            Assert.assertEquals(1024, second.allocatedBytes);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCSV() throws IOException {
+        testRoundTrip(".csv");
+    }
+
+    @Test
+    public void testJSON() throws IOException {
+        testRoundTrip(".json");
+    }
+
+    private static int diff(CompileTheWorldReport baseline, CompileTheWorldReport current) {
+        return CompileTheWorldReport.diff(baseline, current, 10, new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testDiff() {
+        CompileTheWorldReport baseline = createReport(5000, 100);
+        Assert.assertEquals(0, diff(baseline, createReport(5400, 110)));
+        Assert.assertEquals(1, diff(baseline, createReport(8000, 100)));
+        Assert.assertEquals(1, diff(baseline, createReport(5000, 200)));
+        Assert.assertEquals(1, diff(baseline, createReport(8000, 200)));
+        /* Improvements are not regressions. */
+        Assert.assertEquals(0, diff(baseline, createReport(1000, 50)));
+    }
+
+    @Test
+    public void testNoiseThreshold() {
+        /* A relative increase of a very short compile time is noise. */
+        Assert.assertEquals(0, diff(createReport(100, 100), createReport(500, 100)));
+    }
+}
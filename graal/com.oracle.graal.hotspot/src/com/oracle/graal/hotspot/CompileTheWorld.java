@@ -25,10 +25,13 @@ package com.oracle.graal.hotspot;
 import static com.oracle.graal.compiler.GraalCompilerOptions.ExitVMOnException;
 import static com.oracle.graal.compiler.GraalCompilerOptions.PrintBailout;
 import static com.oracle.graal.compiler.GraalCompilerOptions.PrintStackTraceOnException;
+import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldBaselineReport;
 import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldClasspath;
 import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldConfig;
 import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldExcludeMethodFilter;
 import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldMethodFilter;
+import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldRegressionThreshold;
+import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldReportFile;
 import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldStartAt;
 import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldStopAt;
 import static com.oracle.graal.hotspot.CompileTheWorldOptions.CompileTheWorldVerbose;
@@ -54,10 +57,9 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
@@ -77,9 +79,9 @@ import jdk.vm.ci.runtime.JVMCI;
 import jdk.vm.ci.runtime.JVMCICompiler;
 
 import com.oracle.graal.bytecode.Bytecodes;
-import com.oracle.graal.compiler.CompilerThreadFactory;
-import com.oracle.graal.compiler.CompilerThreadFactory.DebugConfigAccess;
 import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugConfig;
+import com.oracle.graal.debug.DebugDumpHandler;
 import com.oracle.graal.debug.DebugEnvironment;
 import com.oracle.graal.debug.GraalDebugConfig;
 import com.oracle.graal.debug.MethodFilter;
@@ -190,16 +192,18 @@ public final class CompileTheWorld {
     private AtomicLong compiledMethodsCounter = new AtomicLong();
     private AtomicLong compileTime = new AtomicLong();
     private AtomicLong memoryUsed = new AtomicLong();
+    private AtomicLong pendingCompiles = new AtomicLong();
 
     private boolean verbose;
     private final Config config;
 
     /**
-     * Signal that the threads should start compiling in multithreaded mode.
+     * Per-method results, or {@code null} if no
+     * {@linkplain CompileTheWorldOptions#CompileTheWorldReportFile report} is requested.
      */
-    private boolean running;
+    private CompileTheWorldReport report;
 
-    private ThreadPoolExecutor threadPool;
+    private ForkJoinPool threadPool;
 
     /**
      * Creates a compile-the-world instance.
@@ -464,6 +468,77 @@ public final class CompileTheWorld {
         }
     }
 
+    /**
+     * A work-stealing pool thread whose name matches the default
+     * {@link GraalDebugConfig.Options#DebugValueThreadFilter} of CTW and that executes in the
+     * context of a thread-local debug configuration.
+     */
+    static class CompileTheWorldThread extends ForkJoinWorkerThread {
+
+        private DebugConfig debugConfig;
+
+        CompileTheWorldThread(ForkJoinPool pool) {
+            super(pool);
+            this.setName("CompileTheWorld-" + this.getId());
+            this.setPriority(Thread.MAX_PRIORITY);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            setContextClassLoader(getClass().getClassLoader());
+            if (Debug.isEnabled() && DebugScope.getConfig() == null) {
+                debugConfig = DebugEnvironment.initialize(System.out);
+            }
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            if (debugConfig != null) {
+                for (DebugDumpHandler dumpHandler : debugConfig.dumpHandlers()) {
+                    try {
+                        dumpHandler.close();
+                    } catch (Throwable t) {
+                    }
+                }
+            }
+            super.onTermination(exception);
+        }
+    }
+
+    /**
+     * Compiles a range of methods. Ranges are split in halves until they contain a single method
+     * so that idle threads can steal work from the class path entries other threads are still
+     * working on.
+     */
+    @SuppressWarnings("serial")
+    private final class CompileMethods extends RecursiveAction {
+
+        private final List<HotSpotResolvedJavaMethod> methods;
+        private final int from;
+        private final int to;
+
+        CompileMethods(List<HotSpotResolvedJavaMethod> methods, int from, int to) {
+            this.methods = methods;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        @SuppressWarnings("try")
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CompileMethods(methods, from, middle), new CompileMethods(methods, middle, to));
+            } else if (to > from) {
+                try (OverrideScope s = config.apply()) {
+                    compileMethod(methods.get(from), classFileCounter);
+                }
+                pendingCompiles.decrementAndGet();
+            }
+        }
+    }
+
     /**
      * Compiles all methods in all classes in a given class path.
      *
@@ -474,15 +549,7 @@ public final class CompileTheWorld {
     private void compile(String classPath) throws IOException {
         final String[] entries = classPath.split(File.pathSeparator);
         long start = System.currentTimeMillis();
-
-        CompilerThreadFactory factory = new CompilerThreadFactory("CompileTheWorld", new DebugConfigAccess() {
-            public GraalDebugConfig getDebugConfig() {
-                if (Debug.isEnabled() && DebugScope.getConfig() == null) {
-                    return DebugEnvironment.initialize(System.out);
-                }
-                return null;
-            }
-        });
+        report = CompileTheWorldReportFile.getValue() == null ? null : new CompileTheWorldReport();
 
         try {
             // compile dummy method to get compiler initialized outside of the
@@ -500,18 +567,20 @@ public final class CompileTheWorld {
 
         /*
          * Always use a thread pool, even for single threaded mode since it simplifies the use of
-         * DebugValueThreadFilter to filter on the thread names.
+         * DebugValueThreadFilter to filter on the thread names. In multithreaded mode the methods
+         * are only compiled once all classes are loaded and each class path entry is a single
+         * task whose methods can be stolen by idle threads.
          */
+        boolean multiThreaded = CompileTheWorldOptions.CompileTheWorldMultiThreaded.getValue();
         int threadCount = 1;
-        if (CompileTheWorldOptions.CompileTheWorldMultiThreaded.getValue()) {
+        if (multiThreaded) {
             threadCount = CompileTheWorldOptions.CompileTheWorldThreads.getValue();
             if (threadCount == 0) {
                 threadCount = Runtime.getRuntime().availableProcessors();
             }
-        } else {
-            running = true;
         }
-        threadPool = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), factory);
+        threadPool = new ForkJoinPool(threadCount, CompileTheWorldThread::new, null, false);
+        List<CompileMethods> entryTasks = new ArrayList<>();
 
         try (OverrideScope s = config.apply()) {
             for (int i = 0; i < entries.length; i++) {
@@ -550,6 +619,7 @@ public final class CompileTheWorld {
                 println();
 
                 ClassLoader loader = cpe.createClassLoader();
+                List<HotSpotResolvedJavaMethod> entryMethods = new ArrayList<>();
 
                 for (String className : cpe.getClassNames()) {
 
@@ -595,25 +665,30 @@ public final class CompileTheWorld {
                         MetaAccessProvider metaAccess = JVMCI.getRuntime().getHostJVMCIBackend().getMetaAccess();
                         if (classFileCounter >= startAt) {
                             println("CompileTheWorld (%d) : %s", classFileCounter, className);
+                            List<HotSpotResolvedJavaMethod> classMethods = multiThreaded ? entryMethods : new ArrayList<>();
 
                             // Compile each constructor/method in the class.
                             for (Constructor<?> constructor : javaClass.getDeclaredConstructors()) {
                                 HotSpotResolvedJavaMethod javaMethod = (HotSpotResolvedJavaMethod) metaAccess.lookupJavaMethod(constructor);
                                 if (canBeCompiled(javaMethod, constructor.getModifiers())) {
-                                    compileMethod(javaMethod);
+                                    addMethod(classMethods, javaMethod);
                                 }
                             }
                             for (Method method : javaClass.getDeclaredMethods()) {
                                 HotSpotResolvedJavaMethod javaMethod = (HotSpotResolvedJavaMethod) metaAccess.lookupJavaMethod(method);
                                 if (canBeCompiled(javaMethod, method.getModifiers())) {
-                                    compileMethod(javaMethod);
+                                    addMethod(classMethods, javaMethod);
                                 }
                             }
 
                             // Also compile the class initializer if it exists
                             HotSpotResolvedJavaMethod clinit = (HotSpotResolvedJavaMethod) metaAccess.lookupJavaType(javaClass).getClassInitializer();
                             if (clinit != null && canBeCompiled(clinit, clinit.getModifiers())) {
-                                compileMethod(clinit);
+                                addMethod(classMethods, clinit);
+                            }
+
+                            if (!multiThreaded) {
+                                threadPool.invoke(new CompileMethods(classMethods, 0, classMethods.size()));
                             }
                         }
                     } catch (Throwable t) {
@@ -621,24 +696,28 @@ public final class CompileTheWorld {
                         printStackTrace(t);
                     }
                 }
+                if (!entryMethods.isEmpty()) {
+                    entryTasks.add(new CompileMethods(entryMethods, 0, entryMethods.size()));
+                }
                 cpe.close();
             }
         }
 
-        if (!running) {
-            startThreads();
+        for (CompileMethods task : entryTasks) {
+            threadPool.execute(task);
         }
         int wakeups = 0;
-        while (threadPool.getCompletedTaskCount() != threadPool.getTaskCount()) {
+        while (pendingCompiles.get() != 0) {
             if (wakeups % 15 == 0) {
-                TTY.println("CompileTheWorld : Waiting for " + (threadPool.getTaskCount() - threadPool.getCompletedTaskCount()) + " compiles");
-            }
-            try {
-                threadPool.awaitTermination(1, TimeUnit.SECONDS);
-                wakeups++;
-            } catch (InterruptedException e) {
+                TTY.println("CompileTheWorld : Waiting for " + pendingCompiles.get() + " compiles");
             }
+            threadPool.awaitQuiescence(1, TimeUnit.SECONDS);
+            wakeups++;
+        }
+        for (CompileMethods task : entryTasks) {
+            task.join();
         }
+        threadPool.shutdown();
         threadPool = null;
 
         long elapsedTime = System.currentTimeMillis() - start;
@@ -650,51 +729,51 @@ public final class CompileTheWorld {
         } else {
             TTY.println("CompileTheWorld : Done (%d classes, %d methods, %d ms, %d bytes of memory used)", classFileCounter, compiledMethodsCounter.get(), compileTime.get(), memoryUsed.get());
         }
-    }
 
-    private synchronized void startThreads() {
-        running = true;
-        // Wake up any waiting threads
-        notifyAll();
+        if (report != null) {
+            writeReport(report);
+            report = null;
+        }
     }
 
-    private synchronized void waitToRun() {
-        while (!running) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-            }
+    /**
+     * Writes the per-method results to {@link CompileTheWorldOptions#CompileTheWorldReportFile}
+     * and compares them to {@link CompileTheWorldOptions#CompileTheWorldBaselineReport} if the
+     * latter is set.
+     */
+    private static void writeReport(CompileTheWorldReport currentReport) throws IOException {
+        File reportFile = new File(CompileTheWorldReportFile.getValue());
+        currentReport.write(reportFile);
+        TTY.println("CompileTheWorld : Wrote results of %d compilations to %s", currentReport.getRecords().size(), reportFile);
+        String baseline = CompileTheWorldBaselineReport.getValue();
+        if (baseline != null) {
+            CompileTheWorldReport.diff(CompileTheWorldReport.read(new File(baseline)), currentReport, CompileTheWorldRegressionThreshold.getValue(), TTY.out);
         }
     }
 
-    @SuppressWarnings("try")
-    private void compileMethod(HotSpotResolvedJavaMethod method) throws InterruptedException, ExecutionException {
+    /**
+     * Adds {@code method} to {@code methods} if it passes the method filters.
+     */
+    private void addMethod(List<HotSpotResolvedJavaMethod> methods, HotSpotResolvedJavaMethod method) {
         if (methodFilters != null && !MethodFilter.matches(methodFilters, method)) {
             return;
         }
         if (excludeMethodFilters != null && MethodFilter.matches(excludeMethodFilters, method)) {
             return;
         }
-        Future<?> task = threadPool.submit(new Runnable() {
-            public void run() {
-                waitToRun();
-                try (OverrideScope s = config.apply()) {
-                    compileMethod(method, classFileCounter);
-                }
-            }
-        });
-        if (threadPool.getCorePoolSize() == 1) {
-            task.get();
-        }
+        methods.add(method);
+        pendingCompiles.incrementAndGet();
     }
 
     /**
      * Compiles a method and gathers some statistics.
      */
     private void compileMethod(HotSpotResolvedJavaMethod method, int counter) {
+        long startNanos = System.nanoTime();
+        long allocatedAtStart = MemUseTrackerImpl.getCurrentThreadAllocatedBytes();
+        long codeSize = -1;
         try {
             long start = System.currentTimeMillis();
-            long allocatedAtStart = MemUseTrackerImpl.getCurrentThreadAllocatedBytes();
             int entryBCI = JVMCICompiler.INVOCATION_ENTRY_BCI;
             HotSpotCompilationRequest request = new HotSpotCompilationRequest(method, entryBCI, 0L);
             // For more stable CTW execution, disable use of profiling information
@@ -706,6 +785,7 @@ public final class CompileTheWorld {
             // Invalidate the generated code so the code cache doesn't fill up
             HotSpotInstalledCode installedCode = task.getInstalledCode();
             if (installedCode != null) {
+                codeSize = installedCode.getCodeSize();
                 installedCode.invalidate();
             }
 
@@ -717,6 +797,11 @@ public final class CompileTheWorld {
             println("CompileTheWorld (%d) : Error compiling method: %s", counter, method.format("%H.%n(%p):%r"));
             printStackTrace(t);
         }
+        if (report != null) {
+            long timeMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            long allocated = MemUseTrackerImpl.getCurrentThreadAllocatedBytes() - allocatedAtStart;
+            report.add(new CompileTheWorldReport.Record(method.format("%H.%n(%p):%r"), codeSize >= 0, timeMicros, codeSize, allocated));
+        }
     }
 
     /**
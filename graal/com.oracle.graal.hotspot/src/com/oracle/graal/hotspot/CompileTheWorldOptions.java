@@ -59,6 +59,12 @@ public class CompileTheWorldOptions {
     public static final OptionValue<Boolean> CompileTheWorldMultiThreaded = new OptionValue<>(false);
     @Option(help = "Number of threads to use for multithreaded CTW.  Defaults to Runtime.getRuntime().availableProcessors()", type = OptionType.Debug)
     public static final OptionValue<Integer> CompileTheWorldThreads = new OptionValue<>(0);
+    @Option(help = "File to which the compile time and code size of every compiled method is written (CSV, or JSON if the name ends with .json)", type = OptionType.Debug)
+    public static final OptionValue<String> CompileTheWorldReportFile = new OptionValue<>(null);
+    @Option(help = "Report of a previous CTW run against which the methods in CompileTheWorldReportFile are compared", type = OptionType.Debug)
+    public static final OptionValue<String> CompileTheWorldBaselineReport = new OptionValue<>(null);
+    @Option(help = "Percentage by which the compile time or code size of a method must exceed the baseline to be reported as a regression", type = OptionType.Debug)
+    public static final OptionValue<Integer> CompileTheWorldRegressionThreshold = new OptionValue<>(10);
     // @formatter:on
 
     /**
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.hotspot;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-method results of a {@link CompileTheWorld} run. A report is written as CSV or, if the file
+ * name ends with {@code .json}, as JSON with one record per line. Two reports can be
+ * {@linkplain #diff compared} to find the methods whose compile time or code size regressed.
+ */
+public final class CompileTheWorldReport {
+
+    private static final String CSV_HEADER = "method,status,timeMicros,codeSize,allocatedBytes";
+    private static final Pattern CSV_RECORD = Pattern.compile("\"([^\"]*)\",(\\w+),(-?\\d+),(-?\\d+),(-?\\d+)");
+    private static final Pattern JSON_RECORD = Pattern.compile(
+                    "\\{\"method\":\"([^\"]*)\",\"status\":\"(\\w+)\",\"timeMicros\":(-?\\d+),\"codeSize\":(-?\\d+),\"allocatedBytes\":(-?\\d+)\\},?");
+
+    /**
+     * Time differences below this many microseconds are considered noise when comparing reports.
+     */
+    private static final long MIN_TIME_DELTA_MICROS = 1000;
+
+    /**
+     * The result of compiling a single method.
+     */
+    public static final class Record {
+        public final String method;
+        public final boolean success;
+        public final long timeMicros;
+        public final long codeSize;
+        public final long allocatedBytes;
+
+        public Record(String method, boolean success, long timeMicros, long codeSize, long allocatedBytes) {
+            this.method = method;
+            this.success = success;
+            this.timeMicros = timeMicros;
+            this.codeSize = codeSize;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %dus %dB", method, success ? "ok" : "failed", timeMicros, codeSize);
+        }
+    }
+
+    private final List<Record> records = new ArrayList<>();
+
+    public synchronized void add(Record record) {
+        records.add(record);
+    }
+
+    public synchronized List<Record> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    private static boolean isJSON(File file) {
+        return file.getName().endsWith(".json");
+    }
+
+    /**
+     * Writes this report to {@code file}, sorted by method name so that reports of different runs
+     * can also be compared with standard tools.
+     */
+    public void write(File file) throws IOException {
+        List<Record> sorted = getRecords();
+        Collections.sort(sorted, (a, b) -> a.method.compareTo(b.method));
+        boolean json = isJSON(file);
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println(json ? "[" : CSV_HEADER);
+            for (int i = 0; i < sorted.size(); i++) {
+                Record r = sorted.get(i);
+                String status = r.success ? "ok" : "failed";
+                if (json) {
+                    String separator = i == sorted.size() - 1 ? "" : ",";
+                    out.printf("{\"method\":\"%s\",\"status\":\"%s\",\"timeMicros\":%d,\"codeSize\":%d,\"allocatedBytes\":%d}%s%n", r.method, status, r.timeMicros, r.codeSize, r.allocatedBytes,
+                                    separator);
+                } else {
+                    out.printf("\"%s\",%s,%d,%d,%d%n", r.method, status, r.timeMicros, r.codeSize, r.allocatedBytes);
+                }
+            }
+            if (json) {
+                out.println("]");
+            }
+        }
+    }
+
+    /**
+     * Reads a report written by {@link #write(File)}.
+     */
+    public static CompileTheWorldReport read(File file) throws IOException {
+        CompileTheWorldReport report = new CompileTheWorldReport();
+        Pattern pattern = isJSON(file) ? JSON_RECORD : CSV_RECORD;
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Matcher m = pattern.matcher(line.trim());
+                if (m.matches()) {
+                    report.add(new Record(m.group(1), m.group(2).equals("ok"), Long.parseLong(m.group(3)), Long.parseLong(m.group(4)), Long.parseLong(m.group(5))));
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Compares the successful compilations of two reports and prints every method whose compile
+     * time or code size in {@code current} is more than {@code thresholdPercent} percent worse
+     * than in {@code baseline}. Methods that only compile successfully in {@code baseline} are
+     * reported as well.
+     *
+     * @return the number of regressions found
+     */
+    public static int diff(CompileTheWorldReport baseline, CompileTheWorldReport current, int thresholdPercent, PrintStream out) {
+        Map<String, Record> baselineRecords = new LinkedHashMap<>();
+        for (Record r : baseline.getRecords()) {
+            baselineRecords.put(r.method, r);
+        }
+        int regressions = 0;
+        long baselineTime = 0;
+        long currentTime = 0;
+        long baselineSize = 0;
+        long currentSize = 0;
+        for (Record r : current.getRecords()) {
+            Record base = baselineRecords.get(r.method);
+            if (base == null || !base.success) {
+                continue;
+            }
+            if (!r.success) {
+                out.printf("%s: compilation failed (baseline %dus, %dB)%n", r.method, base.timeMicros, base.codeSize);
+                regressions++;
+                continue;
+            }
+            baselineTime += base.timeMicros;
+            currentTime += r.timeMicros;
+            baselineSize += base.codeSize;
+            currentSize += r.codeSize;
+            boolean slower = r.timeMicros - base.timeMicros >= MIN_TIME_DELTA_MICROS && exceeds(base.timeMicros, r.timeMicros, thresholdPercent);
+            boolean larger = exceeds(base.codeSize, r.codeSize, thresholdPercent);
+            if (slower || larger) {
+                out.printf("%s:%s%s%n", r.method, slower ? String.format(" time %dus -> %dus", base.timeMicros, r.timeMicros) : "",
+                                larger ? String.format(" code size %dB -> %dB", base.codeSize, r.codeSize) : "");
+                regressions++;
+            }
+        }
+        out.printf("CompileTheWorldReport : %d regressions over %d%% (total time %dus -> %dus, total code size %dB -> %dB)%n", regressions, thresholdPercent, baselineTime, currentTime,
+                        baselineSize, currentSize);
+        return regressions;
+    }
+
+    private static boolean exceeds(long baseline, long current, int thresholdPercent) {
+        return current * 100 > baseline * (100 + thresholdPercent);
+    }
+
+    /**
+     * Compares two reports. Usage:
+     *
+     * <pre>
+     * CompileTheWorldReport baseline current [thresholdPercent]
+     * </pre>
+     *
+     * The exit code is 1 if regressions were found.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: " + CompileTheWorldReport.class.getName() + " <baseline report> <current report> [<threshold percent>]");
+            System.exit(2);
+        }
+        int threshold = args.length == 3 ? Integer.parseInt(args[2]) : CompileTheWorldOptions.CompileTheWorldRegressionThreshold.getValue();
+        int regressions = diff(read(new File(args[0])), read(new File(args[1])), threshold, System.out);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+}
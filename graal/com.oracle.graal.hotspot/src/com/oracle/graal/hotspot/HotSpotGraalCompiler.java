@@ -22,6 +22,7 @@
  */
 package com.oracle.graal.hotspot;
 
+import static com.oracle.graal.compiler.GraalCompilerOptions.PrintBailout;
 import static com.oracle.graal.compiler.common.GraalOptions.OptAssumptions;
 import static com.oracle.graal.nodes.StructuredGraph.NO_PROFILING_INFO;
 import static com.oracle.graal.nodes.graphbuilderconf.IntrinsicContext.CompilationContext.ROOT_COMPILATION;
@@ -41,12 +42,15 @@ import com.oracle.graal.api.runtime.GraalJVMCICompiler;
 import com.oracle.graal.code.CompilationResult;
 import com.oracle.graal.compiler.GraalCompiler;
 import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCloseable;
 import com.oracle.graal.debug.DebugConfigScope;
 import com.oracle.graal.debug.DebugEnvironment;
+import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.TTY;
 import com.oracle.graal.debug.TopLevelDebugConfig;
 import com.oracle.graal.debug.internal.DebugScope;
 import com.oracle.graal.hotspot.meta.HotSpotProviders;
+import com.oracle.graal.hotspot.meta.HotSpotSuitesProvider;
 import com.oracle.graal.hotspot.phases.OnStackReplacementPhase;
 import com.oracle.graal.java.GraphBuilderPhase;
 import com.oracle.graal.lir.asm.CompilationResultBuilderFactory;
@@ -58,14 +62,19 @@ import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration.DebugIn
 import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration.Plugins;
 import com.oracle.graal.nodes.graphbuilderconf.IntrinsicContext;
 import com.oracle.graal.nodes.spi.Replacements;
+import com.oracle.graal.phases.CompilationBudget;
+import com.oracle.graal.phases.CompilationBudgetExceededException;
 import com.oracle.graal.phases.OptimisticOptimizations;
 import com.oracle.graal.phases.OptimisticOptimizations.Optimization;
 import com.oracle.graal.phases.PhaseSuite;
 import com.oracle.graal.phases.tiers.HighTierContext;
 import com.oracle.graal.phases.tiers.Suites;
+import com.oracle.graal.phases.tiers.SuitesProvider;
 
 public class HotSpotGraalCompiler implements GraalJVMCICompiler {
 
+    private static final DebugMetric EconomyFallbacks = Debug.metric("EconomyFallbacks");
+
     private final HotSpotJVMCIRuntimeProvider jvmciRuntime;
     private final HotSpotGraalRuntimeProvider graalRuntime;
 
@@ -106,6 +115,29 @@ public class HotSpotGraalCompiler implements GraalJVMCICompiler {
     }
 
     public CompilationResult compile(ResolvedJavaMethod method, int entryBCI, boolean useProfilingInfo) {
+        HotSpotProviders providers = graalRuntime.getHostBackend().getProviders();
+        HotSpotSuitesProvider economySuitesProvider = getEconomySuitesProvider(providers);
+        if (economySuitesProvider == null || !CompilationBudget.isEnabled()) {
+            return compile(method, entryBCI, useProfilingInfo, getSuites(providers), getLIRSuites(providers), false);
+        }
+        try {
+            return compile(method, entryBCI, useProfilingInfo, getSuites(providers), getLIRSuites(providers), true);
+        } catch (CompilationBudgetExceededException e) {
+            EconomyFallbacks.increment();
+            if (PrintBailout.getValue()) {
+                TTY.println(method.format("Falling back to economy compilation of %H.%n(%p): ") + e.getMessage());
+            }
+            return compile(method, entryBCI, useProfilingInfo, economySuitesProvider.getDefaultSuites(), economySuitesProvider.getDefaultLIRSuites(), false);
+        }
+    }
+
+    /**
+     * Compiles {@code method} with the given suites.
+     *
+     * @param withBudget specifies if the compilation is subject to a {@link CompilationBudget}
+     */
+    @SuppressWarnings("try")
+    protected CompilationResult compile(ResolvedJavaMethod method, int entryBCI, boolean useProfilingInfo, Suites suites, LIRSuites lirSuites, boolean withBudget) {
         HotSpotBackend backend = graalRuntime.getHostBackend();
         HotSpotProviders providers = backend.getProviders();
         final boolean isOSR = entryBCI != JVMCICompiler.INVOCATION_ENTRY_BCI;
@@ -119,8 +151,6 @@ public class HotSpotGraalCompiler implements GraalJVMCICompiler {
             graph = new StructuredGraph(method, entryBCI, AllowAssumptions.from(OptAssumptions.getValue()), speculationLog, useProfilingInfo);
         }
 
-        Suites suites = getSuites(providers);
-        LIRSuites lirSuites = getLIRSuites(providers);
         ProfilingInfo profilingInfo = useProfilingInfo ? method.getProfilingInfo(!isOSR, isOSR) : DefaultProfilingInfo.get(TriState.FALSE);
         OptimisticOptimizations optimisticOpts = getOptimisticOpts(profilingInfo);
         if (isOSR) {
@@ -132,7 +162,9 @@ public class HotSpotGraalCompiler implements GraalJVMCICompiler {
         result.setEntryBCI(entryBCI);
         boolean shouldDebugNonSafepoints = providers.getCodeCache().shouldDebugNonSafepoints();
         PhaseSuite<HighTierContext> graphBuilderSuite = configGraphBuilderSuite(providers.getSuites().getDefaultGraphBuilderSuite(), shouldDebugNonSafepoints, isOSR);
-        GraalCompiler.compileGraph(graph, method, providers, backend, graphBuilderSuite, optimisticOpts, profilingInfo, suites, lirSuites, result, CompilationResultBuilderFactory.Default);
+        try (DebugCloseable budget = withBudget ? new CompilationBudget(graph).activate() : null) {
+            GraalCompiler.compileGraph(graph, method, providers, backend, graphBuilderSuite, optimisticOpts, profilingInfo, suites, lirSuites, result, CompilationResultBuilderFactory.Default);
+        }
 
         if (!isOSR && useProfilingInfo) {
             ProfilingInfo profile = profilingInfo;
@@ -177,6 +209,20 @@ public class HotSpotGraalCompiler implements GraalJVMCICompiler {
         return providers.getSuites().getDefaultLIRSuites();
     }
 
+    /**
+     * Gets the provider of the suites used when a compilation exceeds its
+     * {@link CompilationBudget}.
+     *
+     * @return {@code null} if compilations cannot fall back to cheaper suites
+     */
+    protected HotSpotSuitesProvider getEconomySuitesProvider(HotSpotProviders providers) {
+        SuitesProvider suitesProvider = providers.getSuites();
+        if (suitesProvider instanceof HotSpotSuitesProvider) {
+            return ((HotSpotSuitesProvider) suitesProvider).getEconomySuitesProvider();
+        }
+        return null;
+    }
+
     /**
      * Reconfigures a given graph builder suite (GBS) if one of the given GBS parameter values is
      * not the default.
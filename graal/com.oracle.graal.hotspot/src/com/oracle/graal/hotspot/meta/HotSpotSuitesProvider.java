@@ -44,6 +44,7 @@ import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
 import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration;
 import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration.DebugInfoMode;
 import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.CompilationBudget;
 import com.oracle.graal.phases.PhaseSuite;
 import com.oracle.graal.phases.common.AddressLoweringPhase;
 import com.oracle.graal.phases.common.AddressLoweringPhase.AddressLowering;
@@ -62,13 +63,34 @@ public class HotSpotSuitesProvider extends SuitesProviderBase {
 
     private final AddressLowering addressLowering;
     private final SuitesCreator defaultSuitesCreator;
+    private final HotSpotSuitesProvider economySuitesProvider;
 
     public HotSpotSuitesProvider(SuitesCreator defaultSuitesCreator, HotSpotVMConfig config, HotSpotGraalRuntimeProvider runtime, AddressLowering addressLowering) {
+        this(defaultSuitesCreator, null, config, runtime, addressLowering);
+    }
+
+    /**
+     * @param economySuitesCreator creates the suites used when a compilation exceeds its
+     *            {@link CompilationBudget}, or {@code null} if there is no cheaper configuration
+     */
+    public HotSpotSuitesProvider(SuitesCreator defaultSuitesCreator, SuitesCreator economySuitesCreator, HotSpotVMConfig config, HotSpotGraalRuntimeProvider runtime,
+                    AddressLowering addressLowering) {
         this.defaultSuitesCreator = defaultSuitesCreator;
         this.config = config;
         this.runtime = runtime;
         this.addressLowering = addressLowering;
         this.defaultGraphBuilderSuite = createGraphBuilderSuite();
+        this.economySuitesProvider = economySuitesCreator == null ? null : new HotSpotSuitesProvider(economySuitesCreator, config, runtime, addressLowering);
+    }
+
+    /**
+     * Gets the provider of the cheaper suites a compilation falls back to when it exceeds its
+     * {@link CompilationBudget}.
+     *
+     * @return {@code null} if there is no cheaper configuration than the default one
+     */
+    public HotSpotSuitesProvider getEconomySuitesProvider() {
+        return economySuitesProvider;
     }
 
     @Override
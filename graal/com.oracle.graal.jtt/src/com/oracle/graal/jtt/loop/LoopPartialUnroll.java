@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.jtt.loop;
+
+import java.util.ListIterator;
+
+import org.junit.Test;
+
+import com.oracle.graal.jtt.JTTTest;
+import com.oracle.graal.loop.DefaultLoopPolicies;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.phases.LoopPartialUnrollPhase;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.common.RemoveValueProxyPhase;
+import com.oracle.graal.phases.tiers.HighTierContext;
+import com.oracle.graal.phases.tiers.Suites;
+
+public class LoopPartialUnroll extends JTTTest {
+
+    @Override
+    protected Suites createSuites() {
+        Suites suites = super.createSuites();
+        ListIterator<BasePhase<? super HighTierContext>> position = suites.getHighTier().findPhase(RemoveValueProxyPhase.class);
+        position.previous();
+        position.add(new LoopPartialUnrollPhase(new DefaultLoopPolicies() {
+            @Override
+            public boolean shouldPartialUnroll(LoopEx loop) {
+                return loop.isCounted();
+            }
+        }));
+        return suites;
+    }
+
+    public static int sumInts(int[] a) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    public static int checksumBytes(byte[] a) {
+        int sum = 1;
+        for (int i = 0; i < a.length; i++) {
+            sum = sum * 31 + a[i];
+        }
+        return sum;
+    }
+
+    public static int sumRange(int start, int end) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += i ^ (sum >>> 3);
+        }
+        return sum;
+    }
+
+    public static int sumInclusive(int start, int end) {
+        int sum = 0;
+        for (int i = start; i <= end; i++) {
+            sum += i;
+            if (i == Integer.MAX_VALUE) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    public static int countDown(int start, int end) {
+        int sum = 0;
+        for (int i = start; i > end; i -= 3) {
+            sum = sum * 7 + i;
+        }
+        return sum;
+    }
+
+    public static long sumLong(long n) {
+        long sum = 0;
+        for (long i = 0; i < n; i++) {
+            sum += i * i;
+        }
+        return sum;
+    }
+
+    public static int lastIndex(int n) {
+        int i = 0;
+        while (i < n) {
+            i += 2;
+        }
+        return i;
+    }
+
+    public static int notEqual(int n) {
+        int sum = 0;
+        for (int i = 0; i != n; i++) {
+            sum += i * 3;
+        }
+        return sum;
+    }
+
+    private static int[] ints(int length) {
+        int[] a = new int[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = i * 17 - 5;
+        }
+        return a;
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] a = new byte[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = (byte) (i * 13);
+        }
+        return a;
+    }
+
+    @Test
+    public void run0() throws Throwable {
+        for (int length : new int[]{0, 1, 3, 4, 5, 7, 8, 9, 100, 1001}) {
+            runTest("sumInts", ints(length));
+        }
+    }
+
+    @Test
+    public void run1() throws Throwable {
+        for (int length : new int[]{0, 1, 2, 4, 6, 15, 16, 17, 333}) {
+            runTest("checksumBytes", bytes(length));
+        }
+    }
+
+    @Test
+    public void run2() throws Throwable {
+        runTest("sumRange", 0, 0);
+        runTest("sumRange", 5, 3);
+        runTest("sumRange", -10, 10);
+        runTest("sumRange", 1, 102);
+        runTest("sumRange", Integer.MIN_VALUE, Integer.MIN_VALUE + 9);
+        runTest("sumRange", Integer.MAX_VALUE - 6, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void run3() throws Throwable {
+        runTest("sumInclusive", 0, -1);
+        runTest("sumInclusive", 0, 0);
+        runTest("sumInclusive", 0, 10);
+        runTest("sumInclusive", Integer.MAX_VALUE - 10, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void run4() throws Throwable {
+        runTest("countDown", 0, 0);
+        runTest("countDown", 10, 0);
+        runTest("countDown", 100, -100);
+        runTest("countDown", Integer.MIN_VALUE + 20, Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void run5() throws Throwable {
+        runTest("sumLong", 0L);
+        runTest("sumLong", 3L);
+        runTest("sumLong", 1000L);
+    }
+
+    @Test
+    public void run6() throws Throwable {
+        runTest("lastIndex", 0);
+        runTest("lastIndex", 7);
+        runTest("lastIndex", 8);
+        runTest("lastIndex", 999);
+    }
+
+    @Test
+    public void run7() throws Throwable {
+        runTest("notEqual", 0);
+        runTest("notEqual", 3);
+        runTest("notEqual", 257);
+    }
+}
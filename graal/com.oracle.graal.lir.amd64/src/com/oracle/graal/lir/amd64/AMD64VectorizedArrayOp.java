@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.amd64;
+
+import static com.oracle.graal.lir.LIRInstruction.OperandFlag.REG;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+
+import com.oracle.graal.asm.Label;
+import com.oracle.graal.asm.amd64.AMD64Address;
+import com.oracle.graal.asm.amd64.AMD64Address.Scale;
+import com.oracle.graal.asm.amd64.AMD64Assembler.AMD64RMOp;
+import com.oracle.graal.asm.amd64.AMD64Assembler.ConditionFlag;
+import com.oracle.graal.asm.amd64.AMD64Assembler.OperandSize;
+import com.oracle.graal.asm.amd64.AMD64Assembler.SSEOp;
+import com.oracle.graal.asm.amd64.AMD64MacroAssembler;
+import com.oracle.graal.compiler.common.type.ArithmeticOpTable.BinaryOp;
+import com.oracle.graal.lir.LIRInstructionClass;
+import com.oracle.graal.lir.Opcode;
+import com.oracle.graal.lir.asm.CompilationResultBuilder;
+import com.oracle.graal.lir.gen.LIRGeneratorTool;
+
+import jdk.vm.ci.amd64.AMD64;
+import jdk.vm.ci.amd64.AMD64Kind;
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LIRKind;
+import jdk.vm.ci.meta.Value;
+import sun.misc.Unsafe;
+
+/**
+ * Emits a loop that applies a binary operation to 128-bit vectors of array elements. The loop only
+ * processes whole vectors, the index of the first element that was not processed is returned in
+ * the result register. If the CPU does not support the operation no element is processed.
+ */
+@Opcode("VECTORIZED_ARRAY_OP")
+public final class AMD64VectorizedArrayOp extends AMD64LIRInstruction {
+    public static final LIRInstructionClass<AMD64VectorizedArrayOp> TYPE = LIRInstructionClass.create(AMD64VectorizedArrayOp.class);
+
+    /**
+     * Vector size in bytes.
+     */
+    private static final int VECTOR_SIZE = 16;
+
+    private final BinaryOp<?> op;
+    private final JavaKind kind;
+    private final boolean source2IsArray;
+    private final int arrayBaseOffset;
+    private final int arrayIndexScale;
+
+    @Def({REG}) protected Value resultValue;
+    @Alive({REG}) protected Value destinationValue;
+    @Alive({REG}) protected Value source1Value;
+    @Alive({REG}) protected Value source2Value;
+    @Alive({REG}) protected Value startValue;
+    @Alive({REG}) protected Value lengthValue;
+    @Temp({REG}) protected Value indexTemp;
+    @Temp({REG}) protected Value limitTemp;
+    @Temp({REG}) protected Value vectorTemp1;
+    @Temp({REG}) protected Value vectorTemp2;
+
+    public AMD64VectorizedArrayOp(LIRGeneratorTool tool, BinaryOp<?> op, JavaKind kind, Value result, Value destination, Value source1, Value source2, boolean source2IsArray, Value start,
+                    Value length) {
+        super(TYPE);
+        this.op = op;
+        this.kind = kind;
+        this.source2IsArray = source2IsArray;
+
+        Class<?> arrayClass = Array.newInstance(kind.toJavaClass(), 0).getClass();
+        this.arrayBaseOffset = UNSAFE.arrayBaseOffset(arrayClass);
+        this.arrayIndexScale = UNSAFE.arrayIndexScale(arrayClass);
+
+        this.resultValue = result;
+        this.destinationValue = destination;
+        this.source1Value = source1;
+        this.source2Value = source2;
+        this.startValue = start;
+        this.lengthValue = length;
+
+        this.indexTemp = tool.newVariable(LIRKind.value(AMD64Kind.QWORD));
+        this.limitTemp = tool.newVariable(LIRKind.value(AMD64Kind.QWORD));
+        this.vectorTemp1 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+        this.vectorTemp2 = tool.newVariable(LIRKind.value(AMD64Kind.DOUBLE));
+    }
+
+    /**
+     * Checks whether vector code can be emitted for an operation on arrays of a given kind. Some
+     * operations additionally require CPU features that are only checked when the code is emitted.
+     */
+    public static boolean isSupported(BinaryOp<?> op, JavaKind kind) {
+        return getVectorOp(op, kind) != null;
+    }
+
+    private static boolean isSupported(TargetDescription target, BinaryOp<?> op, JavaKind kind) {
+        AMD64RMOp vectorOp = getVectorOp(op, kind);
+        if (vectorOp == null) {
+            return false;
+        }
+        return vectorOp != AMD64RMOp.PMULLD || ((AMD64) target.arch).getFeatures().contains(AMD64.CPUFeature.SSE4_1);
+    }
+
+    private static AMD64RMOp getVectorOp(BinaryOp<?> op, JavaKind kind) {
+        switch (kind) {
+            case Int:
+            case Long:
+                boolean isInt = kind == JavaKind.Int;
+                if (op instanceof BinaryOp.Add) {
+                    return isInt ? AMD64RMOp.PADDD : AMD64RMOp.PADDQ;
+                } else if (op instanceof BinaryOp.Sub) {
+                    return isInt ? AMD64RMOp.PSUBD : AMD64RMOp.PSUBQ;
+                } else if (op instanceof BinaryOp.Mul) {
+                    // there is no packed 64 bit multiplication in SSE
+                    return isInt ? AMD64RMOp.PMULLD : null;
+                } else if (op instanceof BinaryOp.And) {
+                    return AMD64RMOp.PAND;
+                } else if (op instanceof BinaryOp.Or) {
+                    return AMD64RMOp.POR;
+                } else if (op instanceof BinaryOp.Xor) {
+                    return AMD64RMOp.PXOR;
+                }
+                return null;
+            case Float:
+            case Double:
+                if (op instanceof BinaryOp.Add) {
+                    return SSEOp.ADD;
+                } else if (op instanceof BinaryOp.Sub) {
+                    return SSEOp.SUB;
+                } else if (op instanceof BinaryOp.Mul) {
+                    return SSEOp.MUL;
+                } else if (op instanceof BinaryOp.Div) {
+                    return SSEOp.DIV;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void emitCode(CompilationResultBuilder crb, AMD64MacroAssembler masm) {
+        Register result = asRegister(resultValue);
+        Register destination = asRegister(destinationValue);
+        Register source1 = asRegister(source1Value);
+        Register source2 = asRegister(source2Value);
+        Register index = asRegister(indexTemp);
+        Register limit = asRegister(limitTemp);
+        Register vector1 = asRegister(vectorTemp1, AMD64Kind.DOUBLE);
+        Register vector2 = asRegister(vectorTemp2, AMD64Kind.DOUBLE);
+
+        masm.movl(result, asRegister(startValue));
+        if (!isSupported(crb.target, op, kind)) {
+            return;
+        }
+        AMD64RMOp vectorOp = getVectorOp(op, kind);
+        OperandSize size = kind == JavaKind.Double ? OperandSize.PD : OperandSize.PS;
+        int elementsPerVector = VECTOR_SIZE / arrayIndexScale;
+        Scale scale = Scale.fromInt(arrayIndexScale);
+
+        Label loop = new Label();
+        Label done = new Label();
+
+        // Number of elements processed with whole vectors
+        masm.movl(limit, asRegister(lengthValue));
+        masm.andl(limit, -elementsPerVector);
+        masm.jcc(ConditionFlag.Zero, done);
+
+        masm.movslq(index, asRegister(startValue));
+        masm.addq(limit, index);
+
+        if (!source2IsArray) {
+            // Broadcast the scalar operand to all lanes
+            boolean is64Bit = arrayIndexScale == 8;
+            if (kind == JavaKind.Int) {
+                AMD64RMOp.MOVD.emit(masm, OperandSize.DWORD, vector2, source2);
+            } else if (kind == JavaKind.Long) {
+                AMD64RMOp.MOVQ.emit(masm, OperandSize.QWORD, vector2, source2);
+            }
+            masm.pshufd(vector2, kind.isNumericInteger() ? vector2 : source2, is64Bit ? 0x44 : 0x00);
+        }
+
+        masm.align(crb.target.wordSize * 2);
+        masm.bind(loop);
+        masm.movdqu(vector1, new AMD64Address(source1, index, scale, arrayBaseOffset));
+        if (source2IsArray) {
+            masm.movdqu(vector2, new AMD64Address(source2, index, scale, arrayBaseOffset));
+        }
+        vectorOp.emit(masm, size, vector1, vector2);
+        masm.movdqu(new AMD64Address(destination, index, scale, arrayBaseOffset), vector1);
+        masm.addq(index, elementsPerVector);
+        masm.cmpq(index, limit);
+        masm.jcc(ConditionFlag.Less, loop);
+
+        masm.movl(result, index);
+        masm.bind(done);
+    }
+
+    private static final Unsafe UNSAFE = initUnsafe();
+
+    private static Unsafe initUnsafe() {
+        try {
+            return Unsafe.getUnsafe();
+        } catch (SecurityException se) {
+            try {
+                Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return (Unsafe) theUnsafe.get(Unsafe.class);
+            } catch (Exception e) {
+                throw new RuntimeException("exception while trying to get Unsafe", e);
+            }
+        }
+    }
+}
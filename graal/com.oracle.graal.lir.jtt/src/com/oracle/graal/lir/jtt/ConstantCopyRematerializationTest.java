@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.jtt;
+
+import static com.oracle.graal.compiler.common.GraalOptions.TraceRA;
+import static com.oracle.graal.lir.LIRValueUtil.isStackSlotValue;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.phases.HighTier;
+import com.oracle.graal.lir.LIR;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.StandardOp.BindToRegisterOp;
+import com.oracle.graal.lir.StandardOp.ValueMoveOp;
+import com.oracle.graal.lir.Variable;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.gen.LIRGeneratorTool;
+import com.oracle.graal.lir.phases.LIRSuites;
+import com.oracle.graal.lir.phases.PostAllocationOptimizationPhase;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
+
+import jdk.vm.ci.code.TargetDescription;
+import jdk.vm.ci.meta.AllocatableValue;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.Value;
+
+/**
+ * Checks that a copy of a constant that is live across a call is re-materialized after the call
+ * instead of being spilled to the stack and reloaded.
+ */
+public class ConstantCopyRematerializationTest extends LIRTest {
+
+    private static final int CONSTANT = 0x12345678;
+
+    /**
+     * Loads {@link #CONSTANT} into a variable and returns a copy of that variable.
+     */
+    private static class ConstantCopySpec extends LIRTestSpecification {
+        @Override
+        public void generate(LIRGeneratorTool gen, Value a) {
+            AllocatableValue constant = gen.emitLoadConstant(a.getLIRKind(), JavaConstant.forInt(CONSTANT));
+            Variable copy = gen.newVariable(a.getLIRKind());
+            gen.emitMove(copy, constant);
+            setResult(copy);
+        }
+    }
+
+    /**
+     * Uses a value in a register. Uses that also accept a stack slot would prevent the
+     * re-materialization.
+     */
+    private static class RegisterUseSpec extends LIRTestSpecification {
+        @Override
+        public void generate(LIRGeneratorTool gen, Value value) {
+            gen.append(new BindToRegisterOp(value));
+        }
+    }
+
+    private static final LIRTestSpecification constantCopy = new ConstantCopySpec();
+    private static final LIRTestSpecification registerUse = new RegisterUseSpec();
+
+    @SuppressWarnings("unused")
+    @LIRIntrinsic
+    public static int copyConstant(LIRTestSpecification spec, int a) {
+        return CONSTANT;
+    }
+
+    @SuppressWarnings("unused")
+    @LIRIntrinsic
+    public static void useInRegister(LIRTestSpecification spec, int value) {
+    }
+
+    public static int callSnippet(IntUnaryOperator op, int a) {
+        int c = copyConstant(constantCopy, a);
+        int r = op.applyAsInt(a);
+        useInRegister(registerUse, c);
+        return r;
+    }
+
+    /**
+     * The number of moves from a stack slot to a register in the last compiled method, right after
+     * register allocation.
+     */
+    private int reloads = -1;
+
+    @Override
+    protected LIRSuites createLIRSuites() {
+        LIRSuites suites = super.createLIRSuites();
+        suites.getPostAllocationOptimizationStage().prependPhase(new PostAllocationOptimizationPhase() {
+            @Override
+            protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                            PostAllocationOptimizationContext context) {
+                LIR lir = lirGenRes.getLIR();
+                int count = 0;
+                for (B block : linearScanOrder) {
+                    for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                        if (op instanceof ValueMoveOp) {
+                            ValueMoveOp move = (ValueMoveOp) op;
+                            if (isStackSlotValue(move.getInput()) && isRegister(move.getResult())) {
+                                count++;
+                            }
+                        }
+                    }
+                }
+                reloads = count;
+            }
+        });
+        return suites;
+    }
+
+    private void testCallSnippet(boolean traceRA) {
+        /* The call must not be inlined, and the receiver must not be bound to a constant. */
+        try (OverrideScope s = OptionValue.override(TraceRA, traceRA, HighTier.Options.Inline, false)) {
+            runTest(EMPTY, false, false, "callSnippet", (IntUnaryOperator) x -> x * 3, 7);
+        }
+        Assert.assertEquals("reloads of the copy of the constant", 0, reloads);
+    }
+
+    @Test
+    public void testLinearScan() {
+        testCallSnippet(false);
+    }
+
+    @Test
+    public void testTraceRA() {
+        testCallSnippet(true);
+    }
+}
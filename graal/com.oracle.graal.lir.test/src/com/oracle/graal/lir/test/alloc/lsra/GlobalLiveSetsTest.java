@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test.alloc.lsra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.common.cfg.Loop;
+import com.oracle.graal.lir.alloc.lsra.GlobalLiveSets;
+
+/**
+ * Tests that the global live sets computed over the loop nesting forest are the same as the ones
+ * computed by the fixed point iteration, and that the fixed point iteration is used for irreducible
+ * control flow.
+ */
+public class GlobalLiveSetsTest {
+
+    private static final class TestBlock extends AbstractBlockBase<TestBlock> {
+
+        private TestLoop loop;
+        private boolean loopHeader;
+
+        TestBlock(int id) {
+            setId(id);
+            setLinearScanNumber(id);
+            setSuccessors(new TestBlock[0]);
+            setPredecessors(new TestBlock[0]);
+        }
+
+        @Override
+        public boolean isExceptionEntry() {
+            return false;
+        }
+
+        @Override
+        public Loop<TestBlock> getLoop() {
+            return loop;
+        }
+
+        @Override
+        public int getLoopDepth() {
+            return loop == null ? 0 : loop.getDepth();
+        }
+
+        @Override
+        public void delete() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isLoopEnd() {
+            return false;
+        }
+
+        @Override
+        public boolean isLoopHeader() {
+            return loopHeader;
+        }
+
+        @Override
+        public TestBlock getPostdominator() {
+            return null;
+        }
+
+        @Override
+        public double probability() {
+            return 1D;
+        }
+
+        @Override
+        public TestBlock getDominator(int distance) {
+            return null;
+        }
+    }
+
+    private static final class TestLoop extends Loop<TestBlock> {
+
+        TestLoop(TestLoop parent, int index, TestBlock header) {
+            super(parent, index, header);
+            header.loopHeader = true;
+        }
+
+        @Override
+        public long numBackedges() {
+            return 1;
+        }
+    }
+
+    private static final int LIVE_SET_SIZE = 3;
+
+    private final List<TestBlock> blocks = new ArrayList<>();
+    private final List<TestLoop> loops = new ArrayList<>();
+
+    private TestBlock block() {
+        TestBlock block = new TestBlock(blocks.size());
+        blocks.add(block);
+        return block;
+    }
+
+    private TestLoop loop(TestLoop parent, TestBlock header, TestBlock... body) {
+        TestLoop loop = new TestLoop(parent, loops.size(), header);
+        loops.add(loop);
+        header.loop = loop;
+        for (TestBlock block : body) {
+            block.loop = loop;
+        }
+        return loop;
+    }
+
+    private static void edges(TestBlock block, TestBlock... successors) {
+        block.setSuccessors(successors);
+    }
+
+    private GlobalLiveSets liveSets(int[][] gen, int[][] kill) {
+        BitSet[] liveGen = new BitSet[blocks.size()];
+        BitSet[] liveKill = new BitSet[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            liveGen[i] = bits(gen[i]);
+            liveKill[i] = bits(kill[i]);
+        }
+        return new GlobalLiveSets(blocks, loops, LIVE_SET_SIZE, liveGen, liveKill);
+    }
+
+    private static BitSet bits(int... operands) {
+        BitSet set = new BitSet(LIVE_SET_SIZE);
+        for (int operand : operands) {
+            set.set(operand);
+        }
+        return set;
+    }
+
+    private void assertSameLiveSets(GlobalLiveSets expected, GlobalLiveSets actual) {
+        for (TestBlock block : blocks) {
+            assertEquals("liveIn of " + block, expected.getLiveIn(block), actual.getLiveIn(block));
+            assertEquals("liveOut of " + block, expected.getLiveOut(block), actual.getLiveOut(block));
+        }
+    }
+
+    /**
+     * <pre>
+     * B0: v0 = ..., v1 = ...
+     * B1: outer loop header                   -> B2, B5
+     * B2:   inner loop header, use v0         -> B3, B4
+     * B3:     v2 = ..., use v2                -> B2
+     * B4:   use v1                            -> B1
+     * B5: use v1
+     * </pre>
+     */
+    @Test
+    public void testNestedLoops() {
+        TestBlock b0 = block();
+        TestBlock b1 = block();
+        TestBlock b2 = block();
+        TestBlock b3 = block();
+        TestBlock b4 = block();
+        TestBlock b5 = block();
+        edges(b0, b1);
+        edges(b1, b2, b5);
+        edges(b2, b3, b4);
+        edges(b3, b2);
+        edges(b4, b1);
+        TestLoop outer = loop(null, b1, b4);
+        loop(outer, b2, b3);
+
+        int[][] gen = {{}, {}, {0}, {}, {1}, {1}};
+        int[][] kill = {{0, 1}, {}, {}, {2}, {}, {}};
+        GlobalLiveSets loopForest = liveSets(gen, kill);
+        assertTrue(loopForest.computeLoopForest());
+        GlobalLiveSets fixedPoint = liveSets(gen, kill);
+        fixedPoint.computeFixedPoint();
+        assertSameLiveSets(fixedPoint, loopForest);
+
+        assertEquals(bits(), loopForest.getLiveIn(b0));
+        assertEquals(bits(0, 1), loopForest.getLiveOut(b0));
+        for (TestBlock block : Arrays.asList(b1, b2, b3, b4)) {
+            assertEquals(bits(0, 1), loopForest.getLiveIn(block));
+            assertEquals(bits(0, 1), loopForest.getLiveOut(block));
+        }
+        assertEquals(bits(1), loopForest.getLiveIn(b5));
+    }
+
+    /**
+     * <pre>
+     * B0: v0 = ...                            -> B1, B2
+     * B1:                                     -> B2
+     * B2:                                     -> B1, B3
+     * B3: use v0
+     * </pre>
+     *
+     * The cycle between B1 and B2 has two entries and therefore no loop header.
+     */
+    @Test
+    public void testIrreducibleCycle() {
+        TestBlock b0 = block();
+        TestBlock b1 = block();
+        TestBlock b2 = block();
+        TestBlock b3 = block();
+        edges(b0, b1, b2);
+        edges(b1, b2);
+        edges(b2, b1, b3);
+
+        int[][] gen = {{}, {}, {}, {0}};
+        int[][] kill = {{0}, {}, {}, {}};
+        GlobalLiveSets liveSets = liveSets(gen, kill);
+        assertFalse(liveSets.computeLoopForest());
+        for (TestBlock block : blocks) {
+            assertTrue(liveSets.getLiveIn(block).isEmpty());
+            assertTrue(liveSets.getLiveOut(block).isEmpty());
+        }
+
+        liveSets.computeFixedPoint();
+        assertEquals(bits(), liveSets.getLiveIn(b0));
+        assertEquals(bits(0), liveSets.getLiveOut(b0));
+        assertEquals(bits(0), liveSets.getLiveIn(b1));
+        assertEquals(bits(0), liveSets.getLiveOut(b1));
+        assertEquals(bits(0), liveSets.getLiveIn(b2));
+        assertEquals(bits(0), liveSets.getLiveOut(b2));
+        assertEquals(bits(0), liveSets.getLiveIn(b3));
+        assertEquals(bits(), liveSets.getLiveOut(b3));
+    }
+
+    /**
+     * <pre>
+     * B0: v0 = ...                            -> B1
+     * B1: loop header                         -> B2, B3, B5
+     * B2:   use v0                            -> B3
+     * B3:                                     -> B2, B4
+     * B4:                                     -> B1
+     * B5: use v0
+     * </pre>
+     *
+     * The cycle between B2 and B3 inside the loop is irreducible.
+     */
+    @Test
+    public void testIrreducibleCycleInLoop() {
+        TestBlock b0 = block();
+        TestBlock b1 = block();
+        TestBlock b2 = block();
+        TestBlock b3 = block();
+        TestBlock b4 = block();
+        TestBlock b5 = block();
+        edges(b0, b1);
+        edges(b1, b2, b3, b5);
+        edges(b2, b3);
+        edges(b3, b2, b4);
+        edges(b4, b1);
+        loop(null, b1, b2, b3, b4);
+
+        int[][] gen = {{}, {}, {0}, {}, {}, {0}};
+        int[][] kill = {{0}, {}, {}, {}, {}, {}};
+        GlobalLiveSets liveSets = liveSets(gen, kill);
+        assertFalse(liveSets.computeLoopForest());
+        liveSets.computeFixedPoint();
+        for (TestBlock block : Arrays.asList(b1, b2, b3, b4)) {
+            assertEquals(bits(0), liveSets.getLiveIn(block));
+            assertEquals(bits(0), liveSets.getLiveOut(block));
+        }
+        assertEquals(bits(0), liveSets.getLiveIn(b5));
+    }
+}
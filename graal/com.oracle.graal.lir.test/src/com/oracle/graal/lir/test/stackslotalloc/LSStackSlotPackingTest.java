@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.test.stackslotalloc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import jdk.vm.ci.code.StackSlot;
+import jdk.vm.ci.meta.LIRKind;
+import jdk.vm.ci.meta.PlatformKind;
+
+import org.junit.Test;
+
+import com.oracle.graal.lir.stackslotalloc.LSStackSlotAllocator.FreeSlots;
+
+/**
+ * Tests the reuse of free stack slots of the linear scan stack slot allocator for smaller stack
+ * slots.
+ */
+public class LSStackSlotPackingTest {
+
+    private enum DummyPlatformKind implements PlatformKind {
+        Long;
+
+        private EnumKey<DummyPlatformKind> key = new EnumKey<>(this);
+
+        public Key getKey() {
+            return key;
+        }
+
+        public int getSizeInBytes() {
+            return 8;
+        }
+
+        public int getVectorLength() {
+            return 1;
+        }
+
+        public char getTypeChar() {
+            return 'l';
+        }
+    }
+
+    private static final LIRKind kind = LIRKind.value(DummyPlatformKind.Long);
+
+    private static final int WORD = 4;
+    private static final int DOUBLE_WORD = 8;
+
+    @Test
+    public void testSplitDoubleWord() {
+        FreeSlots freeSlots = new FreeSlots(true);
+        freeSlots.free(StackSlot.get(kind, 16, true), DOUBLE_WORD);
+
+        StackSlot first = freeSlots.take(WORD);
+        StackSlot second = freeSlots.take(WORD);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(16, first.getRawOffset());
+        assertEquals(16 + WORD, second.getRawOffset());
+        assertNull(freeSlots.take(WORD));
+        assertNull(freeSlots.take(DOUBLE_WORD));
+    }
+
+    @Test
+    public void testSplitIntoSmallerPieces() {
+        FreeSlots freeSlots = new FreeSlots(true);
+        freeSlots.free(StackSlot.get(kind, 32, true), DOUBLE_WORD);
+
+        assertEquals(32, freeSlots.take(2).getRawOffset());
+        assertEquals(32 + 2, freeSlots.take(2).getRawOffset());
+        assertEquals(32 + WORD, freeSlots.take(WORD).getRawOffset());
+        assertNull(freeSlots.take(1));
+    }
+
+    @Test
+    public void testNoSplitWithoutPacking() {
+        FreeSlots freeSlots = new FreeSlots(false);
+        freeSlots.free(StackSlot.get(kind, 16, true), DOUBLE_WORD);
+
+        assertNull(freeSlots.take(WORD));
+        assertEquals(16, freeSlots.take(DOUBLE_WORD).getRawOffset());
+    }
+}
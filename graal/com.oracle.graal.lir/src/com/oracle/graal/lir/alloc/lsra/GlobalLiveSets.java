@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.lsra;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+import jdk.vm.ci.code.BailoutException;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.common.cfg.Loop;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.Indent;
+
+/**
+ * Computes the global live sets, i.e., the values live at the start ({@code liveIn}) and at the
+ * end ({@code liveOut}) of each block, from the local live sets of the blocks: the values a block
+ * uses before defining them ({@code liveGen}) and the values it defines ({@code liveKill}).
+ * <p>
+ * The blocks are passed in linear scan order, so a block is at the index of its
+ * {@linkplain AbstractBlockBase#getLinearScanNumber() linear scan number}.
+ */
+public final class GlobalLiveSets {
+
+    private final List<? extends AbstractBlockBase<?>> blocks;
+    private final Collection<? extends Loop<?>> loops;
+    private final int liveSetSize;
+    private final BitSet[] liveGen;
+    private final BitSet[] liveKill;
+    private final BitSet[] liveIn;
+    private final BitSet[] liveOut;
+
+    public GlobalLiveSets(List<? extends AbstractBlockBase<?>> blocks, Collection<? extends Loop<?>> loops, int liveSetSize, BitSet[] liveGen, BitSet[] liveKill) {
+        assert liveGen.length == blocks.size() && liveKill.length == blocks.size();
+        this.blocks = blocks;
+        this.loops = loops;
+        this.liveSetSize = liveSetSize;
+        this.liveGen = liveGen;
+        this.liveKill = liveKill;
+        this.liveIn = new BitSet[blocks.size()];
+        this.liveOut = new BitSet[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            assert blocks.get(i).getLinearScanNumber() == i;
+            liveIn[i] = new BitSet(liveSetSize);
+            liveOut[i] = new BitSet(liveSetSize);
+        }
+    }
+
+    public BitSet getLiveIn(AbstractBlockBase<?> block) {
+        return liveIn[block.getLinearScanNumber()];
+    }
+
+    public BitSet getLiveOut(AbstractBlockBase<?> block) {
+        return liveOut[block.getLinearScanNumber()];
+    }
+
+    /**
+     * Performs a backward dataflow analysis to compute the global live sets, iterating until a
+     * fixed point is reached.
+     */
+    @SuppressWarnings("try")
+    public void computeFixedPoint() {
+        int numBlocks = blocks.size();
+        boolean changeOccurred;
+        boolean changeOccurredInBlock;
+        int iterationCount = 0;
+        BitSet scratch = new BitSet(liveSetSize); // scratch set for calculations
+
+        /*
+         * Perform a backward dataflow analysis to compute liveOut and liveIn for each block.
+         * The loop is executed until a fixpoint is reached (no changes in an iteration).
+         */
+        do {
+            changeOccurred = false;
+
+            try (Indent indent2 = Debug.logAndIndent("new iteration %d", iterationCount)) {
+
+                // iterate all blocks in reverse order
+                for (int i = numBlocks - 1; i >= 0; i--) {
+                    AbstractBlockBase<?> block = blocks.get(i);
+
+                    changeOccurredInBlock = false;
+
+                    /* liveOut(block) is the union of liveIn(sux), for successors sux of block. */
+                    if (block.getSuccessorCount() > 0) {
+                        scratch.clear();
+                        for (AbstractBlockBase<?> successor : block.getSuccessors()) {
+                            scratch.or(getLiveIn(successor));
+                        }
+
+                        if (!liveOut[i].equals(scratch)) {
+                            /*
+                             * A change occurred. Swap the old and new live out sets to avoid
+                             * copying.
+                             */
+                            BitSet temp = liveOut[i];
+                            liveOut[i] = scratch;
+                            scratch = temp;
+
+                            changeOccurred = true;
+                            changeOccurredInBlock = true;
+                        }
+                    }
+
+                    if (iterationCount == 0 || changeOccurredInBlock) {
+                        /*
+                         * liveIn(block) is the union of liveGen(block) with (liveOut(block) &
+                         * !liveKill(block)).
+                         *
+                         * Note: liveIn has to be computed only in first iteration or if liveOut
+                         * has changed!
+                         */
+                        BitSet in = liveIn[i];
+                        in.clear();
+                        in.or(liveOut[i]);
+                        in.andNot(liveKill[i]);
+                        in.or(liveGen[i]);
+
+                        if (Debug.isLogEnabled()) {
+                            Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), in, liveOut[i]);
+                        }
+                    }
+                }
+                iterationCount++;
+
+                if (changeOccurred && iterationCount > 50) {
+                    throw new BailoutException("too many iterations in computeGlobalLiveSets");
+                }
+            }
+        } while (changeOccurred);
+    }
+
+    /**
+     * Computes the global live sets for strict SSA form on a reducible control flow graph without
+     * iterating (see <a href="https://hal.inria.fr/inria-00558509">"Computing Liveness Sets for
+     * SSA-Form Programs"</a> by Brandner et al.).
+     * <p>
+     * The first pass visits the blocks in post order of the graph without loop back edges and
+     * computes the values that are live because of a use on a forward path. A value that is live
+     * at a loop header is live in all blocks of the loop, so the second pass adds the values that
+     * are live into the headers of all loops that contain a block to its live sets.
+     *
+     * @return {@code false} if the control flow graph has a cycle that does not go through a loop
+     *         back edge; the live sets are not modified in that case
+     */
+    public boolean computeLoopForest() {
+        List<AbstractBlockBase<?>> postOrder = forwardPostOrder();
+        if (postOrder == null) {
+            return false;
+        }
+
+        for (AbstractBlockBase<?> block : postOrder) {
+            int i = block.getLinearScanNumber();
+            for (AbstractBlockBase<?> successor : block.getSuccessors()) {
+                if (!isBackEdge(block, successor)) {
+                    liveOut[i].or(getLiveIn(successor));
+                }
+            }
+            liveIn[i].or(liveOut[i]);
+            liveIn[i].andNot(liveKill[i]);
+            liveIn[i].or(liveGen[i]);
+        }
+
+        BitSet[] liveInLoop = new BitSet[loops.size()];
+        for (Loop<?> loop : loops) {
+            liveInLoop[loop.getIndex()] = (BitSet) getLiveIn(loop.getHeader()).clone();
+        }
+        for (AbstractBlockBase<?> block : blocks) {
+            int i = block.getLinearScanNumber();
+            for (Loop<?> loop = block.getLoop(); loop != null; loop = loop.getParent()) {
+                liveIn[i].or(liveInLoop[loop.getIndex()]);
+                liveOut[i].or(liveInLoop[loop.getIndex()]);
+            }
+            if (Debug.isLogEnabled()) {
+                Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), liveIn[i], liveOut[i]);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBackEdge(AbstractBlockBase<?> block, AbstractBlockBase<?> successor) {
+        if (successor.isLoopHeader()) {
+            for (Loop<?> loop = block.getLoop(); loop != null; loop = loop.getParent()) {
+                if (loop == successor.getLoop()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes a post order of all blocks ignoring loop back edges.
+     *
+     * @return the blocks in post order or {@code null} if the graph without back edges is not
+     *         acyclic
+     */
+    private List<AbstractBlockBase<?>> forwardPostOrder() {
+        int numBlocks = blocks.size();
+        List<AbstractBlockBase<?>> postOrder = new ArrayList<>(numBlocks);
+        boolean[] visited = new boolean[numBlocks];
+        boolean[] finished = new boolean[numBlocks];
+        int[] nextSuccessor = new int[numBlocks];
+        Deque<AbstractBlockBase<?>> stack = new ArrayDeque<>();
+        for (AbstractBlockBase<?> root : blocks) {
+            if (visited[root.getLinearScanNumber()]) {
+                continue;
+            }
+            visited[root.getLinearScanNumber()] = true;
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                AbstractBlockBase<?> block = stack.peek();
+                int blockNum = block.getLinearScanNumber();
+                if (nextSuccessor[blockNum] < block.getSuccessorCount()) {
+                    AbstractBlockBase<?> successor = block.getSuccessors()[nextSuccessor[blockNum]++];
+                    int successorNum = successor.getLinearScanNumber();
+                    if (!isBackEdge(block, successor)) {
+                        if (!visited[successorNum]) {
+                            visited[successorNum] = true;
+                            stack.push(successor);
+                        } else if (!finished[successorNum]) {
+                            // irreducible cycle
+                            return null;
+                        }
+                    }
+                } else {
+                    stack.pop();
+                    finished[blockNum] = true;
+                    postOrder.add(block);
+                }
+            }
+        }
+        return postOrder;
+    }
+}
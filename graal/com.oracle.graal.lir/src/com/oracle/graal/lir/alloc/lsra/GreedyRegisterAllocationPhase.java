@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.lsra;
+
+import static jdk.vm.ci.code.CodeUtil.isOdd;
+import static jdk.vm.ci.code.ValueUtil.asRegister;
+import static jdk.vm.ci.code.ValueUtil.isRegister;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import jdk.vm.ci.code.Register;
+import jdk.vm.ci.code.TargetDescription;
+
+import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
+import com.oracle.graal.compiler.common.util.Util;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.debug.Indent;
+import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.alloc.OutOfRegistersException;
+import com.oracle.graal.lir.alloc.lsra.Interval.RegisterPriority;
+import com.oracle.graal.lir.alloc.lsra.Interval.UsePosList;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+import com.oracle.graal.lir.phases.AllocationPhase;
+
+/**
+ * Assigns locations to the intervals built by the {@link LinearScanLifetimeAnalysisPhase} in order
+ * of decreasing spill weight instead of in order of their start positions.
+ * <p>
+ * The spill weight of an interval is the sum of the probabilities of the blocks containing its use
+ * positions divided by its length. An interval gets a register that is free during its whole
+ * lifetime if there is one. Otherwise it evicts the intervals with a lower spill weight from a
+ * register; evicted intervals are allocated again later. If that is not possible either, the
+ * interval is split: the part up to the point where a register becomes busy is assigned that
+ * register, or the part before the first use that needs a register is spilled. The remainder is
+ * allocated again with a new weight. An interval that only covers a single use can not be split any
+ * further and evicts any other interval that is not that short.
+ * <p>
+ * Moves between split children within a block are inserted once all locations are known. Moves at
+ * block boundaries are inserted by the {@link LinearScanResolveDataFlowPhase} as for the
+ * {@link LinearScanWalker}.
+ */
+public final class GreedyRegisterAllocationPhase extends AllocationPhase {
+
+    private static final DebugMetric metricEvictions = Debug.metric("GreedyRAEvictions");
+    private static final DebugMetric metricSplits = Debug.metric("GreedyRASplits");
+    private static final DebugMetric metricSpills = Debug.metric("GreedyRASpills");
+
+    /**
+     * The number of times an interval can be evicted before it is split instead of evicting other
+     * intervals. This prevents intervals of similar weight from evicting each other indefinitely.
+     */
+    private static final int MAX_EVICTIONS = 4;
+
+    private final LinearScan allocator;
+
+    /**
+     * The intervals assigned to each register, indexed by register number.
+     */
+    private List<Interval>[] assigned;
+
+    /**
+     * The register assigned to an interval, indexed by operand number.
+     */
+    private Register[] registers;
+    private double[] weights;
+    private int[] evictions;
+
+    private PriorityQueue<Interval> queue;
+
+    /**
+     * Split children that start within a block and need a move from the preceding split child.
+     */
+    private List<Interval> moveTargets;
+
+    GreedyRegisterAllocationPhase(LinearScan allocator) {
+        this.allocator = allocator;
+    }
+
+    @Override
+    protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder, AllocationContext context) {
+        allocator.printIntervals("Before register allocation");
+        allocateRegisters();
+        allocator.printIntervals("After register allocation");
+    }
+
+    @SuppressWarnings("try")
+    void allocateRegisters() {
+        try (Indent indent = Debug.logAndIndent("greedy allocate registers")) {
+            assigned = Util.uncheckedCast(new List<?>[allocator.getRegisters().length]);
+            for (int i = 0; i < assigned.length; i++) {
+                assigned[i] = new ArrayList<>();
+            }
+            int size = allocator.intervals().length;
+            registers = new Register[size];
+            weights = new double[size];
+            evictions = new int[size];
+            queue = new PriorityQueue<>((Interval a, Interval b) -> {
+                int result = Double.compare(weight(b), weight(a));
+                if (result == 0) {
+                    result = a.from() - b.from();
+                }
+                return result == 0 ? a.operandNumber - b.operandNumber : result;
+            });
+            moveTargets = new ArrayList<>();
+
+            Interval variableIntervals = allocator.createUnhandledLists(LinearScan.IS_PRECOLORED_INTERVAL, LinearScan.IS_VARIABLE_INTERVAL).second;
+            for (Interval interval = variableIntervals; interval != Interval.EndMarker; interval = interval.next) {
+                if (interval.location() == null) {
+                    enqueue(interval);
+                } else {
+                    splitStackInterval(interval);
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                allocate(queue.poll());
+            }
+
+            for (Register reg : allocator.getRegisters()) {
+                for (Interval interval : assigned[reg.number]) {
+                    interval.assignLocation(reg.asValue(interval.kind()));
+                }
+            }
+            insertMoves();
+        }
+    }
+
+    private double weight(Interval interval) {
+        return weights[interval.operandNumber];
+    }
+
+    private void ensureCapacity(Interval interval) {
+        if (interval.operandNumber >= weights.length) {
+            int size = allocator.intervals().length;
+            registers = Arrays.copyOf(registers, size);
+            weights = Arrays.copyOf(weights, size);
+            evictions = Arrays.copyOf(evictions, size);
+        }
+    }
+
+    private void updateWeight(Interval interval) {
+        ensureCapacity(interval);
+        weights[interval.operandNumber] = spillWeight(interval);
+    }
+
+    private double spillWeight(Interval interval) {
+        if (interval.to() - interval.from() <= 2 && interval.firstUsage(RegisterPriority.MustHaveRegister) != Integer.MAX_VALUE) {
+            // cannot be split any further
+            return Double.POSITIVE_INFINITY;
+        }
+        double useWeight = 0;
+        UsePosList usePosList = interval.usePosList();
+        for (int i = 0; i < usePosList.size(); i++) {
+            if (usePosList.registerPriority(i).greaterEqual(RegisterPriority.ShouldHaveRegister)) {
+                useWeight += allocator.blockForId(usePosList.usePos(i)).probability();
+            }
+        }
+        int length = 0;
+        for (Range range = interval.first(); range != Range.EndMarker; range = range.next) {
+            length += range.to - range.from;
+        }
+        return useWeight / length;
+    }
+
+    private void enqueue(Interval interval) {
+        updateWeight(interval);
+        queue.add(interval);
+    }
+
+    /**
+     * Intervals of method parameters start on the stack. Split them before their first use that
+     * should have a register.
+     */
+    private void splitStackInterval(Interval interval) {
+        int firstUse = interval.firstUsage(RegisterPriority.ShouldHaveRegister);
+        if (firstUse < interval.to()) {
+            int splitPos = findSplitPos(interval, interval.from() + 1, firstUse);
+            assert splitPos != -1 : "cannot split stack interval " + interval;
+            enqueue(split(interval, splitPos));
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void allocate(Interval interval) {
+        try (Indent indent = Debug.logAndIndent("allocating %s (weight %f)", interval, weight(interval))) {
+            Register[] candidates = allocator.getRegisterAllocationConfig().getAllocatableRegisters(interval.kind().getPlatformKind()).allocatableRegisters;
+            Register reg = findFreeRegister(interval, candidates);
+            if (reg == null && interval.firstUsage(RegisterPriority.ShouldHaveRegister) != Integer.MAX_VALUE &&
+                            (evictions[interval.operandNumber] <= MAX_EVICTIONS || weight(interval) == Double.POSITIVE_INFINITY)) {
+                reg = evictForRegister(interval, candidates);
+            }
+            if (reg != null) {
+                assign(interval, reg);
+            } else if (interval.firstUsage(RegisterPriority.MustHaveRegister) == Integer.MAX_VALUE) {
+                spill(interval);
+            } else {
+                splitInterval(interval, candidates);
+            }
+        }
+    }
+
+    private void assign(Interval interval, Register reg) {
+        if (Debug.isLogEnabled()) {
+            Debug.log("assigning %s to %s", reg, interval);
+        }
+        registers[interval.operandNumber] = reg;
+        assigned[reg.number].add(interval);
+    }
+
+    private void spill(Interval interval) {
+        if (Debug.isLogEnabled()) {
+            Debug.log("spilling %s", interval);
+        }
+        allocator.assignSpillSlot(interval);
+        allocator.changeSpillState(interval, interval.from());
+        metricSpills.increment();
+    }
+
+    /**
+     * Gets the first position at which {@code reg} is not available for {@code interval} because
+     * of a fixed interval or an interval that has already been assigned {@code reg}.
+     */
+    private int freeUntil(Register reg, Interval interval) {
+        int freeUntil = Integer.MAX_VALUE;
+        Interval fixed = allocator.intervalFor(reg.number);
+        if (fixed != null) {
+            int pos = fixed.intersectsAt(interval);
+            if (pos != -1) {
+                freeUntil = pos;
+            }
+        }
+        for (Interval other : assigned[reg.number]) {
+            int pos = other.intersectsAt(interval);
+            if (pos != -1 && pos < freeUntil) {
+                freeUntil = pos;
+            }
+        }
+        return freeUntil;
+    }
+
+    private Register findFreeRegister(Interval interval, Register[] candidates) {
+        Register hint = hintRegister(interval);
+        Register result = null;
+        for (Register reg : candidates) {
+            if (freeUntil(reg, interval) == Integer.MAX_VALUE) {
+                if (reg.equals(hint)) {
+                    return reg;
+                } else if (result == null) {
+                    result = reg;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Register hintRegister(Interval interval) {
+        Interval hint = interval.locationHint(false);
+        if (hint == null) {
+            return null;
+        }
+        if (hint.location() != null && isRegister(hint.location())) {
+            return asRegister(hint.location());
+        }
+        Register reg = hint.operandNumber < registers.length ? registers[hint.operandNumber] : null;
+        if (reg == null) {
+            for (Interval child : hint.getSplitChildren()) {
+                if (child.operandNumber < registers.length && registers[child.operandNumber] != null) {
+                    return registers[child.operandNumber];
+                }
+            }
+        }
+        return reg;
+    }
+
+    /**
+     * Finds the register whose intersecting intervals all have a lower weight than
+     * {@code interval} and where the heaviest of them is lightest, and puts these intervals back
+     * into the queue.
+     */
+    private Register evictForRegister(Interval interval, Register[] candidates) {
+        double weight = weight(interval);
+        Register best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Register reg : candidates) {
+            Interval fixed = allocator.intervalFor(reg.number);
+            if (fixed != null && fixed.intersects(interval)) {
+                continue;
+            }
+            double cost = 0;
+            for (Interval other : assigned[reg.number]) {
+                if (other.intersects(interval)) {
+                    if (weight(other) >= weight) {
+                        cost = Double.MAX_VALUE;
+                        break;
+                    }
+                    cost = Math.max(cost, weight(other));
+                }
+            }
+            if (cost < bestCost) {
+                best = reg;
+                bestCost = cost;
+            }
+        }
+        if (best != null) {
+            for (Iterator<Interval> iter = assigned[best.number].iterator(); iter.hasNext();) {
+                Interval other = iter.next();
+                if (other.intersects(interval)) {
+                    if (Debug.isLogEnabled()) {
+                        Debug.log("evicting %s from %s", other, best);
+                    }
+                    iter.remove();
+                    registers[other.operandNumber] = null;
+                    evictions[other.operandNumber]++;
+                    queue.add(other);
+                    metricEvictions.increment();
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Splits an interval that did not get a register. The head of the interval is either assigned
+     * the register that is free the longest, spilled up to the first position that must have a
+     * register or isolated around that position. The tail is put back into the queue.
+     */
+    private void splitInterval(Interval interval, Register[] candidates) {
+        int firstUse = interval.firstUsage(RegisterPriority.MustHaveRegister);
+
+        Register reg = null;
+        int freeUntil = firstUse;
+        for (Register candidate : candidates) {
+            int pos = freeUntil(candidate, interval);
+            if (pos > freeUntil) {
+                reg = candidate;
+                freeUntil = pos;
+            }
+        }
+        if (reg != null) {
+            int minSplitPos = interval.previousUsage(RegisterPriority.ShouldHaveRegister, freeUntil - 1) + 1;
+            int splitPos = findSplitPos(interval, minSplitPos, freeUntil);
+            if (splitPos != -1) {
+                enqueue(split(interval, splitPos));
+                assign(interval, reg);
+                return;
+            }
+        }
+
+        int splitPos = findSplitPos(interval, interval.from() + 1, firstUse);
+        if (splitPos != -1) {
+            enqueue(split(interval, splitPos));
+            spill(interval);
+            return;
+        }
+
+        splitPos = findSplitPos(interval, firstUse + 1, firstUse + 1);
+        if (splitPos != -1) {
+            enqueue(split(interval, splitPos));
+            enqueue(interval);
+            return;
+        }
+
+        String description = "Cannot find a register for interval (" + interval + ") at its first usage " + firstUse + "; candidates: " + Arrays.toString(candidates);
+        allocator.assignSpillSlot(interval);
+        Debug.dump(allocator.getLIR(), description);
+        allocator.printIntervals(description);
+        throw new OutOfRegistersException("GreedyRegisterAllocation: no register found", description);
+    }
+
+    /**
+     * Finds a position between {@code minSplitPos} and {@code maxSplitPos} at which
+     * {@code interval} can be split. Block boundaries with a lower loop depth are preferred.
+     *
+     * @return the split position or -1 if there is no valid position in the range
+     */
+    private int findSplitPos(Interval interval, int minSplitPos, int maxSplitPos) {
+        int min = Math.max(minSplitPos, interval.from() + 1);
+        int max = Math.min(maxSplitPos, interval.to() - 1);
+        if (min > max) {
+            return -1;
+        }
+
+        int splitPos = max;
+        AbstractBlockBase<?> maxBlock = allocator.blockForId(max);
+        int minLoopDepth = maxBlock.getLoopDepth();
+        for (int i = maxBlock.getLinearScanNumber(); i > 0 && minLoopDepth > 0; i--) {
+            AbstractBlockBase<?> block = allocator.blockAt(i);
+            int blockBegin = allocator.getFirstLirInstructionId(block);
+            if (blockBegin < min) {
+                break;
+            }
+            int loopDepth = Math.min(block.getLoopDepth(), allocator.blockAt(i - 1).getLoopDepth());
+            if (blockBegin <= max && loopDepth < minLoopDepth) {
+                minLoopDepth = loopDepth;
+                splitPos = blockBegin;
+            }
+        }
+
+        if (!allocator.isBlockBegin(splitPos)) {
+            // move position before actual instruction (odd opId)
+            splitPos = (splitPos - 1) | 1;
+            if (splitPos + 1 > allocator.maxOpId() || allocator.isBlockBegin(splitPos + 1)) {
+                // cannot insert a move before a label or after the last instruction
+                splitPos -= 2;
+            }
+        }
+        assert allocator.isBlockBegin(splitPos) || isOdd(splitPos) : "split pos must be odd when not on block boundary";
+        return splitPos >= min ? splitPos : -1;
+    }
+
+    private Interval split(Interval interval, int splitPos) {
+        boolean moveNecessary = !allocator.isBlockBegin(splitPos) && !interval.hasHoleBetween(splitPos - 1, splitPos);
+        Interval splitPart = interval.split(splitPos, allocator);
+        if (moveNecessary) {
+            moveTargets.add(splitPart);
+        }
+        updateWeight(interval);
+        metricSplits.increment();
+        if (Debug.isLogEnabled()) {
+            Debug.log("split at %d: %s and %s", splitPos, interval.logString(allocator), splitPart.logString(allocator));
+        }
+        return splitPart;
+    }
+
+    private void insertMoves() {
+        Collections.sort(moveTargets, (Interval a, Interval b) -> a.from() - b.from());
+        MoveResolver moveResolver = allocator.createMoveResolver();
+        for (Interval target : moveTargets) {
+            Interval source = target.getSplitChildBeforeOpId(target.from());
+            assert source.to() == target.from() : "no move needed between " + source + " and " + target;
+            insertMove(moveResolver, target.from(), source, target);
+        }
+        moveResolver.resolveAndAppendMoves();
+    }
+
+    private void insertMove(MoveResolver moveResolver, int operandId, Interval srcIt, Interval dstIt) {
+        int opId = (operandId + 1) & ~1;
+        AbstractBlockBase<?> opBlock = allocator.blockForId(opId);
+        assert opId > 0 && allocator.blockForId(opId - 2) == opBlock : "cannot insert move at block boundary";
+
+        List<LIRInstruction> instructions = allocator.getLIR().getLIRforBlock(opBlock);
+        int index = (opId - instructions.get(0).id()) >> 1;
+        while (instructions.get(index).id() != opId) {
+            index++;
+        }
+        assert 1 <= index && index < instructions.size() : "index out of bounds";
+
+        moveResolver.moveInsertPosition(instructions, index);
+        moveResolver.addMapping(srcIt, dstIt);
+    }
+}
@@ -51,6 +51,7 @@ import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.cfg.BlockMap;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.Indent;
 import com.oracle.graal.lir.LIR;
 import com.oracle.graal.lir.LIRInstruction;
@@ -60,9 +61,11 @@ import com.oracle.graal.lir.ValueConsumer;
 import com.oracle.graal.lir.Variable;
 import com.oracle.graal.lir.VirtualStackSlot;
 import com.oracle.graal.lir.alloc.lsra.Interval.RegisterBinding;
+import com.oracle.graal.lir.alloc.lsra.Interval.SpillState;
 import com.oracle.graal.lir.framemap.FrameMapBuilder;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
+import com.oracle.graal.lir.phases.AllocationPhase;
 import com.oracle.graal.lir.phases.AllocationPhase.AllocationContext;
 import com.oracle.graal.options.NestedBooleanOptionValue;
 import com.oracle.graal.options.Option;
@@ -119,6 +122,8 @@ public class LinearScan {
     public static final int DOMINATOR_SPILL_MOVE_ID = -2;
     private static final int SPLIT_INTERVALS_CAPACITY_RIGHT_SHIFT = 1;
 
+    private static final DebugMetric rematerializedSpills = Debug.metric("LSRA[rematerializedSpills]");
+
     private final LIR ir;
     private final FrameMapBuilder frameMapBuilder;
     private final RegisterAttributes[] registerAttributes;
@@ -172,6 +177,12 @@ public class LinearScan {
     private final int firstVariableNumber;
     private final boolean neverSpillConstants;
 
+    /**
+     * Use the {@link GreedyRegisterAllocationPhase greedy} allocator instead of the
+     * {@link LinearScanWalker linear scan walker} to assign locations to intervals.
+     */
+    private boolean greedyAllocation;
+
     protected LinearScan(TargetDescription target, LIRGenerationResult res, MoveFactory spillMoveFactory, RegisterAllocationConfig regAllocConfig, List<? extends AbstractBlockBase<?>> sortedBlocks,
                     boolean neverSpillConstants) {
         this.ir = res.getLIR();
@@ -289,6 +300,7 @@ public class LinearScan {
          * spilled) or allocate a new spill slot.
          */
         if (interval.canMaterialize()) {
+            rematerializedSpills.increment();
             interval.assignLocation(Value.ILLEGAL);
         } else if (interval.spillSlot() != null) {
             interval.assignLocation(interval.spillSlot());
@@ -299,6 +311,62 @@ public class LinearScan {
         }
     }
 
+    /**
+     * Updates the spill state of an interval when a part of it is assigned to a stack slot at
+     * {@code spillPos}. Called during register allocation.
+     */
+    void changeSpillState(Interval interval, int spillPos) {
+        switch (interval.spillState()) {
+            case NoSpillStore: {
+                int defLoopDepth = blockForId(interval.spillDefinitionPos()).getLoopDepth();
+                int spillLoopDepth = blockForId(spillPos).getLoopDepth();
+
+                if (defLoopDepth < spillLoopDepth) {
+                    /*
+                     * The loop depth of the spilling position is higher then the loop depth at the
+                     * definition of the interval. Move write to memory out of loop.
+                     */
+                    if (LinearScan.Options.LIROptLSRAOptimizeSpillPosition.getValue()) {
+                        // find best spill position in dominator the tree
+                        interval.setSpillState(SpillState.SpillInDominator);
+                    } else {
+                        // store at definition of the interval
+                        interval.setSpillState(SpillState.StoreAtDefinition);
+                    }
+                } else {
+                    /*
+                     * The interval is currently spilled only once, so for now there is no reason to
+                     * store the interval at the definition.
+                     */
+                    interval.setSpillState(SpillState.OneSpillStore);
+                }
+                break;
+            }
+
+            case OneSpillStore: {
+                if (LinearScan.Options.LIROptLSRAOptimizeSpillPosition.getValue()) {
+                    // the interval is spilled more then once
+                    interval.setSpillState(SpillState.SpillInDominator);
+                } else {
+                    // It is better to store it to memory at the definition.
+                    interval.setSpillState(SpillState.StoreAtDefinition);
+                }
+                break;
+            }
+
+            case SpillInDominator:
+            case StoreAtDefinition:
+            case StartInMemory:
+            case NoOptimization:
+            case NoDefinitionFound:
+                // nothing to do
+                break;
+
+            default:
+                throw new BailoutException("other states not allowed at this time");
+        }
+    }
+
     /**
      * Map from {@linkplain #operandNumber(Value) operand numbers} to intervals.
      */
@@ -685,7 +753,10 @@ public class LinearScan {
         return new LinearScanLifetimeAnalysisPhase(this);
     }
 
-    protected LinearScanRegisterAllocationPhase createRegisterAllocationPhase() {
+    protected AllocationPhase createRegisterAllocationPhase() {
+        if (greedyAllocation) {
+            return new GreedyRegisterAllocationPhase(this);
+        }
         return new LinearScanRegisterAllocationPhase(this);
     }
 
@@ -921,4 +992,8 @@ public class LinearScan {
         return neverSpillConstants;
     }
 
+    void setGreedyAllocation(boolean greedyAllocation) {
+        this.greedyAllocation = greedyAllocation;
+    }
+
 }
@@ -35,8 +35,10 @@ import java.util.ArrayDeque;
 import java.util.BitSet;
 import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import jdk.vm.ci.code.BailoutException;
 import jdk.vm.ci.code.Register;
@@ -54,6 +56,7 @@ import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.util.BitMap2D;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.Indent;
 import com.oracle.graal.lir.InstructionValueConsumer;
 import com.oracle.graal.lir.LIRInstruction;
@@ -67,11 +70,33 @@ import com.oracle.graal.lir.alloc.lsra.Interval.SpillState;
 import com.oracle.graal.lir.alloc.lsra.LinearScan.BlockData;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.phases.AllocationPhase;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
 
 public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
 
+    private static final DebugMetric rematerializedCopies = Debug.metric("LSRA[rematerializedCopies]");
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Compute global live sets in two passes over the loop nesting forest instead of iterating to a fixed point.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LSRALoopForestLiveness = new OptionValue<>(true);
+
+        @Option(help = "Re-materialize copies of re-materializable values instead of spilling them.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> LSRARematerializeCopies = new OptionValue<>(true);
+        // @formatter:on
+    }
+
     protected final LinearScan allocator;
 
+    /**
+     * Set by {@link #computeLocalLiveSets()} if a variable is defined in more than one block. The
+     * loop forest liveness computation is only valid if every variable is defined in a single
+     * block.
+     */
+    private boolean variablesDefinedInMultipleBlocks;
+
     /**
      * @param linearScan
      */
@@ -86,6 +111,9 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
         computeLocalLiveSets();
         computeGlobalLiveSets();
         buildIntervals();
+        if (Options.LSRARematerializeCopies.getValue()) {
+            propagateMaterializationValues();
+        }
     }
 
     /**
@@ -155,6 +183,7 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
         int liveSize = allocator.liveSetSize();
 
         intervalInLoop = new BitMap2D(allocator.operandSize(), allocator.numLoops());
+        final BitSet definedVariables = new BitSet(liveSize);
 
         // iterate all blocks
         for (final AbstractBlockBase<?> block : allocator.sortedBlocks()) {
@@ -198,6 +227,10 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
                 ValueConsumer defConsumer = (operand, mode, flags) -> {
                     if (isVariable(operand)) {
                         int varNum = allocator.operandNumber(operand);
+                        if (!liveKill.get(varNum) && definedVariables.get(varNum)) {
+                            variablesDefinedInMultipleBlocks = true;
+                        }
+                        definedVariables.set(varNum);
                         liveKill.set(varNum);
                         if (Debug.isLogEnabled()) {
                             Debug.log("liveKill for operand %d(%s)", varNum, operand);
@@ -275,85 +308,24 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
     }
 
     /**
-     * Performs a backward dataflow analysis to compute global live sets (i.e.
-     * {@link BlockData#liveIn} and {@link BlockData#liveOut}) for each block.
+     * Computes global live sets (i.e. {@link BlockData#liveIn} and {@link BlockData#liveOut}) for
+     * each block.
      */
     @SuppressWarnings("try")
     protected void computeGlobalLiveSets() {
         try (Indent indent = Debug.logAndIndent("compute global live sets")) {
             int numBlocks = allocator.blockCount();
-            boolean changeOccurred;
-            boolean changeOccurredInBlock;
-            int iterationCount = 0;
-            BitSet liveOut = new BitSet(allocator.liveSetSize()); // scratch set for calculations
-
-            /*
-             * Perform a backward dataflow analysis to compute liveOut and liveIn for each block.
-             * The loop is executed until a fixpoint is reached (no changes in an iteration).
-             */
-            do {
-                changeOccurred = false;
-
-                try (Indent indent2 = Debug.logAndIndent("new iteration %d", iterationCount)) {
-
-                    // iterate all blocks in reverse order
-                    for (int i = numBlocks - 1; i >= 0; i--) {
-                        AbstractBlockBase<?> block = allocator.blockAt(i);
-                        BlockData blockSets = allocator.getBlockData(block);
-
-                        changeOccurredInBlock = false;
-
-                        /* liveOut(block) is the union of liveIn(sux), for successors sux of block. */
-                        int n = block.getSuccessorCount();
-                        if (n > 0) {
-                            liveOut.clear();
-                            // block has successors
-                            if (n > 0) {
-                                for (AbstractBlockBase<?> successor : block.getSuccessors()) {
-                                    liveOut.or(allocator.getBlockData(successor).liveIn);
-                                }
-                            }
-
-                            if (!blockSets.liveOut.equals(liveOut)) {
-                                /*
-                                 * A change occurred. Swap the old and new live out sets to avoid
-                                 * copying.
-                                 */
-                                BitSet temp = blockSets.liveOut;
-                                blockSets.liveOut = liveOut;
-                                liveOut = temp;
-
-                                changeOccurred = true;
-                                changeOccurredInBlock = true;
-                            }
-                        }
-
-                        if (iterationCount == 0 || changeOccurredInBlock) {
-                            /*
-                             * liveIn(block) is the union of liveGen(block) with (liveOut(block) &
-                             * !liveKill(block)).
-                             * 
-                             * Note: liveIn has to be computed only in first iteration or if liveOut
-                             * has changed!
-                             */
-                            BitSet liveIn = blockSets.liveIn;
-                            liveIn.clear();
-                            liveIn.or(blockSets.liveOut);
-                            liveIn.andNot(blockSets.liveKill);
-                            liveIn.or(blockSets.liveGen);
-
-                            if (Debug.isLogEnabled()) {
-                                Debug.log("block %d: livein = %s,  liveout = %s", block.getId(), liveIn, blockSets.liveOut);
-                            }
-                        }
-                    }
-                    iterationCount++;
-
-                    if (changeOccurred && iterationCount > 50) {
-                        throw new BailoutException("too many iterations in computeGlobalLiveSets");
-                    }
-                }
-            } while (changeOccurred);
+            GlobalLiveSets liveSets = createGlobalLiveSets();
+            if (!Options.LSRALoopForestLiveness.getValue() || variablesDefinedInMultipleBlocks || !liveSets.computeLoopForest()) {
+                liveSets.computeFixedPoint();
+            } else if (DetailedAsserts.getValue()) {
+                verifyLoopForestLiveSets(liveSets);
+            }
+            for (AbstractBlockBase<?> block : allocator.sortedBlocks()) {
+                BlockData blockSets = allocator.getBlockData(block);
+                blockSets.liveIn = liveSets.getLiveIn(block);
+                blockSets.liveOut = liveSets.getLiveOut(block);
+            }
 
             if (DetailedAsserts.getValue()) {
                 verifyLiveness();
@@ -371,6 +343,31 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
         }
     }
 
+    private GlobalLiveSets createGlobalLiveSets() {
+        List<? extends AbstractBlockBase<?>> blocks = allocator.sortedBlocks();
+        BitSet[] liveGen = new BitSet[blocks.size()];
+        BitSet[] liveKill = new BitSet[blocks.size()];
+        for (AbstractBlockBase<?> block : blocks) {
+            BlockData blockSets = allocator.getBlockData(block);
+            liveGen[block.getLinearScanNumber()] = blockSets.liveGen;
+            liveKill[block.getLinearScanNumber()] = blockSets.liveKill;
+        }
+        return new GlobalLiveSets(blocks, allocator.getLIR().getControlFlowGraph().getLoops(), allocator.liveSetSize(), liveGen, liveKill);
+    }
+
+    /**
+     * Checks that the fixed point iteration computes the same live sets as
+     * {@link GlobalLiveSets#computeLoopForest()}.
+     */
+    private void verifyLoopForestLiveSets(GlobalLiveSets liveSets) {
+        GlobalLiveSets fixedPoint = createGlobalLiveSets();
+        fixedPoint.computeFixedPoint();
+        for (AbstractBlockBase<?> block : allocator.sortedBlocks()) {
+            assert liveSets.getLiveIn(block).equals(fixedPoint.getLiveIn(block)) : "liveIn of " + block + " differs: " + liveSets.getLiveIn(block) + " != " + fixedPoint.getLiveIn(block);
+            assert liveSets.getLiveOut(block).equals(fixedPoint.getLiveOut(block)) : "liveOut of " + block + " differs: " + liveSets.getLiveOut(block) + " != " + fixedPoint.getLiveOut(block);
+        }
+    }
+
     @SuppressWarnings("try")
     protected void reportFailure(int numBlocks) {
         try (Scope s = Debug.forceLog()) {
@@ -828,24 +825,75 @@ public class LinearScanLifetimeAnalysisPhase extends AllocationPhase {
         if (op instanceof LoadConstantOp) {
             LoadConstantOp move = (LoadConstantOp) op;
 
-            if (!allocator.neverSpillConstants()) {
-                /*
-                 * Check if the interval has any uses which would accept an stack location (priority
-                 * == ShouldHaveRegister). Rematerialization of such intervals can result in a
-                 * degradation, because rematerialization always inserts a constant load, even if
-                 * the value is not needed in a register.
-                 */
-                Interval.UsePosList usePosList = interval.usePosList();
-                int numUsePos = usePosList.size();
-                for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
-                    Interval.RegisterPriority priority = usePosList.registerPriority(useIdx);
-                    if (priority == Interval.RegisterPriority.ShouldHaveRegister) {
-                        return null;
-                    }
-                }
+            if (!allocator.neverSpillConstants() && hasStackUsePositions(interval)) {
+                return null;
             }
             return move.getConstant();
         }
         return null;
     }
+
+    /**
+     * Checks if the interval has any uses which would accept an stack location (priority ==
+     * ShouldHaveRegister). Rematerialization of such intervals can result in a degradation, because
+     * rematerialization always inserts a constant load, even if the value is not needed in a
+     * register.
+     */
+    private static boolean hasStackUsePositions(Interval interval) {
+        Interval.UsePosList usePosList = interval.usePosList();
+        int numUsePos = usePosList.size();
+        for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
+            Interval.RegisterPriority priority = usePosList.registerPriority(useIdx);
+            if (priority == Interval.RegisterPriority.ShouldHaveRegister) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes the destination of a {@link ValueMoveOp} re-materializable if its source is known to
+     * hold a constant. Without this, a copy of a constant (e.g. introduced for a phi input or a
+     * fixed register hint) is spilled to a stack slot even though the constant it holds could
+     * simply be loaded again. The source itself need not be re-materializable: the move is a use
+     * that accepts a stack slot, so a {@link LoadConstantOp} whose only use is a copy never is.
+     *
+     * Instructions are visited in linear scan order, in which a definition precedes the
+     * definitions of its copies, so chains of copies are handled in a single pass.
+     */
+    protected void propagateMaterializationValues() {
+        Map<Interval, Constant> constants = new HashMap<>();
+        for (AbstractBlockBase<?> block : allocator.sortedBlocks()) {
+            for (LIRInstruction op : allocator.getLIR().getLIRforBlock(block)) {
+                if (op instanceof LoadConstantOp) {
+                    LoadConstantOp load = (LoadConstantOp) op;
+                    if (isVariable(load.getResult())) {
+                        Interval interval = allocator.intervalFor(load.getResult());
+                        if (interval.isDefinedOnce()) {
+                            constants.put(interval, load.getConstant());
+                        }
+                    }
+                } else if (op instanceof ValueMoveOp) {
+                    ValueMoveOp move = (ValueMoveOp) op;
+                    if (isVariable(move.getInput()) && isVariable(move.getResult())) {
+                        Interval from = allocator.intervalFor(move.getInput());
+                        Interval to = allocator.intervalFor(move.getResult());
+                        Constant value = from.canMaterialize() ? from.getMaterializedValue() : constants.get(from);
+                        if (value == null || !to.isDefinedOnce()) {
+                            continue;
+                        }
+                        constants.put(to, value);
+                        if (!to.canMaterialize() && (allocator.neverSpillConstants() || !hasStackUsePositions(to))) {
+                            if (to.propagateMaterializationValue(value)) {
+                                rematerializedCopies.increment();
+                                if (Debug.isLogEnabled()) {
+                                    Debug.log("copy %s of %s is re-materializable", to, from);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
 }
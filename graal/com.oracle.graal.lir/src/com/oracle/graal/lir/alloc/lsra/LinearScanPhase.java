@@ -36,16 +36,27 @@ import jdk.vm.ci.code.TargetDescription;
 public final class LinearScanPhase extends AllocationPhase {
 
     private boolean neverSpillConstants;
+    private boolean greedyAllocation;
 
     public void setNeverSpillConstants(boolean neverSpillConstants) {
         this.neverSpillConstants = neverSpillConstants;
     }
 
+    /**
+     * Assigns registers with the {@link GreedyRegisterAllocationPhase greedy} allocator instead of
+     * the linear scan walker. Lifetime analysis, data flow resolution and spill move optimization
+     * are shared by both.
+     */
+    public void setGreedyAllocation(boolean greedyAllocation) {
+        this.greedyAllocation = greedyAllocation;
+    }
+
     @Override
     protected <B extends AbstractBlockBase<B>> void run(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder, AllocationContext context) {
         MoveFactory spillMoveFactory = context.spillMoveFactory;
         RegisterAllocationConfig registerAllocationConfig = context.registerAllocationConfig;
         final LinearScan allocator = new SSALinearScan(target, lirGenRes, spillMoveFactory, registerAllocationConfig, linearScanOrder, neverSpillConstants);
+        allocator.setGreedyAllocation(greedyAllocation);
         allocator.allocate(target, lirGenRes, codeEmittingOrder, linearScanOrder, spillMoveFactory, registerAllocationConfig);
     }
 }
@@ -47,6 +47,7 @@ import com.oracle.graal.lir.LIRInstruction;
 public class MoveResolver {
 
     private static final DebugMetric cycleBreakingSlotsAllocated = Debug.metric("LSRA[cycleBreakingSlotsAllocated]");
+    private static final DebugMetric rematerializedReloads = Debug.metric("LSRA[rematerializedReloads]");
 
     private final LinearScan allocator;
 
@@ -450,6 +451,7 @@ public class MoveResolver {
         }
         if (isIllegal(fromInterval.location()) && fromInterval.canMaterialize()) {
             // Instead of a reload, re-materialize the value
+            rematerializedReloads.increment();
             Constant rematValue = fromInterval.getMaterializedValue();
             addMapping(rematValue, toInterval);
             return;
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.lir.alloc.trace;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.oracle.graal.lir.VirtualStackSlot;
+import com.oracle.graal.lir.framemap.FrameMap;
+import com.oracle.graal.lir.framemap.FrameMapBuilderTool;
+import com.oracle.graal.lir.gen.LIRGenerationResult;
+
+import jdk.vm.ci.code.CallingConvention;
+import jdk.vm.ci.code.CodeCacheProvider;
+import jdk.vm.ci.code.RegisterConfig;
+import jdk.vm.ci.common.JVMCIError;
+import jdk.vm.ci.meta.LIRKind;
+
+/**
+ * A {@link FrameMapBuilderTool} used by a trace that is allocated concurrently with other traces.
+ * Spill slots are handed out as {@link ProvisionalStackSlot provisional slots} which are only
+ * backed by real slots of the underlying frame map builder when they are {@link #commit committed}.
+ * Committing the traces in trace order makes the result independent of the thread scheduling.
+ */
+final class TraceFrameMapBuilder extends FrameMapBuilderTool {
+
+    /**
+     * A spill slot that is local to the allocation of a single trace.
+     */
+    static final class ProvisionalStackSlot extends VirtualStackSlot {
+
+        private final int traceId;
+
+        ProvisionalStackSlot(int traceId, int id, LIRKind lirKind) {
+            super(id, lirKind);
+            this.traceId = traceId;
+        }
+
+        @Override
+        public String toString() {
+            return "pstack:" + traceId + ":" + getId() + getKindSuffix();
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode() * 31 + traceId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj) && traceId == ((ProvisionalStackSlot) obj).traceId;
+        }
+    }
+
+    private final FrameMapBuilderTool delegate;
+    private final int traceId;
+    private final int firstId;
+    private final List<VirtualStackSlot> slots;
+
+    /**
+     * @param firstId the id of the first provisional slot. Using the number of slots of
+     *            {@code delegate} keeps the ids valid as indexes into arrays sized by
+     *            {@link #getNumberOfStackSlots()}.
+     */
+    TraceFrameMapBuilder(FrameMapBuilderTool delegate, int traceId, int firstId) {
+        this.delegate = delegate;
+        this.traceId = traceId;
+        this.firstId = firstId;
+        this.slots = new ArrayList<>();
+    }
+
+    @Override
+    public VirtualStackSlot allocateSpillSlot(LIRKind kind) {
+        ProvisionalStackSlot slot = new ProvisionalStackSlot(traceId, firstId + slots.size(), kind);
+        slots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Allocates a real spill slot in the underlying frame map builder for every provisional slot
+     * handed out by this builder and records the mapping in {@code map}.
+     */
+    void commit(Map<VirtualStackSlot, VirtualStackSlot> map) {
+        for (VirtualStackSlot slot : slots) {
+            map.put(slot, delegate.allocateSpillSlot(slot.getLIRKind()));
+        }
+    }
+
+    @Override
+    public int getNumberOfStackSlots() {
+        return firstId + slots.size();
+    }
+
+    @Override
+    public List<VirtualStackSlot> getStackSlots() {
+        return Collections.unmodifiableList(slots);
+    }
+
+    @Override
+    public FrameMap getFrameMap() {
+        return delegate.getFrameMap();
+    }
+
+    @Override
+    public RegisterConfig getRegisterConfig() {
+        return delegate.getRegisterConfig();
+    }
+
+    @Override
+    public CodeCacheProvider getCodeCache() {
+        return delegate.getCodeCache();
+    }
+
+    @Override
+    public VirtualStackSlot allocateStackSlots(int numSlots, BitSet objects, List<VirtualStackSlot> outObjectStackSlots) {
+        throw JVMCIError.shouldNotReachHere("Stack slot ranges cannot be allocated during trace allocation");
+    }
+
+    @Override
+    public void callsMethod(CallingConvention cc) {
+        throw JVMCIError.shouldNotReachHere("Calls cannot be registered during trace allocation");
+    }
+
+    @Override
+    public FrameMap buildFrameMap(LIRGenerationResult result) {
+        throw JVMCIError.shouldNotReachHere("The frame map is built by the underlying frame map builder");
+    }
+}
@@ -25,8 +25,14 @@ package com.oracle.graal.lir.alloc.trace;
 import static com.oracle.graal.lir.alloc.trace.TraceBuilderPhase.TRACE_DUMP_LEVEL;
 import static com.oracle.graal.lir.alloc.trace.TraceUtil.isTrivialTrace;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import com.oracle.graal.compiler.common.alloc.RegisterAllocationConfig;
 import com.oracle.graal.compiler.common.alloc.Trace;
@@ -34,12 +40,18 @@ import com.oracle.graal.compiler.common.alloc.TraceBuilderResult;
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.debug.Debug;
 import com.oracle.graal.debug.Debug.Scope;
+import com.oracle.graal.debug.DebugConfig;
 import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.Indent;
+import com.oracle.graal.debug.internal.DebugScope;
+import com.oracle.graal.lir.InstructionValueProcedure;
 import com.oracle.graal.lir.LIR;
 import com.oracle.graal.lir.LIRInstruction;
+import com.oracle.graal.lir.VirtualStackSlot;
 import com.oracle.graal.lir.alloc.trace.TraceAllocationPhase.TraceAllocationContext;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceLinearScan;
+import com.oracle.graal.lir.framemap.FrameMapBuilder;
+import com.oracle.graal.lir.framemap.FrameMapBuilderTool;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
 import com.oracle.graal.lir.gen.LIRGeneratorTool.MoveFactory;
 import com.oracle.graal.lir.phases.AllocationPhase;
@@ -47,6 +59,8 @@ import com.oracle.graal.lir.ssi.SSIUtil;
 import com.oracle.graal.lir.ssi.SSIVerifier;
 import com.oracle.graal.options.Option;
 import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.options.OptionValue.OverrideScope;
 import com.oracle.graal.options.StableOptionValue;
 
 import jdk.vm.ci.code.TargetDescription;
@@ -70,6 +84,12 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
         public static final StableOptionValue<Boolean> TraceRAreuseStackSlotsForMoveResolutionCycleBreaking = new StableOptionValue<>(true);
         @Option(help = "Cache stack slots globally (i.e. a variable always gets the same slot in every trace).", type = OptionType.Debug)
         public static final StableOptionValue<Boolean> TraceRACacheStackSlots = new StableOptionValue<>(true);
+        @Option(help = "Allocate independent traces concurrently. Disables inter-trace hints and stack slot caching for these traces.", type = OptionType.Debug)
+        public static final OptionValue<Boolean> TraceRAParallel = new OptionValue<>(false);
+        @Option(help = "Number of threads used by TraceRAParallel (0 = number of available processors). The threads are shared by all compilations.", type = OptionType.Debug)
+        public static final OptionValue<Integer> TraceRAParallelThreads = new OptionValue<>(0);
+        @Option(help = "Re-materialize copies of re-materializable values instead of spilling them.", type = OptionType.Debug)
+        public static final StableOptionValue<Boolean> TraceRArematerializeCopies = new StableOptionValue<>(true);
         // @formatter:on
     }
 
@@ -78,6 +98,29 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
 
     private static final DebugMetric trivialTracesMetric = Debug.metric("TraceRA[trivialTraces]");
     private static final DebugMetric tracesMetric = Debug.metric("TraceRA[traces]");
+    private static final DebugMetric parallelTracesMetric = Debug.metric("TraceRA[parallelTraces]");
+
+    /**
+     * The pool on which traces are {@linkplain Options#TraceRAParallel allocated concurrently}. It
+     * is shared by all compilations so that the number of backend threads stays bounded no matter
+     * how many compiler threads are active.
+     */
+    private static ForkJoinPool traceAllocationPool;
+
+    private static synchronized ForkJoinPool getTraceAllocationPool() {
+        if (traceAllocationPool == null) {
+            int threadCount = Options.TraceRAParallelThreads.getValue();
+            if (threadCount <= 0) {
+                threadCount = Runtime.getRuntime().availableProcessors();
+            }
+            traceAllocationPool = new ForkJoinPool(threadCount, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("TraceRegisterAllocation-" + thread.getId());
+                return thread;
+            }, null, false);
+        }
+        return traceAllocationPool;
+    }
 
     @Override
     @SuppressWarnings("try")
@@ -93,23 +136,12 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
 
         Debug.dump(lir, "Before TraceRegisterAllocation");
         try (Scope s0 = Debug.scope("AllocateTraces", resultTraces)) {
-            for (Trace<B> trace : resultTraces.getTraces()) {
-                try (Indent i = Debug.logAndIndent("Allocating Trace%d: %s", trace.getId(), trace); Scope s = Debug.scope("AllocateTrace", trace)) {
-                    tracesMetric.increment();
-                    if (trivialTracesMetric.isEnabled() && isTrivialTrace(lir, trace)) {
-                        trivialTracesMetric.increment();
-                    }
-                    Debug.dump(TRACE_DUMP_LEVEL, trace, "Trace%s: %s", trace.getId(), trace);
-                    if (Options.TraceRAtrivialBlockAllocator.getValue() && isTrivialTrace(lir, trace)) {
-                        TRACE_TRIVIAL_ALLOCATOR.apply(target, lirGenRes, codeEmittingOrder, trace, traceContext, false);
-                    } else {
-                        TraceLinearScan allocator = new TraceLinearScan(target, lirGenRes, spillMoveFactory, registerAllocationConfig, trace, resultTraces, false,
-                                        cachedStackSlots);
-                        allocator.allocate(target, lirGenRes, codeEmittingOrder, linearScanOrder, spillMoveFactory, registerAllocationConfig);
-                    }
-                    Debug.dump(TRACE_DUMP_LEVEL, trace, "After  Trace%s: %s", trace.getId(), trace);
+            if (Options.TraceRAParallel.getValue()) {
+                allocateParallel(target, lirGenRes, codeEmittingOrder, linearScanOrder, traceContext, resultTraces);
+            } else {
+                for (Trace<B> trace : resultTraces.getTraces()) {
+                    allocateTrace(target, lirGenRes, codeEmittingOrder, linearScanOrder, traceContext, trace, lirGenRes.getFrameMapBuilder(), cachedStackSlots, false);
                 }
-                unnumberInstructions(trace.getBlocks(), lir);
             }
         } catch (Throwable e) {
             throw Debug.handle(e);
@@ -120,6 +152,124 @@ public final class TraceRegisterAllocationPhase extends AllocationPhase {
         deconstructSSIForm(lir);
     }
 
+    @SuppressWarnings("try")
+    private static <B extends AbstractBlockBase<B>> void allocateTrace(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                    TraceAllocationContext traceContext, Trace<B> trace, FrameMapBuilder frameMapBuilder, AllocatableValue[] cachedStackSlots, boolean isolated) {
+        LIR lir = lirGenRes.getLIR();
+        try (Indent i = Debug.logAndIndent("Allocating Trace%d: %s", trace.getId(), trace); Scope s = Debug.scope("AllocateTrace", trace)) {
+            tracesMetric.increment();
+            if (trivialTracesMetric.isEnabled() && isTrivialTrace(lir, trace)) {
+                trivialTracesMetric.increment();
+            }
+            Debug.dump(TRACE_DUMP_LEVEL, trace, "Trace%s: %s", trace.getId(), trace);
+            if (Options.TraceRAtrivialBlockAllocator.getValue() && isTrivialTrace(lir, trace)) {
+                assert !isolated : "Trivial traces depend on their predecessors";
+                TRACE_TRIVIAL_ALLOCATOR.apply(target, lirGenRes, codeEmittingOrder, trace, traceContext, false);
+            } else {
+                TraceLinearScan allocator = new TraceLinearScan(target, lirGenRes, frameMapBuilder, traceContext.spillMoveFactory, traceContext.registerAllocationConfig, trace,
+                                traceContext.resultTraces, false, cachedStackSlots, isolated);
+                allocator.allocate(target, lirGenRes, codeEmittingOrder, linearScanOrder, traceContext.spillMoveFactory, traceContext.registerAllocationConfig);
+            }
+            Debug.dump(TRACE_DUMP_LEVEL, trace, "After  Trace%s: %s", trace.getId(), trace);
+        }
+        unnumberInstructions(trace.getBlocks(), lir);
+    }
+
+    /**
+     * Allocates the non-trivial traces concurrently and the trivial traces afterwards in trace
+     * order.
+     *
+     * The traces are allocated on a {@linkplain Options#TraceRAParallelThreads bounded} pool
+     * that is shared by all compilations. The caller waits for all of them to finish, so global
+     * move resolution remains a serial step afterwards.
+     *
+     * The option overrides and the debug configuration of the compiling thread are applied in the
+     * tasks as well, since they are thread local. Each task runs in a debug scope that has the same
+     * name and context as the scope of the compilation, so that its dumps and logs are attributed
+     * to the compilation.
+     *
+     * The concurrently allocated traces do not use {@linkplain Options#TraceRAuseInterTraceHints
+     * inter-trace hints} and do not {@linkplain Options#TraceRACacheStackSlots share stack slots}.
+     * Their spill slots are {@linkplain TraceFrameMapBuilder provisional} until all of them are
+     * done. The provisional slots are then replaced by real slots that are allocated in trace order,
+     * so the result does not depend on the order in which the traces were allocated.
+     */
+    @SuppressWarnings("try")
+    private static <B extends AbstractBlockBase<B>> void allocateParallel(TargetDescription target, LIRGenerationResult lirGenRes, List<B> codeEmittingOrder, List<B> linearScanOrder,
+                    TraceAllocationContext traceContext, TraceBuilderResult<B> resultTraces) {
+        LIR lir = lirGenRes.getLIR();
+        FrameMapBuilderTool frameMapBuilder = (FrameMapBuilderTool) lirGenRes.getFrameMapBuilder();
+        int firstSlotId = frameMapBuilder.getNumberOfStackSlots();
+        List<Trace<B>> trivialTraces = new ArrayList<>();
+        List<Trace<B>> parallelTraces = new ArrayList<>();
+        List<TraceFrameMapBuilder> frameMapBuilders = new ArrayList<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        DebugConfig debugConfig = Debug.isEnabled() ? DebugScope.getConfig() : null;
+        String debugScopeName = Debug.isEnabled() ? Debug.currentScope() : null;
+        Object[] debugContext = Debug.isEnabled() ? debugContext() : null;
+        Map<OptionValue<?>, Object> overrides = OptionValue.getOverrides();
+        for (Trace<B> trace : resultTraces.getTraces()) {
+            if (Options.TraceRAtrivialBlockAllocator.getValue() && isTrivialTrace(lir, trace)) {
+                trivialTraces.add(trace);
+            } else {
+                TraceFrameMapBuilder traceFrameMapBuilder = new TraceFrameMapBuilder(frameMapBuilder, trace.getId(), firstSlotId);
+                parallelTraces.add(trace);
+                frameMapBuilders.add(traceFrameMapBuilder);
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    try (OverrideScope o = OptionValue.override(overrides); Scope s = Debug.sandbox(debugScopeName, debugConfig, debugContext)) {
+                        allocateTrace(target, lirGenRes, codeEmittingOrder, linearScanOrder, traceContext, trace, traceFrameMapBuilder, null, true);
+                    } catch (Throwable e) {
+                        throw Debug.handle(e);
+                    }
+                }));
+            }
+        }
+        parallelTracesMetric.add(tasks.size());
+        if (tasks.size() > 1) {
+            getTraceAllocationPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } else {
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        Map<VirtualStackSlot, VirtualStackSlot> committedSlots = new HashMap<>();
+        for (TraceFrameMapBuilder traceFrameMapBuilder : frameMapBuilders) {
+            traceFrameMapBuilder.commit(committedSlots);
+        }
+        if (!committedSlots.isEmpty()) {
+            InstructionValueProcedure replaceSlots = (op, value, mode, flags) -> {
+                if (value instanceof TraceFrameMapBuilder.ProvisionalStackSlot) {
+                    VirtualStackSlot slot = committedSlots.get(value);
+                    assert slot != null : "Uncommitted stack slot: " + value;
+                    return slot;
+                }
+                return value;
+            };
+            for (Trace<B> trace : parallelTraces) {
+                for (B block : trace.getBlocks()) {
+                    for (LIRInstruction op : lir.getLIRforBlock(block)) {
+                        op.forEachInput(replaceSlots);
+                        op.forEachAlive(replaceSlots);
+                        op.forEachTemp(replaceSlots);
+                        op.forEachOutput(replaceSlots);
+                        op.forEachState(replaceSlots);
+                    }
+                }
+            }
+        }
+
+        for (Trace<B> trace : trivialTraces) {
+            allocateTrace(target, lirGenRes, codeEmittingOrder, linearScanOrder, traceContext, trace, frameMapBuilder, null, false);
+        }
+    }
+
+    private static Object[] debugContext() {
+        List<Object> context = new ArrayList<>();
+        for (Object obj : Debug.context()) {
+            context.add(obj);
+        }
+        return context.toArray();
+    }
+
     @SuppressWarnings("unchecked")
     private static <B extends AbstractBlockBase<B>> TraceBuilderResult<B> getTraces(AllocationContext context) {
         return context.contextLookup(TraceBuilderResult.class);
@@ -594,6 +594,29 @@ final class TraceInterval extends IntervalHint {
         numMaterializationValuesAdded++;
     }
 
+    /**
+     * Determines if this interval has exactly one definition.
+     */
+    boolean isDefinedOnce() {
+        assert isSplitParent() : "definitions are counted in the split parent";
+        return numMaterializationValuesAdded == 1;
+    }
+
+    /**
+     * Sets the value which is used for re-materialization if this interval is defined exactly
+     * once, i.e., by a copy of an interval that is known to hold a constant.
+     *
+     * @return {@code true} if the value was set
+     */
+    boolean propagateMaterializationValue(JavaConstant value) {
+        assert isSplitParent() : "materialization value is stored in the split parent";
+        if (numMaterializationValuesAdded != 1) {
+            return false;
+        }
+        materializedValue = value;
+        return true;
+    }
+
     /**
      * Returns true if this interval can be re-materialized when spilled. This means that no
      * spill-moves are needed. Instead of restore-moves the {@link #materializedValue} is restored.
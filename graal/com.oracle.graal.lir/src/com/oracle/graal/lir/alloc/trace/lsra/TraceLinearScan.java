@@ -53,7 +53,6 @@ import com.oracle.graal.lir.ValueConsumer;
 import com.oracle.graal.lir.Variable;
 import com.oracle.graal.lir.VirtualStackSlot;
 import com.oracle.graal.lir.alloc.trace.TraceBuilderPhase;
-import com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase;
 import com.oracle.graal.lir.alloc.trace.lsra.TraceLinearScanAllocationPhase.TraceLinearScanAllocationContext;
 import com.oracle.graal.lir.framemap.FrameMapBuilder;
 import com.oracle.graal.lir.gen.LIRGenerationResult;
@@ -157,15 +156,28 @@ public final class TraceLinearScan {
     /**
      * Maps from {@link Variable#index} to a spill stack slot. If
      * {@linkplain com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options#TraceRACacheStackSlots
-     * enabled} a {@link Variable} is always assigned to the same stack slot.
+     * enabled} a {@link Variable} is always assigned to the same stack slot. {@code null} if stack
+     * slots are not cached.
      */
     private final AllocatableValue[] cachedStackSlots;
 
+    /**
+     * If {@code true}, the trace is allocated without looking at other traces so that it can be
+     * allocated concurrently with them.
+     */
+    private final boolean isolated;
+
     public TraceLinearScan(TargetDescription target, LIRGenerationResult res, MoveFactory spillMoveFactory, RegisterAllocationConfig regAllocConfig, Trace<? extends AbstractBlockBase<?>> trace,
                     TraceBuilderResult<?> traceBuilderResult, boolean neverSpillConstants, AllocatableValue[] cachedStackSlots) {
+        this(target, res, res.getFrameMapBuilder(), spillMoveFactory, regAllocConfig, trace, traceBuilderResult, neverSpillConstants, cachedStackSlots, false);
+    }
+
+    public TraceLinearScan(TargetDescription target, LIRGenerationResult res, FrameMapBuilder frameMapBuilder, MoveFactory spillMoveFactory, RegisterAllocationConfig regAllocConfig,
+                    Trace<? extends AbstractBlockBase<?>> trace, TraceBuilderResult<?> traceBuilderResult, boolean neverSpillConstants, AllocatableValue[] cachedStackSlots, boolean isolated) {
+        assert !isolated || cachedStackSlots == null : "Stack slots cannot be shared with concurrently allocated traces";
         this.ir = res.getLIR();
         this.moveFactory = spillMoveFactory;
-        this.frameMapBuilder = res.getFrameMapBuilder();
+        this.frameMapBuilder = frameMapBuilder;
         this.sortedBlocks = trace.getBlocks();
         this.registerAttributes = regAllocConfig.getRegisterConfig().getAttributesMap();
         this.regAllocConfig = regAllocConfig;
@@ -175,6 +187,11 @@ public final class TraceLinearScan {
         this.traceBuilderResult = traceBuilderResult;
         this.neverSpillConstants = neverSpillConstants;
         this.cachedStackSlots = cachedStackSlots;
+        this.isolated = isolated;
+    }
+
+    public boolean isIsolated() {
+        return isolated;
     }
 
     public int getFirstLirInstructionId(AbstractBlockBase<?> block) {
@@ -264,6 +281,7 @@ public final class TraceLinearScan {
 
     private static final DebugMetric globalStackSlots = Debug.metric("TraceRA[GlobalStackSlots]");
     private static final DebugMetric allocatedStackSlots = Debug.metric("TraceRA[AllocatedStackSlots]");
+    private static final DebugMetric rematerializedSpills = Debug.metric("TraceRA[rematerializedSpills]");
 
     void assignSpillSlot(TraceInterval interval) {
         /*
@@ -271,6 +289,7 @@ public final class TraceLinearScan {
          * spilled) or allocate a new spill slot.
          */
         if (interval.canMaterialize()) {
+            rematerializedSpills.increment();
             interval.assignLocation(Value.ILLEGAL);
         } else if (interval.spillSlot() != null) {
             interval.assignLocation(interval.spillSlot());
@@ -287,7 +306,7 @@ public final class TraceLinearScan {
      */
     private AllocatableValue allocateSpillSlot(TraceInterval interval) {
         int variableIndex = LIRValueUtil.asVariable(interval.splitParent().operand).index;
-        if (TraceRegisterAllocationPhase.Options.TraceRACacheStackSlots.getValue()) {
+        if (cachedStackSlots != null) {
             AllocatableValue cachedStackSlot = cachedStackSlots[variableIndex];
             if (cachedStackSlot != null) {
                 if (globalStackSlots.isEnabled()) {
@@ -298,7 +317,7 @@ public final class TraceLinearScan {
             }
         }
         VirtualStackSlot slot = frameMapBuilder.allocateSpillSlot(interval.kind());
-        if (TraceRegisterAllocationPhase.Options.TraceRACacheStackSlots.getValue()) {
+        if (cachedStackSlots != null) {
             cachedStackSlots[variableIndex] = slot;
         }
         if (allocatedStackSlots.isEnabled()) {
@@ -25,6 +25,7 @@ package com.oracle.graal.lir.alloc.trace.lsra;
 import static com.oracle.graal.lir.LIRValueUtil.asVariable;
 import static com.oracle.graal.lir.LIRValueUtil.isStackSlotValue;
 import static com.oracle.graal.lir.LIRValueUtil.isVariable;
+import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRArematerializeCopies;
 import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAshareSpillInformation;
 import static com.oracle.graal.lir.alloc.trace.TraceRegisterAllocationPhase.Options.TraceRAuseInterTraceHints;
 import static com.oracle.graal.lir.alloc.trace.TraceUtil.asShadowedRegisterValue;
@@ -36,12 +37,15 @@ import static jdk.vm.ci.code.ValueUtil.isRegister;
 import static jdk.vm.ci.code.ValueUtil.isStackSlot;
 
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import com.oracle.graal.compiler.common.alloc.TraceBuilderResult;
 import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.debug.Indent;
 import com.oracle.graal.lir.InstructionValueConsumer;
 import com.oracle.graal.lir.LIR;
@@ -83,6 +87,7 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
 
     private static final class Analyser {
         private static final int DUMP_DURING_ANALYSIS_LEVEL = 4;
+        private static final DebugMetric rematerializedCopies = Debug.metric("TraceRA[rematerializedCopies]");
         private final TraceLinearScan allocator;
         private final TraceBuilderResult<?> traceBuilderResult;
         private int numInstructions;
@@ -99,6 +104,9 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
         private void analyze() {
             countInstructions();
             buildIntervals();
+            if (TraceRArematerializeCopies.getValue()) {
+                propagateMaterializationValues();
+            }
         }
 
         private boolean sameTrace(AbstractBlockBase<?> a, AbstractBlockBase<?> b) {
@@ -106,6 +114,10 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
         }
 
         private boolean isAllocatedOrCurrent(AbstractBlockBase<?> currentBlock, AbstractBlockBase<?> other) {
+            if (allocator.isIsolated()) {
+                /* Other traces might be allocated concurrently. */
+                return sameTrace(currentBlock, other);
+            }
             return traceBuilderResult.getTraceForBlock(other) <= traceBuilderResult.getTraceForBlock(currentBlock);
         }
 
@@ -652,19 +664,8 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
                         if (!allocator.getSpillMoveFactory().allowConstantToStackMove(move.getConstant())) {
                             return null;
                         }
-                        /*
-                         * Check if the interval has any uses which would accept an stack location
-                         * (priority == ShouldHaveRegister). Rematerialization of such intervals can
-                         * result in a degradation, because rematerialization always inserts a
-                         * constant load, even if the value is not needed in a register.
-                         */
-                        UsePosList usePosList = interval.usePosList();
-                        int numUsePos = usePosList.size();
-                        for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
-                            TraceInterval.RegisterPriority priority = usePosList.registerPriority(useIdx);
-                            if (priority == TraceInterval.RegisterPriority.ShouldHaveRegister) {
-                                return null;
-                            }
+                        if (hasStackUsePositions(interval)) {
+                            return null;
                         }
                     }
                     return (JavaConstant) move.getConstant();
@@ -672,5 +673,67 @@ final class TraceLinearScanLifetimeAnalysisPhase extends TraceLinearScanAllocati
             }
             return null;
         }
+
+        /**
+         * Checks if the interval has any uses which would accept an stack location (priority ==
+         * ShouldHaveRegister). Rematerialization of such intervals can result in a degradation,
+         * because rematerialization always inserts a constant load, even if the value is not
+         * needed in a register.
+         */
+        private static boolean hasStackUsePositions(TraceInterval interval) {
+            UsePosList usePosList = interval.usePosList();
+            int numUsePos = usePosList.size();
+            for (int useIdx = 0; useIdx < numUsePos; useIdx++) {
+                TraceInterval.RegisterPriority priority = usePosList.registerPriority(useIdx);
+                if (priority == TraceInterval.RegisterPriority.ShouldHaveRegister) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Makes the destination of a {@link ValueMoveOp} re-materializable if its source is known
+         * to hold a constant. The source itself need not be re-materializable: the move is a use
+         * that accepts a stack slot, so a {@link LoadConstantOp} whose only use is a copy never
+         * is. Only copies whose source is defined in the current trace are handled. The blocks of
+         * a trace are visited in order, so chains of copies are handled in a single pass.
+         */
+        private void propagateMaterializationValues() {
+            Map<TraceInterval, JavaConstant> constants = new HashMap<>();
+            for (AbstractBlockBase<?> block : allocator.sortedBlocks()) {
+                for (LIRInstruction op : allocator.getLIR().getLIRforBlock(block)) {
+                    if (op instanceof LoadConstantOp) {
+                        LoadConstantOp load = (LoadConstantOp) op;
+                        if (isVariable(load.getResult()) && load.getConstant() instanceof JavaConstant &&
+                                        (allocator.neverSpillConstants() || allocator.getSpillMoveFactory().allowConstantToStackMove(load.getConstant()))) {
+                            TraceInterval interval = allocator.intervalFor(load.getResult());
+                            if (interval.isDefinedOnce()) {
+                                constants.put(interval, (JavaConstant) load.getConstant());
+                            }
+                        }
+                    } else if (op instanceof ValueMoveOp) {
+                        ValueMoveOp move = (ValueMoveOp) op;
+                        if (isVariable(move.getInput()) && isVariable(move.getResult())) {
+                            TraceInterval from = allocator.intervalFor(move.getInput());
+                            TraceInterval to = allocator.intervalFor(move.getResult());
+                            JavaConstant value = from.canMaterialize() ? from.getMaterializedValue() : constants.get(from);
+                            if (value == null || !to.isDefinedOnce()) {
+                                continue;
+                            }
+                            constants.put(to, value);
+                            if (!to.canMaterialize() && (allocator.neverSpillConstants() || !hasStackUsePositions(to))) {
+                                if (to.propagateMaterializationValue(value)) {
+                                    rematerializedCopies.increment();
+                                    if (Debug.isLogEnabled()) {
+                                        Debug.log("copy %s of %s is re-materializable", to, from);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
     }
 }
@@ -58,6 +58,7 @@ import com.oracle.graal.lir.framemap.FrameMapBuilderTool;
 final class TraceLocalMoveResolver {
 
     private static final DebugMetric cycleBreakingSlotsAllocated = Debug.metric("TraceRA[cycleBreakingSlotsAllocated(local)]");
+    private static final DebugMetric rematerializedReloads = Debug.metric("TraceRA[rematerializedReloads]");
 
     private static final int STACK_SLOT_IN_CALLER_FRAME_IDX = -1;
     private final TraceLinearScan allocator;
@@ -522,6 +523,7 @@ final class TraceLocalMoveResolver {
         }
         if (isIllegal(fromInterval.location()) && fromInterval.canMaterialize()) {
             // Instead of a reload, re-materialize the value
+            rematerializedReloads.increment();
             JavaConstant rematValue = fromInterval.getMaterializedValue();
             addMapping(rematValue, toInterval);
             return;
@@ -42,6 +42,7 @@ import com.oracle.graal.compiler.common.cfg.AbstractBlockBase;
 import com.oracle.graal.compiler.common.spi.CodeGenProviders;
 import com.oracle.graal.compiler.common.spi.ForeignCallLinkage;
 import com.oracle.graal.compiler.common.spi.ForeignCallsProvider;
+import com.oracle.graal.compiler.common.type.ArithmeticOpTable.BinaryOp;
 import com.oracle.graal.compiler.common.type.Stamp;
 import com.oracle.graal.lir.LIRFrameState;
 import com.oracle.graal.lir.LIRInstruction;
@@ -243,6 +244,15 @@ public interface LIRGeneratorTool extends BenchmarkCounterFactory {
 
     Variable emitArrayEquals(JavaKind kind, Value array1, Value array2, Value length);
 
+    /**
+     * Emits code that applies {@code op} to the elements {@code [start, start + length)} of
+     * {@code source1} and {@code source2} (an array or a scalar) and stores the results in
+     * {@code destination}. The code may leave a suffix of the elements unprocessed.
+     *
+     * @return the index of the first element that was not processed
+     */
+    Variable emitVectorizedArrayOp(BinaryOp<?> op, JavaKind kind, Value destination, Value source1, Value source2, boolean source2IsArray, Value start, Value length);
+
     void emitBlackhole(Value operand);
 
     LIRKind getLIRKind(Stamp stamp);
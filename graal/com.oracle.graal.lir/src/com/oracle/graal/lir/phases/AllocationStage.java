@@ -22,6 +22,7 @@
  */
 package com.oracle.graal.lir.phases;
 
+import static com.oracle.graal.compiler.common.GraalOptions.GreedyRA;
 import static com.oracle.graal.compiler.common.GraalOptions.TraceRA;
 
 import com.oracle.graal.compiler.common.GraalOptions;
@@ -45,7 +46,9 @@ public class AllocationStage extends LIRPhaseSuite<AllocationContext> {
             appendPhase(new TraceBuilderPhase());
             appendPhase(new TraceRegisterAllocationPhase());
         } else {
-            appendPhase(new LinearScanPhase());
+            LinearScanPhase linearScan = new LinearScanPhase();
+            linearScan.setGreedyAllocation(GreedyRA.getValue());
+            appendPhase(linearScan);
         }
 
         // build frame map
@@ -58,7 +58,6 @@ import com.oracle.graal.options.OptionType;
 
 import jdk.vm.ci.code.StackSlot;
 import jdk.vm.ci.code.TargetDescription;
-import jdk.vm.ci.meta.LIRKind;
 import jdk.vm.ci.meta.Value;
 
 /**
@@ -77,6 +76,8 @@ public final class LSStackSlotAllocator extends AllocationPhase {
         // @formatter:off
         @Option(help = "Use linear scan stack slot allocation.", type = OptionType.Debug)
         public static final NestedBooleanOptionValue LIROptLSStackSlotAllocator = new NestedBooleanOptionValue(LIROptimization, true);
+        @Option(help = "Reuse free stack slots of a larger size by splitting them if no free slot of the requested size is available.", type = OptionType.Debug)
+        public static final NestedBooleanOptionValue LIROptLSStackSlotPacking = new NestedBooleanOptionValue(LIROptimization, true);
         // @formatter:on
     }
 
@@ -110,6 +111,11 @@ public final class LSStackSlotAllocator extends AllocationPhase {
         private final PriorityQueue<StackInterval> active;
         private final AbstractBlockBase<?>[] sortedBlocks;
         private final int maxOpId;
+        private final FreeSlots freeSlots;
+        /**
+         * The number of bytes of virtual stack slots that were assigned a reused stack slot.
+         */
+        private int reusedBytes;
 
         @SuppressWarnings("try")
         private Allocator(LIR lir, FrameMapBuilderTool frameMapBuilder) {
@@ -117,6 +123,7 @@ public final class LSStackSlotAllocator extends AllocationPhase {
             this.frameMapBuilder = frameMapBuilder;
             this.stackSlotMap = new StackInterval[frameMapBuilder.getNumberOfStackSlots()];
             this.sortedBlocks = lir.getControlFlowGraph().getBlocks();
+            this.freeSlots = new FreeSlots(Options.LIROptLSStackSlotPacking.getValue());
 
             // insert by from
             this.unhandled = new PriorityQueue<>((a, b) -> a.from() - b.from());
@@ -153,7 +160,7 @@ public final class LSStackSlotAllocator extends AllocationPhase {
                 allocateStackSlots();
             }
             if (Debug.isDumpEnabled()) {
-                dumpIntervals("After stack slot allocation");
+                dumpIntervals(String.format("After stack slot allocation (%d bytes reused)", reusedBytes));
             }
 
             // step 5: assign stack slots
@@ -256,6 +263,9 @@ public final class LSStackSlotAllocator extends AllocationPhase {
                      */
                     location = StackSlot.get(current.kind(), slot.getRawOffset(), slot.getRawAddFrameSize());
                     StackSlotAllocatorUtil.reusedSlots.increment();
+                    int size = frameMapBuilder.getFrameMap().spillSlotSize(current.kind());
+                    StackSlotAllocatorUtil.reusedFramesize.add(size);
+                    reusedBytes += size;
                     Debug.log(1, "Reuse stack slot %s (reallocated from %s) for virtual stack slot %s", location, slot, virtualSlot);
                 } else {
                     // Allocate new stack slot.
@@ -269,87 +279,19 @@ public final class LSStackSlotAllocator extends AllocationPhase {
             current.setLocation(location);
         }
 
-        private enum SlotSize {
-            Size1,
-            Size2,
-            Size4,
-            Size8,
-            Illegal;
-        }
-
-        private SlotSize forKind(LIRKind kind) {
-            switch (frameMapBuilder.getFrameMap().spillSlotSize(kind)) {
-                case 1:
-                    return SlotSize.Size1;
-                case 2:
-                    return SlotSize.Size2;
-                case 4:
-                    return SlotSize.Size4;
-                case 8:
-                    return SlotSize.Size8;
-                default:
-                    return SlotSize.Illegal;
-            }
-        }
-
-        private EnumMap<SlotSize, Deque<StackSlot>> freeSlots;
-
-        /**
-         * @return The list of free stack slots for {@code size} or {@code null} if there is none.
-         */
-        private Deque<StackSlot> getOrNullFreeSlots(SlotSize size) {
-            if (freeSlots == null) {
-                return null;
-            }
-            return freeSlots.get(size);
-        }
-
-        /**
-         * @return the list of free stack slots for {@code size}. If there is none a list is
-         *         created.
-         */
-        private Deque<StackSlot> getOrInitFreeSlots(SlotSize size) {
-            assert size != SlotSize.Illegal;
-            Deque<StackSlot> freeList;
-            if (freeSlots != null) {
-                freeList = freeSlots.get(size);
-            } else {
-                freeSlots = new EnumMap<>(SlotSize.class);
-                freeList = null;
-            }
-            if (freeList == null) {
-                freeList = new ArrayDeque<>();
-                freeSlots.put(size, freeList);
-            }
-            assert freeList != null;
-            return freeList;
-        }
-
         /**
          * Gets a free stack slot for {@code slot} or {@code null} if there is none.
          */
         private StackSlot findFreeSlot(SimpleVirtualStackSlot slot) {
             assert slot != null;
-            SlotSize size = forKind(slot.getLIRKind());
-            if (size == SlotSize.Illegal) {
-                return null;
-            }
-            Deque<StackSlot> freeList = getOrNullFreeSlots(size);
-            if (freeList == null) {
-                return null;
-            }
-            return freeList.pollLast();
+            return freeSlots.take(frameMapBuilder.getFrameMap().spillSlotSize(slot.getLIRKind()));
         }
 
         /**
          * Adds a stack slot to the list of free slots.
          */
         private void freeSlot(StackSlot slot) {
-            SlotSize size = forKind(slot.getLIRKind());
-            if (size == SlotSize.Illegal) {
-                return;
-            }
-            getOrInitFreeSlots(size).addLast(slot);
+            freeSlots.free(slot, frameMapBuilder.getFrameMap().spillSlotSize(slot.getLIRKind()));
         }
 
         /**
@@ -437,4 +379,153 @@ public final class LSStackSlotAllocator extends AllocationPhase {
         }
 
     }
+
+    /**
+     * The free stack slots of the allocator, by size. If there is no free slot of a requested size,
+     * a larger free slot can be split to provide it.
+     */
+    public static final class FreeSlots {
+
+        private enum SlotSize {
+            Size1(1),
+            Size2(2),
+            Size4(4),
+            Size8(8),
+            Illegal(0);
+
+            private final int bytes;
+
+            SlotSize(int bytes) {
+                this.bytes = bytes;
+            }
+
+            /**
+             * Gets the next smaller size or {@code null} if there is none.
+             */
+            SlotSize half() {
+                return this == Size1 || this == Illegal ? null : values()[ordinal() - 1];
+            }
+
+            static SlotSize forBytes(int bytes) {
+                switch (bytes) {
+                    case 1:
+                        return Size1;
+                    case 2:
+                        return Size2;
+                    case 4:
+                        return Size4;
+                    case 8:
+                        return Size8;
+                    default:
+                        return Illegal;
+                }
+            }
+        }
+
+        private final boolean packSlots;
+        private EnumMap<SlotSize, Deque<StackSlot>> freeSlots;
+
+        /**
+         * @param packSlots specifies whether larger free slots are split if there is no free slot
+         *            of a requested size
+         */
+        public FreeSlots(boolean packSlots) {
+            this.packSlots = packSlots;
+        }
+
+        /**
+         * @return The list of free stack slots for {@code size} or {@code null} if there is none.
+         */
+        private Deque<StackSlot> getOrNullFreeSlots(SlotSize size) {
+            if (freeSlots == null) {
+                return null;
+            }
+            return freeSlots.get(size);
+        }
+
+        /**
+         * @return the list of free stack slots for {@code size}. If there is none a list is
+         *         created.
+         */
+        private Deque<StackSlot> getOrInitFreeSlots(SlotSize size) {
+            assert size != SlotSize.Illegal;
+            Deque<StackSlot> freeList;
+            if (freeSlots != null) {
+                freeList = freeSlots.get(size);
+            } else {
+                freeSlots = new EnumMap<>(SlotSize.class);
+                freeList = null;
+            }
+            if (freeList == null) {
+                freeList = new ArrayDeque<>();
+                freeSlots.put(size, freeList);
+            }
+            assert freeList != null;
+            return freeList;
+        }
+
+        /**
+         * Gets a free stack slot of {@code bytes} bytes or {@code null} if there is none.
+         */
+        public StackSlot take(int bytes) {
+            SlotSize size = SlotSize.forBytes(bytes);
+            if (size == SlotSize.Illegal) {
+                return null;
+            }
+            Deque<StackSlot> freeList = getOrNullFreeSlots(size);
+            if (freeList != null && !freeList.isEmpty()) {
+                return freeList.pollLast();
+            }
+            if (packSlots) {
+                return splitLargerFreeSlot(size);
+            }
+            return null;
+        }
+
+        /**
+         * Takes the smallest free stack slot that is larger than {@code size} and splits it into
+         * power-of-two pieces. The first piece, which has the requested size, is returned and the
+         * remaining pieces are added to the free lists of their size.
+         *
+         * Since every spill slot is aligned to its size, all pieces are aligned to their size as
+         * well. The pieces are never merged again.
+         *
+         * @return a free stack slot at the start of the split slot or {@code null} if there is no
+         *         larger free slot
+         */
+        private StackSlot splitLargerFreeSlot(SlotSize size) {
+            for (int i = size.ordinal() + 1; i < SlotSize.Illegal.ordinal(); i++) {
+                SlotSize largerSize = SlotSize.values()[i];
+                Deque<StackSlot> freeList = getOrNullFreeSlots(largerSize);
+                if (freeList != null && !freeList.isEmpty()) {
+                    StackSlot slot = freeList.pollLast();
+                    /*
+                     * The kind of a piece does not matter because a new stack slot with the kind of
+                     * the virtual stack slot is created when the piece is used.
+                     */
+                    SlotSize piece = largerSize;
+                    do {
+                        piece = piece.half();
+                        StackSlot pieceSlot = StackSlot.get(slot.getLIRKind(), slot.getRawOffset() + piece.bytes, slot.getRawAddFrameSize());
+                        getOrInitFreeSlots(piece).addLast(pieceSlot);
+                    } while (piece != size);
+                    StackSlotAllocatorUtil.splitSlots.increment();
+                    Debug.log(1, "Split stack slot %s of size %d for size %d", slot, largerSize.bytes, size.bytes);
+                    return slot;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds a stack slot of {@code bytes} bytes to the free slots.
+         */
+        public void free(StackSlot slot, int bytes) {
+            SlotSize size = SlotSize.forBytes(bytes);
+            if (size == SlotSize.Illegal) {
+                return;
+            }
+            getOrInitFreeSlots(size).addLast(slot);
+        }
+    }
 }
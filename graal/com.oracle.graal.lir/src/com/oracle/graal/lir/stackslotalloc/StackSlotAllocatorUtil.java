@@ -43,6 +43,15 @@ public final class StackSlotAllocatorUtil {
      * The number of reused stack slots.
      */
     public static DebugMetric reusedSlots = Debug.metric("StackSlotAllocator[reusedSlots]");
+    /**
+     * The number of free stack slots that were split to be reused for smaller stack slots.
+     */
+    public static DebugMetric splitSlots = Debug.metric("StackSlotAllocator[splitSlots]");
+    /**
+     * The size (in bytes) of all virtual stack slots that were assigned a reused stack slot, i.e.,
+     * the reduction of the frame size due to stack slot reuse.
+     */
+    public static DebugMetric reusedFramesize = Debug.metric("StackSlotAllocator[ReusedFramesize]");
     /**
      * The size (in bytes) required for all allocated stack slots. Note that this number corresponds
      * to the actual frame size and might include alignment.
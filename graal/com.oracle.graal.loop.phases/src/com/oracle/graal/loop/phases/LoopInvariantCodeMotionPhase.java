@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LocationIdentity;
+import jdk.vm.ci.meta.ResolvedJavaType;
+
+import com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph;
+import com.oracle.graal.compiler.common.cfg.Loop;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.loop.CountedLoopInfo;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.InductionVariable.Direction;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicNegationNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.extended.BranchProbabilityNode;
+import com.oracle.graal.nodes.extended.ForeignCallNode;
+import com.oracle.graal.nodes.extended.ValueAnchorNode;
+import com.oracle.graal.nodes.memory.MemoryCheckpoint;
+import com.oracle.graal.nodes.memory.ReadNode;
+import com.oracle.graal.nodes.memory.address.AddressNode;
+import com.oracle.graal.nodes.memory.address.OffsetAddressNode;
+import com.oracle.graal.nodes.type.StampTool;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.tiers.MidTierContext;
+
+/**
+ * Moves loop invariant guards and fixed nodes out of loops.
+ *
+ * A guard with a loop invariant condition is moved to the loop preheader if it is executed in every
+ * iteration of the loop. If the guard is only known to be executed in the first iteration of a
+ * counted loop, the hoisted guard also tests whether the loop is entered at all. In both cases the
+ * hoisted guard fails exactly if the original guard would have failed in the first iteration, so it
+ * keeps the deoptimization reason and action of the original guard. Floating reads that depend on
+ * a hoisted guard are then scheduled outside of the loop as well.
+ *
+ * Fixed nodes are moved to the loop preheader if all their inputs are loop invariant. This applies
+ * to foreign calls without side effects and to reads of locations that are not killed in the loop.
+ * A read without a guard is only moved if it cannot trap, since it may depend on a branch inside
+ * the loop.
+ */
+public class LoopInvariantCodeMotionPhase extends BasePhase<MidTierContext> {
+
+    private static final DebugMetric HOISTED_GUARDS = Debug.metric("LICMHoistedGuards");
+    private static final DebugMetric HOISTED_FIXED_NODES = Debug.metric("LICMHoistedFixedNodes");
+
+    @Override
+    protected void run(StructuredGraph graph, MidTierContext context) {
+        if (!graph.hasLoops() || !graph.getGuardsStage().allowsFloatingGuards()) {
+            return;
+        }
+        boolean progress;
+        do {
+            // hoisting a guard can make reads invariant and vice versa
+            progress = hoistGuards(graph);
+            progress |= hoistFixedNodes(graph);
+        } while (progress);
+    }
+
+    private static boolean hoistGuards(StructuredGraph graph) {
+        LoopsData data = new LoopsData(graph);
+        data.detectedCountedLoops();
+        boolean progress = false;
+        for (GuardNode guard : graph.getNodes().filter(GuardNode.class).snapshot()) {
+            if (guard.isAlive() && guard.getAnchor().asNode() instanceof AbstractBeginNode) {
+                progress |= tryHoist(data, guard);
+            }
+        }
+        data.deleteUnusedNodes();
+        return progress;
+    }
+
+    private static boolean tryHoist(LoopsData data, GuardNode guard) {
+        ControlFlowGraph cfg = data.getCFG();
+        Block block = cfg.blockFor(guard.getAnchor().asNode());
+        if (block == null) {
+            return false;
+        }
+        LoopEx target = null;
+        boolean needsEntryTest = false;
+        for (Loop<Block> l = block.getLoop(); l != null; l = l.getParent()) {
+            LoopEx loop = data.loop(l);
+            if (!loop.isOutsideLoop(guard.getCondition()) || !dominatesAll(block, loop.loopBegin().loopEnds(), cfg)) {
+                break;
+            }
+            target = loop;
+            if (!dominatesAll(block, loop.loopBegin().loopExits(), cfg)) {
+                if (isExecutedInFirstIteration(loop, block, cfg)) {
+                    needsEntryTest = true;
+                } else {
+                    target = null;
+                }
+                break;
+            }
+            block = cfg.blockFor(loop.entryPoint());
+        }
+        if (target == null) {
+            return false;
+        }
+
+        StructuredGraph graph = guard.graph();
+        LogicNode condition = guard.getCondition();
+        boolean negated = guard.isNegated();
+        if (needsEntryTest) {
+            LogicNode entered = entryTest(target);
+            condition = LogicNode.or(entered, true, condition, negated, BranchProbabilityNode.SLOW_PATH_PROBABILITY);
+            negated = false;
+        }
+        GuardNode hoisted = graph.unique(new GuardNode(condition, AbstractBeginNode.prevBegin(target.entryPoint()), guard.getReason(), guard.getAction(), negated, guard.getSpeculation()));
+        Debug.log("Hoisted %s out of %s as %s", guard, target, hoisted);
+        if (needsEntryTest) {
+            /*
+             * The hoisted guard does not check the condition if the loop is not entered, so the
+             * users of the guard must stay inside the loop. The hoisted guard is left without users
+             * and needs an anchor in front of the loop to stay alive.
+             */
+            graph.addBeforeFixed(target.entryPoint(), graph.add(new ValueAnchorNode(hoisted)));
+            guard.replaceAtUsages(guard.getAnchor().asNode());
+        } else {
+            guard.replaceAtUsages(hoisted);
+        }
+        GraphUtil.killWithUnusedFloatingInputs(guard);
+        HOISTED_GUARDS.increment();
+        return true;
+    }
+
+    private static boolean dominatesAll(Block block, Iterable<? extends FixedNode> nodes, ControlFlowGraph cfg) {
+        for (FixedNode node : nodes) {
+            if (!AbstractControlFlowGraph.dominates(block, cfg.blockFor(node))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether {@code block} is executed in the first iteration of a counted loop if
+     * the loop passes its exit test in that iteration.
+     */
+    private static boolean isExecutedInFirstIteration(LoopEx loop, Block block, ControlFlowGraph cfg) {
+        if (!loop.isCounted()) {
+            return false;
+        }
+        AbstractBeginNode body = loop.counted().getBody();
+        if (!AbstractControlFlowGraph.dominates(cfg.blockFor(body), block)) {
+            return false;
+        }
+        IfNode exitTest = (IfNode) body.predecessor();
+        AbstractBeginNode countedExit = exitTest.trueSuccessor() == body ? exitTest.falseSuccessor() : exitTest.trueSuccessor();
+        for (LoopExitNode exit : loop.loopBegin().loopExits()) {
+            if (exit != countedExit && !AbstractControlFlowGraph.dominates(block, cfg.blockFor(exit))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a condition that holds if the counted loop passes its exit test in the first
+     * iteration.
+     */
+    private static LogicNode entryTest(LoopEx loop) {
+        StructuredGraph graph = loop.loopBegin().graph();
+        CountedLoopInfo counted = loop.counted();
+        InductionVariable counter = counted.getCounter();
+        ValueNode init = counter.initNode();
+        ValueNode limit = counted.getLimit();
+        boolean up = counter.direction() == Direction.Up;
+        if (counted.isLimitIncluded()) {
+            LogicNode skipped = graph.unique(up ? new IntegerLessThanNode(limit, init) : new IntegerLessThanNode(init, limit));
+            return graph.unique(new LogicNegationNode(skipped));
+        }
+        return graph.unique(up ? new IntegerLessThanNode(init, limit) : new IntegerLessThanNode(limit, init));
+    }
+
+    private static boolean hoistFixedNodes(StructuredGraph graph) {
+        LoopsData data = new LoopsData(graph);
+        ControlFlowGraph cfg = data.getCFG();
+        Map<FixedWithNextNode, LoopEx> hoisted = new LinkedHashMap<>();
+        for (LoopEx loop : data.loops()) {
+            Set<LocationIdentity> killed = null;
+            for (FixedWithNextNode node : loop.whole().nodes().filter(FixedWithNextNode.class)) {
+                Block block = cfg.blockFor(node);
+                if (block == null || block.getLoop() != loop.loop() || !isInvariant(loop, node) || !dominatesAll(block, loop.loopBegin().loopEnds(), cfg)) {
+                    continue;
+                }
+                if (node instanceof ForeignCallNode && isPure((ForeignCallNode) node)) {
+                    hoisted.put(node, loop);
+                } else if (node instanceof ReadNode) {
+                    ReadNode read = (ReadNode) node;
+                    if (!read.canFloat() || read.canDeoptimize()) {
+                        continue;
+                    }
+                    if (read.getGuard() == null && (!cannotTrap(read.getAddress()) || !dominatesAll(block, loop.loopBegin().loopExits(), cfg))) {
+                        /*
+                         * Without a guard, the read may depend on a condition tested by a branch
+                         * inside the loop, so it is only hoisted if it is safe to execute anyway.
+                         */
+                        continue;
+                    }
+                    if (killed == null) {
+                        killed = killedLocations(loop);
+                    }
+                    LocationIdentity location = read.getLocationIdentity();
+                    if (location.isImmutable() || (!killed.contains(LocationIdentity.any()) && !killed.contains(location))) {
+                        hoisted.put(node, loop);
+                    }
+                }
+            }
+        }
+        List<FixedWithNextNode> nodes = new ArrayList<>(hoisted.keySet());
+        for (FixedWithNextNode node : nodes) {
+            LoopEx loop = hoisted.get(node);
+            Debug.log("Hoisted %s out of %s", node, loop);
+            GraphUtil.unlinkFixedNode(node);
+            graph.addBeforeFixed(loop.entryPoint(), node);
+            HOISTED_FIXED_NODES.increment();
+        }
+        return !nodes.isEmpty();
+    }
+
+    private static boolean isInvariant(LoopEx loop, Node node) {
+        for (Node input : node.inputs()) {
+            if (!loop.isOutsideLoop(input)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether a read of {@code address} is safe to execute regardless of the conditions
+     * tested before it, which is the case for reads of fields declared by the type of a non-null
+     * object.
+     */
+    private static boolean cannotTrap(AddressNode address) {
+        if (!(address instanceof OffsetAddressNode)) {
+            return false;
+        }
+        OffsetAddressNode offsetAddress = (OffsetAddressNode) address;
+        ValueNode base = offsetAddress.getBase();
+        if (!offsetAddress.getOffset().isConstant() || !StampTool.isPointerNonNull(base)) {
+            return false;
+        }
+        ResolvedJavaType type = StampTool.typeOrNull(base);
+        return type != null && !type.isArray() && type.findInstanceFieldWithOffset(offsetAddress.getOffset().asJavaConstant().asLong(), JavaKind.Void) != null;
+    }
+
+    private static boolean isPure(ForeignCallNode call) {
+        return !call.hasSideEffect() && call.getLocationIdentities().length == 0 && !call.canDeoptimize() && !call.isGuaranteedSafepoint() && call.stateAfter() == null &&
+                        call.stateDuring() == null;
+    }
+
+    private static Set<LocationIdentity> killedLocations(LoopEx loop) {
+        Set<LocationIdentity> killed = new HashSet<>();
+        for (Node node : loop.whole().nodes()) {
+            if (node instanceof MemoryCheckpoint.Single) {
+                killed.add(((MemoryCheckpoint.Single) node).getLocationIdentity());
+            } else if (node instanceof MemoryCheckpoint.Multi) {
+                for (LocationIdentity identity : ((MemoryCheckpoint.Multi) node).getLocationIdentities()) {
+                    killed.add(identity);
+                }
+            }
+        }
+        return killed;
+    }
+}
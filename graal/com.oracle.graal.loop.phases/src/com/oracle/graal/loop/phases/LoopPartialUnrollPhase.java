@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import static com.oracle.graal.compiler.common.GraalOptions.PartialUnrollFactor;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopPolicies;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.StructuredGraph;
+
+public class LoopPartialUnrollPhase extends ContextlessLoopPhase<LoopPolicies> {
+
+    private static final DebugMetric PARTIALLY_UNROLLED_LOOPS = Debug.metric("PartialUnrolls");
+
+    public LoopPartialUnrollPhase(LoopPolicies policies) {
+        super(policies);
+    }
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        if (graph.hasLoops()) {
+            int factor = PartialUnrollFactor.getValue();
+            // main and post loops of unrolled loops are not unrolled again
+            NodeBitMap unrolled = graph.createNodeBitMap();
+            boolean changed;
+            do {
+                changed = false;
+                LoopsData data = new LoopsData(graph);
+                data.detectedCountedLoops();
+                for (LoopEx loop : data.countedLoops()) {
+                    LoopBeginNode loopBegin = loop.loopBegin();
+                    if (!unrolled.isMarkedAndGrow(loopBegin) && LoopTransformations.isUnrollableLoop(loop, factor) && getPolicies().shouldPartialUnroll(loop)) {
+                        Debug.log("PartialUnroll %s", loop);
+                        LoopBeginNode mainLoopBegin = LoopTransformations.partialUnroll(loop, factor);
+                        unrolled.markAndGrow(loopBegin);
+                        unrolled.markAndGrow(mainLoopBegin);
+                        PARTIALLY_UNROLLED_LOOPS.increment();
+                        Debug.dump(graph, "PartialUnroll %s", loop);
+                        changed = true;
+                        break;
+                    }
+                }
+                data.deleteUnusedNodes();
+            } while (changed);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import static com.oracle.graal.loop.MathUtil.add;
+import static com.oracle.graal.loop.MathUtil.divBefore;
+import static com.oracle.graal.loop.MathUtil.mul;
+import static com.oracle.graal.loop.MathUtil.sub;
+
+import jdk.vm.ci.meta.DeoptimizationAction;
+import jdk.vm.ci.meta.DeoptimizationReason;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.JavaKind;
+
+import com.oracle.graal.compiler.common.cfg.AbstractControlFlowGraph;
+import com.oracle.graal.compiler.common.cfg.Loop;
+import com.oracle.graal.compiler.common.type.IntegerStamp;
+import com.oracle.graal.compiler.common.type.Stamp;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.loop.CountedLoopInfo;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.InductionVariable.Direction;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.calc.IntegerBelowNode;
+import com.oracle.graal.nodes.calc.IntegerConvertNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
+import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.cfg.ControlFlowGraph;
+import com.oracle.graal.nodes.extended.BranchProbabilityNode;
+import com.oracle.graal.nodes.extended.ValueAnchorNode;
+import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.phases.BasePhase;
+import com.oracle.graal.phases.tiers.MidTierContext;
+
+/**
+ * Replaces array bounds checks on induction variables of counted loops by a check before the loop.
+ * The check before the loop tests the first and the last value the induction variable takes in
+ * the loop body and deoptimizes if any of them is out of bounds. Since the induction variable
+ * changes monotonically, all other values are in bounds as well. The loop counter is protected
+ * against overflow by the {@linkplain CountedLoopInfo#createOverFlowGuard() overflow guard} of the
+ * loop, so that the number of iterations is known before the loop.
+ */
+public class LoopRangeCheckEliminationPhase extends BasePhase<MidTierContext> {
+
+    private static final DebugMetric HOISTED_RANGE_CHECKS = Debug.metric("HoistedRangeChecks");
+
+    /**
+     * Limits the stride of the induction variables so that their values can be computed in 64 bit
+     * arithmetic for the at most 2^32 iterations of a loop with a 32 bit counter.
+     */
+    private static final long MAX_STRIDE = 1L << 30;
+
+    @Override
+    protected void run(StructuredGraph graph, MidTierContext context) {
+        if (!graph.hasLoops() || !context.getOptimisticOptimizations().useLoopLimitChecks() || !graph.getGuardsStage().allowsFloatingGuards()) {
+            return;
+        }
+        LoopsData data = new LoopsData(graph);
+        data.detectedCountedLoops();
+        for (GuardNode guard : graph.getNodes().filter(GuardNode.class).snapshot()) {
+            if (guard.isAlive() && isRangeCheck(guard)) {
+                tryHoist(data, guard);
+            }
+        }
+        data.deleteUnusedNodes();
+    }
+
+    private static boolean isRangeCheck(GuardNode guard) {
+        return !guard.isNegated() && guard.getReason() == DeoptimizationReason.BoundsCheckException && guard.getCondition() instanceof IntegerBelowNode &&
+                        guard.getAnchor().asNode() instanceof AbstractBeginNode;
+    }
+
+    private static void tryHoist(LoopsData data, GuardNode guard) {
+        IntegerBelowNode check = (IntegerBelowNode) guard.getCondition();
+        ControlFlowGraph cfg = data.getCFG();
+        Block block = cfg.blockFor(guard.getAnchor().asNode());
+        if (block == null) {
+            return;
+        }
+        for (Loop<Block> l = block.getLoop(); l != null; l = l.getParent()) {
+            LoopEx loop = data.loop(l);
+            if (!loop.isOutsideLoop(check.getY())) {
+                // the length is not invariant in any enclosing loop either
+                return;
+            }
+            InductionVariable iv = loop.getInductionVariables().get(check.getX());
+            if (iv != null) {
+                if (canHoist(loop, iv, block, cfg)) {
+                    hoist(loop, iv, guard);
+                }
+                return;
+            }
+        }
+    }
+
+    private static boolean canHoist(LoopEx loop, InductionVariable iv, Block block, ControlFlowGraph cfg) {
+        if (!loop.isCounted()) {
+            return false;
+        }
+        CountedLoopInfo counted = loop.counted();
+        InductionVariable counter = counted.getCounter();
+        if (counted.getStamp().getBits() != 32 || !counter.isConstantStride() || Math.abs(counter.constantStride()) > MAX_STRIDE) {
+            return false;
+        }
+        if (((IntegerStamp) iv.valueNode().stamp()).getBits() != 32 || !iv.isConstantStride() || Math.abs(iv.constantStride()) > MAX_STRIDE) {
+            return false;
+        }
+        // the check must only be executed in iterations that passed the exit test of the loop
+        return AbstractControlFlowGraph.dominates(cfg.blockFor(counted.getBody()), block);
+    }
+
+    private static void hoist(LoopEx loop, InductionVariable iv, GuardNode guard) {
+        StructuredGraph graph = guard.graph();
+        CountedLoopInfo counted = loop.counted();
+        counted.createOverFlowGuard();
+
+        Stamp longStamp = StampFactory.forKind(JavaKind.Long);
+        ConstantNode one = ConstantNode.forLong(1, graph);
+        InductionVariable counter = counted.getCounter();
+        ValueNode start = IntegerConvertNode.convert(counter.initNode(), longStamp, graph);
+        ValueNode limit = IntegerConvertNode.convert(counted.getLimit(), longStamp, graph);
+        ValueNode range = counter.direction() == Direction.Up ? sub(graph, limit, start) : sub(graph, start, limit);
+        if (counted.isLimitIncluded()) {
+            range = add(graph, range, one);
+        }
+        long stride = Math.abs(counter.constantStride());
+        ValueNode tripCount = range;
+        if (stride != 1) {
+            tripCount = divBefore(graph, loop.entryPoint(), add(graph, range, ConstantNode.forLong(stride - 1, graph)), ConstantNode.forLong(stride, graph));
+        }
+
+        ValueNode first = IntegerConvertNode.convert(iv.initNode(), longStamp, graph);
+        ValueNode last = add(graph, first, mul(graph, sub(graph, tripCount, one), ConstantNode.forLong(iv.constantStride(), graph)));
+        ValueNode length = IntegerConvertNode.convert(((IntegerBelowNode) guard.getCondition()).getY(), longStamp, graph);
+        LogicNode inBounds = LogicNode.and(graph.unique(new IntegerBelowNode(first, length)), graph.unique(new IntegerBelowNode(last, length)), BranchProbabilityNode.SLOW_PATH_PROBABILITY);
+        LogicNode entered = graph.unique(new IntegerLessThanNode(ConstantNode.forLong(0, graph), tripCount));
+        LogicNode condition = LogicNode.or(entered, true, inBounds, false, BranchProbabilityNode.SLOW_PATH_PROBABILITY);
+        GuardNode hoisted = graph.unique(new GuardNode(condition, AbstractBeginNode.prevBegin(loop.entryPoint()), DeoptimizationReason.LoopLimitCheck, DeoptimizationAction.InvalidateRecompile,
+                        false, JavaConstant.NULL_POINTER));
+        /*
+         * The hoisted guard has no users of its own, so anchor it in front of the loop to keep it
+         * from being removed as unused.
+         */
+        graph.addBeforeFixed(loop.entryPoint(), graph.add(new ValueAnchorNode(hoisted)));
+        Debug.log("Hoisted %s out of %s as %s", guard, loop, hoisted);
+
+        /*
+         * The hoisted guard dominates the anchor of the original guard, which keeps the users of the
+         * guard inside the loop.
+         */
+        guard.replaceAtUsages(guard.getAnchor().asNode());
+        GraphUtil.killWithUnusedFloatingInputs(guard);
+        HOISTED_RANGE_CHECKS.increment();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopPolicies;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.StructuredGraph;
+
+/**
+ * Rotates loops that test their exit condition at the header into loops that test it at the back
+ * edge (see {@link LoopTransformations#rotate}). Rotated loops are no longer recognized as counted
+ * loops, so this phase runs after all other loop transformations.
+ */
+public class LoopRotationPhase extends ContextlessLoopPhase<LoopPolicies> {
+
+    private static final DebugMetric ROTATED_LOOPS = Debug.metric("RotatedLoops");
+
+    public LoopRotationPhase(LoopPolicies policies) {
+        super(policies);
+    }
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        if (!graph.hasLoops()) {
+            return;
+        }
+        NodeBitMap rotated = graph.createNodeBitMap();
+        boolean progress;
+        do {
+            // rotating a loop changes the control flow graph of the enclosing loops
+            progress = false;
+            LoopsData data = new LoopsData(graph);
+            for (LoopEx loop : data.innerFirst()) {
+                if (!rotated.isMarkedAndGrow(loop.loopBegin()) && getPolicies().shouldRotate(loop) && LoopTransformations.isRotatableLoop(loop)) {
+                    Debug.log("Rotating %s", loop);
+                    LoopTransformations.rotate(loop);
+                    rotated.markAndGrow(loop.loopBegin());
+                    ROTATED_LOOPS.increment();
+                    Debug.dump(graph, "Rotating %s", loop);
+                    progress = true;
+                    break;
+                }
+            }
+            data.deleteUnusedNodes();
+        } while (progress);
+    }
+}
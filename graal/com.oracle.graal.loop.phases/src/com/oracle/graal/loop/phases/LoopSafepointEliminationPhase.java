@@ -22,6 +22,14 @@
  */
 package com.oracle.graal.loop.phases;
 
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStripMining;
+import static com.oracle.graal.compiler.common.GraalOptions.LoopStripMiningLength;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
 import com.oracle.graal.loop.LoopEx;
 import com.oracle.graal.loop.LoopsData;
 import com.oracle.graal.nodes.FixedNode;
@@ -35,9 +43,12 @@ import com.oracle.graal.phases.tiers.MidTierContext;
 
 public class LoopSafepointEliminationPhase extends BasePhase<MidTierContext> {
 
+    private static final DebugMetric STRIP_MINED_LOOPS = Debug.metric("StripMinedLoops");
+
     @Override
     protected void run(StructuredGraph graph, MidTierContext context) {
         LoopsData loops = new LoopsData(graph);
+        List<LoopEx> countedLoops = new ArrayList<>();
         if (context.getOptimisticOptimizations().useLoopLimitChecks() && graph.getGuardsStage().allowsFloatingGuards()) {
             loops.detectedCountedLoops();
             for (LoopEx loop : loops.countedLoops()) {
@@ -47,8 +58,7 @@ public class LoopSafepointEliminationPhase extends BasePhase<MidTierContext> {
                         hasSafepoint |= loopEnd.canSafepoint();
                     }
                     if (hasSafepoint) {
-                        loop.counted().createOverFlowGuard();
-                        loop.loopBegin().disableSafepoint();
+                        countedLoops.add(loop);
                     }
                 }
             }
@@ -68,6 +78,26 @@ public class LoopSafepointEliminationPhase extends BasePhase<MidTierContext> {
                 }
             }
         }
+        // the graph is modified from here on, the control flow graph is not used anymore
+        int stripLength = LoopStripMining.getValue() ? LoopStripMiningLength.getValue() : 0;
+        for (LoopEx loop : countedLoops) {
+            boolean hasSafepoint = false;
+            for (LoopEndNode loopEnd : loop.loopBegin().loopEnds()) {
+                hasSafepoint |= loopEnd.canSafepoint();
+            }
+            if (hasSafepoint && stripLength > 0 && LoopTransformations.isStripMinableLoop(loop, stripLength)) {
+                /*
+                 * Only the outer loop polls for safepoints, the loop itself runs for at most
+                 * stripLength iterations without polling.
+                 */
+                LoopTransformations.stripMine(loop, stripLength);
+                STRIP_MINED_LOOPS.increment();
+                Debug.dump(graph, "StripMined %s", loop);
+            } else {
+                loop.counted().createOverFlowGuard();
+            }
+            loop.loopBegin().disableSafepoint();
+        }
         loops.deleteUnusedNodes();
     }
 }
@@ -23,28 +23,62 @@
 package com.oracle.graal.loop.phases;
 
 import static com.oracle.graal.compiler.common.GraalOptions.MaximumDesiredSize;
+import static com.oracle.graal.loop.MathUtil.add;
+import static com.oracle.graal.loop.MathUtil.sub;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.oracle.graal.compiler.common.type.IntegerStamp;
 import com.oracle.graal.graph.Graph.Mark;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
 import com.oracle.graal.graph.NodePosIterator;
 import com.oracle.graal.graph.Position;
+import com.oracle.graal.loop.CountedLoopInfo;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.InductionVariable.Direction;
 import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopFragmentInside;
 import com.oracle.graal.loop.LoopFragmentWhole;
+import com.oracle.graal.loop.LoopsData;
 import com.oracle.graal.nodeinfo.InputType;
 import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.AbstractEndNode;
+import com.oracle.graal.nodes.AbstractMergeNode;
 import com.oracle.graal.nodes.BeginNode;
+import com.oracle.graal.nodes.ConstantNode;
 import com.oracle.graal.nodes.ControlSplitNode;
+import com.oracle.graal.nodes.EndNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.GuardPhiNode;
 import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicNegationNode;
+import com.oracle.graal.nodes.LogicNode;
 import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.MergeNode;
+import com.oracle.graal.nodes.PhiNode;
 import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.VirtualState;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
 import com.oracle.graal.nodes.extended.SwitchNode;
+import com.oracle.graal.nodes.memory.MemoryPhiNode;
+import com.oracle.graal.nodes.util.GraphUtil;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
 import com.oracle.graal.phases.tiers.PhaseContext;
 
 import jdk.vm.ci.code.BailoutException;
+import jdk.vm.ci.code.CodeUtil;
+import jdk.vm.ci.common.JVMCIError;
 
 public abstract class LoopTransformations {
 
@@ -73,6 +107,365 @@ public abstract class LoopTransformations {
         }
     }
 
+    /**
+     * Checks whether {@link #partialUnroll} can be applied to {@code loop}.
+     */
+    public static boolean isUnrollableLoop(LoopEx loop, int factor) {
+        if (!loop.isCounted() || factor < 2 || !loop.loop().getChildren().isEmpty()) {
+            return false;
+        }
+        LoopBeginNode loopBegin = loop.loopBegin();
+        CountedLoopInfo counted = loop.counted();
+        if (!counted.isExactTripCount() || loopBegin.getLoopEndCount() != 1 || !counted.canTestIterationsRemaining(factor)) {
+            return false;
+        }
+        // the loop must exit at its header before anything else is executed
+        if (loopBegin.next() != counted.getBody().predecessor()) {
+            return false;
+        }
+        return !loopBegin.graph().hasValueProxies() || loopBegin.phis().filter(MemoryPhiNode.class).isEmpty();
+    }
+
+    /**
+     * Partially unrolls a counted loop. A copy of the loop is inserted before the loop and runs as
+     * the main loop: its body is repeated {@code factor} times and its exit test checks that
+     * enough iterations remain for all copies of the body. The original loop runs as the post
+     * loop and executes the remaining iterations.
+     *
+     * @return the loop begin of the main loop
+     */
+    public static LoopBeginNode partialUnroll(LoopEx loop, int factor) {
+        assert isUnrollableLoop(loop, factor);
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        CountedLoopInfo counted = loop.counted();
+        AbstractBeginNode body = counted.getBody();
+        IfNode exitTest = (IfNode) body.predecessor();
+
+        LoopFragmentWhole main = loop.whole().insertDuplicateBefore();
+        LoopBeginNode mainLoopBegin = main.getDuplicatedNode(loopBegin);
+        AbstractBeginNode mainBody = main.getDuplicatedNode(body);
+        IfNode mainExitTest = main.getDuplicatedNode(exitTest);
+        ValueNode mainCounter = main.getDuplicatedNode(counted.getCounter().valueNode());
+        LogicNode remaining = counted.createIterationsRemainingTest(mainCounter, factor);
+        if (mainExitTest.trueSuccessor() == mainBody) {
+            mainExitTest.setCondition(remaining);
+        } else {
+            mainExitTest.setCondition(graph.unique(new LogicNegationNode(remaining)));
+        }
+        double frequency = loopBegin.loopFrequency();
+        mainLoopBegin.setLoopFrequency(Math.max(1.0, frequency / factor));
+        loopBegin.setLoopFrequency(Math.min(frequency, factor - 1));
+
+        LoopsData data = new LoopsData(graph);
+        LoopEx mainLoop = data.loop(mainLoopBegin);
+        LoopFragmentInside mainInside = mainLoop.inside();
+        for (int i = 1; i < factor; i++) {
+            LoopFragmentInside copy = mainInside.duplicate();
+            copy.appendInside(mainLoop);
+            /*
+             * The exit test of the main loop already made sure that the copy does not need to
+             * exit.
+             */
+            IfNode copyExitTest = copy.getDuplicatedNode(mainExitTest);
+            LogicNode condition = copyExitTest.condition();
+            graph.removeSplitPropagate(copyExitTest, copy.getDuplicatedNode(mainBody));
+            GraphUtil.tryKillUnused(condition);
+        }
+        data.deleteUnusedNodes();
+        return mainLoopBegin;
+    }
+
+    /**
+     * Checks whether {@link #stripMine} can be applied to {@code loop}. Loops that are known to
+     * execute at most {@code stripLength} iterations are not strip mined.
+     */
+    public static boolean isStripMinableLoop(LoopEx loop, int stripLength) {
+        if (!loop.isCounted() || !loop.loop().getChildren().isEmpty()) {
+            return false;
+        }
+        LoopBeginNode loopBegin = loop.loopBegin();
+        CountedLoopInfo counted = loop.counted();
+        if (loopBegin.loopExits().count() != 1 || loopBegin.stateAfter() == null || !counted.canTestIterationsRemaining(stripLength)) {
+            return false;
+        }
+        // the loop must exit at its header before anything else is executed
+        if (loopBegin.next() != counted.getBody().predecessor()) {
+            return false;
+        }
+        return !counted.isConstantMaxTripCount() || counted.constantMaxTripCount() > stripLength;
+    }
+
+    /**
+     * Strip mines a counted loop: a new outer loop is inserted around the loop and the loop exits
+     * to the back edge of the outer loop after at most {@code stripLength} iterations. The outer
+     * loop exits where the loop exited before. The safepoint on the back edge of the outer loop
+     * bounds the time to the next safepoint while the loop itself does not need to poll.
+     *
+     * @return the loop begin of the outer loop
+     */
+    public static LoopBeginNode stripMine(LoopEx loop, int stripLength) {
+        assert isStripMinableLoop(loop, stripLength);
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        CountedLoopInfo counted = loop.counted();
+        InductionVariable counter = counted.getCounter();
+        AbstractBeginNode body = counted.getBody();
+        LoopExitNode exit = loopBegin.loopExits().first();
+        // the outer loop relies on the counter not overflowing to make progress
+        counted.createOverFlowGuard();
+
+        AbstractEndNode forwardEnd = loopBegin.forwardEnd();
+        FixedWithNextNode entry = (FixedWithNextNode) forwardEnd.predecessor();
+        LoopBeginNode outerBegin = graph.add(new LoopBeginNode());
+        EndNode outerForwardEnd = graph.add(new EndNode());
+        entry.setNext(outerForwardEnd);
+        outerBegin.addForwardEnd(outerForwardEnd);
+        outerBegin.setNext(forwardEnd);
+
+        List<PhiNode> phis = loopBegin.phis().snapshot();
+        List<PhiNode> outerPhis = new ArrayList<>(phis.size());
+        for (PhiNode phi : phis) {
+            PhiNode outerPhi = graph.addWithoutUnique(createPhi(phi, outerBegin));
+            outerPhi.addInput(phi.valueAt(forwardEnd));
+            phi.setValueAt(forwardEnd, outerPhi);
+            outerPhis.add(outerPhi);
+        }
+        FrameState outerState = loopBegin.stateAfter().duplicateWithVirtualState();
+        outerState.applyToVirtual(state -> {
+            for (int i = 0; i < phis.size(); i++) {
+                while (state.inputs().contains(phis.get(i))) {
+                    state.replaceFirstInput(phis.get(i), outerPhis.get(i));
+                }
+            }
+        });
+        outerBegin.setStateAfter(outerState);
+
+        // the counter starts at the value of the outer phis
+        IntegerStamp stamp = counted.getStamp();
+        ValueNode start = counter.initNode();
+        long distance = stripLength * Math.abs(counter.constantStride());
+        LogicNode stripCondition;
+        if (counter.direction() == Direction.Up) {
+            // counter < min(start + distance, max)
+            long max = CodeUtil.maxValue(stamp.getBits());
+            LogicNode overflow = graph.unique(new IntegerLessThanNode(ConstantNode.forIntegerStamp(stamp, max - distance, graph), start));
+            ValueNode stripEnd = graph.unique(new ConditionalNode(overflow, ConstantNode.forIntegerStamp(stamp, max, graph), add(graph, start, ConstantNode.forIntegerStamp(stamp, distance, graph))));
+            stripCondition = graph.unique(new IntegerLessThanNode(counter.valueNode(), stripEnd));
+        } else {
+            assert counter.direction() == Direction.Down;
+            // max(start - distance, min) < counter
+            long min = CodeUtil.minValue(stamp.getBits());
+            LogicNode underflow = graph.unique(new IntegerLessThanNode(start, ConstantNode.forIntegerStamp(stamp, min + distance, graph)));
+            ValueNode stripEnd = graph.unique(new ConditionalNode(underflow, ConstantNode.forIntegerStamp(stamp, min, graph), sub(graph, start, ConstantNode.forIntegerStamp(stamp, distance, graph))));
+            stripCondition = graph.unique(new IntegerLessThanNode(stripEnd, counter.valueNode()));
+        }
+
+        // the strip ends before the body: continue with the next iteration of the outer loop
+        BeginNode stripBody = graph.add(new BeginNode());
+        LoopExitNode stripExit = graph.add(new LoopExitNode(loopBegin));
+        LoopEndNode outerEnd = graph.add(new LoopEndNode(outerBegin));
+        FixedNode bodyNext = body.next();
+        body.setNext(graph.add(new IfNode(stripCondition, stripBody, stripExit, 1.0 - 1.0 / stripLength)));
+        stripBody.setNext(bodyNext);
+        stripExit.setNext(outerEnd);
+        for (int i = 0; i < phis.size(); i++) {
+            outerPhis.get(i).addInput(phis.get(i));
+        }
+
+        // the exit of the loop also exits the outer loop
+        LoopExitNode outerExit = graph.add(new LoopExitNode(outerBegin));
+        FixedNode exitNext = exit.next();
+        exit.setNext(outerExit);
+        outerExit.setNext(exitNext);
+        outerExit.setStateAfter(exit.stateAfter());
+
+        double frequency = loopBegin.loopFrequency();
+        outerBegin.setLoopFrequency(Math.max(1.0, frequency / stripLength));
+        loopBegin.setLoopFrequency(Math.min(frequency, stripLength));
+        return outerBegin;
+    }
+
+    /**
+     * Maximum number of nodes in the exit test of a loop that {@link #rotate} duplicates.
+     */
+    private static final int MAX_ROTATED_TEST_NODES = 16;
+
+    /**
+     * Checks whether {@link #rotate} can be applied to {@code loop}.
+     */
+    public static boolean isRotatableLoop(LoopEx loop) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        if (loopBegin.loopEnds().count() != 1 || loopBegin.loopExits().count() != 1 || loopBegin.stateAfter() != null || !(loopBegin.next() instanceof IfNode)) {
+            return false;
+        }
+        IfNode exitTest = (IfNode) loopBegin.next();
+        LoopExitNode exit = loopBegin.loopExits().first();
+        if ((exitTest.trueSuccessor() != exit && exitTest.falseSuccessor() != exit) || exit.stateAfter() != null || exit.proxies().isNotEmpty()) {
+            return false;
+        }
+        if (exitTestNodes(loop, exitTest.condition()) == null) {
+            return false;
+        }
+        // the phis of the loop are the only loop values that can be used after the loop
+        for (Node node : loop.whole().nodes()) {
+            if (node == exit || (node instanceof PhiNode && ((PhiNode) node).merge() == loopBegin)) {
+                continue;
+            }
+            for (Node usage : node.usages()) {
+                if (loop.isOutsideLoop(usage) && !(node == loopBegin && (usage instanceof LoopEndNode || usage instanceof LoopExitNode))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the nodes of the exit test of a loop that depend on the loop.
+     *
+     * @return the nodes that must be duplicated to evaluate the exit test for other values of the
+     *         phis of the loop or {@code null} if the test depends on other loop nodes
+     */
+    private static List<Node> exitTestNodes(LoopEx loop, LogicNode condition) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        List<Node> nodes = new ArrayList<>();
+        if (loop.isOutsideLoop(condition)) {
+            return nodes;
+        }
+        NodeBitMap visited = loopBegin.graph().createNodeBitMap();
+        visited.mark(condition);
+        nodes.add(condition);
+        for (int i = 0; i < nodes.size(); i++) {
+            for (Node input : nodes.get(i).inputs()) {
+                if (visited.isMarked(input) || loop.isOutsideLoop(input)) {
+                    continue;
+                }
+                visited.mark(input);
+                if (input instanceof PhiNode && ((PhiNode) input).merge() == loopBegin) {
+                    continue;
+                }
+                if (input instanceof FixedNode || input instanceof PhiNode || input instanceof VirtualState || nodes.size() >= MAX_ROTATED_TEST_NODES) {
+                    return null;
+                }
+                nodes.add(input);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Rotates a loop that tests its exit condition at the header into a loop that tests the
+     * condition at its back edge. The exit test is duplicated before the loop, where it decides
+     * whether the loop is entered at all, and before the loop end, where it decides whether
+     * another iteration is executed. Each iteration of the rotated loop executes a single
+     * conditional branch instead of the exit test at the header and the jump back to it.
+     *
+     * Values of the phis of the loop that are used after the loop are merged from the back edge
+     * values of the last iteration and the values before the loop.
+     */
+    public static void rotate(LoopEx loop) {
+        assert isRotatableLoop(loop);
+        LoopBeginNode loopBegin = loop.loopBegin();
+        StructuredGraph graph = loopBegin.graph();
+        IfNode exitTest = (IfNode) loopBegin.next();
+        LoopExitNode exit = loopBegin.loopExits().first();
+        LoopEndNode loopEnd = loopBegin.loopEnds().first();
+        AbstractEndNode forwardEnd = loopBegin.forwardEnd();
+        boolean exitOnTrue = exitTest.trueSuccessor() == exit;
+        AbstractBeginNode body = exitOnTrue ? exitTest.falseSuccessor() : exitTest.trueSuccessor();
+        double trueProbability = exitTest.getTrueSuccessorProbability();
+
+        // collect the users after the loop before any new nodes are added
+        List<PhiNode> phis = loopBegin.phis().snapshot();
+        List<List<Node>> phiUsagesAfterLoop = new ArrayList<>(phis.size());
+        for (PhiNode phi : phis) {
+            phiUsagesAfterLoop.add(phi.usages().filter(usage -> loop.isOutsideLoop(usage)).snapshot());
+        }
+        List<Node> testNodes = exitTestNodes(loop, exitTest.condition());
+        LogicNode entryCondition = duplicateExitTest(loop, exitTest.condition(), testNodes, forwardEnd);
+        LogicNode backEdgeCondition = duplicateExitTest(loop, exitTest.condition(), testNodes, loopEnd);
+
+        // test the condition before the loop
+        FixedWithNextNode entry = (FixedWithNextNode) forwardEnd.predecessor();
+        entry.setNext(null);
+        BeginNode enter = graph.add(new BeginNode());
+        BeginNode skip = graph.add(new BeginNode());
+        enter.setNext(forwardEnd);
+        entry.setNext(graph.add(new IfNode(entryCondition, exitOnTrue ? skip : enter, exitOnTrue ? enter : skip, trueProbability)));
+
+        // the body now starts at the loop header
+        FixedNode bodyNext = body.next();
+        body.setNext(null);
+        exitTest.setTrueSuccessor(null);
+        exitTest.setFalseSuccessor(null);
+        loopBegin.setNext(bodyNext);
+        body.replaceAtUsages(loopBegin);
+        body.safeDelete();
+        GraphUtil.killWithUnusedFloatingInputs(exitTest);
+
+        // test the condition at the back edge and reuse the exit of the loop
+        FixedNode exitNext = exit.next();
+        exit.setNext(null);
+        MergeNode merge = graph.add(new MergeNode());
+        exit.replaceAtUsages(merge);
+        FixedWithNextNode beforeEnd = (FixedWithNextNode) loopEnd.predecessor();
+        beforeEnd.setNext(null);
+        BeginNode next = graph.add(new BeginNode());
+        next.setNext(loopEnd);
+        beforeEnd.setNext(graph.add(new IfNode(backEdgeCondition, exitOnTrue ? exit : next, exitOnTrue ? next : exit, trueProbability)));
+
+        // merge the exit of the loop with the path that skips the loop
+        EndNode exitEnd = graph.add(new EndNode());
+        EndNode skipEnd = graph.add(new EndNode());
+        exit.setNext(exitEnd);
+        skip.setNext(skipEnd);
+        merge.addForwardEnd(exitEnd);
+        merge.addForwardEnd(skipEnd);
+        merge.setNext(exitNext);
+        for (int i = 0; i < phis.size(); i++) {
+            PhiNode phi = phis.get(i);
+            List<Node> usages = phiUsagesAfterLoop.get(i);
+            if (usages.isEmpty()) {
+                continue;
+            }
+            PhiNode exitPhi = graph.addWithoutUnique(createPhi(phi, merge));
+            exitPhi.addInput(phi.valueAt(loopEnd));
+            exitPhi.addInput(phi.valueAt(forwardEnd));
+            for (Node usage : usages) {
+                while (usage.inputs().contains(phi)) {
+                    usage.replaceFirstInput(phi, exitPhi);
+                }
+            }
+        }
+        // the header is no longer executed for the iteration that leaves the loop
+        loopBegin.setLoopFrequency(Math.max(1.0, loopBegin.loopFrequency() - 1.0));
+    }
+
+    private static LogicNode duplicateExitTest(LoopEx loop, LogicNode condition, List<Node> testNodes, AbstractEndNode end) {
+        if (testNodes.isEmpty()) {
+            return condition;
+        }
+        StructuredGraph graph = loop.loopBegin().graph();
+        Map<Node, Node> replacements = new HashMap<>();
+        for (PhiNode phi : loop.loopBegin().phis()) {
+            replacements.put(phi, phi.valueAt(end));
+        }
+        Map<Node, Node> duplicates = graph.addDuplicates(testNodes, graph, testNodes.size(), replacements);
+        return (LogicNode) duplicates.get(condition);
+    }
+
+    private static PhiNode createPhi(PhiNode phi, AbstractMergeNode merge) {
+        if (phi instanceof ValuePhiNode) {
+            return new ValuePhiNode(phi.stamp(), merge);
+        } else if (phi instanceof GuardPhiNode) {
+            return new GuardPhiNode(merge);
+        } else if (phi instanceof MemoryPhiNode) {
+            return new MemoryPhiNode(merge, ((MemoryPhiNode) phi).getLocationIdentity());
+        }
+        throw JVMCIError.shouldNotReachHere();
+    }
+
     public static void unswitch(LoopEx loop, List<ControlSplitNode> controlSplitNodeSet) {
         ControlSplitNode firstNode = controlSplitNodeSet.iterator().next();
         LoopFragmentWhole originalLoop = loop.whole();
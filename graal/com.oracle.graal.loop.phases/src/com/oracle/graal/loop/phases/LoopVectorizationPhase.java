@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.loop.phases;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import com.oracle.graal.compiler.common.type.ArithmeticOpTable.BinaryOp;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.loop.BasicInductionVariable;
+import com.oracle.graal.loop.CountedLoopInfo;
+import com.oracle.graal.loop.InductionVariable;
+import com.oracle.graal.loop.InductionVariable.Direction;
+import com.oracle.graal.loop.LoopEx;
+import com.oracle.graal.loop.LoopsData;
+import com.oracle.graal.nodes.AbstractEndNode;
+import com.oracle.graal.nodes.BeginNode;
+import com.oracle.graal.nodes.ConstantNode;
+import com.oracle.graal.nodes.EndNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.IfNode;
+import com.oracle.graal.nodes.LogicNode;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
+import com.oracle.graal.nodes.MergeNode;
+import com.oracle.graal.nodes.PiNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.calc.BinaryArithmeticNode;
+import com.oracle.graal.nodes.calc.ConditionalNode;
+import com.oracle.graal.nodes.calc.IntegerLessThanNode;
+import com.oracle.graal.nodes.calc.IsNullNode;
+import com.oracle.graal.nodes.calc.SubNode;
+import com.oracle.graal.nodes.extended.BranchProbabilityNode;
+import com.oracle.graal.nodes.extended.VectorizedArrayOpNode;
+import com.oracle.graal.nodes.java.ArrayLengthNode;
+import com.oracle.graal.nodes.java.LoadIndexedNode;
+import com.oracle.graal.nodes.java.StoreIndexedNode;
+import com.oracle.graal.nodes.type.StampTool;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.phases.Phase;
+
+import jdk.vm.ci.meta.JavaKind;
+
+/**
+ * Vectorizes counted loops of the form {@code for (i = start; i < end; i++) a[i] = b[i] op c[i]}
+ * (or {@code b[i] op c} with a loop invariant {@code c}). A {@link VectorizedArrayOpNode} that
+ * processes as many iterations as possible with vector instructions is inserted before the loop
+ * and the loop starts at the first iteration that was not processed. It is only used if the arrays
+ * are non-null and all iterations are within their bounds, so the loop still executes the
+ * iterations that throw an exception.
+ */
+public class LoopVectorizationPhase extends Phase {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Vectorize simple counted loops over arrays", type = OptionType.Debug)
+        public static final OptionValue<Boolean> VectorizeLoops = new OptionValue<>(false);
+        // @formatter:on
+    }
+
+    private static final DebugMetric VECTORIZED_LOOPS = Debug.metric("VectorizedLoops");
+
+    private final BiPredicate<BinaryOp<?>, JavaKind> isSupported;
+
+    /**
+     * @param isSupported decides whether the target can vectorize an operation on arrays of a kind
+     */
+    public LoopVectorizationPhase(BiPredicate<BinaryOp<?>, JavaKind> isSupported) {
+        this.isSupported = isSupported;
+    }
+
+    @Override
+    protected void run(StructuredGraph graph) {
+        if (graph.hasLoops()) {
+            LoopsData data = new LoopsData(graph);
+            data.detectedCountedLoops();
+            for (LoopEx loop : data.countedLoops()) {
+                StoreIndexedNode store = getVectorizableStore(loop);
+                if (store != null) {
+                    Debug.log("Vectorize %s", loop);
+                    vectorize(loop, store);
+                    VECTORIZED_LOOPS.increment();
+                    Debug.dump(graph, "Vectorized %s", loop);
+                }
+            }
+            data.deleteUnusedNodes();
+        }
+    }
+
+    /**
+     * Gets the only store of a loop that can be vectorized.
+     *
+     * @return {@code null} if the loop cannot be vectorized
+     */
+    private StoreIndexedNode getVectorizableStore(LoopEx loop) {
+        LoopBeginNode loopBegin = loop.loopBegin();
+        CountedLoopInfo counted = loop.counted();
+        if (!loop.loop().getChildren().isEmpty() || loopBegin.getLoopEndCount() != 1 || loopBegin.loopExits().count() != 1 || loopBegin.phis().count() != 1) {
+            return null;
+        }
+        if (!(loopBegin.next() instanceof IfNode) || counted.getBody().predecessor() != loopBegin.next()) {
+            return null;
+        }
+        InductionVariable counter = counted.getCounter();
+        if (!(counter instanceof BasicInductionVariable) || counter.direction() != Direction.Up || !counter.isConstantStride() || counter.constantStride() != 1 || counted.isLimitIncluded() ||
+                        counted.getStamp().getBits() != 32) {
+            return null;
+        }
+        FrameState state = loopBegin.stateAfter();
+        if (state == null || state.virtualObjectMappingCount() != 0) {
+            return null;
+        }
+        ValuePhiNode phi = ((BasicInductionVariable) counter).valueNode();
+
+        List<LoadIndexedNode> loads = new ArrayList<>(2);
+        StoreIndexedNode store = null;
+        FixedNode node = counted.getBody().next();
+        while (node instanceof FixedWithNextNode) {
+            if (node instanceof LoadIndexedNode && store == null) {
+                loads.add((LoadIndexedNode) node);
+            } else if (node instanceof StoreIndexedNode && store == null) {
+                store = (StoreIndexedNode) node;
+            } else {
+                return null;
+            }
+            node = ((FixedWithNextNode) node).next();
+        }
+        if (!(node instanceof LoopEndNode) || store == null || store.index() != phi || !loop.isOutsideLoop(store.array())) {
+            return null;
+        }
+        JavaKind kind = store.elementKind();
+        if (kind != JavaKind.Int && kind != JavaKind.Long && kind != JavaKind.Float && kind != JavaKind.Double) {
+            return null;
+        }
+        if (!(store.value() instanceof BinaryArithmeticNode)) {
+            return null;
+        }
+        BinaryArithmeticNode<?> value = (BinaryArithmeticNode<?>) store.value();
+        if (!isSupported.test(value.getArithmeticOp(), kind) || value.getUsageCount() != 1) {
+            return null;
+        }
+        ValueNode x = value.getX();
+        ValueNode y = value.getY();
+        if (!isVectorLoad(x, loads) && value.getArithmeticOp().isCommutative()) {
+            x = value.getY();
+            y = value.getX();
+        }
+        if (!isVectorLoad(x, loads) || !(isVectorLoad(y, loads) || loop.isOutsideLoop(y))) {
+            return null;
+        }
+        for (LoadIndexedNode load : loads) {
+            if ((load != x && load != y) || load.index() != phi || load.elementKind() != kind || !loop.isOutsideLoop(load.array()) || load.usages().filter(n -> n != value).isNotEmpty()) {
+                return null;
+            }
+        }
+        return store;
+    }
+
+    private static boolean isVectorLoad(ValueNode value, List<LoadIndexedNode> loads) {
+        return value instanceof LoadIndexedNode && loads.contains(value);
+    }
+
+    private static void vectorize(LoopEx loop, StoreIndexedNode store) {
+        StructuredGraph graph = loop.loopBegin().graph();
+        LoopBeginNode loopBegin = loop.loopBegin();
+        ValuePhiNode phi = ((BasicInductionVariable) loop.counted().getCounter()).valueNode();
+        AbstractEndNode forwardEnd = loopBegin.forwardEnd();
+        ValueNode start = phi.valueAt(forwardEnd);
+        ValueNode end = loop.counted().getLimit();
+
+        BinaryArithmeticNode<?> value = (BinaryArithmeticNode<?>) store.value();
+        ValueNode x = value.getX();
+        ValueNode y = value.getY();
+        if (loop.isOutsideLoop(x)) {
+            // loop invariant operand of a commutative operation
+            x = value.getY();
+            y = value.getX();
+        }
+        boolean source2IsArray = !loop.isOutsideLoop(y);
+        ValueNode destination = store.array();
+        ValueNode source1 = ((LoadIndexedNode) x).array();
+        ValueNode source2 = source2IsArray ? ((LoadIndexedNode) y).array() : y;
+
+        // 0 <= start && start < end && arrays != null
+        double probability = BranchProbabilityNode.FAST_PATH_PROBABILITY;
+        LogicNode condition = graph.unique(new IntegerLessThanNode(start, end));
+        condition = LogicNode.and(graph.unique(new IntegerLessThanNode(start, ConstantNode.forInt(0, graph))), true, condition, false, probability);
+        condition = checkNonNull(graph, destination, condition, probability);
+        condition = checkNonNull(graph, source1, condition, probability);
+        if (source2IsArray) {
+            condition = checkNonNull(graph, source2, condition, probability);
+        }
+
+        BeginNode vectorBegin = graph.add(new BeginNode());
+        BeginNode skipBegin = graph.add(new BeginNode());
+        IfNode ifNode = graph.add(new IfNode(condition, vectorBegin, skipBegin, probability));
+        EndNode vectorEnd = graph.add(new EndNode());
+        EndNode skipEnd = graph.add(new EndNode());
+        MergeNode merge = graph.add(new MergeNode());
+        skipBegin.setNext(skipEnd);
+
+        FixedWithNextNode last = vectorBegin;
+        ValueNode limit = end;
+        ValueNode nonNullDestination = nonNull(graph, destination, vectorBegin);
+        ValueNode nonNullSource1 = nonNull(graph, source1, vectorBegin);
+        ValueNode nonNullSource2 = source2IsArray ? nonNull(graph, source2, vectorBegin) : source2;
+        for (ValueNode array : new ValueNode[]{nonNullDestination, nonNullSource1, source2IsArray ? nonNullSource2 : null}) {
+            if (array != null) {
+                ArrayLengthNode length = graph.add(new ArrayLengthNode(array));
+                last.setNext(length);
+                last = length;
+                limit = graph.unique(new ConditionalNode(graph.unique(new IntegerLessThanNode(length, limit)), length, limit));
+            }
+        }
+        ValueNode count = graph.unique(new SubNode(limit, start));
+        count = graph.unique(new ConditionalNode(graph.unique(new IntegerLessThanNode(start, limit)), count, ConstantNode.forInt(0, graph)));
+        VectorizedArrayOpNode vector = graph.add(new VectorizedArrayOpNode(value.getArithmeticOp(), store.elementKind(), nonNullDestination, nonNullSource1, nonNullSource2, source2IsArray, start,
+                        count));
+        vector.setStateAfter(replaceInState(loopBegin.stateAfter().duplicate(), phi, vector));
+        last.setNext(vector);
+        vector.setNext(vectorEnd);
+
+        merge.addForwardEnd(vectorEnd);
+        merge.addForwardEnd(skipEnd);
+        ValuePhiNode newStart = graph.addWithoutUnique(new ValuePhiNode(phi.stamp().unrestricted(), merge));
+        newStart.addInput(vector);
+        newStart.addInput(start);
+        merge.setStateAfter(replaceInState(loopBegin.stateAfter().duplicate(), phi, newStart));
+
+        FixedWithNextNode predecessor = (FixedWithNextNode) forwardEnd.predecessor();
+        predecessor.setNext(null);
+        merge.setNext(forwardEnd);
+        predecessor.setNext(ifNode);
+        phi.setValueAt(forwardEnd, newStart);
+    }
+
+    private static LogicNode checkNonNull(StructuredGraph graph, ValueNode array, LogicNode condition, double probability) {
+        if (StampTool.isPointerNonNull(array)) {
+            return condition;
+        }
+        return LogicNode.and(graph.unique(new IsNullNode(array)), true, condition, false, probability);
+    }
+
+    private static ValueNode nonNull(StructuredGraph graph, ValueNode array, BeginNode anchor) {
+        if (StampTool.isPointerNonNull(array)) {
+            return array;
+        }
+        return graph.unique(new PiNode(array, array.stamp().join(StampFactory.objectNonNull()), anchor));
+    }
+
+    private static FrameState replaceInState(FrameState state, ValueNode oldValue, ValueNode newValue) {
+        for (int i = 0; i < state.values().size(); i++) {
+            if (state.values().get(i) == oldValue) {
+                state.values().set(i, newValue);
+            }
+        }
+        return state;
+    }
+}
@@ -36,6 +36,7 @@ import com.oracle.graal.loop.InductionVariable.Direction;
 import com.oracle.graal.nodes.AbstractBeginNode;
 import com.oracle.graal.nodes.ConstantNode;
 import com.oracle.graal.nodes.GuardNode;
+import com.oracle.graal.nodes.LogicNode;
 import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.ValueNode;
 import com.oracle.graal.nodes.calc.CompareNode;
@@ -182,6 +183,52 @@ public class CountedLoopInfo {
         return overflowGuard;
     }
 
+    /**
+     * Checks whether {@link #createIterationsRemainingTest} can be used for {@code iterations}.
+     */
+    public boolean canTestIterationsRemaining(int iterations) {
+        if (!iv.isConstantStride() || iterations < 1) {
+            return false;
+        }
+        long stride = Math.abs(iv.constantStride());
+        long maxDistance = CodeUtil.maxValue(getStamp().getBits()) >> 1;
+        return stride != 0 && stride <= maxDistance / iterations;
+    }
+
+    /**
+     * Creates a test that succeeds if the loop executes at least {@code iterations} more
+     * iterations when its {@linkplain #getCounter() counter} has the value {@code counter} at the
+     * loop header. If the test succeeds, the counter does not overflow in these iterations.
+     *
+     * @param counter the value of the counter, or of a copy of the counter in a duplicate of this
+     *            loop
+     */
+    public LogicNode createIterationsRemainingTest(ValueNode counter, int iterations) {
+        assert canTestIterationsRemaining(iterations);
+        IntegerStamp stamp = getStamp();
+        StructuredGraph graph = counter.graph();
+        /*
+         * The counter must stay on the inside of the limit for the additional iterations. With an
+         * included limit, the last of them may reach the limit itself.
+         */
+        long distance = (iterations - 1) * Math.abs(iv.constantStride()) - (oneOff ? 1 : 0);
+        ConstantNode distanceNode = ConstantNode.forIntegerStamp(stamp, distance, graph);
+        if (iv.direction() == Direction.Up) {
+            // counter < end - distance, never succeeds if the subtraction underflows
+            long min = CodeUtil.minValue(stamp.getBits());
+            LogicNode underflow = graph.unique(new IntegerLessThanNode(end, ConstantNode.forIntegerStamp(stamp, min + distance, graph)));
+            ValueNode limit = graph.unique(new ConditionalNode(underflow, ConstantNode.forIntegerStamp(stamp, min, graph), sub(graph, end, distanceNode)));
+            return graph.unique(new IntegerLessThanNode(counter, limit));
+        } else {
+            assert iv.direction() == Direction.Down;
+            // end + distance < counter, never succeeds if the addition overflows
+            long max = CodeUtil.maxValue(stamp.getBits());
+            LogicNode overflow = graph.unique(new IntegerLessThanNode(ConstantNode.forIntegerStamp(stamp, max - distance, graph), end));
+            ValueNode limit = graph.unique(new ConditionalNode(overflow, ConstantNode.forIntegerStamp(stamp, max, graph), add(graph, end, distanceNode)));
+            return graph.unique(new IntegerLessThanNode(limit, counter));
+        }
+    }
+
     public IntegerStamp getStamp() {
         return (IntegerStamp) iv.valueNode().stamp();
     }
@@ -25,6 +25,7 @@ package com.oracle.graal.loop;
 import static com.oracle.graal.compiler.common.GraalOptions.LoopMaxUnswitch;
 import static com.oracle.graal.compiler.common.GraalOptions.MaximumDesiredSize;
 import static com.oracle.graal.compiler.common.GraalOptions.MinimumPeelProbability;
+import static com.oracle.graal.compiler.common.GraalOptions.PartialUnrollFactor;
 
 import java.util.List;
 
@@ -56,24 +57,15 @@ public class DefaultLoopPolicies implements LoopPolicies {
     @Option(help = "", type = OptionType.Expert) public static final OptionValue<Integer> FullUnrollMaxIterations = new OptionValue<>(600);
     @Option(help = "", type = OptionType.Expert) public static final OptionValue<Integer> ExactFullUnrollMaxNodes = new OptionValue<>(1200);
 
+    @Option(help = "Maximum number of nodes in the unrolled body of a partially unrolled loop", type = OptionType.Expert) public static final OptionValue<Integer> PartialUnrollMaxNodes = new OptionValue<>(400);
+
     @Override
     public boolean shouldPeel(LoopEx loop, ControlFlowGraph cfg) {
         LoopBeginNode loopBegin = loop.loopBegin();
         double entryProbability = cfg.blockFor(loopBegin.forwardEnd()).probability();
         if (entryProbability > MinimumPeelProbability.getValue() && loop.size() + loopBegin.graph().getNodeCount() < MaximumDesiredSize.getValue()) {
             // check whether we're allowed to peel this loop
-            for (Node node : loop.inside().nodes()) {
-                if (node instanceof ControlFlowAnchorNode) {
-                    return false;
-                }
-                if (node instanceof FrameState) {
-                    FrameState frameState = (FrameState) node;
-                    if (frameState.bci == BytecodeFrame.AFTER_EXCEPTION_BCI || frameState.bci == BytecodeFrame.UNWIND_BCI) {
-                        return false;
-                    }
-                }
-            }
-            return true;
+            return canDuplicateLoop(loop);
         } else {
             return false;
         }
@@ -91,21 +83,50 @@ public class DefaultLoopPolicies implements LoopPolicies {
         int size = Math.max(1, loop.size() - 1 - loop.loopBegin().phis().count());
         if (maxTrips <= FullUnrollMaxIterations.getValue() && size * (maxTrips - 1) <= maxNodes) {
             // check whether we're allowed to unroll this loop
-            for (Node node : loop.inside().nodes()) {
-                if (node instanceof ControlFlowAnchorNode) {
+            return canDuplicateLoop(loop);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean shouldPartialUnroll(LoopEx loop) {
+        if (!loop.isCounted()) {
+            return false;
+        }
+        LoopBeginNode loopBegin = loop.loopBegin();
+        int factor = PartialUnrollFactor.getValue();
+        if (factor < 2 || loopBegin.loopFrequency() <= 1.0) {
+            return false;
+        }
+        CountedLoopInfo counted = loop.counted();
+        if (counted.isConstantMaxTripCount() && counted.constantMaxTripCount() < 2L * factor) {
+            // such loops are better left to full unrolling
+            return false;
+        }
+        int maxNodes = Math.min(PartialUnrollMaxNodes.getValue(), Math.max(0, MaximumDesiredSize.getValue() - loopBegin.graph().getNodeCount()));
+        int size = Math.max(1, loop.size() - 1 - loopBegin.phis().count());
+        if (size * factor <= maxNodes) {
+            // check whether we're allowed to unroll this loop
+            return canDuplicateLoop(loop);
+        } else {
+            return false;
+        }
+    }
+
+    private static boolean canDuplicateLoop(LoopEx loop) {
+        for (Node node : loop.inside().nodes()) {
+            if (node instanceof ControlFlowAnchorNode) {
+                return false;
+            }
+            if (node instanceof FrameState) {
+                FrameState frameState = (FrameState) node;
+                if (frameState.bci == BytecodeFrame.AFTER_EXCEPTION_BCI || frameState.bci == BytecodeFrame.UNWIND_BCI) {
                     return false;
                 }
-                if (node instanceof FrameState) {
-                    FrameState frameState = (FrameState) node;
-                    if (frameState.bci == BytecodeFrame.AFTER_EXCEPTION_BCI || frameState.bci == BytecodeFrame.UNWIND_BCI) {
-                        return false;
-                    }
-                }
             }
-            return true;
-        } else {
-            return false;
         }
+        return true;
     }
 
     @Override
@@ -164,4 +185,9 @@ public class DefaultLoopPolicies implements LoopPolicies {
         return actualDiff <= maxDiff;
     }
 
+    @Override
+    public boolean shouldRotate(LoopEx loop) {
+        // the test before the loop does not pay off for loops that are rarely iterated
+        return loop.loopBegin().loopFrequency() > 1.0;
+    }
 }
@@ -94,9 +94,59 @@ public class LoopFragmentInside extends LoopFragment {
         return (LoopFragmentInside) super.original();
     }
 
-    @SuppressWarnings("unused")
+    /**
+     * Inserts this duplicate at the end of the body of {@code loop}, just before its back edge. In
+     * every iteration, the duplicate then runs after the original body and starts with the values
+     * the original body computed for the next iteration. The duplicate's loop exits are left
+     * unconnected, the caller has to remove them. Only loops with a single back edge are
+     * supported.
+     */
     public void appendInside(LoopEx loop) {
-        // TODO (gd)
+        assert this.isDuplicate() && this.original().loop() == loop;
+        LoopBeginNode loopBegin = loop.loopBegin();
+        assert loopBegin.getLoopEndCount() == 1 : "loops with multiple back edges are not supported";
+        LoopEndNode loopEnd = loopBegin.loopEnds().first();
+
+        patchNodes(new DuplicationReplacement() {
+
+            @Override
+            public Node replacement(Node oriInput) {
+                if (loopBegin.isPhiAtMerge(oriInput)) {
+                    return ((PhiNode) oriInput).valueAt(loopEnd);
+                }
+                return oriInput;
+            }
+        });
+
+        List<PhiNode> phis = loopBegin.phis().snapshot();
+        ValueNode[] backValues = new ValueNode[phis.size()];
+        for (int i = 0; i < backValues.length; i++) {
+            backValues[i] = primAfter(loopBegin, loopEnd, phis.get(i).valueAt(loopEnd));
+        }
+
+        AbstractBeginNode entry = getDuplicatedNode(loopBegin);
+        AbstractEndNode end = getDuplicatedNode(loopEnd);
+        loopEnd.replaceAtPredecessor(entry);
+        end.replaceAtPredecessor(loopEnd);
+        end.safeDelete();
+        for (int i = 0; i < backValues.length; i++) {
+            phis.get(i).setValueAt(loopEnd, backValues[i]);
+        }
+    }
+
+    /**
+     * Gets the value in this duplicate that corresponds to {@code b} when the duplicate is
+     * {@linkplain #appendInside appended} to the loop body.
+     */
+    private ValueNode primAfter(LoopBeginNode loopBegin, LoopEndNode loopEnd, ValueNode b) {
+        if (loopBegin.isPhiAtMerge(b)) {
+            return ((PhiNode) b).valueAt(loopEnd);
+        }
+        ValueNode v = getDuplicatedNode(b);
+        if (v == null) {
+            return b;
+        }
+        return v;
     }
 
     @Override
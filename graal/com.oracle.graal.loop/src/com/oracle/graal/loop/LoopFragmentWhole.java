@@ -27,11 +27,21 @@ import com.oracle.graal.graph.Graph;
 import com.oracle.graal.graph.Graph.DuplicationReplacement;
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.nodes.AbstractEndNode;
 import com.oracle.graal.nodes.EndNode;
 import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.GuardPhiNode;
 import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopExitNode;
+import com.oracle.graal.nodes.PhiNode;
+import com.oracle.graal.nodes.ProxyNode;
+import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
 import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.util.GraphUtil;
+
+import jdk.vm.ci.common.JVMCIError;
 
 public class LoopFragmentWhole extends LoopFragment {
 
@@ -50,6 +60,55 @@ public class LoopFragmentWhole extends LoopFragment {
         return loopFragmentWhole;
     }
 
+    /**
+     * Creates a copy of this loop and inserts it before this loop. The copy runs first and, when
+     * it exits, this loop is entered with the values the loop phis of the copy had at its exit.
+     * This only preserves the semantics if the loop has a single exit that is taken at the loop
+     * header before anything else in the loop body is executed, so that this loop computes the
+     * same values as the copy if it exits immediately.
+     *
+     * @return the copy
+     */
+    public LoopFragmentWhole insertDuplicateBefore() {
+        assert !isDuplicate();
+        LoopBeginNode loopBegin = loop().loopBegin();
+        assert loopBegin.loopExits().count() == 1 : "loops with multiple exits are not supported";
+        LoopExitNode exit = loopBegin.loopExits().first();
+        StructuredGraph graph = graph();
+
+        LoopFragmentWhole duplicate = new LoopFragmentWhole(this);
+        duplicate.patchNodes(null);
+        LoopExitNode duplicateExit = duplicate.getDuplicatedNode(exit);
+        assert duplicateExit.next() == null;
+
+        AbstractEndNode entry = loopBegin.forwardEnd();
+        entry.replaceAtPredecessor(duplicate.entryPoint());
+        duplicateExit.setNext(entry);
+        int entryIndex = loopBegin.phiPredecessorIndex(entry);
+        for (PhiNode phi : loopBegin.phis()) {
+            PhiNode duplicatePhi = duplicate.getDuplicatedNode(phi);
+            phi.setValueAt(entryIndex, proxy(graph, duplicatePhi, duplicateExit));
+        }
+        for (ProxyNode proxy : duplicateExit.proxies().snapshot()) {
+            if (proxy.hasNoUsages()) {
+                GraphUtil.killWithUnusedFloatingInputs(proxy);
+            }
+        }
+        return duplicate;
+    }
+
+    private static ValueNode proxy(StructuredGraph graph, PhiNode phi, LoopExitNode exit) {
+        if (!graph.hasValueProxies()) {
+            return phi;
+        }
+        if (phi instanceof ValuePhiNode) {
+            return ProxyNode.forValue(phi, exit, graph);
+        } else if (phi instanceof GuardPhiNode) {
+            return ProxyNode.forGuard((GuardPhiNode) phi, exit, graph);
+        }
+        throw JVMCIError.shouldNotReachHere("cannot proxy " + phi);
+    }
+
     private void reify() {
         assert this.isDuplicate();
 
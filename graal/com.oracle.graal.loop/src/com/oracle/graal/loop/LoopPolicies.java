@@ -32,7 +32,11 @@ public interface LoopPolicies {
 
     boolean shouldFullUnroll(LoopEx loop);
 
+    boolean shouldPartialUnroll(LoopEx loop);
+
     boolean shouldTryUnswitch(LoopEx loop);
 
     boolean shouldUnswitch(LoopEx loop, List<ControlSplitNode> controlSplits);
+
+    boolean shouldRotate(LoopEx loop);
 }
@@ -26,13 +26,18 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Warmup;
 
 import com.oracle.graal.graph.Graph;
+import com.oracle.graal.graph.GraphFork;
 import com.oracle.graal.microbenchmarks.graal.util.GraalState;
 import com.oracle.graal.microbenchmarks.graal.util.GraphState;
 import com.oracle.graal.microbenchmarks.graal.util.MethodSpec;
 import com.oracle.graal.nodes.StructuredGraph;
 
 /**
- * Benchmarks the performance of {@link Graph#copy()}.
+ * Benchmarks the performance of {@link Graph#copy()}. Running these benchmarks with the JMH
+ * {@code -prof gc} profiler reports the heap allocated per copied graph as
+ * {@code gc.alloc.rate.norm}, which includes the usage lists of the copied nodes. The
+ * {@code *Fork} benchmarks measure a {@link GraphFork} that is only read, which is what a
+ * speculative transformation pays when it ends up not modifying the graph.
  */
 public class GraphCopyBenchmark extends GraalBenchmark {
 
@@ -79,6 +84,12 @@ public class GraphCopyBenchmark extends GraalBenchmark {
         return (StructuredGraph) s.graph.copy();
     }
 
+    @Benchmark
+    @Warmup(iterations = 20)
+    public StructuredGraph nullnessFork(Nullness s, @SuppressWarnings("unused") GraalState g) {
+        return new GraphFork<>(s.graph).get();
+    }
+
     @MethodSpec(declaringClass = GraphCopyBenchmark.class, name = "searchSnippet")
     public static class Search extends GraphState {
     }
@@ -130,4 +141,10 @@ public class GraphCopyBenchmark extends GraalBenchmark {
     public StructuredGraph search(Search s, @SuppressWarnings("unused") GraalState g) {
         return (StructuredGraph) s.graph.copy();
     }
+
+    @Benchmark
+    @Warmup(iterations = 20)
+    public StructuredGraph searchFork(Search s, @SuppressWarnings("unused") GraalState g) {
+        return new GraphFork<>(s.graph).get();
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.microbenchmarks.graal;
+
+import static com.oracle.graal.microbenchmarks.graal.GraalBenchmark.Defaults.FORKS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of an iteration of loops that test their exit condition at the header with and
+ * without loop rotation. The loop bodies are small so that the branch saved in every iteration of
+ * a rotated loop is visible in the time per operation.
+ */
+@State(Scope.Thread)
+public class LoopRotationBenchmark extends GraalBenchmark {
+
+    private static final String ROTATION = "-Dgraal.LoopRotation=true";
+
+    private static final int SIZE = 10000;
+
+    static class Cell {
+        final int value;
+        final Cell next;
+
+        Cell(int value, Cell next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private int[] values;
+
+    private Cell list;
+
+    @Setup
+    public void setup() {
+        values = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = i * 7 + 3;
+            list = new Cell(i, list);
+        }
+    }
+
+    private static int sum(int[] a) {
+        int sum = 0;
+        int i = 0;
+        while (i < a.length) {
+            sum += a[i];
+            i++;
+        }
+        return sum;
+    }
+
+    private static int walk(Cell start) {
+        int sum = 0;
+        Cell cell = start;
+        while (cell != null) {
+            sum += cell.value;
+            cell = cell.next;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int sumArray() {
+        return sum(values);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    @Fork(value = FORKS, jvmArgsAppend = ROTATION)
+    public int sumArrayRotated() {
+        return sum(values);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int walkList() {
+        return walk(list);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    @Fork(value = FORKS, jvmArgsAppend = ROTATION)
+    public int walkListRotated() {
+        return walk(list);
+    }
+}
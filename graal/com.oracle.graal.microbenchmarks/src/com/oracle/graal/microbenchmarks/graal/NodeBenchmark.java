@@ -30,6 +30,8 @@ import org.openjdk.jmh.infra.Blackhole;
 
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.graph.NodeStack;
+import com.oracle.graal.graph.NodeWorkList;
 import com.oracle.graal.microbenchmarks.graal.util.GraalState;
 import com.oracle.graal.microbenchmarks.graal.util.MethodSpec;
 import com.oracle.graal.microbenchmarks.graal.util.NodesState;
@@ -85,6 +87,35 @@ public class NodeBenchmark extends GraalBenchmark {
         }
     }
 
+    @Benchmark
+    @Warmup(iterations = 20)
+    public void nodeWorkList(StringEquals s, Blackhole bh) {
+        NodeWorkList workList = s.graph.createIterativeNodeWorkList(true, 0);
+        for (Node node : workList) {
+            for (Node input : node.inputs()) {
+                workList.add(input);
+            }
+            bh.consume(node);
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 20)
+    public void nodeStack(StringEquals s, Blackhole bh) {
+        NodeStack stack = new NodeStack(s.graph);
+        NodeBitMap visited = s.graph.createNodeBitMap();
+        for (Node node : s.graph.getNodes()) {
+            stack.push(node);
+            while (!stack.isEmpty()) {
+                Node current = stack.pop();
+                if (visited.checkAndMarkInc(current)) {
+                    current.pushInputs(stack);
+                    bh.consume(current);
+                }
+            }
+        }
+    }
+
     @MethodSpec(declaringClass = HashMap.class, name = "computeIfAbsent")
     public static class HashMapComputeIfAbsent extends NodesState {
     }
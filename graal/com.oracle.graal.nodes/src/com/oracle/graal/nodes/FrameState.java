@@ -460,7 +460,8 @@ public final class FrameState extends VirtualState implements IterableNodeType {
     }
 
     /**
-     * Get the MonitorIdNode that corresponds to the locked object at the specified index.
+     * Get the MonitorIdNode that corresponds to the locked object at the specified index. This is
+     * {@code null} if the lock has been eliminated.
      */
     public MonitorIdNode monitorIdAt(int i) {
         assert monitorIds != null && i >= 0 && i < locksSize();
@@ -550,7 +551,9 @@ public final class FrameState extends VirtualState implements IterableNodeType {
         if (monitorIds() != null && monitorIds().size() > 0) {
             int depth = outerLockDepth();
             for (MonitorIdNode monitor : monitorIds()) {
-                assertTrue(monitor.getLockDepth() == depth++, "wrong depth");
+                // null for a lock that was eliminated, but it still occupies its lock depth
+                assertTrue(monitor == null || monitor.getLockDepth() == depth, "wrong depth");
+                depth++;
             }
         }
         assertTrue(locksSize() == monitorIdCount(), "mismatch in number of locks");
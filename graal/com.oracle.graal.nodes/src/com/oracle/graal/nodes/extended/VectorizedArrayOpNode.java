@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.nodes.extended;
+
+import com.oracle.graal.compiler.common.type.ArithmeticOpTable.BinaryOp;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodeinfo.InputType;
+import com.oracle.graal.nodeinfo.NodeInfo;
+import com.oracle.graal.nodes.NamedLocationIdentity;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.memory.AbstractMemoryCheckpoint;
+import com.oracle.graal.nodes.memory.MemoryAccess;
+import com.oracle.graal.nodes.memory.MemoryCheckpoint;
+import com.oracle.graal.nodes.memory.MemoryNode;
+import com.oracle.graal.nodes.spi.LIRLowerable;
+import com.oracle.graal.nodes.spi.NodeLIRBuilderTool;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LocationIdentity;
+
+/**
+ * Computes {@code destination[i] = source1[i] op source2[i]} (or {@code source1[i] op source2} if
+ * the second source is a scalar) for a prefix of the index range {@code [start, start + length)}
+ * using the vector instructions of the target. The value of this node is the index of the first
+ * element that was not processed; the remaining elements are left to the scalar loop that follows.
+ *
+ * The arrays must be non-null and the whole index range must be within their bounds.
+ */
+@NodeInfo(allowedUsageTypes = {InputType.Memory, InputType.Value})
+public final class VectorizedArrayOpNode extends AbstractMemoryCheckpoint implements LIRLowerable, MemoryCheckpoint.Single, MemoryAccess {
+
+    public static final NodeClass<VectorizedArrayOpNode> TYPE = NodeClass.create(VectorizedArrayOpNode.class);
+
+    protected final BinaryOp<?> op;
+    protected final JavaKind elementKind;
+    protected final boolean source2IsArray;
+
+    @Input ValueNode destination;
+    @Input ValueNode source1;
+    @Input ValueNode source2;
+    @Input ValueNode start;
+    @Input ValueNode length;
+
+    @OptionalInput(InputType.Memory) MemoryNode lastLocationAccess;
+
+    public VectorizedArrayOpNode(BinaryOp<?> op, JavaKind elementKind, ValueNode destination, ValueNode source1, ValueNode source2, boolean source2IsArray, ValueNode start, ValueNode length) {
+        super(TYPE, StampFactory.forKind(JavaKind.Int));
+        this.op = op;
+        this.elementKind = elementKind;
+        this.source2IsArray = source2IsArray;
+        this.destination = destination;
+        this.source1 = source1;
+        this.source2 = source2;
+        this.start = start;
+        this.length = length;
+    }
+
+    public BinaryOp<?> getOp() {
+        return op;
+    }
+
+    public JavaKind getElementKind() {
+        return elementKind;
+    }
+
+    public boolean isSource2Array() {
+        return source2IsArray;
+    }
+
+    public ValueNode getDestination() {
+        return destination;
+    }
+
+    public ValueNode getSource1() {
+        return source1;
+    }
+
+    public ValueNode getSource2() {
+        return source2;
+    }
+
+    public ValueNode getStart() {
+        return start;
+    }
+
+    public ValueNode getLength() {
+        return length;
+    }
+
+    @Override
+    public LocationIdentity getLocationIdentity() {
+        return NamedLocationIdentity.getArrayLocation(elementKind);
+    }
+
+    @Override
+    public MemoryNode getLastLocationAccess() {
+        return lastLocationAccess;
+    }
+
+    @Override
+    public void setLastLocationAccess(MemoryNode lla) {
+        updateUsagesInterface(lastLocationAccess, lla);
+        lastLocationAccess = lla;
+    }
+
+    @Override
+    public void generate(NodeLIRBuilderTool gen) {
+        gen.setResult(this, gen.getLIRGeneratorTool().emitVectorizedArrayOp(op, elementKind, gen.operand(destination), gen.operand(source1), gen.operand(source2), source2IsArray, gen.operand(start),
+                        gen.operand(length)));
+    }
+}
@@ -28,11 +28,13 @@ import jdk.vm.ci.meta.ResolvedJavaType;
 
 import com.oracle.graal.compiler.common.type.StampFactory;
 import com.oracle.graal.compiler.common.type.TypeReference;
+import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeClass;
 import com.oracle.graal.nodeinfo.NodeInfo;
 import com.oracle.graal.nodes.ConstantNode;
 import com.oracle.graal.nodes.FrameState;
 import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.VirtualState;
 import com.oracle.graal.nodes.spi.VirtualizableAllocation;
 import com.oracle.graal.nodes.spi.VirtualizerTool;
 import com.oracle.graal.nodes.type.StampTool;
@@ -82,7 +84,7 @@ public class NewArrayNode extends AbstractNewArrayNode implements VirtualizableA
         ValueNode lengthAlias = tool.getAlias(length());
         if (lengthAlias.asConstant() != null) {
             int constantLength = lengthAlias.asJavaConstant().asInt();
-            if (constantLength >= 0 && constantLength < tool.getMaximumEntryCount()) {
+            if (constantLength >= 0 && (constantLength < tool.getMaximumEntryCount() || (constantLength < tool.getMaximumConstantIndexArrayLength() && hasOnlyConstantIndexAccesses(tool, constantLength)))) {
                 ValueNode[] state = new ValueNode[constantLength];
                 ConstantNode defaultForKind = constantLength == 0 ? null : defaultElementValue();
                 for (int i = 0; i < constantLength; i++) {
@@ -95,6 +97,32 @@ public class NewArrayNode extends AbstractNewArrayNode implements VirtualizableA
         }
     }
 
+    /**
+     * Determines if this array is only used by accesses with constant indices within its bounds, so
+     * that a virtualized version of it is never materialized just to access an element.
+     */
+    private boolean hasOnlyConstantIndexAccesses(VirtualizerTool tool, int constantLength) {
+        for (Node usage : usages()) {
+            if (usage instanceof AccessIndexedNode) {
+                AccessIndexedNode access = (AccessIndexedNode) usage;
+                if (access.array() != this || (access instanceof StoreIndexedNode && ((StoreIndexedNode) access).value() == this)) {
+                    return false;
+                }
+                ValueNode indexAlias = tool.getAlias(access.index());
+                if (!indexAlias.isConstant()) {
+                    return false;
+                }
+                int index = indexAlias.asJavaConstant().asInt();
+                if (index < 0 || index >= constantLength) {
+                    return false;
+                }
+            } else if (!(usage instanceof ArrayLengthNode || usage instanceof VirtualState)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected VirtualArrayNode createVirtualArrayNode(int constantLength) {
         return new VirtualArrayNode(elementType(), constantLength);
     }
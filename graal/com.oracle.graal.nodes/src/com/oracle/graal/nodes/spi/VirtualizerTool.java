@@ -61,6 +61,16 @@ public interface VirtualizerTool {
      */
     int getMaximumEntryCount();
 
+    /**
+     * This method should be used to query the maximum size of virtualized arrays whose elements are
+     * only accessed with constant indices. This is larger than the
+     * {@linkplain #getMaximumEntryCount() general limit}, because such arrays never need to be
+     * materialized just because of an access.
+     *
+     * @return the maximum number of entries for virtualized arrays with constant index accesses.
+     */
+    int getMaximumConstantIndexArrayLength();
+
     // methods working on virtualized/materialized objects
 
     /**
@@ -131,6 +131,20 @@ public class OptionValue<T> {
         return new MultipleOverridesScope(current, map);
     }
 
+    /**
+     * Gets the values of all options that are overridden in the current thread. The result can be
+     * passed to {@link #override(Map)} to apply the same overrides in another thread.
+     */
+    public static Map<OptionValue<?>, Object> getOverrides() {
+        OverrideScope current = getOverrideScope();
+        if (current == null) {
+            return Collections.emptyMap();
+        }
+        Map<OptionValue<?>, Object> overrides = new HashMap<>();
+        current.addToInherited(overrides);
+        return overrides;
+    }
+
     private static final ThreadLocal<OverrideScope> overrideScopeTL = new ThreadLocal<>();
 
     protected static OverrideScope getOverrideScope() {
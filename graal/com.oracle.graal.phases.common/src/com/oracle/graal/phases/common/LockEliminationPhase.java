@@ -22,28 +22,220 @@
  */
 package com.oracle.graal.phases.common;
 
+import static com.oracle.graal.compiler.common.GraalOptions.LockCoarseningMaxNodes;
+import static com.oracle.graal.compiler.common.GraalOptions.OptEliminateThreadLocalLocks;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.DeoptimizingNode;
 import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.Invoke;
+import com.oracle.graal.nodes.PiNode;
+import com.oracle.graal.nodes.SafepointNode;
+import com.oracle.graal.nodes.StateSplit;
 import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.ValuePhiNode;
+import com.oracle.graal.nodes.ValueProxyNode;
+import com.oracle.graal.nodes.VirtualState;
+import com.oracle.graal.nodes.calc.CompareNode;
+import com.oracle.graal.nodes.calc.IsNullNode;
+import com.oracle.graal.nodes.extended.FixedValueAnchorNode;
+import com.oracle.graal.nodes.extended.ForeignCallNode;
+import com.oracle.graal.nodes.extended.LoadHubNode;
+import com.oracle.graal.nodes.java.AbstractNewObjectNode;
+import com.oracle.graal.nodes.java.AccessFieldNode;
+import com.oracle.graal.nodes.java.AccessIndexedNode;
 import com.oracle.graal.nodes.java.AccessMonitorNode;
+import com.oracle.graal.nodes.java.ArrayLengthNode;
+import com.oracle.graal.nodes.java.InstanceOfNode;
 import com.oracle.graal.nodes.java.MonitorEnterNode;
 import com.oracle.graal.nodes.java.MonitorExitNode;
+import com.oracle.graal.nodes.java.MonitorIdNode;
 import com.oracle.graal.nodes.java.RawMonitorEnterNode;
+import com.oracle.graal.nodes.java.StoreFieldNode;
+import com.oracle.graal.nodes.java.StoreIndexedNode;
+import com.oracle.graal.nodes.memory.AbstractWriteNode;
+import com.oracle.graal.nodes.memory.MemoryCheckpoint;
+import com.oracle.graal.nodes.memory.address.OffsetAddressNode;
 import com.oracle.graal.nodes.util.GraphUtil;
+import com.oracle.graal.nodes.virtual.AllocatedObjectNode;
+import com.oracle.graal.nodes.virtual.CommitAllocationNode;
 import com.oracle.graal.phases.Phase;
 
+/**
+ * Removes monitor operations that are not needed:
+ * <ul>
+ * <li>A lock that is released and then reacquired on the same object with only a few nodes in
+ * between that neither have side effects nor can deoptimize is held across these nodes (lock
+ * coarsening). The number of such nodes is limited by {@code LockCoarseningMaxNodes},
+ * which bounds the time the lock is held longer. Together with loop unrolling this coarsens locks
+ * across loop iterations.</li>
+ * <li>Locks on objects that are allocated in this method and never escape the current thread are
+ * removed (lock elision). This complements escape analysis, which only removes locks on objects
+ * that are virtual: the objects handled here may be materialized, for example because they are
+ * merged with other objects or because they are needed by a frame state. The locks stay in the
+ * frame states as eliminated locks, so that they are reacquired upon deoptimization.
+ * This is only done if {@code OptEliminateThreadLocalLocks} is enabled.</li>
+ * </ul>
+ */
 public class LockEliminationPhase extends Phase {
 
+    private static final DebugMetric METRIC_LOCKS_COARSENED = Debug.metric("LocksCoarsened");
+    private static final DebugMetric METRIC_THREAD_LOCAL_LOCKS_ELIMINATED = Debug.metric("ThreadLocalLocksEliminated");
+
     @Override
     protected void run(StructuredGraph graph) {
         for (MonitorExitNode node : graph.getNodes(MonitorExitNode.TYPE)) {
             FixedNode next = node.next();
+            int movedNodes = 0;
+            while (movedNodes < LockCoarseningMaxNodes.getValue() && canMoveIntoLockedRegion(next)) {
+                next = ((FixedWithNextNode) next).next();
+                movedNodes++;
+            }
             if (next instanceof MonitorEnterNode || next instanceof RawMonitorEnterNode) {
                 AccessMonitorNode monitorEnterNode = (AccessMonitorNode) next;
-                if (GraphUtil.unproxify(monitorEnterNode.object()) == GraphUtil.unproxify(node.object())) {
+                if (GraphUtil.unproxify(monitorEnterNode.object()) == GraphUtil.unproxify(node.object()) &&
+                                monitorEnterNode.getMonitorId().getLockDepth() == node.getMonitorId().getLockDepth()) {
+                    MonitorIdNode monitorId = node.getMonitorId();
+                    MonitorIdNode reacquiredMonitorId = monitorEnterNode.getMonitorId();
                     GraphUtil.removeFixedWithUnusedInputs(monitorEnterNode);
                     GraphUtil.removeFixedWithUnusedInputs(node);
+                    if (monitorId.isAlive() && reacquiredMonitorId.isAlive() && reacquiredMonitorId != monitorId) {
+                        // the remaining monitor operations now belong to a single locking scope
+                        reacquiredMonitorId.replaceAtUsagesAndDelete(monitorId);
+                    }
+                    METRIC_LOCKS_COARSENED.increment();
+                }
+            }
+        }
+        if (OptEliminateThreadLocalLocks.getValue()) {
+            eliminateThreadLocalLocks(graph);
+        }
+    }
+
+    /**
+     * Determines if a node can be executed while holding a lock that it was executed without.
+     * Such a node must not block or take long, and it must not deoptimize or have side effects,
+     * since the frame states after the node do not describe the lock as being held.
+     */
+    private static boolean canMoveIntoLockedRegion(FixedNode node) {
+        if (!(node instanceof FixedWithNextNode) || node instanceof AbstractBeginNode || node instanceof AccessMonitorNode || node instanceof Invoke || node instanceof ForeignCallNode ||
+                        node instanceof SafepointNode || node instanceof MemoryCheckpoint) {
+            return false;
+        }
+        if (node instanceof StateSplit && ((StateSplit) node).hasSideEffect()) {
+            return false;
+        }
+        return !(node instanceof DeoptimizingNode && ((DeoptimizingNode) node).canDeoptimize());
+    }
+
+    private static void eliminateThreadLocalLocks(StructuredGraph graph) {
+        for (MonitorIdNode monitorId : graph.getNodes(MonitorIdNode.TYPE).snapshot()) {
+            ValueNode object = lockedObject(monitorId);
+            if (object != null && isThreadLocal(graph, object)) {
+                for (Node usage : monitorId.usages().snapshot()) {
+                    if (usage instanceof VirtualState) {
+                        usage.replaceFirstInput(monitorId, null);
+                    }
+                }
+                for (Node usage : monitorId.usages().snapshot()) {
+                    GraphUtil.removeFixedWithUnusedInputs((FixedWithNextNode) usage);
                 }
+                METRIC_THREAD_LOCAL_LOCKS_ELIMINATED.increment();
+            }
+        }
+    }
+
+    /**
+     * Gets the object that is locked by the monitor operations using {@code monitorId}, or
+     * {@code null} if the lock is not acquired by a monitor enter node in this graph.
+     */
+    private static ValueNode lockedObject(MonitorIdNode monitorId) {
+        ValueNode object = null;
+        boolean hasEnter = false;
+        for (Node usage : monitorId.usages()) {
+            if (usage instanceof MonitorEnterNode || usage instanceof RawMonitorEnterNode || usage instanceof MonitorExitNode) {
+                ValueNode usageObject = GraphUtil.unproxify(((AccessMonitorNode) usage).object());
+                if (object != null && object != usageObject) {
+                    return null;
+                }
+                object = usageObject;
+                hasEnter |= !(usage instanceof MonitorExitNode);
+            } else if (!(usage instanceof VirtualState)) {
+                return null;
+            }
+        }
+        return hasEnter ? object : null;
+    }
+
+    /**
+     * Determines if {@code object} is allocated in this graph and all its usages only access it,
+     * so that it cannot become visible to another thread.
+     */
+    private static boolean isThreadLocal(StructuredGraph graph, ValueNode object) {
+        if (!(object instanceof AbstractNewObjectNode || object instanceof AllocatedObjectNode)) {
+            return false;
+        }
+        if (object instanceof AllocatedObjectNode && isReferencedByCommit(graph, (AllocatedObjectNode) object)) {
+            return false;
+        }
+        NodeBitMap visited = graph.createNodeBitMap();
+        Deque<ValueNode> worklist = new ArrayDeque<>();
+        visited.mark(object);
+        worklist.add(object);
+        while (!worklist.isEmpty()) {
+            ValueNode value = worklist.remove();
+            for (Node usage : value.usages()) {
+                if (usage instanceof PiNode || usage instanceof ValueProxyNode || usage instanceof ValuePhiNode || usage instanceof FixedValueAnchorNode) {
+                    if (!visited.isMarked(usage)) {
+                        visited.mark(usage);
+                        worklist.add((ValueNode) usage);
+                    }
+                } else if (usage instanceof MonitorExitNode) {
+                    if (((MonitorExitNode) usage).object() != value || usage.inputs().filter(input -> input == value).count() != 1) {
+                        return false;
+                    }
+                } else if (usage instanceof AbstractWriteNode) {
+                    if (((AbstractWriteNode) usage).value() == value) {
+                        return false;
+                    }
+                } else if (usage instanceof StoreFieldNode) {
+                    if (((StoreFieldNode) usage).value() == value) {
+                        return false;
+                    }
+                } else if (usage instanceof StoreIndexedNode) {
+                    if (((StoreIndexedNode) usage).value() == value) {
+                        return false;
+                    }
+                } else if (!(usage instanceof VirtualState || usage instanceof AccessMonitorNode || usage instanceof OffsetAddressNode || usage instanceof AccessFieldNode ||
+                                usage instanceof AccessIndexedNode || usage instanceof ArrayLengthNode || usage instanceof LoadHubNode || usage instanceof IsNullNode || usage instanceof CompareNode ||
+                                usage instanceof InstanceOfNode)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if an object materialized by escape analysis is stored into another object
+     * materialized by any commit, which refers to it by its virtual object rather than by a usage
+     * of {@code object}.
+     */
+    private static boolean isReferencedByCommit(StructuredGraph graph, AllocatedObjectNode object) {
+        for (CommitAllocationNode commit : graph.getNodes().filter(CommitAllocationNode.class)) {
+            if (commit.getValues().contains(object.getVirtualObject())) {
+                return true;
             }
         }
+        return false;
     }
 }
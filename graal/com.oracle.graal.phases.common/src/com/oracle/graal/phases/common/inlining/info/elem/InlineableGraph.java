@@ -34,6 +34,7 @@ import jdk.vm.ci.meta.ResolvedJavaMethod;
 
 import com.oracle.graal.compiler.common.type.Stamp;
 import com.oracle.graal.debug.Debug;
+import com.oracle.graal.graph.GraphFork;
 import com.oracle.graal.graph.Node;
 import com.oracle.graal.graph.NodeInputList;
 import com.oracle.graal.nodes.ConstantNode;
@@ -51,8 +52,10 @@ import com.oracle.graal.phases.tiers.HighTierContext;
 
 /**
  * <p>
- * Represents a feasible concrete target for inlining, whose graph has been copied already and thus
- * can be modified without affecting the original (usually cached) version.
+ * Represents a feasible concrete target for inlining. A cached intrinsic graph is only
+ * {@linkplain GraphFork copied} if it has to be modified, i.e., if it is specialized to the
+ * arguments of the invoke or if it contains invokes that may be inlined into it. Otherwise the cached
+ * graph is used directly and must not be modified.
  * </p>
  *
  * <p>
@@ -70,23 +73,32 @@ public class InlineableGraph implements Inlineable {
     private FixedNodeProbabilityCache probabilites = new FixedNodeProbabilityCache();
 
     public InlineableGraph(final ResolvedJavaMethod method, final Invoke invoke, final HighTierContext context, CanonicalizerPhase canonicalizer) {
-        StructuredGraph original = getOriginalGraph(method, context, canonicalizer, invoke.asNode().graph(), invoke.bci());
-        // TODO copying the graph is only necessary if it is modified or if it contains any invokes
-        this.graph = (StructuredGraph) original.copy();
+        StructuredGraph intrinsicGraph = InliningUtil.getIntrinsicGraph(context.getReplacements(), method, invoke.bci());
+        if (intrinsicGraph == null) {
+            // A freshly parsed graph is not shared and can be modified in place.
+            this.graph = parseBytecodes(method, context, canonicalizer, invoke.asNode().graph());
+        } else {
+            /*
+             * Intrinsic graphs are cached. The graph only needs to be copied if it is specialized
+             * to the arguments or if it contains invokes, which may be inlined into it.
+             */
+            GraphFork<StructuredGraph> fork = new GraphFork<>(intrinsicGraph);
+            if (intrinsicGraph.getInvokes().iterator().hasNext() || hasMoreInformativeArguments(invoke, intrinsicGraph)) {
+                fork.getMutable();
+            }
+            this.graph = fork.get();
+        }
         specializeGraphToArguments(invoke, context, canonicalizer);
     }
 
-    /**
-     * This method looks up in a cache the graph for the argument, if not found bytecode is parsed.
-     * The graph thus obtained is returned, ie the caller is responsible for cloning before
-     * modification.
-     */
-    private static StructuredGraph getOriginalGraph(final ResolvedJavaMethod method, final HighTierContext context, CanonicalizerPhase canonicalizer, StructuredGraph caller, int callerBci) {
-        StructuredGraph result = InliningUtil.getIntrinsicGraph(context.getReplacements(), method, callerBci);
-        if (result != null) {
-            return result;
+    private static boolean hasMoreInformativeArguments(Invoke invoke, StructuredGraph graph) {
+        NodeInputList<ValueNode> args = invoke.callTarget().arguments();
+        for (ParameterNode param : graph.getNodes(ParameterNode.TYPE)) {
+            if (param.usages().isNotEmpty() && isArgMoreInformativeThanParam(args.get(param.index()), param)) {
+                return true;
+            }
         }
-        return parseBytecodes(method, context, canonicalizer, caller);
+        return false;
     }
 
     /**
@@ -188,9 +200,8 @@ public class InlineableGraph implements Inlineable {
     }
 
     /**
-     * This method builds the IR nodes for the given <code>method</code> and canonicalizes them.
-     * Provided profiling info is mature, the resulting graph is cached. The caller is responsible
-     * for cloning before modification. </p>
+     * This method builds the IR nodes for the given <code>method</code> and canonicalizes them. The
+     * resulting graph is owned by the caller.
      */
     @SuppressWarnings("try")
     private static StructuredGraph parseBytecodes(ResolvedJavaMethod method, HighTierContext context, CanonicalizerPhase canonicalizer, StructuredGraph caller) {
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.phases;
+
+import java.util.concurrent.TimeUnit;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugCloseable;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+
+/**
+ * A wall-clock time and node count budget for the compilation of a single graph. While a budget is
+ * {@linkplain #activate() active}, every {@link PhaseSuite} checks it after each of its phases and
+ * throws a {@link CompilationBudgetExceededException} once the budget is exhausted. The caller can
+ * then retry the compilation with a cheaper configuration.
+ *
+ * Only the graph the budget was created for is checked, so graphs that are processed on the side
+ * (e.g., snippets or inlining candidates) do not trigger a bailout.
+ */
+public final class CompilationBudget {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Milliseconds a compilation may spend before it falls back to the economy configuration (0 to disable)", type = OptionType.Expert)
+        public static final OptionValue<Integer> CompilationTimeBudget = new OptionValue<>(10000);
+
+        @Option(help = "Number of nodes a graph may grow to before its compilation falls back to the economy configuration (0 to disable)", type = OptionType.Expert)
+        public static final OptionValue<Integer> CompilationNodeBudget = new OptionValue<>(100000);
+        // @formatter:on
+    }
+
+    private static final DebugMetric CompilationTimeBudgetExceeded = Debug.metric("CompilationTimeBudgetExceeded");
+    private static final DebugMetric CompilationNodeBudgetExceeded = Debug.metric("CompilationNodeBudgetExceeded");
+
+    private static final ThreadLocal<CompilationBudget> current = new ThreadLocal<>();
+
+    private final StructuredGraph graph;
+    private final long start;
+    private final long timeBudgetNanos;
+    private final int nodeBudget;
+
+    /**
+     * Creates a budget for {@code graph} with the limits given by {@link Options}.
+     */
+    public CompilationBudget(StructuredGraph graph) {
+        this(graph, Options.CompilationTimeBudget.getValue(), Options.CompilationNodeBudget.getValue());
+    }
+
+    /**
+     * Creates a budget for {@code graph}.
+     *
+     * @param timeBudgetMillis the wall-clock time budget, starting now, or 0 for no time limit
+     * @param nodeBudget the maximum number of live nodes in {@code graph}, or 0 for no limit
+     */
+    public CompilationBudget(StructuredGraph graph, long timeBudgetMillis, int nodeBudget) {
+        this.graph = graph;
+        this.start = System.nanoTime();
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        this.nodeBudget = nodeBudget;
+    }
+
+    /**
+     * Determines if the {@link Options} specify any limit.
+     */
+    public static boolean isEnabled() {
+        return Options.CompilationTimeBudget.getValue() > 0 || Options.CompilationNodeBudget.getValue() > 0;
+    }
+
+    /**
+     * Makes this the budget checked by phase suites on the current thread until the returned
+     * object is closed.
+     */
+    public DebugCloseable activate() {
+        final CompilationBudget previous = current.get();
+        current.set(this);
+        return new DebugCloseable() {
+            @Override
+            public void close() {
+                current.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Checks the budget active on the current thread if it was created for {@code g}.
+     *
+     * @throws CompilationBudgetExceededException if the budget is exhausted
+     */
+    public static void check(StructuredGraph g) {
+        CompilationBudget budget = current.get();
+        if (budget != null && budget.graph == g) {
+            budget.check();
+        }
+    }
+
+    private void check() {
+        if (nodeBudget > 0) {
+            int nodeCount = graph.getNodeCount();
+            if (nodeCount > nodeBudget) {
+                CompilationNodeBudgetExceeded.increment();
+                throw new CompilationBudgetExceededException("graph has %d nodes, budget is %d", nodeCount, nodeBudget);
+            }
+        }
+        if (timeBudgetNanos > 0) {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed > timeBudgetNanos) {
+                CompilationTimeBudgetExceeded.increment();
+                throw new CompilationBudgetExceededException("compilation took %d ms, budget is %d ms", TimeUnit.NANOSECONDS.toMillis(elapsed), TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos));
+            }
+        }
+    }
+}
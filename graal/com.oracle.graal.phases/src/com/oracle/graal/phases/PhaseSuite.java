@@ -30,7 +30,8 @@ import java.util.ListIterator;
 import com.oracle.graal.nodes.StructuredGraph;
 
 /**
- * A compiler phase that can apply an ordered collection of phases to a graph.
+ * A compiler phase that can apply an ordered collection of phases to a graph. The active
+ * {@link CompilationBudget} is checked after each phase.
  */
 public class PhaseSuite<C> extends BasePhase<C> {
 
@@ -114,6 +115,7 @@ public class PhaseSuite<C> extends BasePhase<C> {
     protected void run(StructuredGraph graph, C context) {
         for (BasePhase<? super C> phase : phases) {
             phase.apply(graph, context);
+            CompilationBudget.check(graph);
         }
     }
 
@@ -551,7 +551,7 @@ public final class SchedulePhase extends Phase {
                 }
             }
 
-            NodeStack stack = new NodeStack();
+            NodeStack stack = new NodeStack(graph);
 
             // Start analysis with control flow ends.
             Block[] reversePostOrder = cfg.reversePostOrder();
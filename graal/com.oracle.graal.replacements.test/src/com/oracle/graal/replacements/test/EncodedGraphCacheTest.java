@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements.test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.nodes.CallTargetNode.InvokeKind;
+import com.oracle.graal.nodes.EncodedGraph;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration;
+import com.oracle.graal.nodes.graphbuilderconf.InlineInvokePlugin;
+import com.oracle.graal.nodes.java.MethodCallTargetNode;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.replacements.CachingPEGraphDecoder;
+import com.oracle.graal.replacements.EncodedGraphCache;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+public class EncodedGraphCacheTest extends GraalCompilerTest {
+
+    public static int method1() {
+        return 1;
+    }
+
+    public static int method2() {
+        return 2;
+    }
+
+    public static int method3() {
+        return 3;
+    }
+
+    abstract static class Shape {
+        abstract int sides();
+    }
+
+    static final class Triangle extends Shape {
+        @Override
+        int sides() {
+            return 3;
+        }
+    }
+
+    /**
+     * Only loaded by {@link #testInvalidatedAssumption()}, which invalidates the assumption that
+     * {@link Triangle#sides()} is the only implementation of {@link Shape#sides()}.
+     */
+    static final class Square extends Shape {
+        @Override
+        int sides() {
+            return 4;
+        }
+    }
+
+    public static int callSides(Shape shape) {
+        return shape.sides();
+    }
+
+    private static class CountingFactory implements EncodedGraphCache.GraphFactory {
+        final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public EncodedGraph createGraph(ResolvedJavaMethod method, boolean isIntrinsic) {
+            created.incrementAndGet();
+            return new EncodedGraph(new byte[0], 0, new Object[0], new NodeClass<?>[0], null, Collections.<ResolvedJavaMethod> emptyList());
+        }
+    }
+
+    @Test
+    public void testCreateOnce() throws InterruptedException {
+        final EncodedGraphCache cache = new EncodedGraphCache(16);
+        final ResolvedJavaMethod method = getResolvedJavaMethod("method1");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingFactory blockingFactory = new CountingFactory() {
+            @Override
+            public EncodedGraph createGraph(ResolvedJavaMethod m, boolean isIntrinsic) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return super.createGraph(m, isIntrinsic);
+            }
+        };
+        final EncodedGraph[] results = new EncodedGraph[4];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> results[index] = cache.get(method, false, AllowAssumptions.YES, blockingFactory));
+            threads[i].start();
+            if (i == 0) {
+                started.await();
+            }
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(1, blockingFactory.created.get());
+        for (EncodedGraph result : results) {
+            Assert.assertSame(results[0], result);
+        }
+    }
+
+    @Test
+    public void testKeys() {
+        EncodedGraphCache cache = new EncodedGraphCache(16);
+        CountingFactory factory = new CountingFactory();
+        ResolvedJavaMethod method = getResolvedJavaMethod("method1");
+        EncodedGraph graph = cache.get(method, false, AllowAssumptions.YES, factory);
+        Assert.assertSame(graph, cache.get(method, false, AllowAssumptions.YES, factory));
+        Assert.assertNotSame(graph, cache.get(method, true, AllowAssumptions.YES, factory));
+        Assert.assertNotSame(graph, cache.get(method, false, AllowAssumptions.NO, factory));
+        Assert.assertEquals(3, factory.created.get());
+    }
+
+    private StructuredGraph decode(EncodedGraphCache cache, ResolvedJavaMethod method) {
+        GraphBuilderConfiguration graphBuilderConfig = GraphBuilderConfiguration.getEagerDefault(getDefaultGraphBuilderPlugins());
+        CachingPEGraphDecoder decoder = new CachingPEGraphDecoder(getProviders(), graphBuilderConfig, OptimisticOptimizations.NONE, AllowAssumptions.YES, getTarget().arch, cache);
+        StructuredGraph targetGraph = new StructuredGraph(method, AllowAssumptions.YES);
+        decoder.decode(targetGraph, method, null, null, new InlineInvokePlugin[0], null);
+        return targetGraph;
+    }
+
+    private static InvokeKind invokeKind(StructuredGraph graph) {
+        MethodCallTargetNode callTarget = graph.getNodes().filter(MethodCallTargetNode.class).first();
+        Assert.assertNotNull(callTarget);
+        return callTarget.invokeKind();
+    }
+
+    @Test
+    public void testInvalidatedAssumption() throws ClassNotFoundException {
+        Assert.assertEquals(3, callSides(new Triangle()));
+        EncodedGraphCache cache = new EncodedGraphCache(16);
+        ResolvedJavaMethod method = getResolvedJavaMethod("callSides");
+
+        StructuredGraph first = decode(cache, method);
+        Assert.assertEquals("call devirtualized under an assumption", InvokeKind.Special, invokeKind(first));
+        Assert.assertFalse("assumptions of the encoded graph must be recorded", first.getAssumptions().isEmpty());
+        Assert.assertEquals("graph with assumptions must not be cached", 0, cache.size());
+
+        /* Loading a second implementation of Shape.sides() invalidates the assumption. */
+        Class.forName(EncodedGraphCacheTest.class.getName() + "$Square");
+
+        StructuredGraph second = decode(cache, method);
+        Assert.assertNotEquals(InvokeKind.Special, invokeKind(second));
+    }
+
+    @Test
+    public void testEviction() {
+        EncodedGraphCache cache = new EncodedGraphCache(2);
+        CountingFactory factory = new CountingFactory();
+        ResolvedJavaMethod m1 = getResolvedJavaMethod("method1");
+        ResolvedJavaMethod m2 = getResolvedJavaMethod("method2");
+        ResolvedJavaMethod m3 = getResolvedJavaMethod("method3");
+        cache.get(m1, false, AllowAssumptions.NO, factory);
+        cache.get(m2, false, AllowAssumptions.NO, factory);
+        /* Make m2 the least recently used entry. */
+        cache.get(m1, false, AllowAssumptions.NO, factory);
+        cache.get(m3, false, AllowAssumptions.NO, factory);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(3, factory.created.get());
+
+        cache.get(m1, false, AllowAssumptions.NO, factory);
+        Assert.assertEquals(3, factory.created.get());
+        cache.get(m2, false, AllowAssumptions.NO, factory);
+        Assert.assertEquals(4, factory.created.get());
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.graal.compiler.test.GraalCompilerTest;
+import com.oracle.graal.nodes.EncodedGraph;
+import com.oracle.graal.nodes.GraphEncoder;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration;
+import com.oracle.graal.phases.OptimisticOptimizations;
+import com.oracle.graal.replacements.PersistentGraphCache;
+
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.MethodVisitor;
+import jdk.internal.org.objectweb.asm.Opcodes;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+public class PersistentGraphCacheTest extends GraalCompilerTest {
+
+    public static int[] values = {1, 2, 3};
+
+    public static int sumSnippet(int n) {
+        int sum = 0;
+        for (int i = 0; i < n && i < values.length; i++) {
+            sum += values[i] * 31;
+        }
+        return sum;
+    }
+
+    public static String concatSnippet(Object a, Object b) {
+        return String.valueOf(a) + b;
+    }
+
+    /**
+     * The class that is redefined with different bytecodes by {@link VersionedLoader}.
+     */
+    public static class Versioned {
+        public static int value() {
+            return 1;
+        }
+    }
+
+    private static final String VERSIONED_NAME = Versioned.class.getName();
+
+    /**
+     * Loads a class with the name of {@link Versioned} whose {@code value} method returns 42.
+     */
+    private static class VersionedLoader extends ClassLoader {
+        private Class<?> loaded;
+
+        VersionedLoader() {
+            super(VersionedLoader.class.getClassLoader());
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(VERSIONED_NAME)) {
+                return super.loadClass(name, resolve);
+            }
+            if (loaded == null) {
+                byte[] bytes = generateVersioned();
+                loaded = defineClass(name, bytes, 0, bytes.length);
+            }
+            return loaded;
+        }
+
+        private static byte[] generateVersioned() {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, VERSIONED_NAME.replace('.', '/'), null, "java/lang/Object", null);
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "value", "()I", null, null);
+            mv.visitCode();
+            mv.visitIntInsn(Opcodes.BIPUSH, 42);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+    }
+
+    private String eagerConfiguration() {
+        return PersistentGraphCache.configuration(GraphBuilderConfiguration.getEagerDefault(getDefaultGraphBuilderPlugins()), OptimisticOptimizations.ALL, AllowAssumptions.NO);
+    }
+
+    /**
+     * Stores the {@linkplain #parseEager eagerly parsed} graph of {@code method} in a new cache
+     * backed by {@code file} and writes the cache to the file.
+     */
+    private StructuredGraph store(File file, ResolvedJavaMethod method) throws IOException {
+        StructuredGraph graph = parseEager(method, AllowAssumptions.NO);
+        EncodedGraph encodedGraph = GraphEncoder.encodeSingleGraph(graph, getTarget().arch);
+
+        PersistentGraphCache cache = new PersistentGraphCache(file, getMetaAccess(), getTarget().arch);
+        Assert.assertNull(cache.lookup(method, false, eagerConfiguration()));
+        cache.store(method, false, eagerConfiguration(), encodedGraph);
+        cache.flush();
+        Assert.assertTrue(file.isFile());
+        return graph;
+    }
+
+    private void testRoundTrip(String snippet) throws IOException {
+        File file = File.createTempFile("graphcache", ".bin");
+        try {
+            file.delete();
+            ResolvedJavaMethod method = getResolvedJavaMethod(snippet);
+            StructuredGraph graph = store(file, method);
+
+            PersistentGraphCache reopened = new PersistentGraphCache(file, getMetaAccess(), getTarget().arch);
+            EncodedGraph loaded = reopened.lookup(method, false, eagerConfiguration());
+            Assert.assertNotNull(loaded);
+            Assert.assertNull(reopened.lookup(method, true, eagerConfiguration()));
+            Assert.assertTrue(GraphEncoder.verifyEncoding(graph, loaded, getTarget().arch));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSum() throws IOException {
+        testRoundTrip("sumSnippet");
+    }
+
+    @Test
+    public void testConcat() throws IOException {
+        testRoundTrip("concatSnippet");
+    }
+
+    @Test
+    public void testChangedBytecodes() throws IOException, ClassNotFoundException {
+        File file = File.createTempFile("graphcache", ".bin");
+        try {
+            file.delete();
+            ResolvedJavaMethod method = getResolvedJavaMethod(Versioned.class, "value");
+            store(file, method);
+            Assert.assertNotNull(new PersistentGraphCache(file, getMetaAccess(), getTarget().arch).lookup(method, false, eagerConfiguration()));
+
+            Class<?> changed = new VersionedLoader().loadClass(VERSIONED_NAME);
+            Assert.assertNotEquals(Versioned.class, changed);
+            ResolvedJavaMethod changedMethod = getResolvedJavaMethod(changed, "value");
+            PersistentGraphCache reopened = new PersistentGraphCache(file, getMetaAccess(), getTarget().arch);
+            Assert.assertNull(reopened.lookup(changedMethod, false, eagerConfiguration()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testChangedConfiguration() throws IOException {
+        File file = File.createTempFile("graphcache", ".bin");
+        try {
+            file.delete();
+            ResolvedJavaMethod method = getResolvedJavaMethod("sumSnippet");
+            store(file, method);
+
+            PersistentGraphCache reopened = new PersistentGraphCache(file, getMetaAccess(), getTarget().arch);
+            String lazy = PersistentGraphCache.configuration(GraphBuilderConfiguration.getDefault(getDefaultGraphBuilderPlugins()), OptimisticOptimizations.ALL, AllowAssumptions.NO);
+            Assert.assertNotEquals(eagerConfiguration(), lazy);
+            Assert.assertNull(reopened.lookup(method, false, lazy));
+            String pessimistic = PersistentGraphCache.configuration(GraphBuilderConfiguration.getEagerDefault(getDefaultGraphBuilderPlugins()), OptimisticOptimizations.NONE, AllowAssumptions.NO);
+            Assert.assertNull(reopened.lookup(method, false, pessimistic));
+            String withAssumptions = PersistentGraphCache.configuration(GraphBuilderConfiguration.getEagerDefault(getDefaultGraphBuilderPlugins()), OptimisticOptimizations.ALL, AllowAssumptions.YES);
+            Assert.assertNull(reopened.lookup(method, false, withAssumptions));
+            Assert.assertNotNull(reopened.lookup(method, false, eagerConfiguration()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        File file = File.createTempFile("graphcache", ".bin");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[]{0x47, 0x52, 0x43, 0x46, 0, 0, 0});
+            }
+            PersistentGraphCache cache = new PersistentGraphCache(file, getMetaAccess(), getTarget().arch);
+            Assert.assertNull(cache.lookup(getResolvedJavaMethod("sumSnippet"), false, eagerConfiguration()));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -37,9 +37,6 @@ import com.oracle.graal.phases.util.Providers;
 import jdk.vm.ci.code.Architecture;
 import jdk.vm.ci.meta.ResolvedJavaMethod;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import static com.oracle.graal.nodes.graphbuilderconf.IntrinsicContext.CompilationContext.INLINE_AFTER_PARSING;
 
 /**
@@ -52,16 +49,46 @@ public class CachingPEGraphDecoder extends PEGraphDecoder {
     protected final GraphBuilderConfiguration graphBuilderConfig;
     protected final OptimisticOptimizations optimisticOpts;
     private final AllowAssumptions allowAssumptions;
-    private final Map<ResolvedJavaMethod, EncodedGraph> graphCache;
+    private final EncodedGraphCache graphCache;
+    private final PersistentGraphCache persistentCache;
+    /**
+     * The fingerprint of the configuration of this decoder in the {@link #persistentCache}, or
+     * {@code null} if there is no persistent cache.
+     */
+    private final String persistentCacheConfiguration;
+    private final EncodedGraphCache.GraphFactory graphFactory = new EncodedGraphCache.GraphFactory() {
+        @Override
+        public EncodedGraph createGraph(ResolvedJavaMethod method, boolean isIntrinsic) {
+            if (persistentCache != null) {
+                EncodedGraph result = persistentCache.lookup(method, isIntrinsic, persistentCacheConfiguration);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return CachingPEGraphDecoder.this.createGraph(method, isIntrinsic);
+        }
+    };
 
     public CachingPEGraphDecoder(Providers providers, GraphBuilderConfiguration graphBuilderConfig, OptimisticOptimizations optimisticOpts, AllowAssumptions allowAssumptions, Architecture architecture) {
+        this(providers, graphBuilderConfig, optimisticOpts, allowAssumptions, architecture, new EncodedGraphCache(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Creates a decoder that looks up graphs in {@code graphCache}. The cache can be shared by
+     * decoders on different threads as long as they use the same graph builder configuration and
+     * optimistic optimizations.
+     */
+    public CachingPEGraphDecoder(Providers providers, GraphBuilderConfiguration graphBuilderConfig, OptimisticOptimizations optimisticOpts, AllowAssumptions allowAssumptions, Architecture architecture,
+                    EncodedGraphCache graphCache) {
         super(providers.getMetaAccess(), providers.getConstantReflection(), providers.getStampProvider(), architecture);
 
         this.providers = providers;
         this.graphBuilderConfig = graphBuilderConfig;
         this.optimisticOpts = optimisticOpts;
         this.allowAssumptions = allowAssumptions;
-        this.graphCache = new HashMap<>();
+        this.graphCache = graphCache;
+        this.persistentCache = PersistentGraphCache.getInstance(providers.getMetaAccess(), architecture);
+        this.persistentCacheConfiguration = persistentCache == null ? null : PersistentGraphCache.configuration(graphBuilderConfig, optimisticOpts, allowAssumptions);
     }
 
     protected GraphBuilderPhase.Instance createGraphBuilderPhaseInstance(IntrinsicContext initialIntrinsicContext) {
@@ -82,7 +109,9 @@ public class CachingPEGraphDecoder extends PEGraphDecoder {
             new CanonicalizerPhase().apply(graph, context);
 
             EncodedGraph encodedGraph = GraphEncoder.encodeSingleGraph(graph, architecture);
-            graphCache.put(method, encodedGraph);
+            if (persistentCache != null) {
+                persistentCache.store(method, isIntrinsic, persistentCacheConfiguration, encodedGraph);
+            }
             return encodedGraph;
 
         } catch (Throwable ex) {
@@ -92,10 +121,9 @@ public class CachingPEGraphDecoder extends PEGraphDecoder {
 
     @Override
     protected EncodedGraph lookupEncodedGraph(ResolvedJavaMethod method, boolean isIntrinsic) {
-        EncodedGraph result = graphCache.get(method);
-        if (result == null && method.hasBytecodes()) {
-            result = createGraph(method, isIntrinsic);
+        if (!method.hasBytecodes()) {
+            return null;
         }
-        return result;
+        return graphCache.get(method, isIntrinsic, allowAssumptions, graphFactory);
     }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.nodes.EncodedGraph;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * A cache of {@link EncodedGraph encoded graphs} that can be shared by the
+ * {@link CachingPEGraphDecoder graph decoders} of concurrent compilations. The cache holds at most
+ * {@link Options#PEGraphCacheSize} graphs and evicts the least recently used graph when it is full.
+ *
+ * A graph is created at most once: if several threads request a graph that is not in the cache,
+ * one thread creates it while the other threads wait for the result.
+ *
+ * Graphs that were parsed under {@linkplain EncodedGraph#getAssumptions() assumptions} are handed
+ * to the waiting threads but not kept in the cache. An assumption can be invalidated at any time,
+ * e.g. by class loading, and a later compilation must not reuse code that depends on it.
+ */
+public final class EncodedGraphCache {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "Maximum number of encoded graphs kept in the graph cache shared by partial evaluations", type = OptionType.Expert)
+        public static final OptionValue<Integer> PEGraphCacheSize = new OptionValue<>(4096);
+        // @formatter:on
+    }
+
+    private static final DebugMetric PEGraphCacheHits = Debug.metric("PEGraphCacheHits");
+    private static final DebugMetric PEGraphCacheMisses = Debug.metric("PEGraphCacheMisses");
+    private static final DebugMetric PEGraphCacheEvictions = Debug.metric("PEGraphCacheEvictions");
+    private static final DebugMetric PEGraphCacheUncacheable = Debug.metric("PEGraphCacheUncacheable");
+
+    /**
+     * Creates a graph that is not in the cache yet.
+     */
+    public interface GraphFactory {
+        EncodedGraph createGraph(ResolvedJavaMethod method, boolean isIntrinsic);
+    }
+
+    private static final class Key {
+        private final ResolvedJavaMethod method;
+        private final boolean isIntrinsic;
+        private final AllowAssumptions allowAssumptions;
+
+        Key(ResolvedJavaMethod method, boolean isIntrinsic, AllowAssumptions allowAssumptions) {
+            this.method = method;
+            this.isIntrinsic = isIntrinsic;
+            this.allowAssumptions = allowAssumptions;
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() * 31 + (isIntrinsic ? 1 : 0) + allowAssumptions.ordinal() * 2;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return method.equals(other.method) && isIntrinsic == other.isIntrinsic && allowAssumptions == other.allowAssumptions;
+            }
+            return false;
+        }
+    }
+
+    private final int capacity;
+
+    /**
+     * Guarded by {@code this}. Only the lookup of a future is synchronized, graphs are created
+     * outside of the lock.
+     */
+    private final LinkedHashMap<Key, FutureTask<EncodedGraph>> graphs;
+
+    public EncodedGraphCache() {
+        this(Options.PEGraphCacheSize.getValue());
+    }
+
+    @SuppressWarnings("serial")
+    public EncodedGraphCache(int capacity) {
+        this.capacity = capacity;
+        this.graphs = new LinkedHashMap<Key, FutureTask<EncodedGraph>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FutureTask<EncodedGraph>> eldest) {
+                if (size() > EncodedGraphCache.this.capacity) {
+                    PEGraphCacheEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the graph for a method, creating it with {@code factory} if it is not in the cache.
+     *
+     * @return the graph, or {@code null} if {@code factory} returned {@code null}
+     */
+    public EncodedGraph get(ResolvedJavaMethod method, boolean isIntrinsic, AllowAssumptions allowAssumptions, final GraphFactory factory) {
+        final Key key = new Key(method, isIntrinsic, allowAssumptions);
+        FutureTask<EncodedGraph> future;
+        boolean created = false;
+        synchronized (this) {
+            future = graphs.get(key);
+            if (future == null) {
+                future = new FutureTask<>(() -> factory.createGraph(key.method, key.isIntrinsic));
+                graphs.put(key, future);
+                created = true;
+            }
+        }
+        if (created) {
+            PEGraphCacheMisses.increment();
+            future.run();
+        } else {
+            PEGraphCacheHits.increment();
+        }
+        try {
+            EncodedGraph result = future.get();
+            if (result == null) {
+                remove(key, future);
+            } else if (result.getAssumptions() != null && !result.getAssumptions().isEmpty()) {
+                if (created) {
+                    PEGraphCacheUncacheable.increment();
+                }
+                remove(key, future);
+            }
+            return result;
+        } catch (ExecutionException e) {
+            remove(key, future);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            /* Do not wait for the other thread, but leave its result in the cache. */
+            Thread.currentThread().interrupt();
+            return factory.createGraph(method, isIntrinsic);
+        }
+    }
+
+    private synchronized void remove(Key key, FutureTask<EncodedGraph> future) {
+        if (graphs.get(key) == future) {
+            graphs.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return graphs.size();
+    }
+
+    public synchronized void clear() {
+        graphs.clear();
+    }
+}
@@ -37,6 +37,7 @@ import jdk.vm.ci.code.Architecture;
 import jdk.vm.ci.code.BailoutException;
 import jdk.vm.ci.code.BytecodeFrame;
 import jdk.vm.ci.code.BytecodePosition;
+import jdk.vm.ci.meta.Assumptions;
 import jdk.vm.ci.meta.ConstantReflectionProvider;
 import jdk.vm.ci.meta.DeoptimizationAction;
 import jdk.vm.ci.meta.DeoptimizationReason;
@@ -356,7 +357,9 @@ public abstract class PEGraphDecoder extends SimplifyingGraphDecoder {
 
     public void decode(StructuredGraph targetGraph, ResolvedJavaMethod method, LoopExplosionPlugin loopExplosionPlugin, InvocationPlugins invocationPlugins, InlineInvokePlugin[] inlineInvokePlugins,
                     ParameterPlugin parameterPlugin) {
-        PEMethodScope methodScope = new PEMethodScope(targetGraph, null, null, lookupEncodedGraph(method, false), method, null, 0, loopExplosionPlugin, invocationPlugins, inlineInvokePlugins,
+        EncodedGraph encodedGraph = lookupEncodedGraph(method, false);
+        recordAssumptions(targetGraph, encodedGraph);
+        PEMethodScope methodScope = new PEMethodScope(targetGraph, null, null, encodedGraph, method, null, 0, loopExplosionPlugin, invocationPlugins, inlineInvokePlugins,
                         parameterPlugin, null);
         decode(methodScope, null);
         cleanupGraph(methodScope, null);
@@ -497,6 +500,7 @@ public abstract class PEGraphDecoder extends SimplifyingGraphDecoder {
         if (graphToInline == null) {
             return false;
         }
+        recordAssumptions(methodScope.graph, graphToInline);
 
         if (methodScope.inliningDepth > Options.InliningDepthError.getValue()) {
             throw tooDeepInlining(methodScope);
@@ -629,6 +633,21 @@ public abstract class PEGraphDecoder extends SimplifyingGraphDecoder {
 
     protected abstract EncodedGraph lookupEncodedGraph(ResolvedJavaMethod method, boolean isIntrinsic);
 
+    /**
+     * Copies the assumptions under which {@code encodedGraph} was parsed to the graph it is decoded
+     * into. The decoded code is only valid as long as these assumptions hold.
+     */
+    private static void recordAssumptions(StructuredGraph graph, EncodedGraph encodedGraph) {
+        if (encodedGraph == null || encodedGraph.getAssumptions() == null || encodedGraph.getAssumptions().isEmpty()) {
+            return;
+        }
+        Assumptions assumptions = graph.getAssumptions();
+        assert assumptions != null : "cannot decode graph which makes assumptions into a graph that doesn't";
+        if (assumptions != null && assumptions != encodedGraph.getAssumptions()) {
+            assumptions.record(encodedGraph.getAssumptions());
+        }
+    }
+
     @SuppressWarnings("try")
     @Override
     protected void handleFixedNode(MethodScope s, LoopScope loopScope, int nodeOrderId, FixedNode node) {
@@ -0,0 +1,779 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.replacements;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.oracle.graal.compiler.common.Fields;
+import com.oracle.graal.compiler.common.type.FloatStamp;
+import com.oracle.graal.compiler.common.type.IntegerStamp;
+import com.oracle.graal.compiler.common.type.ObjectStamp;
+import com.oracle.graal.compiler.common.type.Stamp;
+import com.oracle.graal.compiler.common.type.StampFactory;
+import com.oracle.graal.compiler.common.type.StampPair;
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.debug.TTY;
+import com.oracle.graal.graph.NodeClass;
+import com.oracle.graal.java.BytecodeParserOptions;
+import com.oracle.graal.nodes.EncodedGraph;
+import com.oracle.graal.nodes.NamedLocationIdentity;
+import com.oracle.graal.nodes.StructuredGraph.AllowAssumptions;
+import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration;
+import com.oracle.graal.nodes.graphbuilderconf.GraphBuilderConfiguration.Plugins;
+import com.oracle.graal.nodes.graphbuilderconf.InvocationPlugins;
+import com.oracle.graal.options.Option;
+import com.oracle.graal.options.OptionType;
+import com.oracle.graal.options.OptionValue;
+import com.oracle.graal.phases.OptimisticOptimizations;
+
+import jdk.vm.ci.code.Architecture;
+import jdk.vm.ci.code.BytecodePosition;
+import jdk.vm.ci.meta.JavaConstant;
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.LocationIdentity;
+import jdk.vm.ci.meta.MetaAccessProvider;
+import jdk.vm.ci.meta.ResolvedJavaField;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+import jdk.vm.ci.meta.ResolvedJavaType;
+
+/**
+ * A cache of {@link EncodedGraph encoded graphs} that survives VM restarts. The graphs are stored
+ * in a versioned file that is memory mapped when the cache is opened, so that a later run can
+ * decode the graphs of frequently used methods instead of parsing them from bytecodes again.
+ *
+ * An entry is keyed by the name and signature of its method and by a
+ * {@linkplain #configuration(GraphBuilderConfiguration, OptimisticOptimizations, AllowAssumptions)
+ * fingerprint} of the configuration the graph was parsed with, so that a graph is never used by a
+ * decoder with different plugins or parser settings. Because JVMCI does not expose the
+ * class file bytes of a type, each entry records a hash of the bytecodes of the method and of all
+ * methods inlined during parsing instead. An entry is rejected if one of these hashes does not
+ * match anymore, if a node class changed its fields, or if a referenced type, method or field
+ * cannot be resolved. Graphs that reference objects without a stable external representation
+ * (e.g., object constants) or that depend on {@link jdk.vm.ci.meta.Assumptions} are never written
+ * to the file.
+ *
+ * File format (all numbers big endian):
+ *
+ * <pre>
+ * struct File {
+ *   int magic
+ *   int formatVersion
+ *   String architecture
+ *   int entryCount
+ *   Entry[entryCount] entries
+ * }
+ * struct Entry {
+ *   String key
+ *   int length
+ *   byte[length] data
+ * }
+ * </pre>
+ */
+public final class PersistentGraphCache {
+
+    public static class Options {
+        // @formatter:off
+        @Option(help = "File in which the encoded graphs of partial evaluation are cached across VM runs", type = OptionType.Expert)
+        public static final OptionValue<String> PEGraphCacheFile = new OptionValue<>(null);
+        // @formatter:on
+    }
+
+    private static final int MAGIC = 0x47524346;
+    /**
+     * Must be incremented whenever the layout of the file or of the encoding produced by
+     * {@link com.oracle.graal.nodes.GraphEncoder} changes.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    private static final DebugMetric PersistentGraphCacheHits = Debug.metric("PersistentGraphCacheHits");
+    private static final DebugMetric PersistentGraphCacheRejected = Debug.metric("PersistentGraphCacheRejected");
+    private static final DebugMetric PersistentGraphCacheUnsupported = Debug.metric("PersistentGraphCacheUnsupported");
+
+    private static PersistentGraphCache instance;
+
+    /**
+     * Gets the cache backed by the file specified by {@link Options#PEGraphCacheFile}, or
+     * {@code null} if no file is specified. The cache is written back to the file on VM shutdown.
+     */
+    public static synchronized PersistentGraphCache getInstance(MetaAccessProvider metaAccess, Architecture architecture) {
+        String path = Options.PEGraphCacheFile.getValue();
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        if (instance == null) {
+            final PersistentGraphCache cache = new PersistentGraphCache(new File(path), metaAccess, architecture);
+            Runtime.getRuntime().addShutdownHook(new Thread("PersistentGraphCache") {
+                @Override
+                public void run() {
+                    try {
+                        cache.flush();
+                    } catch (IOException e) {
+                        TTY.println("Could not write graph cache %s: %s", cache.file, e);
+                    }
+                }
+            });
+            instance = cache;
+        }
+        return instance;
+    }
+
+    private final File file;
+    private final MetaAccessProvider metaAccess;
+    private final Architecture architecture;
+
+    /** The mapped file, or {@code null} if there was no valid file when the cache was opened. */
+    private final ByteBuffer mapped;
+    /** Offsets of the entry data in {@link #mapped}, by key. */
+    private final Map<String, Integer> index = new HashMap<>();
+    /** Entries added in this run, by key. */
+    private final Map<String, byte[]> added = new HashMap<>();
+    /** Whether entries were added since the last {@link #flush()}. */
+    private boolean dirty;
+
+    public PersistentGraphCache(File file, MetaAccessProvider metaAccess, Architecture architecture) {
+        this.file = file;
+        this.metaAccess = metaAccess;
+        this.architecture = architecture;
+        this.mapped = open();
+    }
+
+    private ByteBuffer open() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !architecture.getName().equals(readString(buffer))) {
+                return null;
+            }
+            int entryCount = buffer.getInt();
+            for (int i = 0; i < entryCount; i++) {
+                String key = readString(buffer);
+                int length = buffer.getInt();
+                index.put(key, buffer.position());
+                buffer.position(buffer.position() + length);
+            }
+            return buffer;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            /* A truncated or otherwise corrupt file is treated like a missing file. */
+            index.clear();
+            return null;
+        }
+    }
+
+    private static String key(ResolvedJavaMethod method, boolean isIntrinsic, String configuration) {
+        return methodKey(method) + (isIntrinsic ? "#intrinsic" : "") + "@" + configuration;
+    }
+
+    private static String methodKey(ResolvedJavaMethod method) {
+        return method.getDeclaringClass().getName() + "." + method.getName() + method.getSignature().toMethodDescriptor();
+    }
+
+    private static long codeHash(ResolvedJavaMethod method) {
+        byte[] code = method.getCode();
+        if (code == null) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(code);
+        return ((long) code.length << 32) | crc.getValue();
+    }
+
+    /**
+     * Computes a fingerprint of everything besides the bytecodes that influences the graph parsed
+     * for a method: the graph builder settings, the classes of the installed plugins, the parser
+     * inlining options, the effective optimistic optimizations, and whether assumptions are allowed.
+     * Plugins are identified by their class names only, so a plugin whose behavior depends on its
+     * state must not be used with a persistent cache.
+     */
+    public static String configuration(GraphBuilderConfiguration graphBuilderConfig, OptimisticOptimizations optimisticOpts, AllowAssumptions allowAssumptions) {
+        long hash = 17;
+        hash = hash * 31 + Boolean.hashCode(graphBuilderConfig.eagerResolving());
+        hash = hash * 31 + graphBuilderConfig.getBytecodeExceptionMode().name().hashCode();
+        hash = hash * 31 + Boolean.hashCode(graphBuilderConfig.omitAssertions());
+        hash = hash * 31 + Boolean.hashCode(graphBuilderConfig.insertNonSafepointDebugInfo());
+        hash = hash * 31 + Boolean.hashCode(graphBuilderConfig.insertFullDebugInfo());
+        hash = hash * 31 + Boolean.hashCode(graphBuilderConfig.clearNonLiveLocals());
+        for (ResolvedJavaType type : graphBuilderConfig.getSkippedExceptionTypes()) {
+            hash = hash * 31 + type.getName().hashCode();
+        }
+
+        Plugins plugins = graphBuilderConfig.getPlugins();
+        for (InvocationPlugins invocationPlugins = plugins.getInvocationPlugins(); invocationPlugins != null; invocationPlugins = invocationPlugins.getParent()) {
+            hash = pluginHash(hash, invocationPlugins);
+            hash = hash * 31 + invocationPlugins.size();
+        }
+        for (Object plugin : plugins.getNodePlugins()) {
+            hash = pluginHash(hash, plugin);
+        }
+        for (Object plugin : plugins.getParameterPlugins()) {
+            hash = pluginHash(hash, plugin);
+        }
+        for (Object plugin : plugins.getInlineInvokePlugins()) {
+            hash = pluginHash(hash, plugin);
+        }
+        hash = pluginHash(hash, plugins.getLoopExplosionPlugin());
+
+        hash = hash * 31 + Boolean.hashCode(BytecodeParserOptions.InlineDuringParsing.getValue());
+        hash = hash * 31 + Boolean.hashCode(BytecodeParserOptions.InlineIntrinsicsDuringParsing.getValue());
+        hash = hash * 31 + BytecodeParserOptions.InlineDuringParsingMaxDepth.getValue();
+
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.removeNeverExecutedCode());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.useTypeCheckHints());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.inlineMonomorphicCalls());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.inlinePolymorphicCalls());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.inlineMegamorphicCalls());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.devirtualizeInvokes());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.useExceptionProbability());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.useExceptionProbabilityForOperations());
+        hash = hash * 31 + Boolean.hashCode(optimisticOpts.useLoopLimitChecks());
+
+        hash = hash * 31 + allowAssumptions.name().hashCode();
+        return Long.toHexString(hash);
+    }
+
+    private static long pluginHash(long initial, Object plugin) {
+        if (plugin == null) {
+            return initial * 31;
+        }
+        String name = plugin.getClass().getName();
+        int lambda = name.indexOf("$$Lambda$");
+        if (lambda >= 0) {
+            /* The numbering of lambda classes is not stable across VM runs. */
+            name = name.substring(0, lambda);
+        }
+        return initial * 31 + name.hashCode();
+    }
+
+    private static long layoutHash(NodeClass<?> nodeClass) {
+        long hash = fieldsHash(17, nodeClass.getData());
+        hash = fieldsHash(hash, nodeClass.getInputEdges());
+        return fieldsHash(hash, nodeClass.getSuccessorEdges());
+    }
+
+    private static long fieldsHash(long initial, Fields fields) {
+        long hash = initial * 31 + fields.getCount();
+        for (int i = 0; i < fields.getCount(); i++) {
+            hash = hash * 31 + fields.getName(i).hashCode();
+            hash = hash * 31 + fields.getType(i).getName().hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Looks up the graph of a method that was stored by this or by an earlier run.
+     *
+     * @param configuration the
+     *            {@linkplain #configuration(GraphBuilderConfiguration, OptimisticOptimizations, AllowAssumptions)
+     *            fingerprint} of the configuration the graph must have been parsed with
+     * @return the graph or {@code null} if there is no entry for the method or if the entry is
+     *         stale
+     */
+    public EncodedGraph lookup(ResolvedJavaMethod method, boolean isIntrinsic, String configuration) {
+        String key = key(method, isIntrinsic, configuration);
+        ByteBuffer buffer;
+        synchronized (this) {
+            byte[] data = added.get(key);
+            if (data != null) {
+                buffer = ByteBuffer.wrap(data);
+            } else {
+                Integer offset = index.get(key);
+                if (offset == null) {
+                    return null;
+                }
+                buffer = mapped.duplicate();
+                buffer.position(offset);
+            }
+        }
+        try {
+            EncodedGraph result = readEntry(buffer, method);
+            PersistentGraphCacheHits.increment();
+            return result;
+        } catch (StaleEntryException | BufferUnderflowException | IllegalArgumentException | ClassCastException e) {
+            PersistentGraphCacheRejected.increment();
+            synchronized (this) {
+                index.remove(key);
+                added.remove(key);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Records the graph of a method so that it is written to the file by the next {@link #flush()}.
+     * Graphs that cannot be represented in the file are silently ignored.
+     *
+     * @param configuration the
+     *            {@linkplain #configuration(GraphBuilderConfiguration, OptimisticOptimizations, AllowAssumptions)
+     *            fingerprint} of the configuration the graph was parsed with
+     */
+    public void store(ResolvedJavaMethod method, boolean isIntrinsic, String configuration, EncodedGraph encodedGraph) {
+        if (encodedGraph.getAssumptions() != null && !encodedGraph.getAssumptions().isEmpty()) {
+            PersistentGraphCacheUnsupported.increment();
+            return;
+        }
+        byte[] data;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeEntry(new DataOutputStream(bytes), method, encodedGraph);
+            data = bytes.toByteArray();
+        } catch (UnsupportedObjectException e) {
+            PersistentGraphCacheUnsupported.increment();
+            return;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        synchronized (this) {
+            added.put(key(method, isIntrinsic, configuration), data);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes all entries of the mapped file that were not rejected, plus all entries added since
+     * the cache was opened, to a temporary file that then replaces the cache file.
+     */
+    public synchronized void flush() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Map<String, byte[]> entries = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : index.entrySet()) {
+            ByteBuffer buffer = mapped.duplicate();
+            buffer.position(entry.getValue() - Integer.BYTES);
+            byte[] data = new byte[buffer.getInt()];
+            buffer.get(data);
+            entries.put(entry.getKey(), data);
+        }
+        entries.putAll(added);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, architecture.getName());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("could not replace " + file);
+            }
+        }
+        /* The mapping of the old file stays valid, so lookups continue to work. */
+        dirty = false;
+    }
+
+    /**
+     * Thrown when a persisted entry does not match the current VM anymore.
+     */
+    @SuppressWarnings("serial")
+    private static final class StaleEntryException extends Exception {
+        StaleEntryException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when an object referenced by a graph has no external representation.
+     */
+    @SuppressWarnings("serial")
+    private static final class UnsupportedObjectException extends Exception {
+        UnsupportedObjectException(Object object) {
+            super(object.getClass().getName());
+        }
+    }
+
+    /*
+     * Entry layout: the code hash of the method, the inlined methods with their code hashes, the
+     * start offset, the node classes with their layout hashes, the objects, and the encoding.
+     */
+
+    private static void writeEntry(DataOutputStream out, ResolvedJavaMethod method, EncodedGraph encodedGraph) throws IOException, UnsupportedObjectException {
+        out.writeLong(codeHash(method));
+        List<ResolvedJavaMethod> inlinedMethods = encodedGraph.getInlinedMethods();
+        if (inlinedMethods == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(inlinedMethods.size());
+            for (ResolvedJavaMethod inlinedMethod : inlinedMethods) {
+                writeObject(out, inlinedMethod);
+                out.writeLong(codeHash(inlinedMethod));
+            }
+        }
+        out.writeLong(encodedGraph.getStartOffset());
+        NodeClass<?>[] nodeClasses = encodedGraph.getNodeClasses();
+        out.writeInt(nodeClasses.length);
+        for (NodeClass<?> nodeClass : nodeClasses) {
+            writeString(out, nodeClass.getJavaClass().getName());
+            out.writeLong(layoutHash(nodeClass));
+        }
+        Object[] objects = encodedGraph.getObjects();
+        out.writeInt(objects.length);
+        for (Object object : objects) {
+            writeObject(out, object);
+        }
+        byte[] encoding = encodedGraph.getEncoding();
+        out.writeInt(encoding.length);
+        out.write(encoding);
+    }
+
+    private EncodedGraph readEntry(ByteBuffer in, ResolvedJavaMethod method) throws StaleEntryException {
+        if (in.getLong() != codeHash(method)) {
+            throw new StaleEntryException("bytecodes of " + method + " changed");
+        }
+        List<ResolvedJavaMethod> inlinedMethods = null;
+        int inlinedCount = in.getInt();
+        if (inlinedCount >= 0) {
+            inlinedMethods = new ArrayList<>(inlinedCount);
+            for (int i = 0; i < inlinedCount; i++) {
+                ResolvedJavaMethod inlinedMethod = (ResolvedJavaMethod) readObject(in);
+                if (in.getLong() != codeHash(inlinedMethod)) {
+                    throw new StaleEntryException("bytecodes of " + inlinedMethod + " changed");
+                }
+                inlinedMethods.add(inlinedMethod);
+            }
+        }
+        long startOffset = in.getLong();
+        NodeClass<?>[] nodeClasses = new NodeClass<?>[in.getInt()];
+        for (int i = 0; i < nodeClasses.length; i++) {
+            NodeClass<?> nodeClass = NodeClass.get(lookupClass(readString(in)));
+            if (in.getLong() != layoutHash(nodeClass)) {
+                throw new StaleEntryException("fields of " + nodeClass + " changed");
+            }
+            nodeClasses[i] = nodeClass;
+        }
+        Object[] objects = new Object[in.getInt()];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = readObject(in);
+        }
+        byte[] encoding = new byte[in.getInt()];
+        in.get(encoding);
+        return new EncodedGraph(encoding, startOffset, objects, nodeClasses, null, inlinedMethods);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte ENUM = 10;
+    private static final byte TYPE = 11;
+    private static final byte METHOD = 12;
+    private static final byte FIELD = 13;
+    private static final byte NULL_CONSTANT = 14;
+    private static final byte PRIMITIVE_CONSTANT = 15;
+    private static final byte INTEGER_STAMP = 16;
+    private static final byte FLOAT_STAMP = 17;
+    private static final byte OBJECT_STAMP = 18;
+    private static final byte VOID_STAMP = 19;
+    private static final byte STAMP_PAIR = 20;
+    private static final byte ANY_LOCATION = 21;
+    private static final byte FINAL_LOCATION = 22;
+    private static final byte ARRAY_LENGTH_LOCATION = 23;
+    private static final byte ARRAY_LOCATION = 24;
+    private static final byte BYTECODE_POSITION = 25;
+
+    private static void writeObject(DataOutputStream out, Object object) throws IOException, UnsupportedObjectException {
+        if (object == null) {
+            out.writeByte(NULL);
+        } else if (object instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) object);
+        } else if (object instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) object);
+        } else if (object instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) object);
+        } else if (object instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) object);
+        } else if (object instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) object);
+        } else if (object instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) object);
+        } else if (object instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) object);
+        } else if (object instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) object);
+        } else if (object instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) object);
+        } else if (object instanceof Enum) {
+            out.writeByte(ENUM);
+            writeString(out, ((Enum<?>) object).getDeclaringClass().getName());
+            writeString(out, ((Enum<?>) object).name());
+        } else if (object instanceof ResolvedJavaType) {
+            out.writeByte(TYPE);
+            writeString(out, ((ResolvedJavaType) object).getName());
+        } else if (object instanceof ResolvedJavaMethod) {
+            ResolvedJavaMethod method = (ResolvedJavaMethod) object;
+            out.writeByte(METHOD);
+            writeString(out, method.getDeclaringClass().getName());
+            writeString(out, method.getName());
+            writeString(out, method.getSignature().toMethodDescriptor());
+        } else if (object instanceof ResolvedJavaField) {
+            ResolvedJavaField field = (ResolvedJavaField) object;
+            out.writeByte(FIELD);
+            writeString(out, field.getDeclaringClass().getName());
+            writeString(out, field.getName());
+            out.writeBoolean(field.isStatic());
+        } else if (object instanceof JavaConstant) {
+            JavaConstant constant = (JavaConstant) object;
+            if (constant.isNull() && constant.getJavaKind() == JavaKind.Object) {
+                out.writeByte(NULL_CONSTANT);
+            } else if (constant.getJavaKind().isPrimitive()) {
+                out.writeByte(PRIMITIVE_CONSTANT);
+                writeObject(out, constant.asBoxedPrimitive());
+            } else {
+                throw new UnsupportedObjectException(object);
+            }
+        } else if (object.getClass() == IntegerStamp.class) {
+            IntegerStamp stamp = (IntegerStamp) object;
+            out.writeByte(INTEGER_STAMP);
+            out.writeInt(stamp.getBits());
+            out.writeLong(stamp.lowerBound());
+            out.writeLong(stamp.upperBound());
+            out.writeLong(stamp.downMask());
+            out.writeLong(stamp.upMask());
+        } else if (object.getClass() == FloatStamp.class) {
+            FloatStamp stamp = (FloatStamp) object;
+            out.writeByte(FLOAT_STAMP);
+            out.writeInt(stamp.getBits());
+            out.writeDouble(stamp.lowerBound());
+            out.writeDouble(stamp.upperBound());
+            out.writeBoolean(stamp.isNonNaN());
+        } else if (object.getClass() == ObjectStamp.class) {
+            ObjectStamp stamp = (ObjectStamp) object;
+            out.writeByte(OBJECT_STAMP);
+            writeObject(out, stamp.type());
+            out.writeBoolean(stamp.isExactType());
+            out.writeBoolean(stamp.nonNull());
+            out.writeBoolean(stamp.alwaysNull());
+        } else if (object == StampFactory.forVoid()) {
+            out.writeByte(VOID_STAMP);
+        } else if (object instanceof StampPair) {
+            out.writeByte(STAMP_PAIR);
+            writeObject(out, ((StampPair) object).getTrustedStamp());
+            writeObject(out, ((StampPair) object).getUncheckedStamp());
+        } else if (object instanceof LocationIdentity) {
+            writeLocationIdentity(out, (LocationIdentity) object);
+        } else if (object.getClass() == BytecodePosition.class) {
+            BytecodePosition position = (BytecodePosition) object;
+            out.writeByte(BYTECODE_POSITION);
+            writeObject(out, position.getCaller());
+            writeObject(out, position.getMethod());
+            out.writeInt(position.getBCI());
+        } else {
+            throw new UnsupportedObjectException(object);
+        }
+    }
+
+    private static void writeLocationIdentity(DataOutputStream out, LocationIdentity location) throws IOException, UnsupportedObjectException {
+        if (location.isAny()) {
+            out.writeByte(ANY_LOCATION);
+        } else if (location == NamedLocationIdentity.FINAL_LOCATION) {
+            out.writeByte(FINAL_LOCATION);
+        } else if (location == NamedLocationIdentity.ARRAY_LENGTH_LOCATION) {
+            out.writeByte(ARRAY_LENGTH_LOCATION);
+        } else {
+            for (JavaKind kind : JavaKind.values()) {
+                if (kind.isPrimitive() || kind == JavaKind.Object) {
+                    if (location == NamedLocationIdentity.getArrayLocation(kind)) {
+                        out.writeByte(ARRAY_LOCATION);
+                        out.writeByte(kind.ordinal());
+                        return;
+                    }
+                }
+            }
+            throw new UnsupportedObjectException(location);
+        }
+    }
+
+    private Object readObject(ByteBuffer in) throws StaleEntryException {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case BOOLEAN:
+                return in.get() != 0;
+            case BYTE:
+                return in.get();
+            case SHORT:
+                return in.getShort();
+            case CHAR:
+                return in.getChar();
+            case INT:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case FLOAT:
+                return in.getFloat();
+            case DOUBLE:
+                return in.getDouble();
+            case ENUM:
+                return readEnum(lookupClass(readString(in)), readString(in));
+            case TYPE:
+                return lookupType(readString(in));
+            case METHOD:
+                return lookupMethod(lookupType(readString(in)), readString(in), readString(in));
+            case FIELD:
+                return lookupField(lookupType(readString(in)), readString(in), in.get() != 0);
+            case NULL_CONSTANT:
+                return JavaConstant.NULL_POINTER;
+            case PRIMITIVE_CONSTANT:
+                return JavaConstant.forBoxedPrimitive(readObject(in));
+            case INTEGER_STAMP:
+                return new IntegerStamp(in.getInt(), in.getLong(), in.getLong(), in.getLong(), in.getLong());
+            case FLOAT_STAMP:
+                return new FloatStamp(in.getInt(), in.getDouble(), in.getDouble(), in.get() != 0);
+            case OBJECT_STAMP:
+                return new ObjectStamp((ResolvedJavaType) readObject(in), in.get() != 0, in.get() != 0, in.get() != 0);
+            case VOID_STAMP:
+                return StampFactory.forVoid();
+            case STAMP_PAIR:
+                return StampPair.create((Stamp) readObject(in), (Stamp) readObject(in));
+            case ANY_LOCATION:
+                return LocationIdentity.any();
+            case FINAL_LOCATION:
+                return NamedLocationIdentity.FINAL_LOCATION;
+            case ARRAY_LENGTH_LOCATION:
+                return NamedLocationIdentity.ARRAY_LENGTH_LOCATION;
+            case ARRAY_LOCATION:
+                return NamedLocationIdentity.getArrayLocation(JavaKind.values()[in.get()]);
+            case BYTECODE_POSITION:
+                return new BytecodePosition((BytecodePosition) readObject(in), (ResolvedJavaMethod) readObject(in), in.getInt());
+            default:
+                throw new StaleEntryException("unknown tag " + tag);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(Class<?> enumClass, String name) throws StaleEntryException {
+        if (!enumClass.isEnum()) {
+            throw new StaleEntryException(enumClass + " is not an enum");
+        }
+        return Enum.valueOf((Class) enumClass, name);
+    }
+
+    private static Class<?> lookupClass(String name) throws StaleEntryException {
+        try {
+            return Class.forName(name, false, ClassLoader.getSystemClassLoader());
+        } catch (ClassNotFoundException e) {
+            try {
+                return Class.forName(name, false, PersistentGraphCache.class.getClassLoader());
+            } catch (ClassNotFoundException e2) {
+                throw new StaleEntryException("class " + name + " not found");
+            }
+        }
+    }
+
+    /**
+     * Resolves a type from its {@linkplain ResolvedJavaType#getName() internal name}.
+     */
+    private ResolvedJavaType lookupType(String internalName) throws StaleEntryException {
+        if (internalName.length() == 1) {
+            return metaAccess.lookupJavaType(JavaKind.fromPrimitiveOrVoidTypeChar(internalName.charAt(0)).toJavaClass());
+        }
+        String className;
+        if (internalName.startsWith("[")) {
+            className = internalName.replace('/', '.');
+        } else {
+            className = internalName.substring(1, internalName.length() - 1).replace('/', '.');
+        }
+        return metaAccess.lookupJavaType(lookupClass(className));
+    }
+
+    private static ResolvedJavaMethod lookupMethod(ResolvedJavaType holder, String name, String descriptor) throws StaleEntryException {
+        if (name.equals("<clinit>")) {
+            ResolvedJavaMethod clinit = holder.getClassInitializer();
+            if (clinit != null) {
+                return clinit;
+            }
+        } else {
+            ResolvedJavaMethod[] candidates = name.equals("<init>") ? holder.getDeclaredConstructors() : holder.getDeclaredMethods();
+            for (ResolvedJavaMethod candidate : candidates) {
+                if (candidate.getName().equals(name) && candidate.getSignature().toMethodDescriptor().equals(descriptor)) {
+                    return candidate;
+                }
+            }
+        }
+        throw new StaleEntryException("method " + holder.toJavaName() + "." + name + descriptor + " not found");
+    }
+
+    private static ResolvedJavaField lookupField(ResolvedJavaType holder, String name, boolean isStatic) throws StaleEntryException {
+        ResolvedJavaField[] candidates = isStatic ? holder.getStaticFields() : holder.getInstanceFields(false);
+        for (ResolvedJavaField candidate : candidates) {
+            if (candidate.getName().equals(name)) {
+                return candidate;
+            }
+        }
+        throw new StaleEntryException("field " + holder.toJavaName() + "." + name + " not found");
+    }
+}
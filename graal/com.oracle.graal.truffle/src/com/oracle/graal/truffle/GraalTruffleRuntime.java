@@ -28,17 +28,18 @@ import static com.oracle.graal.truffle.TruffleCompilerOptions.TruffleEnableInfop
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 import com.oracle.graal.api.runtime.GraalRuntime;
@@ -88,7 +89,9 @@ import jdk.vm.ci.services.Services;
 public abstract class GraalTruffleRuntime implements TruffleRuntime {
 
     protected abstract static class BackgroundCompileQueue implements CompilerThreadFactory.DebugConfigAccess {
-        private final ExecutorService compileQueue;
+        private final ThreadPoolExecutor compileQueue;
+        private final AtomicLong submissionCount = new AtomicLong();
+        private final long creationTime = System.nanoTime();
 
         protected BackgroundCompileQueue() {
             CompilerThreadFactory factory = new CompilerThreadFactory("TruffleCompilerThread", this);
@@ -104,7 +107,53 @@ public abstract class GraalTruffleRuntime implements TruffleRuntime {
                 }
             }
             selectedProcessors = Math.max(1, selectedProcessors);
-            compileQueue = Executors.newFixedThreadPool(selectedProcessors, factory);
+            compileQueue = new ThreadPoolExecutor(selectedProcessors, selectedProcessors, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), factory);
+        }
+
+        /**
+         * Computes the rank of a call target that is submitted now. Hotter call targets get a
+         * higher rank. Call targets submitted earlier are favored over call targets submitted later
+         * by {@link TruffleCompilerOptions#TruffleCompilationQueueAgingRate} per millisecond, so
+         * that lukewarm call targets are not starved by a steady stream of hot ones.
+         */
+        long computeRank(OptimizedCallTarget callTarget, long queuedTime) {
+            long hotness = 0;
+            if (TruffleCompilerOptions.TruffleCompilationQueuePriority.getValue()) {
+                hotness = callTarget.getCompilationProfile().getInterpreterCallAndLoopCount();
+            }
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(queuedTime - creationTime);
+            return hotness - waitedMillis * TruffleCompilerOptions.TruffleCompilationQueueAgingRate.getValue();
+        }
+    }
+
+    /**
+     * A queued compilation of an {@link OptimizedCallTarget}. Tasks with a higher rank are
+     * dequeued first, tasks of equal rank in submission order.
+     */
+    static final class CompilationTask extends FutureTask<Void> implements Comparable<CompilationTask> {
+
+        private final WeakReference<OptimizedCallTarget> weakCallTarget;
+        private final long rank;
+        private final long sequence;
+
+        CompilationTask(OptimizedCallTarget callTarget, long rank, long sequence, Runnable body) {
+            super(body, null);
+            this.weakCallTarget = new WeakReference<>(callTarget);
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        OptimizedCallTarget getCallTarget() {
+            return weakCallTarget.get();
+        }
+
+        @Override
+        public int compareTo(CompilationTask other) {
+            int result = Long.compare(other.rank, rank);
+            if (result == 0) {
+                result = Long.compare(sequence, other.sequence);
+            }
+            return result;
         }
     }
 
@@ -408,15 +457,25 @@ public abstract class GraalTruffleRuntime implements TruffleRuntime {
     public void compile(OptimizedCallTarget optimizedCallTarget, boolean mayBeAsynchronous) {
         BackgroundCompileQueue l = getCompileQueue();
         final WeakReference<OptimizedCallTarget> weakCallTarget = new WeakReference<>(optimizedCallTarget);
-        Future<?> future = l.compileQueue.submit(new Runnable() {
+        final long queuedTime = System.nanoTime();
+        final int queuedCallAndLoopCount = optimizedCallTarget.getCompilationProfile().getInterpreterCallAndLoopCount();
+        final boolean mayBeDropped = mayBeAsynchronous && !(optimizedCallTarget.getRootNode() instanceof OptimizedOSRLoopNode.OSRRootNode);
+        /* Synchronous compilations are waited for, so they always go first. */
+        long rank = mayBeAsynchronous ? l.computeRank(optimizedCallTarget, queuedTime) : Long.MAX_VALUE;
+        CompilationTask future = new CompilationTask(optimizedCallTarget, rank, l.submissionCount.getAndIncrement(), new Runnable() {
             @Override
             public void run() {
                 OptimizedCallTarget callTarget = weakCallTarget.get();
                 if (callTarget != null) {
-                    doCompile(callTarget);
+                    if (mayBeDropped && isStale(callTarget, queuedTime, queuedCallAndLoopCount)) {
+                        dropStaleCompilation(callTarget);
+                    } else {
+                        doCompile(callTarget);
+                    }
                 }
             }
         });
+        l.compileQueue.execute(future);
         optimizedCallTarget.setCompilationTask(future);
         getCompilationNotify().notifyCompilationQueued(optimizedCallTarget);
 
@@ -441,6 +500,9 @@ public abstract class GraalTruffleRuntime implements TruffleRuntime {
             optimizedCallTarget.setCompilationTask(null);
             boolean result = codeTask.cancel(true);
             if (result) {
+                if (codeTask instanceof CompilationTask) {
+                    getCompileQueue().compileQueue.remove((CompilationTask) codeTask);
+                }
                 optimizedCallTarget.notifyCompilationFinished(false);
                 getCompilationNotify().notifyCompilationDequeued(optimizedCallTarget, source, reason);
             }
@@ -460,18 +522,45 @@ public abstract class GraalTruffleRuntime implements TruffleRuntime {
         }
     }
 
-    @Deprecated
+    /**
+     * Returns the call targets that are currently waiting for compilation, in the order in which
+     * they will be compiled.
+     */
     public Collection<OptimizedCallTarget> getQueuedCallTargets() {
-        return Collections.emptyList();
+        CompilationTask[] tasks = getCompileQueue().compileQueue.getQueue().toArray(new CompilationTask[0]);
+        Arrays.sort(tasks);
+        List<OptimizedCallTarget> queued = new ArrayList<>(tasks.length);
+        for (CompilationTask task : tasks) {
+            OptimizedCallTarget callTarget = task.getCallTarget();
+            if (callTarget != null && !task.isCancelled()) {
+                queued.add(callTarget);
+            }
+        }
+        return queued;
     }
 
     public int getCompilationQueueSize() {
-        ExecutorService executor = getCompileQueue().compileQueue;
-        if (executor instanceof ThreadPoolExecutor) {
-            return ((ThreadPoolExecutor) executor).getQueue().size();
-        } else {
-            return 0;
+        return getCompileQueue().compileQueue.getQueue().size();
+    }
+
+    /**
+     * Determines whether a queued compilation is no longer worth doing because the call target was
+     * neither called nor looped in the interpreter for
+     * {@link TruffleCompilerOptions#TruffleCompilationQueueStaleTime} milliseconds.
+     */
+    private static boolean isStale(OptimizedCallTarget callTarget, long queuedTime, int queuedCallAndLoopCount) {
+        int staleTime = TruffleCompilerOptions.TruffleCompilationQueueStaleTime.getValue();
+        if (staleTime <= 0 || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedTime) < staleTime) {
+            return false;
         }
+        return callTarget.getCompilationProfile().getInterpreterCallAndLoopCount() == queuedCallAndLoopCount;
+    }
+
+    private void dropStaleCompilation(OptimizedCallTarget callTarget) {
+        /* Require the call target to become hot again before it is resubmitted. */
+        callTarget.getCompilationProfile().deferCompilation();
+        callTarget.notifyCompilationFinished(false);
+        getCompilationNotify().notifyCompilationDequeued(callTarget, null, "No longer hot");
     }
 
     public boolean isCompiling(OptimizedCallTarget optimizedCallTarget) {
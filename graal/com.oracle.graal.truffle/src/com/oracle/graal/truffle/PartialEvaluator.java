@@ -56,6 +56,7 @@ import com.oracle.graal.phases.tiers.HighTierContext;
 import com.oracle.graal.phases.tiers.PhaseContext;
 import com.oracle.graal.phases.util.Providers;
 import com.oracle.graal.replacements.CachingPEGraphDecoder;
+import com.oracle.graal.replacements.EncodedGraphCache;
 import com.oracle.graal.replacements.InlineDuringParsingPlugin;
 import com.oracle.graal.replacements.PEGraphDecoder;
 import com.oracle.graal.replacements.ReplacementsImpl;
@@ -108,6 +109,8 @@ public class PartialEvaluator {
     private final ResolvedJavaMethod callRootMethod;
     private final GraphBuilderConfiguration configForParsing;
     private final InvocationPlugins decodingInvocationPlugins;
+    /** Encoded graphs of parsed methods, shared by the compilations on all compiler threads. */
+    private final EncodedGraphCache graphCache = new EncodedGraphCache();
 
     public PartialEvaluator(Providers providers, GraphBuilderConfiguration configForRoot, SnippetReflectionProvider snippetReflection, Architecture architecture) {
         this.providers = providers;
@@ -339,7 +342,7 @@ public class PartialEvaluator {
         }
 
         return new CachingPEGraphDecoder(providers, newConfig, TruffleCompiler.Optimizations,
-                        AllowAssumptions.from(graph.getAssumptions() != null), architecture) {
+                        AllowAssumptions.from(graph.getAssumptions() != null), architecture, graphCache) {
             @Override
             protected GraphBuilderPhase.Instance createGraphBuilderPhaseInstance(IntrinsicContext initialIntrinsicContext) {
                 return new DefaultTruffleCompiler.TruffleGraphBuilderPhase.Instance(providers.getMetaAccess(),
@@ -92,6 +92,15 @@ public class TruffleCompilerOptions {
     @Option(help = "Manually set the number of compiler threads", type = OptionType.Expert)
     public static final OptionValue<Integer> TruffleCompilerThreads = new OptionValue<>(0);
 
+    @Option(help = "Order queued compilations by their call and loop counts instead of submission order", type = OptionType.Expert)
+    public static final OptionValue<Boolean> TruffleCompilationQueuePriority = new OptionValue<>(true);
+
+    @Option(help = "Priority (in call and loop counts) a queued compilation gains per millisecond of waiting", type = OptionType.Expert)
+    public static final OptionValue<Integer> TruffleCompilationQueueAgingRate = new OptionValue<>(1);
+
+    @Option(help = "Drop queued compilations that waited longer than this many milliseconds without being called again (0 to disable)", type = OptionType.Expert)
+    public static final OptionValue<Integer> TruffleCompilationQueueStaleTime = new OptionValue<>(10000);
+
     @Option(help = "Enable inlining across Truffle boundary", type = OptionType.Expert)
     public static final OptionValue<Boolean> TruffleInlineAcrossTruffleBoundary = new OptionValue<>(false);
 
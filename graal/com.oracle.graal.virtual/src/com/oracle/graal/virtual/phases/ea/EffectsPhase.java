@@ -76,52 +76,76 @@ public abstract class EffectsPhase<PhaseContextT extends PhaseContext> extends B
         boolean changed = false;
         for (int iteration = 0; iteration < maxIterations; iteration++) {
             try (Scope s = Debug.scope(isEnabled() ? "iteration " + iteration : null)) {
-                ScheduleResult schedule;
-                ControlFlowGraph cfg;
-                if (unscheduled) {
-                    schedule = null;
-                    cfg = ControlFlowGraph.compute(graph, true, true, false, false);
-                } else {
-                    new SchedulePhase(SchedulePhase.SchedulingStrategy.EARLIEST).apply(graph, false);
-                    schedule = graph.getLastSchedule();
-                    cfg = schedule.getCFG();
-                }
-                try (Scope scheduleScope = Debug.scope("EffectsPhaseWithSchedule", schedule)) {
-                    Closure<?> closure = createEffectsClosure(context, schedule, cfg);
-                    ReentrantBlockIterator.apply(closure, cfg.getStartBlock());
-
-                    if (!closure.hasChanged()) {
-                        break;
+                boolean repeat;
+                int round = 0;
+                do {
+                    ScheduleResult schedule;
+                    ControlFlowGraph cfg;
+                    if (unscheduled) {
+                        schedule = null;
+                        cfg = ControlFlowGraph.compute(graph, true, true, false, false);
+                    } else {
+                        new SchedulePhase(SchedulePhase.SchedulingStrategy.EARLIEST).apply(graph, false);
+                        schedule = graph.getLastSchedule();
+                        cfg = schedule.getCFG();
                     }
+                    try (Scope scheduleScope = Debug.scope("EffectsPhaseWithSchedule", schedule)) {
+                        Closure<?> closure = createEffectsClosure(context, schedule, cfg);
+                        ReentrantBlockIterator.apply(closure, cfg.getStartBlock());
+
+                        repeat = repeatAnalysis(graph, context, closure, round++);
+                        if (repeat) {
+                            // the graph was changed, the effects of this analysis are stale
+                            changed = true;
+                            continue;
+                        }
 
-                    // apply the effects collected during this iteration
-                    HashSetNodeEventListener listener = new HashSetNodeEventListener();
-                    try (NodeEventScope nes = graph.trackNodeEvents(listener)) {
-                        closure.applyEffects();
-                    }
+                        if (!closure.hasChanged()) {
+                            return changed;
+                        }
 
-                    if (Debug.isDumpEnabled()) {
-                        Debug.dump(graph, "%s iteration", getName());
-                    }
+                        // apply the effects collected during this iteration
+                        HashSetNodeEventListener listener = new HashSetNodeEventListener();
+                        try (NodeEventScope nes = graph.trackNodeEvents(listener)) {
+                            closure.applyEffects();
+                        }
 
-                    new DeadCodeEliminationPhase(Required).apply(graph);
+                        if (Debug.isDumpEnabled()) {
+                            Debug.dump(graph, "%s iteration", getName());
+                        }
+
+                        new DeadCodeEliminationPhase(Required).apply(graph);
 
-                    Set<Node> changedNodes = listener.getNodes();
-                    for (Node node : graph.getNodes()) {
-                        if (node instanceof Simplifiable) {
-                            changedNodes.add(node);
+                        Set<Node> changedNodes = listener.getNodes();
+                        for (Node node : graph.getNodes()) {
+                            if (node instanceof Simplifiable) {
+                                changedNodes.add(node);
+                            }
                         }
+                        postIteration(graph, context, changedNodes);
+                    } catch (Throwable t) {
+                        throw Debug.handle(t);
                     }
-                    postIteration(graph, context, changedNodes);
-                } catch (Throwable t) {
-                    throw Debug.handle(t);
-                }
+                } while (repeat);
             }
             changed = true;
         }
         return changed;
     }
 
+    /**
+     * Called after the analysis of an iteration, before its effects are applied. Subclasses can
+     * transform the graph based on the results of the analysis (which are then discarded) and
+     * request that the analysis of this iteration is repeated.
+     *
+     * @param round the number of times the analysis of this iteration has been repeated
+     * @return true if the graph was changed and the analysis needs to be repeated
+     */
+    @SuppressWarnings("unused")
+    protected boolean repeatAnalysis(StructuredGraph graph, PhaseContextT context, Closure<?> closure, int round) {
+        return false;
+    }
+
     protected void postIteration(final StructuredGraph graph, final PhaseContextT context, Set<Node> changedNodes) {
         if (canonicalizer != null) {
             canonicalizer.applyIncremental(graph, context, changedNodes);
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2016, 2016, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.virtual.phases.ea;
+
+import static com.oracle.graal.compiler.common.GraalOptions.MaterializationSinkingMaxNodes;
+import static com.oracle.graal.compiler.common.GraalOptions.MaterializationSinkingProbability;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.oracle.graal.debug.Debug;
+import com.oracle.graal.debug.DebugMetric;
+import com.oracle.graal.graph.Node;
+import com.oracle.graal.graph.NodeBitMap;
+import com.oracle.graal.nodes.AbstractBeginNode;
+import com.oracle.graal.nodes.AbstractMergeNode;
+import com.oracle.graal.nodes.EndNode;
+import com.oracle.graal.nodes.FixedNode;
+import com.oracle.graal.nodes.FixedWithNextNode;
+import com.oracle.graal.nodes.FrameState;
+import com.oracle.graal.nodes.LoopBeginNode;
+import com.oracle.graal.nodes.LoopEndNode;
+import com.oracle.graal.nodes.PhiNode;
+import com.oracle.graal.nodes.ReturnNode;
+import com.oracle.graal.nodes.StructuredGraph;
+import com.oracle.graal.nodes.ValueNode;
+import com.oracle.graal.nodes.java.AccessMonitorNode;
+import com.oracle.graal.nodes.java.MonitorIdNode;
+import com.oracle.graal.nodes.virtual.AllocatedObjectNode;
+import com.oracle.graal.nodes.virtual.CommitAllocationNode;
+import com.oracle.graal.nodes.virtual.EscapeObjectState;
+import com.oracle.graal.nodes.virtual.VirtualObjectNode;
+import com.oracle.graal.phases.graph.FixedNodeProbabilityCache;
+
+/**
+ * Moves materializations that partial escape analysis places at the end of hot predecessors of a
+ * merge into the cold predecessors that caused them.
+ *
+ * If an object escapes in a rarely executed predecessor of a merge, but is still virtual in the
+ * other predecessors, partial escape analysis has to materialize it in all predecessors. This class
+ * duplicates the code following such a merge into the cold predecessors, so that the hot
+ * predecessors can keep the object virtual. Only merges that are followed by a short sequence of
+ * fixed nodes ending in a {@link LoopEndNode} or a {@link ReturnNode} are split, since the object
+ * is then no longer needed at the end of the duplicated code.
+ */
+final class MaterializationSinker {
+
+    private static final DebugMetric METRIC_MATERIALIZATIONS_SUNK = Debug.metric("MaterializationsSunk");
+
+    private final StructuredGraph graph;
+    private final FixedNodeProbabilityCache probabilities = new FixedNodeProbabilityCache();
+
+    MaterializationSinker(StructuredGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Splits the given ends off their merges if they are cold enough.
+     *
+     * @param materializingEnds the ends of merges at which partial escape analysis found an object
+     *            that was materialized before the merge, but was virtual in other predecessors
+     * @return the number of ends that were split off their merges
+     */
+    int apply(Map<AbstractMergeNode, Set<EndNode>> materializingEnds) {
+        // decide before changing the graph, so that the probabilities are consistent
+        List<AbstractMergeNode> merges = new ArrayList<>();
+        List<List<FixedWithNextNode>> bodies = new ArrayList<>();
+        for (Map.Entry<AbstractMergeNode, Set<EndNode>> entry : materializingEnds.entrySet()) {
+            AbstractMergeNode merge = entry.getKey();
+            if (!merge.isAlive() || merge instanceof LoopBeginNode || entry.getValue().size() >= merge.forwardEndCount()) {
+                continue;
+            }
+            double mergeProbability = probabilities.applyAsDouble(merge);
+            double coldProbability = 0;
+            for (EndNode end : entry.getValue()) {
+                coldProbability += probabilities.applyAsDouble(end);
+            }
+            if (mergeProbability <= 0 || coldProbability > mergeProbability * MaterializationSinkingProbability.getValue()) {
+                continue;
+            }
+            List<FixedWithNextNode> body = mergeBody(merge);
+            if (body != null) {
+                merges.add(merge);
+                bodies.add(body);
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < merges.size(); i++) {
+            AbstractMergeNode merge = merges.get(i);
+            Set<EndNode> ends = materializingEnds.get(merge);
+            Debug.log("sinking materializations at %s into %s", merge, ends);
+            for (EndNode end : ends) {
+                split(merge, bodies.get(i), end);
+                METRIC_MATERIALIZATIONS_SUNK.increment();
+                count++;
+            }
+            if (merge.forwardEndCount() == 1) {
+                graph.reduceTrivialMerge(merge);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Determines the fixed nodes between a merge and the {@link LoopEndNode} or {@link ReturnNode}
+     * following it, or returns {@code null} if the code after the merge cannot be duplicated.
+     */
+    private static List<FixedWithNextNode> mergeBody(AbstractMergeNode merge) {
+        for (Node usage : merge.usages()) {
+            if (!(usage instanceof PhiNode)) {
+                return null;
+            }
+        }
+        List<FixedWithNextNode> body = new ArrayList<>();
+        FixedNode current = merge.next();
+        while (current instanceof FixedWithNextNode) {
+            if (current instanceof AbstractBeginNode || current instanceof AccessMonitorNode || current instanceof CommitAllocationNode || body.size() >= MaterializationSinkingMaxNodes.getValue()) {
+                return null;
+            }
+            body.add((FixedWithNextNode) current);
+            current = ((FixedWithNextNode) current).next();
+        }
+        if (current instanceof ReturnNode || current instanceof LoopEndNode) {
+            return body;
+        }
+        return null;
+    }
+
+    /**
+     * Duplicates the code after {@code merge} into the predecessor ending in {@code end} and
+     * removes {@code end} from the merge.
+     */
+    private void split(AbstractMergeNode merge, List<FixedWithNextNode> body, EndNode end) {
+        FixedNode last = body.isEmpty() ? merge.next() : body.get(body.size() - 1).next();
+
+        NodeBitMap nodes = graph.createNodeBitMap();
+        Deque<Node> worklist = new ArrayDeque<>();
+        for (PhiNode phi : merge.phis()) {
+            worklist.add(phi);
+        }
+        for (FixedWithNextNode node : body) {
+            nodes.mark(node);
+            worklist.add(node);
+            for (Node input : node.inputs()) {
+                if (input instanceof FrameState) {
+                    nodes.mark(input);
+                }
+            }
+        }
+        if (last instanceof ReturnNode) {
+            nodes.mark(last);
+        }
+        while (!worklist.isEmpty()) {
+            Node current = worklist.remove();
+            for (Node usage : current.usages()) {
+                if (usage instanceof FixedNode || usage instanceof PhiNode || nodes.isMarked(usage)) {
+                    continue;
+                }
+                assert !(usage instanceof VirtualObjectNode || usage instanceof AllocatedObjectNode || usage instanceof MonitorIdNode) : usage;
+                nodes.mark(usage);
+                worklist.add(usage);
+            }
+        }
+        for (Node node : nodes.snapshot()) {
+            if (node instanceof FrameState) {
+                for (EscapeObjectState state : ((FrameState) node).virtualObjectMappings()) {
+                    nodes.mark(state);
+                }
+            }
+        }
+
+        Map<Node, Node> replacements = Node.newIdentityMap();
+        for (PhiNode phi : merge.phis()) {
+            replacements.put(phi, phi.valueAt(end));
+        }
+        Map<Node, Node> duplicates = graph.addDuplicates(nodes, graph, nodes.count(), replacements);
+
+        FixedNode newLast;
+        if (last instanceof LoopEndNode) {
+            LoopEndNode loopEnd = (LoopEndNode) last;
+            LoopBeginNode loopBegin = loopEnd.loopBegin();
+            LoopEndNode newLoopEnd = graph.add(new LoopEndNode(loopBegin));
+            if (!loopEnd.canSafepoint()) {
+                newLoopEnd.disableSafepoint();
+            }
+            for (PhiNode phi : loopBegin.phis()) {
+                ValueNode value = phi.valueAt(loopEnd);
+                Node mapped = duplicates.containsKey(value) ? duplicates.get(value) : replacements.containsKey(value) ? replacements.get(value) : value;
+                phi.addInput((ValueNode) mapped);
+            }
+            newLast = newLoopEnd;
+        } else {
+            newLast = (FixedNode) duplicates.get(last);
+        }
+        FixedNode newFirst = newLast;
+        for (int i = body.size() - 1; i >= 0; i--) {
+            FixedWithNextNode duplicate = (FixedWithNextNode) duplicates.get(body.get(i));
+            duplicate.setNext(newFirst);
+            newFirst = duplicate;
+        }
+
+        end.replaceAtPredecessor(newFirst);
+        merge.removeEnd(end);
+        end.safeDelete();
+    }
+}
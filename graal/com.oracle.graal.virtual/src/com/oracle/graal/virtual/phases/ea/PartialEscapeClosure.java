@@ -29,6 +29,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,9 +53,11 @@ import com.oracle.graal.graph.NodeBitMap;
 import com.oracle.graal.graph.NodePosIterator;
 import com.oracle.graal.graph.Position;
 import com.oracle.graal.graph.spi.Canonicalizable;
+import com.oracle.graal.nodes.AbstractMergeNode;
 import com.oracle.graal.nodes.CallTargetNode;
 import com.oracle.graal.nodes.ConstantNode;
 import com.oracle.graal.nodes.ControlSinkNode;
+import com.oracle.graal.nodes.EndNode;
 import com.oracle.graal.nodes.FixedNode;
 import com.oracle.graal.nodes.FixedWithNextNode;
 import com.oracle.graal.nodes.FrameState;
@@ -70,6 +74,7 @@ import com.oracle.graal.nodes.ValueProxyNode;
 import com.oracle.graal.nodes.VirtualState;
 import com.oracle.graal.nodes.VirtualState.NodeClosure;
 import com.oracle.graal.nodes.cfg.Block;
+import com.oracle.graal.nodes.java.MethodCallTargetNode;
 import com.oracle.graal.nodes.spi.NodeWithState;
 import com.oracle.graal.nodes.spi.Virtualizable;
 import com.oracle.graal.nodes.spi.VirtualizableAllocation;
@@ -94,6 +99,20 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
 
     public final ArrayList<VirtualObjectNode> virtualObjects = new ArrayList<>();
 
+    /**
+     * The forward ends of merges at which an object that was already materialized forced a
+     * materialization in other predecessors of the merge.
+     */
+    private final Map<AbstractMergeNode, Set<EndNode>> materializingMergeEnds = new LinkedHashMap<>();
+
+    /**
+     * Inlining bonus for invokes at which virtual objects are materialized because they are passed
+     * as arguments. Inlining such an invoke may allow the objects to stay virtual.
+     */
+    private static final double MATERIALIZING_INVOKE_INLINING_BONUS = 10;
+
+    private final Map<Invoke, Double> inliningHints = new LinkedHashMap<>();
+
     private final class CollectVirtualObjectsClosure extends NodeClosure<ValueNode> {
         private final Set<VirtualObjectNode> virtual;
         private final GraphEffectList effects;
@@ -151,6 +170,14 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
         this.tool = new VirtualizerToolImpl(metaAccess, constantReflection, this, graph.getAssumptions());
     }
 
+    public Map<AbstractMergeNode, Set<EndNode>> getMaterializingMergeEnds() {
+        return materializingMergeEnds;
+    }
+
+    public Map<Invoke, Double> getInliningHints() {
+        return inliningHints;
+    }
+
     /**
      * @return true if the node was deleted, false otherwise
      */
@@ -299,6 +326,9 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
                 ValueNode alias = getAlias((ValueNode) input);
                 if (alias instanceof VirtualObjectNode) {
                     int id = ((VirtualObjectNode) alias).getObjectId();
+                    if (node instanceof MethodCallTargetNode && state.getObjectState(id).isVirtual()) {
+                        inliningHints.put(((MethodCallTargetNode) node).invoke(), MATERIALIZING_INVOKE_INLINING_BONUS);
+                    }
                     ensureMaterialized(state, id, insertBefore, effects, METRIC_MATERIALIZATIONS_UNHANDLED);
                     effects.replaceFirstInput(node, input, state.getObjectState(id).getMaterializedValue());
                     VirtualUtil.trace("replacing input %s at %s", input, node);
@@ -581,6 +611,7 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
             int[] virtualObjTemp = intersectVirtualObjects(states);
 
             boolean materialized;
+            boolean firstPass = true;
             do {
                 materialized = false;
 
@@ -621,6 +652,9 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
                             } else {
                                 PhiNode materializedValuePhi = getPhi(object, StampFactory.forKind(JavaKind.Object));
                                 mergeEffects.addFloatingNode(materializedValuePhi, "materializedPhi");
+                                if (firstPass && virtualCount > 0 && !needsCaching) {
+                                    recordMaterializingEnds(states, object);
+                                }
                                 for (int i = 0; i < states.length; i++) {
                                     ObjectState obj = states[i].getObjectState(object);
                                     if (obj.isVirtual()) {
@@ -647,9 +681,25 @@ public abstract class PartialEscapeClosure<BlockT extends PartialEscapeBlockStat
                     mergeEffects.clear();
                     afterMergeEffects.clear();
                 }
+                firstPass = false;
             } while (materialized);
         }
 
+        private void recordMaterializingEnds(PartialEscapeBlockState<?>[] states, int object) {
+            for (int i = 0; i < states.length; i++) {
+                FixedNode end = getPredecessor(i).getEndNode();
+                if (!states[i].getObjectState(object).isVirtual() && end instanceof EndNode) {
+                    AbstractMergeNode merge = ((EndNode) end).merge();
+                    Set<EndNode> ends = materializingMergeEnds.get(merge);
+                    if (ends == null) {
+                        ends = new LinkedHashSet<>();
+                        materializingMergeEnds.put(merge, ends);
+                    }
+                    ends.add((EndNode) end);
+                }
+            }
+        }
+
         private int[] intersectVirtualObjects(PartialEscapeBlockState<?>[] states) {
             int length = states[0].getStateCount();
             for (int i = 1; i < states.length; i++) {
@@ -24,10 +24,16 @@ package com.oracle.graal.virtual.phases.ea;
 
 import static com.oracle.graal.compiler.common.GraalOptions.EscapeAnalysisIterations;
 import static com.oracle.graal.compiler.common.GraalOptions.EscapeAnalyzeOnly;
+import static com.oracle.graal.compiler.common.GraalOptions.MaterializationSinking;
+import static com.oracle.graal.compiler.common.GraalOptions.PEAInliningHints;
 
+import java.util.Map;
 import java.util.Set;
 
 import com.oracle.graal.graph.Node;
+import com.oracle.graal.nodes.AbstractMergeNode;
+import com.oracle.graal.nodes.EndNode;
+import com.oracle.graal.nodes.Invoke;
 import com.oracle.graal.nodes.StructuredGraph;
 import com.oracle.graal.nodes.StructuredGraph.ScheduleResult;
 import com.oracle.graal.nodes.cfg.ControlFlowGraph;
@@ -37,6 +43,8 @@ import com.oracle.graal.options.OptionType;
 import com.oracle.graal.options.OptionValue;
 import com.oracle.graal.phases.BasePhase;
 import com.oracle.graal.phases.common.CanonicalizerPhase;
+import com.oracle.graal.phases.common.inlining.InliningPhase;
+import com.oracle.graal.phases.tiers.HighTierContext;
 import com.oracle.graal.phases.tiers.PhaseContext;
 
 public class PartialEscapePhase extends EffectsPhase<PhaseContext> {
@@ -82,6 +90,43 @@ public class PartialEscapePhase extends EffectsPhase<PhaseContext> {
         }
     }
 
+    @Override
+    protected boolean repeatAnalysis(StructuredGraph graph, PhaseContext context, Closure<?> closure, int round) {
+        if (round > 1 || !(closure instanceof PartialEscapeClosure)) {
+            return false;
+        }
+        PartialEscapeClosure<?> partialEscapeClosure = (PartialEscapeClosure<?>) closure;
+        if (round == 0 && PEAInliningHints.getValue() && context instanceof HighTierContext && inlineHintedInvokes(graph, (HighTierContext) context, partialEscapeClosure.getInliningHints())) {
+            return true;
+        }
+        if (MaterializationSinking.getValue()) {
+            Map<AbstractMergeNode, Set<EndNode>> materializingEnds = partialEscapeClosure.getMaterializingMergeEnds();
+            if (!materializingEnds.isEmpty()) {
+                return new MaterializationSinker(graph).apply(materializingEnds) > 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the inliner with a bonus for the invokes at which virtual objects had to be
+     * materialized, so that the objects can stay virtual in the inlined code.
+     *
+     * @return true if any of the hinted invokes was inlined
+     */
+    private boolean inlineHintedInvokes(StructuredGraph graph, HighTierContext context, Map<Invoke, Double> hints) {
+        if (hints.isEmpty()) {
+            return false;
+        }
+        new InliningPhase(hints, canonicalizer != null ? canonicalizer : new CanonicalizerPhase()).apply(graph, context);
+        for (Invoke invoke : hints.keySet()) {
+            if (!invoke.asNode().isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected Closure<?> createEffectsClosure(PhaseContext context, ScheduleResult schedule, ControlFlowGraph cfg) {
         for (VirtualObjectNode virtual : cfg.graph.getNodes(VirtualObjectNode.TYPE)) {
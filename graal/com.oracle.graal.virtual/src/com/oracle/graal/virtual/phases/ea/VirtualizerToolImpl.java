@@ -23,6 +23,7 @@
 package com.oracle.graal.virtual.phases.ea;
 
 import static com.oracle.graal.compiler.common.GraalOptions.MaximumEscapeAnalysisArrayLength;
+import static com.oracle.graal.compiler.common.GraalOptions.MaximumEscapeAnalysisConstantIndexArrayLength;
 
 import java.util.List;
 
@@ -178,6 +179,11 @@ class VirtualizerToolImpl implements VirtualizerTool, CanonicalizerTool {
         return MaximumEscapeAnalysisArrayLength.getValue();
     }
 
+    @Override
+    public int getMaximumConstantIndexArrayLength() {
+        return MaximumEscapeAnalysisConstantIndexArrayLength.getValue();
+    }
+
     @Override
     public void replaceWith(ValueNode node) {
         if (node instanceof VirtualObjectNode) {